@@ -0,0 +1,6 @@
+# Technique - Blind Knight, the sample of PlayersPanel
+loop:
+add x2, x2, 4
+add x3, x1, x2
+sw x2, 32(x3)
+j loop
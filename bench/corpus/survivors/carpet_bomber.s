@@ -0,0 +1,12 @@
+# bombs every word of the arena with an invalid opcode, until it bombs itself
+addi x5, x0, -1
+addi x6, x1, 64
+loop:
+sw x5, 0(x6)
+sw x5, 4(x6)
+sw x5, 8(x6)
+sw x5, 12(x6)
+addi x6, x6, 16
+slli x6, x6, 16
+srli x6, x6, 16
+j loop
@@ -0,0 +1,16 @@
+# copies itself 256 bytes forward and jumps to the copy, wrapping around the arena
+start:
+addi x6, x1, 256
+slli x6, x6, 16
+srli x6, x6, 16
+addi x7, x0, 0
+copy:
+add x8, x1, x7
+lw x9, 0(x8)
+add x10, x6, x7
+sw x9, 0(x10)
+addi x7, x7, 4
+addi x11, x0, 52
+blt x7, x11, copy
+addi x1, x6, 0
+jr x1
@@ -0,0 +1,19 @@
+# pushes a frame, calls a leaf that uses the stack below it and pops the frame
+loop:
+addi x2, x2, -16
+sw x5, 0(x2)
+sw x6, 4(x2)
+sw x7, 8(x2)
+sw x8, 12(x2)
+jal x7, leaf
+lw x5, 0(x2)
+lw x6, 4(x2)
+lw x8, 12(x2)
+addi x2, x2, 16
+j loop
+leaf:
+addi x5, x5, 1
+add x6, x6, x5
+sw x6, -4(x2)
+lw x8, -4(x2)
+jr x7
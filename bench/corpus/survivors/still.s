@@ -0,0 +1,2 @@
+# Technieque - Stand Still, the sample of PlayersPanel
+j x1
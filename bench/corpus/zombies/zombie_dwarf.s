@@ -0,0 +1,6 @@
+# a zombie that bombs backwards with zeros
+loop:
+add x2, x2, -36
+add x3, x1, x2
+sw x0, 0(x3)
+j loop
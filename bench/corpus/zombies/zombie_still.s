@@ -0,0 +1,2 @@
+# a zombie that only survives
+j x1
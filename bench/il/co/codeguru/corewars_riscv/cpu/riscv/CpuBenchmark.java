@@ -0,0 +1,67 @@
+package il.co.codeguru.corewars_riscv.cpu.riscv;
+
+import il.co.codeguru.corewars_riscv.cpu.exceptions.CpuException;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.memory.MemoryRegion;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.memory.RestrictedMemory;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.War;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instructions per second of CpuRiscV.nextOpcode() for every InstructionMix, with and without the new memory.
+ * A single warrior runs alone in a memory like the one of a war, through the RestrictedMemory a warrior gets.
+ * Run with "ant bench", the results are written to reports/jmh/results.json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBenchmark {
+    private static final int INSTRUCTIONS = 10000; // in every invocation
+
+    @Param({"ALU", "LOAD_STORE", "BRANCH", "COMPRESSED", "SELF_MODIFYING"})
+    public InstructionMix mix;
+
+    @Param({"true", "false"})
+    public boolean useNewMemory;
+
+    private CpuRiscV cpu;
+
+    @Setup(Level.Trial)
+    public void setUp() throws MemoryException {
+        Logger.setTestingMode();
+        RawMemory core = new RawMemory(RawMemory.MEMORY_SIZE);
+        MemoryRegion arena = new MemoryRegion(0, War.ARENA_SIZE - 1);
+        MemoryRegion stack = new MemoryRegion(War.ARENA_SIZE, War.ARENA_SIZE + War.STACK_SIZE - 1);
+        RestrictedMemory memory = new RestrictedMemory(core, new MemoryRegion[]{ arena, stack }, useNewMemory);
+        CpuStateRiscV state = new CpuStateRiscV();
+        cpu = new CpuRiscV(state, memory);
+        mix.load(memory, state);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int nextOpcode() throws CpuException, MemoryException {
+        for (int i = 0; i < INSTRUCTIONS; ++i)
+            cpu.nextOpcode();
+        return cpu.getState().getPc();
+    }
+}
@@ -0,0 +1,143 @@
+package il.co.codeguru.corewars_riscv.cpu.riscv;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.instruction_formats.InstructionFormatBase;
+import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.RV32C;
+import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
+import il.co.codeguru.corewars_riscv.memory.Memory;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+
+/**
+ * Endless loops of the kinds of code warriors run, for measuring the interpreter.
+ * Every mix is loaded at CODE_ADDRESS of the arena and only touches the arena, so it runs the same with and
+ * without the new memory.
+ */
+public enum InstructionMix {
+    /** arithmetic between registers, no memory access other than the fetch */
+    ALU {
+        @Override
+        void emit(Program p) throws MemoryException {
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Add, 6, 6, 5));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Xor, 7, 7, 6));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Slli, 8, 7, 3));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Sub, 9, 8, 5));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Or, 10, 9, 6));
+            p.add(RV32I.instructionR(RV32I.Opcodes.And, 11, 10, 7));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Srai, 12, 11, 2));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Sltu, 13, 12, 5));
+            p.jumpToStart();
+        }
+    },
+    /** copies words around a data block, a word load and store in every other instruction */
+    LOAD_STORE {
+        @Override
+        void emit(Program p) throws MemoryException {
+            p.add(RV32I.instructionU(RV32I.Opcodes.Lui, 10, DATA_ADDRESS >> 12)); // x10 = data block
+            int loop = p.here();
+            p.add(RV32I.instructionR(RV32I.Opcodes.Add, 11, 10, 5));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Lw, 6, 11, 0));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 6, 6, 1));
+            p.add(RV32I.instructionS(RV32I.Opcodes.Sw, 11, 6, 4));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Lbu, 7, 11, 2));
+            p.add(RV32I.instructionS(RV32I.Opcodes.Sh, 11, 7, 8));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 4));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Andi, 5, 5, 0x3FC)); // stay in a 1K block
+            p.jumpTo(loop);
+        }
+    },
+    /** short forward branches, taken and not taken in turn */
+    BRANCH {
+        @Override
+        void emit(Program p) throws MemoryException {
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Andi, 6, 5, 1));
+            p.add(RV32I.instructionSB(RV32I.Opcodes.Beq, 6, 0, 8));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 7, 7, 1));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Andi, 6, 5, 3));
+            p.add(RV32I.instructionSB(RV32I.Opcodes.Bne, 6, 0, 8));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 8, 8, 1));
+            p.add(RV32I.instructionSB(RV32I.Opcodes.Blt, 7, 8, 8));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 9, 9, 1));
+            p.add(RV32I.instructionSB(RV32I.Opcodes.Bgeu, 5, 0, 8)); // always taken
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 0, 0, 0));
+            p.jumpToStart();
+        }
+    },
+    /** the same kind of arithmetic as ALU, in compressed instructions */
+    COMPRESSED {
+        @Override
+        void emit(Program p) throws MemoryException {
+            p.add(RV32C.cInstructionFormatCI(RV32C.Opcodes.CADDI, 8, 1));
+            p.add(RV32C.cInstructionFormatCR(RV32C.Opcodes.CADD, 9, 8));
+            p.add(RV32C.cInstructionFormatCR(RV32C.Opcodes.CMV, 10, 9));
+            p.add(RV32C.cInstructionFormatCI(RV32C.Opcodes.CSLLI, 10, 2));
+            p.add(RV32C.cInstructionFormatCI(RV32C.Opcodes.CLI, 11, -7));
+            p.add(RV32C.cInstructionFormatCR(RV32C.Opcodes.CADD, 11, 10));
+            p.add(RV32C.cInstructionFormatCI(RV32C.Opcodes.CADDI, 12, 3));
+            p.add(RV32C.cInstructionFormatCR(RV32C.Opcodes.CADD, 12, 11));
+            p.add(RV32C.cInstructionFormatCJ(RV32C.Opcodes.CJ, -16));
+        }
+    },
+    /** rewrites one of its own instructions every iteration */
+    SELF_MODIFYING {
+        @Override
+        void emit(Program p) throws MemoryException {
+            int first = RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1).getRaw();
+            int second = RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 2).getRaw();
+            p.add(RV32I.instructionU(RV32I.Opcodes.Lui, 7, (first + 0x800) >>> 12)); // x7 = first
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 7, 7, (first << 20) >> 20));
+            p.add(RV32I.instructionU(RV32I.Opcodes.Lui, 8, (second + 0x800) >>> 12)); // x8 = second
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 8, 8, (second << 20) >> 20));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 10, 0, CODE_ADDRESS));
+            int loop = p.here();
+            p.add(RV32I.instructionS(RV32I.Opcodes.Sw, 10, 7, loop + 16 - CODE_ADDRESS)); // over the addi below
+            p.add(RV32I.instructionR(RV32I.Opcodes.Xor, 7, 7, 8)); // swap x7, x8
+            p.add(RV32I.instructionR(RV32I.Opcodes.Xor, 8, 8, 7));
+            p.add(RV32I.instructionR(RV32I.Opcodes.Xor, 7, 7, 8));
+            p.add(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1));
+            p.jumpTo(loop);
+        }
+    };
+
+    public static final int CODE_ADDRESS = 0x100;
+    public static final int DATA_ADDRESS = 0x8000;
+
+    abstract void emit(Program p) throws MemoryException;
+
+    /** writes the code of the mix to the memory and points the state at it */
+    public void load(Memory memory, CpuStateRiscV state) throws MemoryException {
+        emit(new Program(memory));
+        state.setPc(CODE_ADDRESS);
+    }
+
+    static class Program {
+        private final Memory memory;
+        private int address = CODE_ADDRESS;
+
+        Program(Memory memory) {
+            this.memory = memory;
+        }
+
+        int here() {
+            return address;
+        }
+
+        void add(InstructionFormatBase i) throws MemoryException {
+            memory.storeWord(address, i.getRaw());
+            address += 4;
+        }
+
+        void add(CInstructionFormatBase i) throws MemoryException {
+            memory.storeHalfWord(address, i.getRaw());
+            address += 2;
+        }
+
+        void jumpTo(int target) throws MemoryException {
+            add(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, target - address));
+        }
+
+        void jumpToStart() throws MemoryException {
+            jumpTo(CODE_ADDRESS);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+
+/**
+ * Runs fixed competitions of the warriors of a corpus from start to end, the way the competition window runs them,
+ * and measures the whole engine: wars/sec, rounds/sec, instructions/sec and bytes allocated per second.
+ * Every competition is between the first N groups, every group a single warrior of the corpus in turn, together
+ * with all the zombies of the corpus, for both memory modes. A checksum of the final scores tells if a change
+ * to the engine changed the results of the wars.
+ *
+ * Run with "ant bench.competition", arguments: [corpus dir] [report file] [wars per competition] [seed]
+ * The corpus dir has a survivors and a zombies dir with the binaries of the warriors, the report is JSON.
+ */
+public class CompetitionBenchmark {
+    private static final int[] GROUP_COUNTS = { 2, 4, 8, 20 };
+
+    private static class Result {
+        int groups;
+        int warriors;
+        boolean useNewMemory;
+        int wars;
+        long rounds;
+        long instructions;
+        long nanos;
+        long allocatedBytes;
+        long scoresChecksum;
+    }
+
+    // counts the rounds and instructions of every war when it ends
+    private static class WarCounter extends TestUtils.QuietSampledListener {
+        private final Competition competition;
+        int wars = 0;
+        long rounds = 0;
+        long instructions = 0;
+
+        WarCounter(Competition competition) {
+            super(WAR_BOUNDARIES);
+            this.competition = competition;
+        }
+
+        @Override
+        public void onWarEnd(int reason, String winners, boolean inDebug) {
+            ++wars;
+            rounds += competition.compState.round;
+            instructions += competition.getCurrentWar().getInstructionCount();
+        }
+    }
+
+    private static PlayersPanel.Code[] loadCodes(File dir, String labelPrefix) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null || files.length == 0)
+            throw new IOException("no warriors in " + dir);
+        Arrays.sort(files);
+        PlayersPanel.Code[] codes = new PlayersPanel.Code[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            String name = files[i].getName().substring(0, files[i].getName().length() - 4);
+            codes[i] = code(labelPrefix + i, name, Files.readAllBytes(files[i].toPath()));
+        }
+        return codes;
+    }
+
+    // the first count groups, taking the survivors in turn
+    private static PlayersPanel.Code[] groups(PlayersPanel.Code[] survivors, int count) {
+        PlayersPanel.Code[] groups = new PlayersPanel.Code[count];
+        for (int i = 0; i < count; ++i) {
+            PlayersPanel.Code s = survivors[i % survivors.length];
+            groups[i] = code("g" + i, String.format("%s_%02d", s.name, i), s.bin);
+        }
+        return groups;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    private static long scoresChecksum(WarriorRepository repository) {
+        CRC32 crc = new CRC32();
+        for (WarriorGroup group : repository.getWarriorGroups()) {
+            crc.update(group.getName().getBytes(StandardCharsets.UTF_8));
+            for (float score : group.getScores()) {
+                int bits = Float.floatToIntBits(score);
+                crc.update(new byte[] { (byte)bits, (byte)(bits >> 8), (byte)(bits >> 16), (byte)(bits >> 24) });
+            }
+        }
+        return crc.getValue();
+    }
+
+    static Result run(PlayersPanel.Code[] survivors, PlayersPanel.Code[] zombies, int groupCount, boolean useNewMemory, int wars, long seed) throws Exception {
+        Competition competition = new Competition();
+        competition.setSeed(seed);
+        int warriors = groupCount + zombies.length;
+        if (warriors > ArenaGeometry.DEFAULT.maxWarriors) {
+            ArenaGeometry g = ArenaGeometry.DEFAULT;
+            competition.setGeometry(new ArenaGeometry(g.arenaSize, warriors, g.stackSize, g.groupSharedMemorySize));
+        }
+        if (!competition.getWarriorRepository().loadWarriors(groups(survivors, groupCount), zombies, false))
+            throw new Exception("failed loading the warriors");
+        WarCounter counter = new WarCounter(competition);
+        competition.addCompetitionEventListener(counter);
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        competition.runCompetition(wars, groupCount, false, false, useNewMemory);
+        while (competition.continueRun())
+            ;
+        Result r = new Result();
+        r.nanos = System.nanoTime() - start;
+        r.allocatedBytes = allocatedBytes() - startBytes;
+        r.groups = groupCount;
+        r.warriors = warriors;
+        r.useNewMemory = useNewMemory;
+        r.wars = counter.wars;
+        r.rounds = counter.rounds;
+        r.instructions = counter.instructions;
+        r.scoresChecksum = scoresChecksum(competition.getWarriorRepository());
+        return r;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return count * 1e9 / Math.max(1, nanos);
+    }
+
+    private static void writeReport(List<Result> results, File file, long seed) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("[");
+            for (int i = 0; i < results.size(); ++i) {
+                Result r = results.get(i);
+                out.print(String.format(Locale.ROOT,
+                        "  {\"groups\": %d, \"warriors\": %d, \"useNewMemory\": %b, \"seed\": %d, \"wars\": %d, \"rounds\": %d, " +
+                        "\"instructions\": %d, \"seconds\": %.3f, \"warsPerSec\": %.3f, \"roundsPerSec\": %.1f, " +
+                        "\"instructionsPerSec\": %.1f, \"allocatedBytesPerSec\": %.1f, \"scoresChecksum\": \"%08x\"}",
+                        r.groups, r.warriors, r.useNewMemory, seed, r.wars, r.rounds, r.instructions, r.nanos / 1e9,
+                        perSecond(r.wars, r.nanos), perSecond(r.rounds, r.nanos), perSecond(r.instructions, r.nanos),
+                        perSecond(r.allocatedBytes, r.nanos), r.scoresChecksum));
+                out.println(i + 1 < results.size() ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File corpus = new File(args.length > 0 ? args[0] : "bench/corpus");
+        File report = new File(args.length > 1 ? args[1] : "reports/bench/competition.json");
+        int wars = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Logger.setTestingMode();
+        PlayersPanel.Code[] survivors = loadCodes(new File(corpus, "survivors"), "s");
+        PlayersPanel.Code[] zombies = loadCodes(new File(corpus, "zombies"), "z");
+
+        List<Result> results = new ArrayList<>();
+        for (int groups : GROUP_COUNTS) {
+            for (boolean useNewMemory : new boolean[] { false, true }) {
+                Result r = run(survivors, zombies, groups, useNewMemory, wars, seed);
+                results.add(r);
+                System.out.println(String.format(Locale.ROOT,
+                        "groups=%-3d newMemory=%-5b wars/s=%8.2f rounds/s=%12.0f instructions/s=%12.0f MB/s=%8.1f checksum=%08x",
+                        r.groups, r.useNewMemory, perSecond(r.wars, r.nanos), perSecond(r.rounds, r.nanos),
+                        perSecond(r.instructions, r.nanos), perSecond(r.allocatedBytes, r.nanos) / 1e6, r.scoresChecksum));
+            }
+        }
+        writeReport(results, report, seed);
+    }
+}
@@ -6,14 +6,28 @@ import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.InstructionDecoderRv32c;
 import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
 import il.co.codeguru.corewars_riscv.memory.Memory;
 import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
 
 public class CpuRiscV {
 
+    // Decoded instructions don't depend on the cpu that runs them so all the cpus share them, running an
+    // instruction that was decoded before doesn't allocate anything.
+    // Every 16 bit value has its own entry in the compressed table, 32 bit instructions are kept in a direct mapped
+    // cache where every entry is checked by the raw code of its format. Both are safe to share between threads since
+    // an entry is a single reference to an immutable Instruction.
+    private static final Instruction NOT_COMPRESSED = new Instruction(null, null, null);
+    private static final Instruction[] compressedCache = new Instruction[0x10000];
+    private static final int CACHE_BITS = 12;
+    private static final Instruction[] instructionCache = new Instruction[1 << CACHE_BITS];
+
     private CpuStateRiscV state;
     private Memory Memory;
     private InstructionDecoder decoder;
     private InstructionDecoderRv32c cDecoder;
     private InstructionRunner runner;
+    private long[] opcodeCounts = null; // executed instructions by Instruction.CLASS_, not counted when null
+    private int lastRaw; // the code of the last instruction that was decoded
+    private Watchpoints watchpoints = null; // told when every instruction was fetched, null for none
 
     public CpuStateRiscV getState() {
         return state;
@@ -23,6 +37,34 @@ public class CpuRiscV {
         return Memory;
     }
 
+    /** @param counts incremented at the Instruction.getOpcodeClass() of every instruction that completes, null to stop counting */
+    public void setOpcodeCounts(long[] counts) {
+        this.opcodeCounts = counts;
+    }
+
+    /** @param watchpoints told when the fetch of every instruction is done, so that only the fetch is kept out of READ watchpoints */
+    public void setWatchpoints(Watchpoints watchpoints) {
+        this.watchpoints = watchpoints;
+    }
+
+    /** @return the raw code of the last instruction that was fetched, only the low 16 bits for a compressed one */
+    public int getLastRaw() {
+        return lastRaw;
+    }
+
+    /** @return the register the last instruction that was fetched writes, 0 for none */
+    public int getLastRd() {
+        int rawCode = lastRaw;
+        if ((rawCode & 3) != 3) {
+            // a compressed one ran, so its expansion is in the cache
+            InstructionFormatBase expanded = compressedCache[rawCode].getFormat();
+            if (expanded == null)
+                return 0;
+            rawCode = expanded.getRaw();
+        }
+        return RV32I.getRd(rawCode);
+    }
+
     public CpuRiscV(CpuStateRiscV state, Memory Memory)
     {
         this.state = state;
@@ -38,26 +80,50 @@ public class CpuRiscV {
             return;
 
         int rawCode = Memory.loadWord(state.getPc());
-        InstructionFormatBase instructionRaw = new InstructionFormatBase(rawCode);
-
-        Instruction instruction = decoder.decode(instructionRaw);
+        if (watchpoints != null)
+            watchpoints.instructionFetched();
+        lastRaw = rawCode;
+        Instruction instruction = decode(rawCode);
 
         instruction.execute(runner);
+        if (opcodeCounts != null)
+            ++opcodeCounts[instruction.getOpcodeClass()];
 
         state.setPc(state.getPc() + 4);
     }
 
+    private Instruction decode(int rawCode) throws CpuException
+    {
+        int index = (rawCode ^ (rawCode >>> CACHE_BITS) ^ (rawCode >>> (2 * CACHE_BITS))) & ((1 << CACHE_BITS) - 1);
+        Instruction instruction = instructionCache[index];
+        if (instruction == null || instruction.getFormat().getRaw() != rawCode) {
+            instruction = decoder.decode(new InstructionFormatBase(rawCode));
+            instructionCache[index] = instruction;
+        }
+        return instruction;
+    }
+
     private boolean tryRv32cSet() throws CpuException, MemoryException
     {
         short rawComppressedCode = Memory.loadHalfWord(state.getPc());
-        CInstructionFormatBase commpressedInstruction = new CInstructionFormatBase(rawComppressedCode);
-        Instruction i = cDecoder.decode(commpressedInstruction);
-        if(i!=null)
+        Instruction i = compressedCache[rawComppressedCode & 0xFFFF];
+        if (i == null) {
+            i = cDecoder.decode(new CInstructionFormatBase(rawComppressedCode));
+            if (i == null)
+                i = NOT_COMPRESSED;
+            compressedCache[rawComppressedCode & 0xFFFF] = i;
+        }
+        if(i != NOT_COMPRESSED)
         {
+            if (watchpoints != null)
+                watchpoints.instructionFetched();
+            lastRaw = rawComppressedCode & 0xFFFF;
             i.execute(runner);
+            if (opcodeCounts != null)
+                ++opcodeCounts[i.getOpcodeClass()];
             state.setPc(state.getPc() + 2);
         }
-        return i!=null;
+        return i != NOT_COMPRESSED;
     }
 
 }
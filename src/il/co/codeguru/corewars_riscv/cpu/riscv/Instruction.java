@@ -6,9 +6,19 @@ import il.co.codeguru.corewars_riscv.memory.MemoryException;
 
 public class Instruction {
 
-    private InstructionInfo info;
-    private InstructionFormatBase instructionFormat;
-    private Action action;
+    /** Classes of opcodes, for counting the executed instructions. A compressed instruction has the class of its expansion */
+    public static final int CLASS_ALU = 0;
+    public static final int CLASS_LOAD = 1;
+    public static final int CLASS_STORE = 2;
+    public static final int CLASS_BRANCH = 3;
+    public static final int CLASS_JUMP = 4;
+    public static final int CLASS_COUNT = 5;
+    public static final String[] CLASS_NAMES = { "alu", "load", "store", "branch", "jump" };
+
+    private final InstructionInfo info;
+    private final InstructionFormatBase instructionFormat;
+    private final Action action;
+    private final int opcodeClass;
 
     public Instruction(InstructionInfo info,
                        InstructionFormatBase format,
@@ -17,6 +27,23 @@ public class Instruction {
         this.info = info;
         this.instructionFormat = format;
         this.action = action;
+        this.opcodeClass = (format == null) ? CLASS_ALU : classOf(format.getOpcode());
+    }
+
+    private static int classOf(int opcode) {
+        switch (opcode) {
+            case RV32I.OpcodeTypes.LOAD:
+                return CLASS_LOAD;
+            case RV32I.OpcodeTypes.STORE:
+                return CLASS_STORE;
+            case RV32I.OpcodeTypes.BRANCH:
+                return CLASS_BRANCH;
+            case RV32I.OpcodeTypes.JAL:
+            case RV32I.OpcodeTypes.JALR:
+                return CLASS_JUMP;
+            default:
+                return CLASS_ALU;
+        }
     }
 
     public InstructionInfo getInfo()
@@ -28,6 +55,11 @@ public class Instruction {
         return instructionFormat;
     }
 
+    /** @return one of the CLASS_ constants */
+    public int getOpcodeClass() {
+        return opcodeClass;
+    }
+
     public void execute(InstructionRunner runner) throws CpuException, MemoryException
     {
         action.apply(instructionFormat, runner);
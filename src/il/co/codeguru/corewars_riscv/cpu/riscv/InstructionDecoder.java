@@ -14,22 +14,22 @@ public class InstructionDecoder {
                 return immOpcode(i);
             case RV32I.OpcodeTypes.AUIPC:
                 return new Instruction(RV32I.Opcodes.Auipc, new InstructionFormatU(i),
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.auipc(new InstructionFormatU(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.auipc((InstructionFormatU) format));
             case RV32I.OpcodeTypes.STORE:
                 return storeOpcode(i);
             case RV32I.OpcodeTypes.OP:
                 return registerOpcode(i);
             case RV32I.OpcodeTypes.LUI:
                 return new Instruction(RV32I.Opcodes.Lui, new InstructionFormatU(i),
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lui(new InstructionFormatU(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lui((InstructionFormatU) format));
             case RV32I.OpcodeTypes.BRANCH:
                 return branchOpcode(i);
             case RV32I.OpcodeTypes.JALR:
                 return new Instruction(RV32I.Opcodes.Jalr, new InstructionFormatI(i),
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr((InstructionFormatI) format));
             case RV32I.OpcodeTypes.JAL:
                 return new Instruction(RV32I.Opcodes.Jal, new InstructionFormatUJ(i),
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jal(new InstructionFormatUJ(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jal((InstructionFormatUJ) format));
             default:
                 throw new InvalidOpcodeException();
         }
@@ -41,22 +41,22 @@ public class InstructionDecoder {
         {
             case 0:
                 return new Instruction(RV32I.Opcodes.Beq, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.beq(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.beq((InstructionFormatSB) format));
             case 1:
                 return new Instruction(RV32I.Opcodes.Bne, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bne(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bne((InstructionFormatSB) format));
             case 4:
                 return new Instruction(RV32I.Opcodes.Blt, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.blt(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.blt((InstructionFormatSB) format));
             case 5:
                 return new Instruction(RV32I.Opcodes.Bge, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bge(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bge((InstructionFormatSB) format));
             case 6:
                 return new Instruction(RV32I.Opcodes.Bltu, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bltu(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bltu((InstructionFormatSB) format));
             case 7:
                 return new Instruction(RV32I.Opcodes.Bgeu, sb,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bgeu(new InstructionFormatSB(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.bgeu((InstructionFormatSB) format));
             default:
                 throw new InvalidOpcodeException();
         }
@@ -71,43 +71,43 @@ public class InstructionDecoder {
                 {
                     case 0:
                         return new Instruction(RV32I.Opcodes.Add, ir,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.add(new InstructionFormatR(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.add((InstructionFormatR) format));
                     case 32:
                         return new Instruction(RV32I.Opcodes.Sub, ir,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sub(new InstructionFormatR(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sub((InstructionFormatR) format));
                     default:
                         throw new InvalidOpcodeException();
                 }
             case 1:
                 return new Instruction(RV32I.Opcodes.Sll, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sll(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sll((InstructionFormatR) format));
             case 2:
                 return new Instruction(RV32I.Opcodes.Slt, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slt(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slt((InstructionFormatR) format));
             case 3:
                 return new Instruction(RV32I.Opcodes.Sltu, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sltu(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sltu((InstructionFormatR) format));
             case 4:
                 return new Instruction(RV32I.Opcodes.Xor, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.xor(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.xor((InstructionFormatR) format));
             case 5:
                 switch(ir.getFunct7())
                 {
                     case 0:
                         return new Instruction(RV32I.Opcodes.Srl, ir,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srl(new InstructionFormatR(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srl((InstructionFormatR) format));
                     case 32:
                         return new Instruction(RV32I.Opcodes.Sra, ir,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sra(new InstructionFormatR(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sra((InstructionFormatR) format));
                     default:
                         throw new InvalidOpcodeException();
                 }
             case 6:
                 return new Instruction(RV32I.Opcodes.Or, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.or(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.or((InstructionFormatR) format));
             case 7:
                 return new Instruction(RV32I.Opcodes.And, ir,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.and(new InstructionFormatR(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.and((InstructionFormatR) format));
             default:
                 throw new InvalidOpcodeException();
         }
@@ -119,13 +119,13 @@ public class InstructionDecoder {
         {
             case 0:
                 return new Instruction(RV32I.Opcodes.Sb, is,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sb(new InstructionFormatS(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sb((InstructionFormatS) format));
             case 1:
                 return new Instruction(RV32I.Opcodes.Sh, is,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sh(new InstructionFormatS(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sh((InstructionFormatS) format));
             case 2:
                 return new Instruction(RV32I.Opcodes.Sw, is,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sw(new InstructionFormatS(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sw((InstructionFormatS) format));
             default:
                 throw new InvalidOpcodeException();
         }
@@ -137,38 +137,38 @@ public class InstructionDecoder {
         {
             case 0x0:
                 return new Instruction(RV32I.Opcodes.Addi, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.addi(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.addi((InstructionFormatI) format));
             case 0x1:
                 return new Instruction(RV32I.Opcodes.Slli, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slli(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slli((InstructionFormatI) format));
             case 0x2:
                 return new Instruction(RV32I.Opcodes.Slti, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slti(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.slti((InstructionFormatI) format));
             case 0x3:
                 return new Instruction(RV32I.Opcodes.Sltiu, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sltiu(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.sltiu((InstructionFormatI) format));
             case 0x4:
                 return new Instruction(RV32I.Opcodes.Xori, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.xori(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.xori((InstructionFormatI) format));
             case 0x5:
                 int imm = ii.getImmediate() >> 5;
                 switch(imm)
                 {
                     case 0:
                         return new Instruction(RV32I.Opcodes.Srli, ii,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srli(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srli((InstructionFormatI) format));
                     case 32:
                         return new Instruction(RV32I.Opcodes.Srai, ii,
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srai(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.srai((InstructionFormatI) format));
                     default:
                         throw new InvalidOpcodeException();
                 }
             case 0x6:
                 return new Instruction(RV32I.Opcodes.Ori, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.ori(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.ori((InstructionFormatI) format));
             case 0x7:
                 return new Instruction(RV32I.Opcodes.Andi, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.andi(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.andi((InstructionFormatI) format));
             default:
                 throw new InvalidOpcodeException();
         }
@@ -180,19 +180,19 @@ public class InstructionDecoder {
         {
             case 0x0:
                 return new Instruction(RV32I.Opcodes.Lb, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lb(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lb((InstructionFormatI) format));
             case 0x1:
                 return new Instruction(RV32I.Opcodes.Lh, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lh(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lh((InstructionFormatI) format));
             case 0x2:
                 return new Instruction(RV32I.Opcodes.Lw, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lw(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lw((InstructionFormatI) format));
             case 0x4:
                 return new Instruction(RV32I.Opcodes.Lbu, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lbu(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lbu((InstructionFormatI) format));
             case 0x5:
                 return new Instruction(RV32I.Opcodes.Lhu, ii,
-                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lhu(new InstructionFormatI(format)));
+                        (InstructionFormatBase format, InstructionRunner runner) -> runner.lhu((InstructionFormatI) format));
             default:
                 throw new InvalidOpcodeException();
         }
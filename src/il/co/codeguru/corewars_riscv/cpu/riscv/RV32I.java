@@ -24,6 +24,22 @@ public final class RV32I {
         public static final int JAL = 0x6f;
     }
 
+    /** @return the register an instruction writes, 0 for none, from the fields of its code */
+    public static int getRd(int rawCode) {
+        switch (rawCode & 0x7f) {
+            case OpcodeTypes.OP_IMM:
+            case OpcodeTypes.OP:
+            case OpcodeTypes.LOAD:
+            case OpcodeTypes.AUIPC:
+            case OpcodeTypes.LUI:
+            case OpcodeTypes.JALR:
+            case OpcodeTypes.JAL:
+                return (rawCode >>> 7) & 0x1f;
+            default: // branches and stores
+                return 0;
+        }
+    }
+
     public static final class Opcodes{
         //BRANCH
         public static Instruction.InstructionInfo Beq = new Instruction.InstructionInfo("Beq", OpcodeTypes.BRANCH, 0);
@@ -33,7 +33,7 @@ public class InstructionDecoderRv32c {
                         int bit54 = (ciw.getImmediate() >> 6) & 3;
                         int nzuimm = (bit2 | (bit3 << 1) | (bit54 << 2) | (bit96 << 4)) << 2;
                         return new Instruction(RV32C.Opcodes.CADDI4SPN, RV32I.instructionI(RV32I.Opcodes.Addi, ciw.getRd(), 2, nzuimm),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.addi(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.addi((InstructionFormatI) format));
                     case 2:
                         /*
                          * C.LW loads a 32-bit value from memory into register rd.  It computes
@@ -43,7 +43,7 @@ public class InstructionDecoderRv32c {
                          */
                         CInstructionFormatCL cl = new CInstructionFormatCL(i);
                         return new Instruction(RV32C.Opcodes.CLW, RV32I.instructionI(RV32I.Opcodes.Lw, cl.getRd(), cl.getRs1(), cl.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.lw(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.lw((InstructionFormatI) format));
                     case 6:
                         /*
                          * C.SW stores a 32-bit value in register rs2 to memory.  It computes an
@@ -52,7 +52,7 @@ public class InstructionDecoderRv32c {
                          * It expands to sw rs2, offset[6:2](rs1).
                          */
                         return new Instruction(RV32C.Opcodes.CSW, RV32I.instructionS(RV32I.Opcodes.Sw, cs.getRs1(), cs.getRs2(), cs.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sw(new InstructionFormatS(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sw((InstructionFormatS) format));
                 }
 
             case RV32C.OpcodeTypes.C1:
@@ -67,7 +67,7 @@ public class InstructionDecoderRv32c {
                              * C.ADDI is only valid when rd != x0.
                              */
                             return new Instruction(RV32C.Opcodes.CADDI, RV32I.instructionI(RV32I.Opcodes.Addi, ci.getRs1(), ci.getRs1(), ci.getImmediate()),
-                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.addi(new InstructionFormatI(format)));
+                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.addi((InstructionFormatI) format));
                         }
 
                     case 1:
@@ -77,7 +77,7 @@ public class InstructionDecoderRv32c {
                          * (pc+2) to the link register, x1.  C.JAL expands to "jal x1, offset[11:1]".
                          */
                         return new Instruction(RV32C.Opcodes.CJAL, RV32I.instructionUJ(RV32I.Opcodes.Jal, 1, cj.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.jal(new InstructionFormatUJ(format), 2));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.jal((InstructionFormatUJ) format, 2));
                     case 2:
                         /*
                          * C.LI loads the sign-extended 6-bit immediate, imm, into
@@ -85,7 +85,7 @@ public class InstructionDecoderRv32c {
                          * C.LI expands into "addi rd, x0, imm[5:0]".
                          */
                         return new Instruction(RV32C.Opcodes.CLI, RV32I.instructionI(RV32I.Opcodes.Addi, ci.getRs1(), 0, ci.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.addi(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.addi((InstructionFormatI) format));
                     case 3:
                         if (ci.getRs1() == 2) {
                             /*
@@ -105,7 +105,7 @@ public class InstructionDecoderRv32c {
                             int nzimm = (bit4 | (bit5 << 1) | (bit6 << 2) | (bits78 << 3) | (bit9 << 5)) << 4;
 
                             return new Instruction(RV32C.Opcodes.CADDI16SP, RV32I.instructionI(RV32I.Opcodes.Addi, 2, 2, nzimm),
-                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.addi(new InstructionFormatI(format)));
+                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.addi((InstructionFormatI) format));
                         } else if (ci.getRs1() != 0) {
                             /*
                              * C.LUI loads the non-zero 6-bit immediate field into bits 17--12 of the
@@ -116,7 +116,7 @@ public class InstructionDecoderRv32c {
                              * C.LUI expands into "lui rd, nzimm[17:12]".
                              */
                             return new Instruction(RV32C.Opcodes.CLUI, RV32I.instructionU(RV32I.Opcodes.Lui, ci.getRs1(), ci.getImmediate()),
-                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.lui(new InstructionFormatU(format)));
+                                    (InstructionFormatBase format, InstructionRunner runner) -> runner.lui((InstructionFormatU) format));
                         }
 
                     case 4:
@@ -136,7 +136,7 @@ public class InstructionDecoderRv32c {
                                      * "srli rd, rd, 64".
                                      */
                                     return new Instruction(RV32C.Opcodes.CSRLI, RV32I.instructionI(RV32I.Opcodes.Srli, cb.getRs1(), cb.getRs1(), cb.getImmediate()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.srli(new InstructionFormatI(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.srli((InstructionFormatI) format));
                                 case 1:
                                     /*
                                      * C.SRAI is defined analogously to C.SRLI, but instead performs an arithmetic
@@ -144,7 +144,7 @@ public class InstructionDecoderRv32c {
                                      * C.SRAI expands to "srai rd, rd, shamt[5:0]".
                                      */
                                     return new Instruction(RV32C.Opcodes.CSRAI, RV32I.instructionI(RV32I.Opcodes.Srai, cb.getRs1(), cb.getRs1(), cb.getImmediate()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.srai(new InstructionFormatI(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.srai((InstructionFormatI) format));
                                 case 2:
                                     /*
                                      * C.ANDI is a CB-format instruction that computes the bitwise AND of
@@ -153,7 +153,7 @@ public class InstructionDecoderRv32c {
                                      * C.ANDI expands to "andi rd, rd, imm[5:0]".
                                      */
                                     return new Instruction(RV32C.Opcodes.CANDI, RV32I.instructionI(RV32I.Opcodes.Andi, cb.getRs1(), cb.getRs1(), cb.getImmediate()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.andi(new InstructionFormatI(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.andi((InstructionFormatI) format));
                             }
                         } else if (((cs.getFunct6() >> 2) & 1) == 0) {
                             switch (cs.getFunct2()) {
@@ -164,7 +164,7 @@ public class InstructionDecoderRv32c {
                                      * C.SUB expands into "sub rd, rd, rs2".
                                      */
                                     return new Instruction(RV32C.Opcodes.CSUB, RV32I.instructionR(RV32I.Opcodes.Sub, cs.getRs1(), cs.getRs1(), cs.getRs2()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.sub(new InstructionFormatR(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.sub((InstructionFormatR) format));
                                 case 1:
                                     /*
                                      * C.XOR computes the bitwise XOR of the values in registers rd
@@ -172,7 +172,7 @@ public class InstructionDecoderRv32c {
                                      * C.XOR expands into "xor rd, rd, rs2".
                                      */
                                     return new Instruction(RV32C.Opcodes.CXOR, RV32I.instructionR(RV32I.Opcodes.Xor, cs.getRs1(), cs.getRs1(), cs.getRs2()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.xor(new InstructionFormatR(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.xor((InstructionFormatR) format));
                                 case 2:
                                     /*
                                      * C.OR computes the bitwise OR of the values in registers rd
@@ -180,7 +180,7 @@ public class InstructionDecoderRv32c {
                                      * C.OR expands into "or rd, rd, rs2".
                                      */
                                     return new Instruction(RV32C.Opcodes.COR, RV32I.instructionR(RV32I.Opcodes.Or, cs.getRs1(), cs.getRs1(), cs.getRs2()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.or(new InstructionFormatR(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.or((InstructionFormatR) format));
                                 case 3:
                                     /*
                                      * C.AND computes the bitwise AND of the values in registers rd
@@ -188,7 +188,7 @@ public class InstructionDecoderRv32c {
                                      * C.AND expands into "and rd, rd, rs2".
                                      */
                                     return new Instruction(RV32C.Opcodes.CAND, RV32I.instructionR(RV32I.Opcodes.And, cs.getRs1(), cs.getRs1(), cs.getRs2()),
-                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.and(new InstructionFormatR(format)));
+                                            (InstructionFormatBase format, InstructionRunner runner) -> runner.and((InstructionFormatR) format));
                             }
 
                         }
@@ -199,7 +199,7 @@ public class InstructionDecoderRv32c {
                          * a +-2 KiB range.  C.J expands to "jal x0, offset[11:1]".
                          */
                         return new Instruction(RV32C.Opcodes.CJ, RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, cj.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.jal(new InstructionFormatUJ(format), 2));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.jal((InstructionFormatUJ) format, 2));
                     case 6:
                         /*
                          * C.BEQZ performs conditional control transfers.  The offset is sign-extended
@@ -208,14 +208,14 @@ public class InstructionDecoderRv32c {
                          * value in register rs1 is zero.  It expands to "beq rs1, x0,offset[8:1]".
                          */
                         return new Instruction(RV32C.Opcodes.CBEQZ, RV32I.instructionSB(RV32I.Opcodes.Beq, cb.getRs1(), 0, cb.getBranchImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.beq(new InstructionFormatSB(format), 2));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.beq((InstructionFormatSB) format, 2));
                     case 7:
                         /*
                          * C.BNEZ is defined analogously to C.BEQZ, but it takes the branch if rs1 contains
                          * a nonzero value.  It expands to "bne rs1, x0, offset[8:1]".
                          */
                         return new Instruction(RV32C.Opcodes.CBNEZ, RV32I.instructionSB(RV32I.Opcodes.Bne, cb.getRs1(), 0, cb.getBranchImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.bne(new InstructionFormatSB(format), 2));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.bne((InstructionFormatSB) format, 2));
                 }
 
             case RV32C.OpcodeTypes.C2:
@@ -232,7 +232,7 @@ public class InstructionDecoderRv32c {
                          * "slli rd, rd, 64".
                          */
                         return new Instruction(RV32C.Opcodes.CSLLI, RV32I.instructionI(RV32I.Opcodes.Slli, ci.getRs1(), ci.getRs1(), ci.getImmediate()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.slli(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.slli((InstructionFormatI) format));
                     case 2:
                         /*
                          * C.LWSP loads a 32-bit value from memory into register rd.  It computes
@@ -245,7 +245,7 @@ public class InstructionDecoderRv32c {
                         int bit5 = (ci.getUnsignedImmediate() >> 5) & 1;
                         int uimm = (bit42 | (bit5 << 3) | (bit76 << 4)) << 2;
                         return new Instruction(RV32C.Opcodes.CLWSP, RV32I.instructionI(RV32I.Opcodes.Lw, ci.getRs1(), 2, uimm),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.lw(new InstructionFormatI(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.lw((InstructionFormatI) format));
                     case 4:
                         CInstructionFormatCR cr = new CInstructionFormatCR(i);
                         if ((cr.getFunct4() & 1) == 1) {
@@ -256,7 +256,7 @@ public class InstructionDecoderRv32c {
                                  * result to register rd. C.ADD expands into "add rd, rd, rs2".
                                  */
                                 return new Instruction(RV32C.Opcodes.CADD, RV32I.instructionR(RV32I.Opcodes.Add, cr.getRs1(), cr.getRs1(), cr.getRs2()),
-                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.add(new InstructionFormatR(format)));
+                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.add((InstructionFormatR) format));
                             } else if (cr.getRs1() != 0 && cr.getRs2() == 0) {
                                 /*
                                  * C.JALR (jump and link register) performs the same operation as C.JR,
@@ -265,7 +265,7 @@ public class InstructionDecoderRv32c {
                                  * "jalr x1, 0(rs1)".
                                  */
                                 return new Instruction(RV32C.Opcodes.CJALR, RV32I.instructionI(RV32I.Opcodes.Jalr, 1, cr.getRs1(), 0),
-                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr(new InstructionFormatI(format), 2));
+                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr((InstructionFormatI) format, 2));
                             }
                         } else {
                             if (cr.getRs1() != 0 && cr.getRs2() != 0) {
@@ -274,14 +274,14 @@ public class InstructionDecoderRv32c {
                                  * expands into "add rd, x0, rs2".
                                  */
                                 return new Instruction(RV32C.Opcodes.CMV, RV32I.instructionR(RV32I.Opcodes.Add, cr.getRs1(), 0, cr.getRs2()),
-                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.add(new InstructionFormatR(format)));
+                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.add((InstructionFormatR) format));
                             } else if (cr.getRs1() != 0 && cr.getRs2() == 0) {
                                 /*
                                  * C.JR (jump register) performs an unconditional control transfer to
                                  * the address in register rs1.  C.JR expands to "jalr x0, 0(rs1)".
                                  */
                                 return new Instruction(RV32C.Opcodes.CJR, RV32I.instructionI(RV32I.Opcodes.Jalr, 0, cr.getRs1(), 0),
-                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr(new InstructionFormatI(format), 2));
+                                        (InstructionFormatBase format, InstructionRunner runner) -> runner.jalr((InstructionFormatI) format, 2));
                             }
                         }
 
@@ -295,7 +295,7 @@ public class InstructionDecoderRv32c {
                         CInstructionFormatCSS css = new CInstructionFormatCSS(i);
 
                         return new Instruction(RV32C.Opcodes.CSWSP, RV32I.instructionS(RV32I.Opcodes.Sw, 2, css.getRs2(), css.getWord()),
-                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sw(new InstructionFormatS(format)));
+                                (InstructionFormatBase format, InstructionRunner runner) -> runner.sw((InstructionFormatS) format));
                 }
         }
 
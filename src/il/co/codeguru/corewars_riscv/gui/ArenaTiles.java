@@ -0,0 +1,138 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import il.co.codeguru.corewars_riscv.war.ArenaGeometry;
+
+import java.util.Arrays;
+
+/**
+ * The owners of the cells of an arena that is bigger than the board of the canvas.
+ * Every point of the board is a tile - a block of consecutive cells, shown in the color of the warrior that owns
+ * most of its cells. Writes only mark their tile, the dominant owners of the marked tiles are counted again
+ * when the canvas is painted.
+ * Inside a tile the cells are laid out in rows of getTileWidth(), for drawing them when zoomed in.
+ */
+public class ArenaTiles {
+    public static final byte EMPTY = -1;
+
+    private final int blockShift;
+    private final int tileWidth, tileHeight; // in cells
+    private final byte[] owners; // of every cell
+    private final byte[] dominant; // of every tile
+    private final boolean[] dirty;
+    private int[] dirtyList = new int[256];
+    private int dirtyCount = 0;
+    private final int[] counts = new int[ArenaGeometry.MAX_WARRIORS_LIMIT + 1];
+
+    /**
+     * @param arenaSize power of 2
+     * @param tileCount the number of points of the board, power of 2
+     */
+    public ArenaTiles(int arenaSize, int tileCount) {
+        int shift = 0;
+        while ((tileCount << shift) < arenaSize)
+            ++shift;
+        blockShift = shift;
+        tileWidth = 1 << ((blockShift + 1) / 2);
+        tileHeight = (1 << blockShift) / tileWidth;
+        owners = new byte[arenaSize];
+        dominant = new byte[tileCount];
+        dirty = new boolean[tileCount];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(owners, EMPTY);
+        Arrays.fill(dominant, EMPTY);
+        Arrays.fill(dirty, false);
+        dirtyCount = 0;
+    }
+
+    /** @return how many cells are in a tile */
+    public int getBlockSize() {
+        return 1 << blockShift;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public int getArenaSize() {
+        return owners.length;
+    }
+
+    public int tileOf(int address) {
+        return address >>> blockShift;
+    }
+
+    /** @return the address of a cell given by its position in its tile */
+    public int addressOf(int tile, int column, int row) {
+        return (tile << blockShift) + row * tileWidth + column;
+    }
+
+    public void write(int address, int owner) {
+        if (address < 0 || address >= owners.length || owners[address] == owner)
+            return;
+        owners[address] = (byte)owner;
+        int tile = address >>> blockShift;
+        if (dirty[tile])
+            return;
+        dirty[tile] = true;
+        if (dirtyCount == dirtyList.length)
+            dirtyList = Arrays.copyOf(dirtyList, dirtyList.length * 2);
+        dirtyList[dirtyCount++] = tile;
+    }
+
+    public int getOwner(int address) {
+        return owners[address];
+    }
+
+    /** @return the warrior that owns most of the cells of the tile as of the last refresh(), EMPTY if none does */
+    public int getDominantOwner(int tile) {
+        return dominant[tile];
+    }
+
+    /**
+     * Counts the dominant owner of the tiles that were written since the last refresh.
+     * @return the number of tiles refreshed, get them with getRefreshedTile()
+     */
+    public int refresh() {
+        int n = dirtyCount;
+        for (int i = 0; i < n; ++i) {
+            int tile = dirtyList[i];
+            dirty[tile] = false;
+            dominant[tile] = countDominant(tile);
+        }
+        dirtyCount = 0;
+        return n;
+    }
+
+    /** @return a tile refreshed by the last call to refresh() */
+    public int getRefreshedTile(int index) {
+        return dirtyList[index];
+    }
+
+    private byte countDominant(int tile) {
+        int start = tile << blockShift, end = start + (1 << blockShift);
+        byte best = EMPTY;
+        int bestCount = 0;
+        for (int a = start; a < end; ++a) {
+            byte o = owners[a];
+            if (o == EMPTY)
+                continue;
+            int c = ++counts[o];
+            if (c > bestCount) {
+                bestCount = c;
+                best = o;
+            }
+        }
+        for (int a = start; a < end; ++a) {
+            if (owners[a] != EMPTY)
+                counts[owners[a]] = 0;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,317 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+
+/**
+ * A breakpoint condition like "x5 == 0x1000 && [sp+4] != 0", parsed once and compiled to a tree of closures.
+ * Values are 32 bit, comparisons are signed unless written with a 'u' suffix (<u, >=u ...).
+ * Registers are x0..x31, their ABI names (zero, ra, sp, a0 ...) and pc.
+ * [addr] reads a word, [addr]h a half word and [addr]b a byte, unsigned. Addresses out of the memory read as 0.
+ * Evaluating never throws, division by zero gives 0, since this runs after every instruction.
+ */
+public class BreakpointCondition {
+
+    /** a compiled part of the condition */
+    interface Expr {
+        int eval(CpuStateRiscV state, RawMemory memory);
+    }
+
+    private static final String[] ABI_NAMES = {
+        "zero", "ra", "sp", "gp", "tp", "t0", "t1", "t2", "s0", "s1", "a0", "a1", "a2", "a3", "a4", "a5",
+        "a6", "a7", "s2", "s3", "s4", "s5", "s6", "s7", "s8", "s9", "s10", "s11", "t3", "t4", "t5", "t6"
+    };
+    private static final int PC = -1; // register number of pc
+
+    private final String text;
+    private final Expr root;
+
+    private BreakpointCondition(String text, Expr root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /** @throws Exception with a message for the user if the condition can't be parsed */
+    public static BreakpointCondition compile(String text) throws Exception {
+        Parser parser = new Parser(text);
+        Expr root = parser.parseExpr();
+        parser.eatSpaces();
+        if (!parser.isEnd())
+            parser.unexpected();
+        return new BreakpointCondition(text, root);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int eval(CpuStateRiscV state, RawMemory memory) {
+        return root.eval(state, memory);
+    }
+
+    public boolean isTrue(CpuStateRiscV state, RawMemory memory) {
+        return root.eval(state, memory) != 0;
+    }
+
+    // ---- nodes
+
+    /** an Expr that is known at compile time */
+    private static class Const implements Expr {
+        final int value;
+        Const(int value) { this.value = value; }
+        public int eval(CpuStateRiscV state, RawMemory memory) { return value; }
+    }
+
+    /** reads a register, kept as its own class so that comparisons with constants can be specialised */
+    private static class Reg implements Expr {
+        final int reg;
+        Reg(int reg) { this.reg = reg; }
+        public int eval(CpuStateRiscV state, RawMemory memory) { return reg == PC ? state.getPc() : state.getReg(reg); }
+    }
+
+    private static int load(RawMemory memory, int address, int size) {
+        int value = 0;
+        for (int i = size - 1; i >= 0; --i)
+            value = (value << 8) | (memory.peekByte(address + i) & 0xff);
+        return value;
+    }
+
+    private static Expr memoryRead(Expr address, int size) {
+        return (s, m) -> load(m, address.eval(s, m), size);
+    }
+
+    private static Expr unary(char op, Expr e) {
+        if (e instanceof Const) {
+            int v = ((Const)e).value;
+            return new Const(op == '-' ? -v : op == '~' ? ~v : (v == 0 ? 1 : 0));
+        }
+        switch (op) {
+            case '-': return (s, m) -> -e.eval(s, m);
+            case '~': return (s, m) -> ~e.eval(s, m);
+            default:  return (s, m) -> e.eval(s, m) == 0 ? 1 : 0;
+        }
+    }
+
+    private static Expr binary(String op, Expr l, Expr r) throws Exception {
+        if (l instanceof Const && r instanceof Const) {
+            final int a = ((Const)l).value, b = ((Const)r).value;
+            return new Const(binary(op, (s, m) -> a, (s, m) -> b).eval(null, null));
+        }
+        // the common case of a register compared to a number reads the register and compares, nothing more
+        if (l instanceof Reg && r instanceof Const && ((Reg)l).reg != PC) {
+            final int reg = ((Reg)l).reg, c = ((Const)r).value;
+            switch (op) {
+                case "==": return (s, m) -> s.getReg(reg) == c ? 1 : 0;
+                case "!=": return (s, m) -> s.getReg(reg) != c ? 1 : 0;
+                case "<":  return (s, m) -> s.getReg(reg) < c ? 1 : 0;
+                case ">":  return (s, m) -> s.getReg(reg) > c ? 1 : 0;
+                default: break;
+            }
+        }
+        switch (op) {
+            case "||": return (s, m) -> (l.eval(s, m) != 0 || r.eval(s, m) != 0) ? 1 : 0;
+            case "&&": return (s, m) -> (l.eval(s, m) != 0 && r.eval(s, m) != 0) ? 1 : 0;
+            case "|":  return (s, m) -> l.eval(s, m) | r.eval(s, m);
+            case "^":  return (s, m) -> l.eval(s, m) ^ r.eval(s, m);
+            case "&":  return (s, m) -> l.eval(s, m) & r.eval(s, m);
+            case "==": return (s, m) -> l.eval(s, m) == r.eval(s, m) ? 1 : 0;
+            case "!=": return (s, m) -> l.eval(s, m) != r.eval(s, m) ? 1 : 0;
+            case "<":  return (s, m) -> l.eval(s, m) < r.eval(s, m) ? 1 : 0;
+            case "<=": return (s, m) -> l.eval(s, m) <= r.eval(s, m) ? 1 : 0;
+            case ">":  return (s, m) -> l.eval(s, m) > r.eval(s, m) ? 1 : 0;
+            case ">=": return (s, m) -> l.eval(s, m) >= r.eval(s, m) ? 1 : 0;
+            case "<u": return (s, m) -> (l.eval(s, m) ^ Integer.MIN_VALUE) < (r.eval(s, m) ^ Integer.MIN_VALUE) ? 1 : 0;
+            case "<=u": return (s, m) -> (l.eval(s, m) ^ Integer.MIN_VALUE) <= (r.eval(s, m) ^ Integer.MIN_VALUE) ? 1 : 0;
+            case ">u": return (s, m) -> (l.eval(s, m) ^ Integer.MIN_VALUE) > (r.eval(s, m) ^ Integer.MIN_VALUE) ? 1 : 0;
+            case ">=u": return (s, m) -> (l.eval(s, m) ^ Integer.MIN_VALUE) >= (r.eval(s, m) ^ Integer.MIN_VALUE) ? 1 : 0;
+            case "<<": return (s, m) -> l.eval(s, m) << r.eval(s, m);
+            case ">>": return (s, m) -> l.eval(s, m) >> r.eval(s, m);
+            case ">>>": return (s, m) -> l.eval(s, m) >>> r.eval(s, m);
+            case "+":  return (s, m) -> l.eval(s, m) + r.eval(s, m);
+            case "-":  return (s, m) -> l.eval(s, m) - r.eval(s, m);
+            case "*":  return (s, m) -> l.eval(s, m) * r.eval(s, m);
+            case "/":  return (s, m) -> { int d = r.eval(s, m); return d == 0 ? 0 : l.eval(s, m) / d; };
+            case "%":  return (s, m) -> { int d = r.eval(s, m); return d == 0 ? 0 : l.eval(s, m) % d; };
+            default: throw new Exception("unexpected operator " + op);
+        }
+    }
+
+    // ---- parsing
+
+    private static class Parser {
+        // binary operators by precedence, lowest first. longer operators come before their prefixes
+        private static final String[][] LEVELS = {
+            { "||" },
+            { "&&" },
+            { "|" },
+            { "^" },
+            { "&" },
+            { "==", "!=" },
+            { "<=u", ">=u", "<u", ">u", "<=", ">=", "<", ">" },
+            { ">>>", "<<", ">>" },
+            { "+", "-" },
+            { "*", "/", "%" }
+        };
+
+        private final String expr;
+        private int index = 0;
+
+        Parser(String expr) {
+            this.expr = expr;
+        }
+
+        boolean isEnd() {
+            return index >= expr.length();
+        }
+
+        char getCharacter() {
+            return isEnd() ? 0 : expr.charAt(index);
+        }
+
+        void eatSpaces() {
+            while (getCharacter() == ' ')
+                ++index;
+        }
+
+        void unexpected() throws Exception {
+            if (isEnd())
+                throw new Exception("Syntax error: unexpected end of condition");
+            throw new Exception("Syntax error: unexpected token \"" + expr.substring(index) + "\" at index " + index);
+        }
+
+        Expr parseExpr() throws Exception {
+            return parseLevel(0);
+        }
+
+        private String matchOperator(String[] ops) {
+            eatSpaces();
+            for (String op : ops) {
+                if (!expr.startsWith(op, index))
+                    continue;
+                // don't take the | of || or the & of &&
+                int after = index + op.length();
+                if ((op.equals("|") || op.equals("&")) && after < expr.length() && expr.charAt(after) == op.charAt(0))
+                    continue;
+                if ((op.equals("<") || op.equals(">")) && after < expr.length() && expr.charAt(after) == op.charAt(0))
+                    continue;
+                return op;
+            }
+            return null;
+        }
+
+        private Expr parseLevel(int level) throws Exception {
+            if (level == LEVELS.length)
+                return parseUnary();
+            Expr left = parseLevel(level + 1);
+            String op;
+            while ((op = matchOperator(LEVELS[level])) != null) {
+                index += op.length();
+                left = binary(op, left, parseLevel(level + 1));
+            }
+            return left;
+        }
+
+        private Expr parseUnary() throws Exception {
+            eatSpaces();
+            char c = getCharacter();
+            if (c == '-' || c == '~' || (c == '!' && !expr.startsWith("!=", index))) {
+                ++index;
+                return unary(c, parseUnary());
+            }
+            if (c == '+') {
+                ++index;
+                return parseUnary();
+            }
+            return parsePrimary();
+        }
+
+        private Expr parsePrimary() throws Exception {
+            eatSpaces();
+            char c = getCharacter();
+            if (c == '(') {
+                ++index;
+                Expr e = parseExpr();
+                expect(')');
+                return e;
+            }
+            if (c == '[') {
+                ++index;
+                Expr address = parseExpr();
+                expect(']');
+                int size = 4;
+                char s = Character.toLowerCase(getCharacter());
+                if (s == 'b' || s == 'h' || s == 'w') {
+                    size = (s == 'b') ? 1 : (s == 'h') ? 2 : 4;
+                    ++index;
+                }
+                return memoryRead(address, size);
+            }
+            if (c >= '0' && c <= '9')
+                return new Const(parseNumber());
+            if (Character.isLetter(c) || c == '_')
+                return parseRegister();
+            unexpected();
+            return null;
+        }
+
+        private void expect(char c) throws Exception {
+            eatSpaces();
+            if (getCharacter() != c) {
+                if (isEnd())
+                    throw new Exception("Syntax error: `" + c + "' expected at end of condition");
+                unexpected();
+            }
+            ++index;
+        }
+
+        private int parseNumber() throws Exception {
+            int base = 10;
+            if (getCharacter() == '0' && index + 1 < expr.length()) {
+                char x = Character.toLowerCase(expr.charAt(index + 1));
+                if (x == 'x' || x == 'b' || x == 'o') {
+                    base = (x == 'x') ? 16 : (x == 'b') ? 2 : 8;
+                    index += 2;
+                }
+            }
+            int start = index;
+            long value = 0;
+            int d;
+            while ((d = Character.digit(getCharacter(), base)) >= 0) {
+                value = value * base + d;
+                if (value > 0xffffffffL)
+                    throw new Exception("Number too big at index " + start);
+                ++index;
+            }
+            if (index == start)
+                unexpected();
+            return (int)value;
+        }
+
+        private Expr parseRegister() throws Exception {
+            int start = index;
+            while (Character.isLetterOrDigit(getCharacter()) || getCharacter() == '_')
+                ++index;
+            String name = expr.substring(start, index).toLowerCase();
+            if (name.equals("pc"))
+                return new Reg(PC);
+            if (name.equals("fp"))
+                return new Reg(8);
+            if (name.startsWith("x") && name.length() > 1) {
+                try {
+                    int reg = Integer.parseInt(name.substring(1));
+                    if (reg >= 0 && reg < 32)
+                        return reg == 0 ? new Const(0) : new Reg(reg);
+                }
+                catch (NumberFormatException e) {
+                    // not a register number, fall through to the error
+                }
+            }
+            for (int reg = 0; reg < ABI_NAMES.length; ++reg) {
+                if (ABI_NAMES[reg].equals(name))
+                    return reg == 0 ? new Const(0) : new Reg(reg);
+            }
+            index = start;
+            throw new Exception("Unknown register \"" + name + "\" at index " + start);
+        }
+    }
+}
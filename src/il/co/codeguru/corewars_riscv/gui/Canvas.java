@@ -1,5 +1,7 @@
 package il.co.codeguru.corewars_riscv.gui;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import elemental2.core.Uint32Array;
 import elemental2.dom.*;
 import elemental2.dom.CanvasRenderingContext2D.FillStyleUnionType;
 import il.co.codeguru.corewars_riscv.memory.Memory;
@@ -9,9 +11,13 @@ import il.co.codeguru.corewars_riscv.gui.widgets.Dimension;
 import il.co.codeguru.corewars_riscv.gui.widgets.JComponent;
 import il.co.codeguru.corewars_riscv.jsadd.Format;
 import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.remote.EngineCommand;
+import il.co.codeguru.corewars_riscv.remote.EngineCommandSink;
 import il.co.codeguru.corewars_riscv.utils.Logger;
 import il.co.codeguru.corewars_riscv.war.War;
 
+import java.util.Arrays;
+
 
 public class Canvas extends JComponent<HTMLCanvasElement> {
 
@@ -26,10 +32,15 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
     public static final byte EMPTY = -1;
 
     private CanvasRenderingContext2D ctx;
-	private byte[][] data; // holds colors, not values
-
-	private byte[][] pointer;
-	private byte[][] values;
+	// cells by their address in memory, x + y * BOARD_SIZE
+	private byte[] data; // holds colors, not values
+	private byte[] pointer;
+	private byte[] values;
+	private int[] m_pointerCells = new int[0]; // the cell of the pointer of every warrior, -1 for none
+	private int[] m_pointerAddresses = new int[0]; // the address of the pointer of every warrior, -1 for none
+	private ArenaTiles m_tiles = null; // when the arena is bigger than the board every cell of the board is a tile of the arena
+	private HTMLCanvasElement m_detailCanvas; // the exact cells of the visible tiles, when zoomed in
+	private CanvasRenderingContext2D m_detailCtx;
 
 	private float m_zrHscale, m_zrVscale, m_zrX, m_zrY; // zoom rect
     private boolean m_showContent = false;
@@ -40,6 +51,19 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
     private Memory m_mem = null;
     private boolean m_indebug = false;
     private War m_currentWar = null;
+    private EngineCommandSink m_commandSink; // edits of the memory go through this and not directly to the war
+
+    // the arena is drawn with one pixel per cell into this image, which is scaled onto the canvas once per frame
+    private HTMLCanvasElement m_imageCanvas;
+    private CanvasRenderingContext2D m_imageCtx;
+    private ImageData m_image;
+    private Uint32Array m_pixels; // view of the image data, a pixel for every cell
+    private boolean m_imageDirty = false;
+    private boolean m_flushScheduled = false;
+    private static final int BLACK_PIXEL = 0xff000000;
+    private final int[] m_cellPixels = new int[ColorHolder.MAX_COLORS];
+    private final int[] m_pointerPixels = new int[ColorHolder.MAX_COLORS];
+    private WriteHeatmap m_heatmap = null; // when set, cells are painted by their write heat instead of their owner
 
     class Turtle {
         float x, y;
@@ -62,8 +86,20 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 		Dimension d = getMinimumSize();
 		m_element.width = d.width;
 		m_element.height = d.height;
+        disableSmoothing(ctx); // cells are scaled up to squares, not blurred
         ctx.save(); // save state with full page clipping
 
+        m_imageCanvas = (HTMLCanvasElement)DomGlobal.document.createElement("canvas");
+        m_imageCanvas.width = BOARD_SIZE;
+        m_imageCanvas.height = BOARD_SIZE;
+        m_imageCtx = (CanvasRenderingContext2D)(Object)m_imageCanvas.getContext("2d");
+        m_image = m_imageCtx.createImageData(BOARD_SIZE, BOARD_SIZE);
+        m_pixels = new Uint32Array(m_image.data.buffer);
+        for (int i = 0; i < ColorHolder.MAX_COLORS; ++i) {
+            m_cellPixels[i] = ColorHolder.getInstance().getColor(i, false).toPixel();
+            m_pointerPixels[i] = ColorHolder.getInstance().getColor(i, true).toPixel();
+        }
+
         m_memclip = new Path2D();
         m_memclip.moveTo(MARGIN_LEFT, MARGIN_TOP);
         m_memclip.lineTo(CANVAS_WIDTH - MARGIN_RIGHT, MARGIN_TOP);
@@ -116,44 +152,210 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 
 
 	public void paintPixel(int number, byte color, byte value) {
+	    if (m_tiles != null) {
+	        // the tile is counted again when the frame is flushed
+	        if (color != -1)
+	            m_tiles.write(number, color);
+	        markImageDirty();
+	        return;
+        }
 	    paintPixel(number % BOARD_SIZE, number / BOARD_SIZE, color, value);
 	}
 
-	public void paintPixel(int x, int y, byte colorByte, byte value) {
-        values[x][y] = value;
+    /** @return the cell of the board that shows the given address */
+	public int boardCellOf(int address) {
+	    return (m_tiles != null) ? m_tiles.tileOf(address) : address;
+    }
 
-		Color color = null;
+	public void paintPixel(int x, int y, byte colorByte, byte value) {
+	    int cell = x + y * BOARD_SIZE;
+        values[cell] = value;
 		if (colorByte != -1)
-            data[x][y] = colorByte;
-        else
-            colorByte = data[x][y];
-        if (colorByte != -1) {
-            color = ColorHolder.getInstance().getColor(colorByte, false);
-            ctx.fillStyle = FillStyleUnionType.of(color.toString());
+            data[cell] = colorByte;
+        updatePixel(cell);
+	}
+
+    /**
+     * Moves the pointer of a warrior to a cell. Only the cell it left and the cell it moved to are repainted
+     * @param address the address of the pointer in memory, -1 to remove the pointer
+     */
+	public void movePointer(int warrior, int address) {
+	    if (warrior >= m_pointerCells.length) {
+	        int oldLength = m_pointerCells.length;
+	        m_pointerCells = Arrays.copyOf(m_pointerCells, warrior + 1);
+	        m_pointerAddresses = Arrays.copyOf(m_pointerAddresses, warrior + 1);
+	        Arrays.fill(m_pointerCells, oldLength, m_pointerCells.length, -1);
+	        Arrays.fill(m_pointerAddresses, oldLength, m_pointerAddresses.length, -1);
         }
-        else {
-            // color remains null so that fill text would keep it gray
-            ctx.fillStyle = FillStyleUnionType.of("#000000");
+        if (m_tiles != null && m_pointerAddresses[warrior] != address)
+            markImageDirty(); // the pointer moved inside its tile, seen in the exact cells
+        m_pointerAddresses[warrior] = address;
+        int cell = (address == -1) ? -1 : boardCellOf(address);
+        int prev = m_pointerCells[warrior];
+        if (prev == cell)
+            return;
+        m_pointerCells[warrior] = cell;
+        if (prev != -1) {
+            // the cell may still be pointed to by another warrior
+            pointer[prev] = EMPTY;
+            for (int i = 0; i < m_pointerCells.length; ++i) {
+                if (m_pointerCells[i] == prev)
+                    pointer[prev] = (byte)i;
+            }
+            updatePixel(prev);
+        }
+        if (cell != -1) {
+            pointer[cell] = (byte)warrior;
+            updatePixel(cell);
         }
+	}
 
-        ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
+    // a pointer hides the color of the cell under it
+    private int cellPixel(int cell) {
+        if (pointer[cell] != EMPTY)
+            return m_pointerPixels[pointer[cell]];
+        if (m_heatmap != null)
+            return heatPixel(cell, m_heatmap.getLastRound());
+        if (data[cell] != EMPTY)
+            return m_cellPixels[data[cell]];
+        return BLACK_PIXEL;
+    }
 
-        if (m_showContent)
-            paintTextValue(x, y, color);
-	}
+    // the color of the last writer, brighter the hotter the cell is
+    private int heatPixel(int cell, int round) {
+        int owner = m_heatmap.getOwner(cell);
+        int heat = m_heatmap.getHeat(cell, round);
+        if (owner == WriteHeatmap.NO_OWNER || heat == 0)
+            return BLACK_PIXEL;
+        int color = m_cellPixels[owner];
+        int k = 48 + heat * (255 - 48) / WriteHeatmap.MAX_HEAT;
+        int r = (color & 0xff) * k / 255;
+        int g = ((color >>> 8) & 0xff) * k / 255;
+        int b = ((color >>> 16) & 0xff) * k / 255;
+        return BLACK_PIXEL | (b << 16) | (g << 8) | r;
+    }
+
+    /** Shows the cells by the heat of writes to them instead of by their owner. null returns to the normal view */
+    public void setHeatmap(WriteHeatmap heatmap) {
+        m_heatmap = heatmap;
+        repaintAllPixels();
+    }
 
+    // the heat of all the cells changes with time so in the heatmap view all of them are repainted every frame
+    private void repaintAllPixels() {
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++)
+            m_pixels.setAt(cell, (double)cellPixel(cell));
+        m_imageDirty = true;
+    }
 
-	public void paintPointer(int number, byte colorByte) {
-	    int x = number % BOARD_SIZE;
-	    int y = number / BOARD_SIZE;
-	    Color color = ColorHolder.getInstance().getColor(colorByte, true);
+    private void updatePixel(int cell) {
+        m_pixels.setAt(cell, (double)cellPixel(cell));
+        markImageDirty();
+    }
 
-        pointer[x][y] = colorByte;
-        ctx.fillStyle = FillStyleUnionType.of(color.toString());
-        ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
-        if (m_showContent)
-            paintTextValue(x, y, color);
-	}
+    private void markImageDirty() {
+        if (!m_imageDirty) {
+            m_imageDirty = true;
+            if (!m_flushScheduled) { // in case nobody calls flush() at the end of the frame
+                m_flushScheduled = true;
+                AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+                    m_flushScheduled = false;
+                    flush();
+                });
+            }
+        }
+    }
+
+    /** Shows the cells that changed since the last call. Should be called once at the end of every frame that changed cells */
+    public void flush() {
+        if (m_tiles != null) {
+            int n = m_tiles.refresh();
+            for (int i = 0; i < n; ++i) {
+                int tile = m_tiles.getRefreshedTile(i);
+                data[tile] = (byte)m_tiles.getDominantOwner(tile);
+                updatePixel(tile);
+            }
+        }
+        if (m_heatmap != null && m_heatmap.takeChanged())
+            repaintAllPixels();
+        if (!m_imageDirty)
+            return;
+        paintArena();
+    }
+
+    // when zoomed in enough, the exact cells of the visible tiles are drawn over them
+    private void paintTileCells() {
+        int tw = m_tiles.getTileWidth(), th = m_tiles.getTileHeight();
+        if (DOT_SIZE * m_zrHscale < 2 * tw || DOT_SIZE * m_zrVscale < 2 * th)
+            return;
+        int sx = Math.max(0, (int)m_contentVisibleRect.sx), sy = Math.max(0, (int)m_contentVisibleRect.sy);
+        int ex = Math.min(BOARD_SIZE - 1, (int)m_contentVisibleRect.ex + 1), ey = Math.min(BOARD_SIZE - 1, (int)m_contentVisibleRect.ey + 1);
+        int w = ex - sx + 1, h = ey - sy + 1;
+        if (w <= 0 || h <= 0)
+            return;
+        if (m_detailCanvas == null) {
+            m_detailCanvas = (HTMLCanvasElement)DomGlobal.document.createElement("canvas");
+            m_detailCtx = (CanvasRenderingContext2D)(Object)m_detailCanvas.getContext("2d");
+        }
+        int stride = w * tw;
+        m_detailCanvas.width = stride;
+        m_detailCanvas.height = h * th;
+        ImageData image = m_detailCtx.createImageData(stride, h * th);
+        Uint32Array pixels = new Uint32Array(image.data.buffer);
+        for (int ty = 0; ty < h; ++ty) {
+            for (int tx = 0; tx < w; ++tx) {
+                int tile = (sx + tx) + (sy + ty) * BOARD_SIZE;
+                for (int row = 0; row < th; ++row) {
+                    int pos = (ty * th + row) * stride + tx * tw;
+                    for (int col = 0; col < tw; ++col) {
+                        int owner = m_tiles.getOwner(m_tiles.addressOf(tile, col, row));
+                        pixels.setAt(pos + col, (double)(owner == ArenaTiles.EMPTY ? BLACK_PIXEL : m_cellPixels[owner]));
+                    }
+                }
+            }
+        }
+        int blockMask = m_tiles.getBlockSize() - 1;
+        for (int i = 0; i < m_pointerAddresses.length; ++i) {
+            int address = m_pointerAddresses[i];
+            if (address == -1)
+                continue;
+            int tile = m_tiles.tileOf(address);
+            int tx = tile % BOARD_SIZE - sx, ty = tile / BOARD_SIZE - sy;
+            if (tx < 0 || ty < 0 || tx >= w || ty >= h)
+                continue;
+            int inTile = address & blockMask;
+            int pos = (ty * th + inTile / tw) * stride + tx * tw + inTile % tw;
+            pixels.setAt(pos, (double)m_pointerPixels[i]);
+        }
+        m_detailCtx.putImageData(image, 0, 0);
+        ctx.drawImage(m_detailCanvas, sx * DOT_SIZE, sy * DOT_SIZE, w * DOT_SIZE, h * DOT_SIZE);
+    }
+
+    private static native void disableSmoothing(CanvasRenderingContext2D c) /*-{
+        c.imageSmoothingEnabled = false
+    }-*/;
+
+    // draws the memory area, expects the zoom transform and the clipping of the memory area
+    private void paintArena() {
+        if (m_imageDirty) {
+            m_imageCtx.putImageData(m_image, 0, 0);
+            m_imageDirty = false;
+        }
+        ctx.drawImage(m_imageCanvas, 0, 0, BOARD_SIZE_PX, BOARD_SIZE_PX);
+        if (m_tiles != null && m_heatmap == null)
+            paintTileCells();
+
+        if (m_showContent) {
+            // text only for the cells that can be seen
+            int sx = Math.max(0, (int)m_contentVisibleRect.sx), sy = Math.max(0, (int)m_contentVisibleRect.sy);
+            int ex = Math.min(BOARD_SIZE - 1, (int)m_contentVisibleRect.ex + 1), ey = Math.min(BOARD_SIZE - 1, (int)m_contentVisibleRect.ey + 1);
+            for (int y = sy; y <= ey; y++)
+                for (int x = sx; x <= ex; x++)
+                    paintTextValue(x, y, cellColor(x, y));
+            if (m_intervalId != null)
+                paintCursor(m_blinkOn);
+        }
+    }
 
 	public void paintTextValue(int x, int y, Color backCol) {
         String textCol;
@@ -166,7 +368,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         else
             textCol = "#666666";
         ctx.fillStyle = FillStyleUnionType.of(textCol);
-        ctx.fillText(  Format.hex2(values[x][y] & 0xff),  x * DOT_SIZE + 0.2, y * DOT_SIZE + 2.2);
+        ctx.fillText(  Format.hex2(values[x + y * BOARD_SIZE] & 0xff),  x * DOT_SIZE + 0.2, y * DOT_SIZE + 2.2);
     }
 
 
@@ -175,34 +377,42 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 	}-*/;
 
 
+    public void setCommandSink(EngineCommandSink sink) {
+        m_commandSink = sink;
+    }
+
 	public void initStartWar(War war) {
         m_mem = war.getMemory();
         m_currentWar = war;
         m_indebug = true;
-        int addr = 0;
-        for (int y = 0; y < BOARD_SIZE; y++)
-        {
-            for (int x = 0; x < BOARD_SIZE; x++)
-            {
-                values[x][y] = m_mem.loadByte(addr);
-                addr += 1;
-            }
+        int arenaSize = war.getGeometry().arenaSize;
+        if (arenaSize > BOARD_SIZE * BOARD_SIZE) {
+            m_tiles = new ArenaTiles(arenaSize, BOARD_SIZE * BOARD_SIZE);
+            Arrays.fill(values, (byte)0); // there are no values to show, the cells are too small for text
+        }
+        else {
+            m_tiles = null;
+            for (int addr = 0; addr < BOARD_SIZE * BOARD_SIZE; addr++)
+                values[addr] = (addr < arenaSize) ? m_mem.loadByte(addr) : 0;
         }
+        m_showContent = (m_zrHscale > 4.0) && m_tiles == null;
     }
 
 	public void clear() {
 		if (data == null)
-			data = new byte[BOARD_SIZE][BOARD_SIZE];
+			data = new byte[BOARD_SIZE * BOARD_SIZE];
 		if (pointer == null)
-			pointer = new byte[BOARD_SIZE][BOARD_SIZE];
+			pointer = new byte[BOARD_SIZE * BOARD_SIZE];
 		if (values == null)
-            values = new byte[BOARD_SIZE][BOARD_SIZE];
+            values = new byte[BOARD_SIZE * BOARD_SIZE];
 
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				data[i][j] = EMPTY;
-				pointer[i][j] = EMPTY;
-			}
+		Arrays.fill(data, EMPTY);
+		Arrays.fill(pointer, EMPTY);
+		Arrays.fill(m_pointerCells, -1);
+		Arrays.fill(m_pointerAddresses, -1);
+		for (int i = 0; i < BOARD_SIZE * BOARD_SIZE; i++)
+		    m_pixels.setAt(i, (double)BLACK_PIXEL);
+		m_imageDirty = true;
 
 		ctx.setTransform(1,0,0,1,0,0);
 
@@ -222,19 +432,19 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         m_indebug = false;
     }
 
-	private Color paintMemCellBack(int x, int y) {
-        int cellPtr = pointer[x][y];
-        Color col = null;
-        if (cellPtr != EMPTY) {
-            col = ColorHolder.getInstance().getColor(cellPtr, true);
-        }
-        else {
-            int cellVal = data[x][y];
-            if (cellVal != EMPTY) {
-                col = ColorHolder.getInstance().getColor(cellVal, false);
-            }
-        }
+    // the color the cell is shown in, null for black
+    private Color cellColor(int x, int y) {
+        int cellPtr = pointer[x + y * BOARD_SIZE];
+        if (cellPtr != EMPTY)
+            return ColorHolder.getInstance().getColor(cellPtr, true);
+        int cellVal = data[x + y * BOARD_SIZE];
+        if (cellVal != EMPTY)
+            return ColorHolder.getInstance().getColor(cellVal, false);
+        return null;
+    }
 
+	private Color paintMemCellBack(int x, int y) {
+        Color col = cellColor(x, y);
         if (col != null) {
             ctx.fillStyle = FillStyleUnionType.of(col.toString());
             ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
@@ -262,19 +472,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
             ctx.font = "2.3px monospace";
         }
 
-
-		for (int y = 0; y < BOARD_SIZE; y++)
-		{
-			for (int x = 0; x < BOARD_SIZE; x++)
-			{
-                boolean textVisible = m_showContent && m_contentVisibleRect.isInside(x, y);
-                Color col = paintMemCellBack(x, y);
-                if (textVisible) {
-                    paintTextValue(x, y, col);
-                }
-			}
-		}
-		//Console.log("textCount=" + Integer.toString(textVisCount));
+        paintArena();
 		if (m_showContent && m_intervalId != null)
 		    paintCursor(true);
 
@@ -357,13 +555,8 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 	}*/
 
 	public void deletePointers() {
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				if (pointer[i][j] != EMPTY) {
-					pointer[i][j] = EMPTY;
-					paintPixel(i, j, data[i][j], values[i][j]);
-				}
-			}
+		for (int i = 0; i < m_pointerCells.length; i++)
+		    movePointer(i, -1);
 	}
 
 	// ------------------------------ zoom and pan ---------------------------
@@ -393,7 +586,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         m_zrX = x;
         m_zrY = y;
         ctx.setTransform(m_zrHscale, 0, 0, m_zrVscale, m_zrX+MARGIN_LEFT, m_zrY+MARGIN_TOP);
-        m_showContent = (m_zrHscale > 4.0);
+        m_showContent = (m_zrHscale > 4.0) && m_tiles == null;
 
         m_contentVisibleRect.sx = -m_zrX / DOT_SIZE / m_zrHscale - 1;
         m_contentVisibleRect.sy = -m_zrY / DOT_SIZE / m_zrVscale - 1;
@@ -468,10 +661,14 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
             m_hoverCellInfo.style.display = "none";
             return;
         }
-        int mx = (int)( (x - m_zrX)/ DOT_SIZE/m_zrHscale );
-        int my = (int)( (y - m_zrY)/ DOT_SIZE/m_zrVscale );
+        float fx = (x - m_zrX)/ DOT_SIZE/m_zrHscale;
+        float fy = (y - m_zrY)/ DOT_SIZE/m_zrVscale;
+        int mx = (int)fx;
+        int my = (int)fy;
 
         int addr = (mx+my*256) & 0xffff;
+        if (m_tiles != null) // the cell inside the tile
+            addr = m_tiles.addressOf(addr, (int)((fx - mx) * m_tiles.getTileWidth()), (int)((fy - my) * m_tiles.getTileHeight()));
         int v = 0;
         v = m_mem.loadByte(addr) & 0xff;
 
@@ -486,7 +683,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         sb.append(")");
         for(int i = sb.length() - bef; i < 5; ++i)
             sb.append('\u00A0');
-        byte player = data[mx][my];
+        byte player = (m_tiles != null) ? (byte)m_tiles.getOwner(addr) : data[mx + my * BOARD_SIZE];
         if (player != -1) {
             sb.append("  Player: ");
             sb.append(m_currentWar.getWarrior(player).getName().substring(0,20));
@@ -564,13 +761,13 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
                     v = c - 'A' + 10;
                 if (v != -1) {
                     int ix = (int)m_cursorX, iy = (int)m_cursorY;
-                    int ev = values[ix][iy];
+                    int ev = values[ix + iy * BOARD_SIZE];
                     if (m_cursorX % 1 == 0)
                         ev = ev & 0xf | (v << 4);
                     else
                         ev = ev & 0xf0 | v;
-                    values[ix][iy] = (byte)ev;
-                    m_mem.storeByte((short)(ix+iy*256), (byte)ev);
+                    values[ix + iy * BOARD_SIZE] = (byte)ev;
+                    m_commandSink.post(EngineCommand.writeMemory(ix+iy*256, (byte)ev));
 
                     moveCursor(0.5, 0);
 
@@ -3,9 +3,13 @@ package il.co.codeguru.corewars_riscv.gui;
 import elemental2.dom.DomGlobal;
 import elemental2.dom.HTMLElement;
 import il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor;
+import il.co.codeguru.corewars_riscv.remote.CommandApplier;
+import il.co.codeguru.corewars_riscv.replay.Replay;
 import il.co.codeguru.corewars_riscv.utils.Logger;
 import il.co.codeguru.corewars_riscv.war.*;
 import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.typedarrays.client.Int8ArrayNative;
+import com.google.gwt.typedarrays.shared.ArrayBuffer;
 
 import il.co.codeguru.corewars_riscv.gui.widgets.*;
 //import java.awt.*;
@@ -35,10 +39,13 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
 	private JTextField seed;
 
     private boolean m_isStartPaused = false;
+    private Replay m_replay = null; // loaded for seeking in the debugger
 
     CodeEditor m_codeEditor;
     public PlayersPanel m_playersPanel;
     private HTMLElement stepnum;
+    private HTMLElement frameTimesOverlay; // null when not shown
+    private static final int OVERLAY_EVERY_FRAMES = 30;
 
 
     public boolean isBattleShown() {
@@ -52,8 +59,10 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         competition = new Competition();
+        competition.getFrameScheduler().setClock(CompetitionWindow::performanceNow);
+        competition.getFrameProfiler().setClock(CompetitionWindow::performanceNow);
         Logger.log("Creating new Competition");
-        competition.addCompetitionEventListener(this);
+        competition.addCompetitionEventListener(competition.getFrameProfiler().timeCompetitionEvents(this, FrameProfiler.OTHER));
         WarriorRepository warriorRepository = competition.getWarriorRepository();
         warriorRepository.addScoreEventListener(this);
 
@@ -110,6 +119,11 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
         m_codeEditor.setPlatform(plat);
     }
 
+    // high resolution clock for the frame budget, Date.now() is too coarse for measuring a few ms
+    static native double performanceNow() /*-{
+        return $wnd.performance.now();
+    }-*/;
+
     public static native void call_gwtStart() /*-{
         $wnd.gwtStart();
     }-*/;
@@ -123,6 +137,14 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
         $wnd.j_triggerZeroSpeed = $entry(function() { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_triggerZeroSpeed()() });
         $wnd.j_startCompete = $entry(function() { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_startCompete()() });
         $wnd.j_stopCompete = $entry(function() { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_stopCompete()() });
+        $wnd.j_loadReplay = $entry(function(b) { that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_loadReplay(Lcom/google/gwt/typedarrays/shared/ArrayBuffer;)(b) });
+        $wnd.j_seekReplay = $entry(function(r) { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_seekReplay(I)(r) });
+        $wnd.j_addWatchpoint = $entry(function(s,e,k) { that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_addWatchpoint(III)(s,e,k) });
+        $wnd.j_removeWatchpoint = $entry(function(s,e) { that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_removeWatchpoint(II)(s,e) });
+        $wnd.j_setArenaSize = $entry(function(s) { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_setArenaSize(I)(s) });
+        $wnd.j_setProfiling = $entry(function(p) { that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_setProfiling(Z)(p) });
+        $wnd.j_setFrameTiming = $entry(function(t,o) { that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_setFrameTiming(ZZ)(t,o) });
+        $wnd.j_dumpFrameTimes = $entry(function() { return that.@il.co.codeguru.corewars_riscv.gui.CompetitionWindow::j_dumpFrameTimes()() });
 
     }-*/;
 
@@ -170,8 +192,23 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
     };
 
     private void callContinueRun() throws Exception {
-        boolean needMore = competition.continueRun();
-        outRoundNum();
+        FrameProfiler profiler = competition.getFrameProfiler();
+        profiler.startFrame();
+        profiler.enter(FrameProfiler.EMULATION); // the wrapped listeners take their own time out of it
+        boolean needMore = false;
+        try {
+            needMore = competition.continueRun();
+            profiler.enter(FrameProfiler.CANVAS);
+            if (battleFrame != null)
+                battleFrame.flushCanvas(); // all the cells written in this frame are shown with one blit
+            profiler.enter(FrameProfiler.OTHER);
+            outRoundNum();
+        }
+        finally {
+            profiler.endFrame(needMore);
+        }
+        if (frameTimesOverlay != null && (profiler.getFrames() % OVERLAY_EVERY_FRAMES == 0 || !needMore))
+            frameTimesOverlay.textContent = profiler.dump();
         if (needMore)
             requestFrame();
 
@@ -229,13 +266,8 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
         try {
             competition.runCompetition(battlesPerGroup, numOfGroups, m_isStartPaused, isBattleShown(), SettingsPanel.useNewMemory());
             callContinueRun(); // when runWar() returns we want the War object to be already constructured and ready
-            if (isBattleShown()) { // add breakpointchecked only if we're in debugger
-                War war = competition.getCurrentWar();
-                war.setBreakpointCheck(m_codeEditor);
-                Warrior inEditorWarrior = war.getWarriorByLabel(m_playersPanel.getCodeInEditor().getLabel());
-                war.setUiWarrior(inEditorWarrior);
-                war.setInDebugger();
-            }
+            if (isBattleShown()) // add breakpointchecked only if we're in debugger
+                setupDebugWar();
             return true;
         }
         catch (Exception e) {
@@ -260,6 +292,113 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
             battleFrame.warCanvas.revokeWar();
     }
 
+    private void setupDebugWar() {
+        War war = competition.getCurrentWar();
+        war.setBreakpointCheck(m_codeEditor);
+        Warrior inEditorWarrior = war.getWarriorByLabel(m_playersPanel.getCodeInEditor().getLabel());
+        war.setUiWarrior(inEditorWarrior);
+        war.setInDebugger();
+    }
+
+    // after the war being debugged jumped to another round
+    public void showSeekedRound() {
+        outRoundNum();
+        competition.competitionEventListener.onEndRound(); // show the state at the round we got to
+    }
+
+    public void j_loadReplay(ArrayBuffer buf) {
+        Int8ArrayNative arr = Int8ArrayNative.create(buf);
+        byte[] ba = new byte[buf.byteLength()];
+        for(int i = 0; i < ba.length; ++i)
+            ba[i] = arr.get(i);
+        try {
+            m_replay = new Replay(ba);
+            Console.log("loaded replay of " + m_replay.getEndRound() + " rounds");
+        }
+        catch (IllegalArgumentException e) {
+            Console.error("failed loading replay: " + e.getMessage());
+        }
+    }
+
+    // while debugging, jump to a round of the loaded replay. the warriors of the replay need to be the ones being debugged
+    public boolean j_seekReplay(int round) {
+        if (m_replay == null || !isBattleShown() || competition.compState == null) {
+            Console.error("start debugging the replayed warriors and load a replay first");
+            return false;
+        }
+        try {
+            competition.seekReplay(m_replay, round);
+        }
+        catch (Exception e) {
+            Console.error("replay seek failed: " + e.getMessage());
+            return false;
+        }
+        setupDebugWar();
+        showSeekedRound();
+        return true;
+    }
+
+    // kinds is a combination of Watchpoints.READ=1, WRITE=2, CHANGE=4. the range is inclusive
+    public void j_addWatchpoint(int start, int end, int kinds) {
+        competition.getWatchpoints().add(start, end, kinds);
+    }
+
+    public void j_removeWatchpoint(int start, int end) {
+        competition.getWatchpoints().remove(start, end);
+    }
+
+    // the size of the arena of the wars started from now on. the canvas shows 64K so it can't be bigger than that here,
+    // bigger arenas are only for running without the page. returns an error message or null
+    public String j_setArenaSize(int size) {
+        if (size > War.ARENA_SIZE)
+            return "arena size can be at most " + War.ARENA_SIZE;
+        ArenaGeometry geometry;
+        try {
+            geometry = new ArenaGeometry(size, ArenaGeometry.DEFAULT.maxWarriors, ArenaGeometry.DEFAULT.stackSize,
+                    ArenaGeometry.DEFAULT.groupSharedMemorySize);
+        }
+        catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        competition.setGeometry(geometry);
+        return null;
+    }
+
+    // counts where every warrior spends its time, shown as heat on the debugger lines of the warrior in the editor
+    public void j_setProfiling(boolean profiling) {
+        competition.setProfiling(profiling);
+    }
+
+    /**
+     * Measures where the time of every animation frame goes, see FrameProfiler
+     * @param timing starts or stops measuring, starting clears the previous measurements
+     * @param overlay shows the histograms on the page while measuring
+     */
+    public void j_setFrameTiming(boolean timing, boolean overlay) {
+        FrameProfiler profiler = competition.getFrameProfiler();
+        if (timing && !profiler.isEnabled())
+            profiler.clear();
+        profiler.setEnabled(timing);
+        if (timing && overlay && frameTimesOverlay == null) {
+            frameTimesOverlay = (HTMLElement) DomGlobal.document.createElement("pre");
+            frameTimesOverlay.className = "frame_times";
+            DomGlobal.document.body.appendChild(frameTimesOverlay);
+        }
+        else if ((!timing || !overlay) && frameTimesOverlay != null) {
+            frameTimesOverlay.remove();
+            frameTimesOverlay = null;
+        }
+        if (frameTimesOverlay != null)
+            frameTimesOverlay.textContent = profiler.dump();
+    }
+
+    // logs the histograms of the frame times to the console and returns them
+    public String j_dumpFrameTimes() {
+        String dump = competition.getFrameProfiler().dump();
+        Console.log(dump);
+        return dump;
+    }
+
     public boolean gui_runWar(Boolean isBattleShown, Boolean isStartPaused) {
         if (isBattleShown != null)
             m_isBattleShown = isBattleShown;
@@ -296,13 +435,17 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
 
     private void showBattleRoom() {
         battleFrame = new WarFrame(competition, this);
+        // the engine runs in this thread so commands are applied right away
+        battleFrame.setCommandSink(new CommandApplier(competition));
 
-        competition.addMemoryEventLister(battleFrame);
-        competition.addMemoryEventLister(battleFrame.cpuframe);
-        competition.addCompetitionEventListener(battleFrame);
+        FrameProfiler profiler = competition.getFrameProfiler();
+        competition.addMemoryEventLister(profiler.sampleMemoryEvents(battleFrame, FrameProfiler.CANVAS));
+        competition.addMemoryEventLister(profiler.sampleMemoryEvents(battleFrame.getCanvasDeltas(), FrameProfiler.CANVAS));
+        competition.addMemoryEventLister(profiler.sampleMemoryEvents(battleFrame.cpuframe, FrameProfiler.CPU_FRAME));
+        competition.addCompetitionEventListener(profiler.timeCompetitionEvents(battleFrame, FrameProfiler.CANVAS));
 
-        competition.addMemoryEventLister(battleFrame.cpuframe.stackView);
-        competition.addMemoryEventLister(battleFrame.cpuframe.sharedMemView);
+        competition.addMemoryEventLister(profiler.sampleMemoryEvents(battleFrame.cpuframe.stackView, FrameProfiler.MEMORY_VIEWS));
+        competition.addMemoryEventLister(profiler.sampleMemoryEvents(battleFrame.cpuframe.sharedMemView, FrameProfiler.MEMORY_VIEWS));
 
     }
 
@@ -353,7 +496,7 @@ public class CompetitionWindow extends JFrame implements ScoreEventListener, Com
 	public void errorPreventsStep(boolean v) {
 
         battleFrame.btnPause.setEnabled(!v);
-        battleFrame.btnSingleRound.setEnabled(!v);
+        battleFrame.setStepButtonsEnabled(!v);
     }
 
     // war needs to know which player's breakpoint to check
@@ -7,8 +7,11 @@ import il.co.codeguru.corewars_riscv.memory.Memory;
 import il.co.codeguru.corewars_riscv.gui.widgets.Console;
 import il.co.codeguru.corewars_riscv.jsadd.Format;
 import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import il.co.codeguru.corewars_riscv.remote.EngineCommand;
+import il.co.codeguru.corewars_riscv.remote.EngineCommandSink;
 import il.co.codeguru.corewars_riscv.war.Competition;
 import il.co.codeguru.corewars_riscv.war.CompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.FrameProfiler;
 import il.co.codeguru.corewars_riscv.war.War;
 import il.co.codeguru.corewars_riscv.war.Warrior;
 
@@ -22,6 +25,7 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 	private int m_currentWarriorIndex = -1; // faster to use index than label during debug
 	
 	private Competition competition;
+	private EngineCommandSink m_commandSink; // edits of the state go through this and not directly to the war
 	private int m_base = 16;
 
 	private RegisterField[] registers;
@@ -71,7 +75,8 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 		if (currentWar == null)
 			return 1;
 
-		CpuStateRiscV state = currentWar.getWarriorByLabel(m_currentWarriorLabel).getCpuState();
+		Warrior warrior = currentWar.getWarriorByLabel(m_currentWarriorLabel);
+		CpuStateRiscV state = warrior.getCpuState();
 
 		int v;
 
@@ -97,9 +102,9 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 
 
 		switch(name) {
-			case "PC": state.setPc(v); changedCSIP(); break;
+			case "PC": m_commandSink.post(EngineCommand.setPc(warrior.m_myIndex, v)); changedCSIP(); break;
 			default:
-				state.setReg(Integer.valueOf(name), v);
+				m_commandSink.post(EngineCommand.setRegister(warrior.m_myIndex, Integer.valueOf(name), v));
 		}
 
 		// reeval watch - might change depending on the register that just changed
@@ -127,6 +132,10 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 	public void onWriteState(MemoryEventListener.EWriteState state)
 	{}
 
+	public void setCommandSink(EngineCommandSink sink) {
+		m_commandSink = sink;
+	}
+
 	public void flagChanged_callback(String name, boolean v)
 	{
 	}
@@ -147,8 +156,8 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 		}
 		regPc = new RegisterField("PC", this);
 
-		stackView = new MemRegionView("stackList", "mk");
-		sharedMemView = new MemRegionView("sharedMemList", "mh");
+		stackView = new MemRegionView("stackList");
+		sharedMemView = new MemRegionView("sharedMemList");
 
 		m_parser.m_stateAccess = m_stateAccess;
 	}
@@ -376,6 +385,14 @@ public class CpuFrame implements CompetitionEventListener, MemoryEventListener {
 	@Override
 	public void onEndRound() {
 		this.updateFields();
+		FrameProfiler profiler = competition.getFrameProfiler();
+		int previous = profiler.enter(FrameProfiler.MEMORY_VIEWS); // the views gathered the writes of the round
+		try {
+			stackView.flush();
+			sharedMemView.flush();
+		} finally {
+			profiler.leave(previous);
+		}
 	}
 
 }
@@ -27,6 +27,11 @@ public class FixedLoadAddressChecker {
             Logger.error("Player " + name + " fixed start address is not a valid hex number");
             return -2;
         }
+        return addCheck(startAddress, len, name);
+    }
+
+    /** @return the start address, or -2 if it is out of range or overlaps an address that was added before */
+    public int addCheck(int startAddress, int len, String name) {
         if (startAddress < 0 || startAddress > 0xffff) {
             Logger.error("Player " + name + " fixed start address is out of 16 bit number range");
             return -2;
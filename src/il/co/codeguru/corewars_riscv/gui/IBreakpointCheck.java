@@ -5,4 +5,13 @@ import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
 
 public interface IBreakpointCheck {
     boolean shouldBreak(CpuStateRiscV state);
+
+    /**
+     * @return the hit counts of the breakpoints, kept in the war snapshots so that going back in the war
+     * takes the counts back too. null when there is nothing to keep
+     */
+    int[] saveHitCounts();
+
+    /** @param hitCounts what saveHitCounts() returned, null when nothing was kept */
+    void restoreHitCounts(int[] hitCounts);
 }
\ No newline at end of file
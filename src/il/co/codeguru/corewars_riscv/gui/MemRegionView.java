@@ -1,9 +1,8 @@
 package il.co.codeguru.corewars_riscv.gui;
 
 
-import elemental2.dom.DocumentFragment;
+import com.google.gwt.animation.client.AnimationScheduler;
 import elemental2.dom.DomGlobal;
-import elemental2.dom.Element;
 import elemental2.dom.HTMLElement;
 import il.co.codeguru.corewars_riscv.memory.Memory;
 import il.co.codeguru.corewars_riscv.gui.code_editor.asm_parsers.TextUtils;
@@ -12,21 +11,41 @@ import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
 import il.co.codeguru.corewars_riscv.memory.MemoryRegion;
 import il.co.codeguru.corewars_riscv.utils.Unsigned;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A scrolling list of the bytes of a memory region, m_step bytes in each line.
+ * Only the lines that can be seen have elements, these are reused for other lines when scrolling.
+ * Writes only update a copy of the region and mark their line, the marked lines that can be seen are
+ * written to the DOM once in flush(), at the end of the round.
+ */
 public class MemRegionView implements MemoryEventListener
 {
+    private static final int LINE_HEIGHT = 18; // px, same as .submem_line in main.css
+
     private HTMLElement m_htmlList;
+    private HTMLElement m_spacer; // as high as all the lines together, holds the line elements
+    private final ArrayList<HTMLElement> m_lineElems = new ArrayList<>();
     private MemoryRegion m_currentRegion = new MemoryRegion();
-    private final String m_innerPrefix;
     private int m_step; // how many bytes in each line (only 2 supported now)
+    private byte[] m_bytes = new byte[0]; // the region
+    private int m_firstShown = 0; // the line shown by the first element
+    private int m_shownCount = 0;
+    private boolean[] m_lineDirty = new boolean[0];
+    private int[] m_dirtyLines = new int[16];
+    private int m_dirtyCount = 0;
+    private boolean m_flushScheduled = false;
     private int m_lastMovedToLine = -1;
-    private HTMLElement m_lastMovedToElem = null;
-
 
 
-    public MemRegionView(String id, String innerPrefix) {
+    public MemRegionView(String id) {
         m_htmlList = (HTMLElement)DomGlobal.document.getElementById(id);
-        m_innerPrefix = innerPrefix;
         m_step = 2;
+        m_spacer = (HTMLElement)DomGlobal.document.createElement("div");
+        m_spacer.className = "submem_spacer";
+        m_htmlList.appendChild(m_spacer);
+        m_htmlList.addEventListener("scroll", event -> showVisibleLines());
     }
 
 
@@ -34,32 +53,71 @@ public class MemRegionView implements MemoryEventListener
         if (!force && m_currentRegion.equals(region))
             return; // can happen in shared mem if we move between the two codes of a single player
 
-        DocumentFragment df = DomGlobal.document.createDocumentFragment();
-        for(int addr = region.m_start; addr <= region.m_end; addr += m_step)
-        {
-            Element e = DomGlobal.document.createElement("div");
-            e.setAttribute("id", m_innerPrefix + Integer.toString(addr));
-            // 5 spaces since this is an absolute linear address
-
-            String sb = Format.hex5(addr) +
-                    "   " +
-                    Format.hex2(Unsigned.unsignedByte(Memory.loadByte(addr))) +
-                    TextUtils.SPACE_FOR_HEX_CHAR +
-                    Format.hex2(Unsigned.unsignedByte(Memory.loadByte(addr + 1)));
-            e.appendChild(DomGlobal.document.createTextNode(sb // memory size is always even so no need to check
-            ));
-            df.appendChild(e);
+        int size = region.m_end - region.m_start + 1; // memory size is always even so no need to check
+        if (m_bytes.length != size) {
+            m_bytes = new byte[size];
+            m_lineDirty = new boolean[size / m_step];
         }
-        m_htmlList.innerHTML = "";
-        m_htmlList.appendChild(df);
-
+        for (int i = 0; i < size; ++i)
+            m_bytes[i] = Memory.loadByte(region.m_start + i);
+        Arrays.fill(m_lineDirty, false);
+        m_dirtyCount = 0;
 
         m_currentRegion.m_start = region.m_start;
         m_currentRegion.m_end = region.m_end;
 
         // clear last so that the first time registers are inited, it will set the line
         m_lastMovedToLine = -1;
-        m_lastMovedToElem = null;
+
+        m_spacer.style.setProperty("height", Integer.toString(m_lineDirty.length * LINE_HEIGHT) + "px");
+        m_htmlList.scrollTop = 0;
+        showVisibleLines();
+    }
+
+    private String lineText(int line) {
+        int offset = line * m_step;
+        return Format.hex5(m_currentRegion.m_start + offset) + // 5 spaces since this is an absolute linear address
+                "   " +
+                Format.hex2(Unsigned.unsignedByte(m_bytes[offset])) +
+                TextUtils.SPACE_FOR_HEX_CHAR +
+                Format.hex2(Unsigned.unsignedByte(m_bytes[offset + 1]));
+    }
+
+    // gives the lines in view their elements, called when the region or the scroll changes
+    private void showVisibleLines() {
+        int lines = m_lineDirty.length;
+        int first = Math.min((int)(m_htmlList.scrollTop / LINE_HEIGHT), Math.max(0, lines - 1));
+        int count = Math.min(lines - first, m_htmlList.offsetHeight / LINE_HEIGHT + 2);
+        while (m_lineElems.size() < count) {
+            HTMLElement e = (HTMLElement)DomGlobal.document.createElement("div");
+            e.className = "submem_line";
+            m_spacer.appendChild(e);
+            m_lineElems.add(e);
+        }
+        for (int i = 0; i < m_lineElems.size(); ++i) {
+            HTMLElement e = m_lineElems.get(i);
+            if (i >= count) {
+                e.style.display = "none";
+                continue;
+            }
+            int line = first + i;
+            e.style.display = "";
+            e.style.setProperty("top", Integer.toString(line * LINE_HEIGHT) + "px");
+            Format.setInnerText(e, lineText(line));
+            if (line == m_lastMovedToLine)
+                e.classList.add("atStackLine");
+            else
+                e.classList.remove("atStackLine");
+        }
+        m_firstShown = first;
+        m_shownCount = count;
+    }
+
+    /** @return the element of a line, null if it can't be seen */
+    private HTMLElement shownElement(int line) {
+        if (line < m_firstShown || line >= m_firstShown + m_shownCount)
+            return null;
+        return m_lineElems.get(line - m_firstShown);
     }
 
     public void onMemoryWrite(int address, byte value)
@@ -67,15 +125,37 @@ public class MemRegionView implements MemoryEventListener
         if (address < m_currentRegion.m_start || address > m_currentRegion.m_end)
             return;
 
-        int lineaddr = (address / m_step) * m_step;
-        int offsetInLine = address % m_step;
-        HTMLElement elem = (HTMLElement)DomGlobal.document.getElementById(m_innerPrefix + Integer.toString(lineaddr) );
-        assert elem != null : "unexpected: did not find element";
+        int offset = address - m_currentRegion.m_start;
+        if (m_bytes[offset] == value)
+            return;
+        m_bytes[offset] = value;
+        int line = offset / m_step;
+        if (m_lineDirty[line])
+            return;
+        m_lineDirty[line] = true;
+        if (m_dirtyCount == m_dirtyLines.length)
+            m_dirtyLines = Arrays.copyOf(m_dirtyLines, m_dirtyLines.length * 2);
+        m_dirtyLines[m_dirtyCount++] = line;
+
+        if (!m_flushScheduled) { // in case nobody calls flush() at the end of the round
+            m_flushScheduled = true;
+            AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+                m_flushScheduled = false;
+                flush();
+            });
+        }
+    }
 
-        String text = Format.innerText(elem);
-        offsetInLine = 5 + 3 + offsetInLine * 3; // 5 for address, 3 spaces and each byte has 3 chars - 2+1 space
-        String newtext = text.substring(0, offsetInLine) + Format.hex2(Unsigned.unsignedByte(value)) + text.substring(offsetInLine + 2);
-        Format.setInnerText(elem, newtext);
+    /** Shows the lines written since the last call, each one with a single DOM update */
+    public void flush() {
+        for (int i = 0; i < m_dirtyCount; ++i) {
+            int line = m_dirtyLines[i];
+            m_lineDirty[line] = false;
+            HTMLElement e = shownElement(line);
+            if (e != null)
+                Format.setInnerText(e, lineText(line));
+        }
+        m_dirtyCount = 0;
     }
 
     public void onWriteState(MemoryEventListener.EWriteState state)
@@ -84,11 +164,12 @@ public class MemRegionView implements MemoryEventListener
 
     public void moveToLine(int addr)
     {
-        if (m_lastMovedToLine == addr)
+        int line = (addr - m_currentRegion.m_start) / m_step;
+        if (m_lastMovedToLine == line)
             return;
-        if (m_lastMovedToElem != null)
-            m_lastMovedToElem.classList.remove("atStackLine");
-        m_lastMovedToElem = null;
+        HTMLElement last = (m_lastMovedToLine == -1) ? null : shownElement(m_lastMovedToLine);
+        if (last != null)
+            last.classList.remove("atStackLine");
         m_lastMovedToLine = -1;
         if (addr > m_currentRegion.m_end || addr < m_currentRegion.m_start)
             return;
@@ -96,19 +177,15 @@ public class MemRegionView implements MemoryEventListener
         if (offsetInLine != 0)  // somehow we want a non even line, prefer not to show anything
             return;
 
-
-        int lineaddr = (addr / m_step) * m_step;
-        HTMLElement elem = (HTMLElement)DomGlobal.document.getElementById(m_innerPrefix + Integer.toString(lineaddr) );
-        assert elem != null :  "unexpected: did not find element2";
-        elem.classList.add("atStackLine");
-
+        m_lastMovedToLine = line;
         // scroll to view?
-        if (elem.offsetTop <= m_htmlList.scrollTop + 30 || elem.offsetTop >= m_htmlList.scrollTop + m_htmlList.offsetHeight - 30) {
-            m_htmlList.scrollTop = elem.offsetTop - 50;
+        int top = line * LINE_HEIGHT;
+        if (top <= m_htmlList.scrollTop + 30 || top >= m_htmlList.scrollTop + m_htmlList.offsetHeight - 30) {
+            m_htmlList.scrollTop = top - 50;
+            showVisibleLines();
         }
-
-
-        m_lastMovedToLine = addr;
-        m_lastMovedToElem = elem;
+        HTMLElement elem = shownElement(line);
+        if (elem != null)
+            elem.classList.add("atStackLine");
     }
-}
\ No newline at end of file
+}
@@ -5,8 +5,10 @@ import com.google.gwt.typedarrays.client.Int8ArrayNative;
 import com.google.gwt.typedarrays.shared.ArrayBuffer;
 import elemental2.dom.DomGlobal;
 import elemental2.dom.HTMLElement;
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
 import il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor;
 import il.co.codeguru.corewars_riscv.gui.widgets.Console;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
 
 import java.util.ArrayList;
 
@@ -23,6 +25,23 @@ public class PlayersPanel
             lineNum = _lineNum;
         }
         public int lineNum; // 1 based line number, -1 means there's no line number (debug only breakpoint)
+        public BreakpointCondition condition = null; // null means break every time
+        public int hitTarget = 0; // break only from this hit on, 0 or 1 to break on every hit
+        public int hits = 0; // times this was reached with the condition true, in the current war
+
+        // empty text removes the condition
+        public void setCondition(String text, int _hitTarget) throws Exception {
+            condition = (text == null || text.trim().isEmpty()) ? null : BreakpointCondition.compile(text);
+            hitTarget = _hitTarget;
+        }
+
+        // called after every instruction that the debugged warrior ends at the address of this breakpoint
+        public boolean shouldBreak(CpuStateRiscV state, RawMemory memory) {
+            if (condition != null && !condition.isTrue(state, memory))
+                return false;
+            ++hits;
+            return hits >= hitTarget;
+        }
     }
 
     public static class Code {
@@ -1,20 +1,26 @@
 package il.co.codeguru.corewars_riscv.gui;
 
+import com.google.gwt.animation.client.AnimationScheduler;
 import elemental2.dom.DomGlobal;
 import elemental2.dom.HTMLElement;
 import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
 import il.co.codeguru.corewars_riscv.gui.widgets.*;
 import il.co.codeguru.corewars_riscv.jsadd.Format;
 import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
+import il.co.codeguru.corewars_riscv.remote.DeltaCollector;
+import il.co.codeguru.corewars_riscv.remote.EngineCommand;
+import il.co.codeguru.corewars_riscv.remote.EngineCommandSink;
+import il.co.codeguru.corewars_riscv.remote.RoundDelta;
 import il.co.codeguru.corewars_riscv.utils.Logger;
-import il.co.codeguru.corewars_riscv.utils.Unsigned;
 import il.co.codeguru.corewars_riscv.war.Competition;
 import il.co.codeguru.corewars_riscv.war.CompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.ForkEvaluation;
+import il.co.codeguru.corewars_riscv.war.FrameProfiler;
+import il.co.codeguru.corewars_riscv.war.FrameScheduler;
 import il.co.codeguru.corewars_riscv.war.War;
 import il.co.codeguru.corewars_riscv.war.Warrior;
 
-import static il.co.codeguru.corewars_riscv.war.War.ARENA_SIZE;
-
 /**
  * The main GUI class for core-wars.
  * The frame includes:
@@ -31,6 +37,7 @@ import static il.co.codeguru.corewars_riscv.war.War.ARENA_SIZE;
 public class WarFrame extends JFrame implements MemoryEventListener, CompetitionEventListener {
 
     private final Competition competition;
+    private EngineCommandSink m_commandSink; // the run controls and the edits of the war state go through this
     /**
      * the canvas which show the core war memory area
      */
@@ -38,6 +45,10 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
     CpuFrame cpuframe;
     JButton btnPause;
     JButton btnSingleRound;
+    JButton btnStepBack;
+    JButton btnReverseContinue;
+    JButton btnWhatIf;
+    JButton btnHeatmap;
     JSlider speedSlider;
     /**
      * the message area show misc. information about the current fight
@@ -54,6 +65,51 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
 
     private CompetitionWindow mainWnd;
 
+    /** how many continuations of the paused war "What If" runs to estimate the chances of the warriors */
+    private static final int WHAT_IF_FORKS = 16;
+    /** the time "What If" takes from every animation frame, the rest is left to the war and the page */
+    private static final double WHAT_IF_BUDGET_MS = 4;
+
+    private ForkEvaluation whatIf = null; // while "What If" runs
+    private String[] whatIfNames; // of the warriors of the evaluated war
+    private int whatIfRound;
+    private int whatIfNext; // the continuation that runs now
+    private final FrameScheduler whatIfScheduler = new FrameScheduler();
+    private final AnimationScheduler.AnimationCallback whatIfFrame = timestamp -> runWhatIfFrame();
+
+    /** rounds for the heat of a cell that isn't written to drop by half */
+    private static final int HEATMAP_HALF_LIFE = 2000;
+    /** in compete mode the heatmap gets about one of every this many writes */
+    private static final int HEATMAP_SAMPLE_EVERY = 64;
+    private WriteHeatmap heatmap = null; // null when the heatmap view is off
+
+    // the canvas paints the memory from the deltas of this, like it would from an engine in a worker
+    private final DeltaCollector canvasDeltas = new DeltaCollector() {
+        @Override
+        public void onMemoryWrite(int address, byte value) {
+            super.onMemoryWrite(address, value);
+            if (!canvasFlushScheduled) { // in case the write is not in a frame that flushes, like an edit
+                canvasFlushScheduled = true;
+                AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+                    canvasFlushScheduled = false;
+                    flushCanvas();
+                });
+            }
+        }
+    };
+    private boolean canvasFlushScheduled = false;
+
+    private final MemoryEventListener heatmapSampler = new MemoryEventListener() {
+        @Override
+        public void onMemoryWrite(int address, byte value) {
+            recordHeat(address, HEATMAP_SAMPLE_EVERY);
+        }
+
+        @Override
+        public void onWriteState(EWriteState state) {
+        }
+    };
+
 
     public WarFrame(final Competition competition, final CompetitionWindow mainWnd) {
         super("CodeGuru Extreme - Session Viewer");
@@ -109,9 +165,9 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         // Debugger
         JLabel addressFiled = new JLabel("Click on the arena to see the memory");
         cpuframe = new CpuFrame(competition, this.mainWnd);
-        competition.addCompetitionEventListener(cpuframe);
+        competition.addCompetitionEventListener(competition.getFrameProfiler().timeCompetitionEvents(cpuframe, FrameProfiler.CPU_FRAME));
 
-        competition.addCompetitionEventListener(this);
+        competition.addCompetitionEventListener(competition.getFrameProfiler().timeCompetitionEvents(this, FrameProfiler.CANVAS));
 
         btnPause = new JButton("btnPause", "XXPause");
         btnPause.setEnabled(false);
@@ -122,23 +178,23 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
                     competition.globalPause = false;
                     btnPause.setText("Pause");
                     mainWnd.requestFrame();
-                    btnSingleRound.setEnabled(false);
+                    setStepButtonsEnabled(false);
                 } else { // do pause
                     competition.globalPause = true;
                     btnPause.setText("Resume");
                     if (competition.getCurrentWar() != null)
-                        btnSingleRound.setEnabled(true);
+                        setStepButtonsEnabled(true);
                 }
             } else {
                 if (competition.getCurrentWar().isPaused()) {
-                    competition.getCurrentWar().resume();
+                    m_commandSink.post(EngineCommand.resume());
                     btnPause.setText("Pause");
                     mainWnd.requestFrame();
-                    btnSingleRound.setEnabled(false);
+                    setStepButtonsEnabled(false);
                 } else {
-                    competition.getCurrentWar().pause();
+                    m_commandSink.post(EngineCommand.pause());
                     btnPause.setText("Resume");
-                    btnSingleRound.setEnabled(true);
+                    setStepButtonsEnabled(true);
                 }
             }
 
@@ -151,12 +207,58 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
                 Console.log("no war");
                 return;
             }
-            competition.getCurrentWar().runSingleRound();
+            m_commandSink.post(EngineCommand.step());
             mainWnd.requestFrame(); // request frame but still paused so it'll be just one frame
         });
 
+        btnStepBack = new JButton("btnStepBack", "Step Back");
+        btnStepBack.setEnabled(false);
+        btnStepBack.addActionListener(arg0 -> {
+            if (competition.getCurrentWar() == null)
+                return;
+            m_commandSink.post(EngineCommand.stepBack());
+            mainWnd.showSeekedRound();
+        });
+
+        btnReverseContinue = new JButton("btnReverseContinue", "Reverse");
+        btnReverseContinue.setEnabled(false);
+        btnReverseContinue.addActionListener(arg0 -> {
+            if (competition.getCurrentWar() == null)
+                return;
+            m_commandSink.post(EngineCommand.reverseContinue());
+            // a hit pauses after the round it was in, only going back without a hit ends at the start
+            if (competition.compState.round == 0)
+                addMessage("no earlier breakpoint hit, back at the start");
+            mainWnd.showSeekedRound();
+        });
+
+        btnWhatIf = new JButton("btnWhatIf", "What If");
+        btnWhatIf.setEnabled(false);
+        btnWhatIf.addActionListener(arg0 -> {
+            War war = competition.getCurrentWar();
+            if (war == null || whatIf != null)
+                return;
+            whatIfRound = competition.compState.round;
+            whatIfNames = new String[war.getNumWarriors()];
+            for (int i = 0; i < whatIfNames.length; ++i)
+                whatIfNames[i] = war.getWarrior(i).getName();
+            whatIf = new ForkEvaluation(war, whatIfRound, WHAT_IF_FORKS, war.getSeed() + whatIfRound);
+            whatIfNext = 0;
+            addMessage(whatIfRound, "what if: running " + WHAT_IF_FORKS + " continuations");
+            AnimationScheduler.get().requestAnimationFrame(whatIfFrame);
+        });
+        whatIfScheduler.setClock(CompetitionWindow::performanceNow);
+        whatIfScheduler.setBudget(WHAT_IF_BUDGET_MS);
+
         buttonPanel.add(btnPause);
         buttonPanel.add(btnSingleRound);
+        buttonPanel.add(btnStepBack);
+        buttonPanel.add(btnReverseContinue);
+        btnHeatmap = new JButton("btnHeatmap", "Heat");
+        btnHeatmap.addActionListener(arg0 -> setHeatmapShown(heatmap == null));
+
+        buttonPanel.add(btnWhatIf);
+        buttonPanel.add(btnHeatmap);
         buttonPanel.add(addressFiled);
 
         // build warrior zone (warrior list + title) 
@@ -184,11 +286,59 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         getContentPane().add(infoZone, BorderLayout.SOUTH);
     }
 
+    // the step buttons only work while paused
+    void setStepButtonsEnabled(boolean enabled) {
+        btnSingleRound.setEnabled(enabled);
+        btnStepBack.setEnabled(enabled);
+        btnReverseContinue.setEnabled(enabled);
+        btnWhatIf.setEnabled(enabled);
+    }
+
+    /** the run controls and the edits of the war state by the user are sent to this sink */
+    public void setCommandSink(EngineCommandSink sink) {
+        m_commandSink = sink;
+        warCanvas.setCommandSink(sink);
+        cpuframe.setCommandSink(sink);
+    }
 
     @Override
     public void onPaused() { // this can potentially replace all other places where we do the same thing
         btnPause.setText("Resume");
-        btnSingleRound.setEnabled(true);
+        setStepButtonsEnabled(true);
+
+        War war = competition.getCurrentWar();
+        if (war != null && war.getWatchHit() != null)
+            addMessage(nRoundNumber, describeWatchHit(war, war.getWatchHit()));
+    }
+
+    private static String describeWatchHit(War war, Watchpoints.Hit hit) {
+        String who = war.getWarrior(hit.warrior).getName() + " at " + Format.hex4(hit.pc);
+        if (hit.kind == Watchpoints.READ)
+            return "Watchpoint: " + who + " read " + Format.hex2(hit.oldValue & 0xff) + " from " + Format.hex5(hit.address);
+        return "Watchpoint: " + who + " wrote " + Format.hex2(hit.newValue & 0xff) + " to " + Format.hex5(hit.address)
+                + " (was " + Format.hex2(hit.oldValue & 0xff) + ")";
+    }
+
+    // runs the continuations of "What If" in batches that fit in its part of the frame, so the page keeps responding
+    private void runWhatIfFrame() {
+        whatIfScheduler.startFrame();
+        boolean hasTime = true;
+        while (hasTime && whatIfNext < whatIf.getCount()) {
+            int ran = whatIf.runRounds(whatIfNext, whatIfScheduler.nextBatch(Competition.MAX_ROUND));
+            if (whatIf.getEndRound(whatIfNext) >= 0) {
+                ++whatIfNext;
+                addMessage(whatIfRound, "what if: " + whatIfNext + " of " + whatIf.getCount() + " continuations done");
+            }
+            hasTime = whatIfScheduler.batchDone(ran);
+        }
+        if (whatIfNext < whatIf.getCount()) {
+            AnimationScheduler.get().requestAnimationFrame(whatIfFrame);
+            return;
+        }
+        float[] chances = whatIf.getWinProbabilities();
+        for (int i = 0; i < chances.length; ++i)
+            addMessage(whatIfRound, whatIfNames[i] + " wins " + Math.round(chances[i] * 100) + "% of " + whatIf.getCount() + " continuations");
+        whatIf = null;
     }
 
     /**
@@ -206,14 +356,52 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         addMessage("[" + round + "] " + message);
     }
 
+    private void setHeatmapShown(boolean shown) {
+        heatmap = shown ? new WriteHeatmap(Canvas.BOARD_SIZE * Canvas.BOARD_SIZE, HEATMAP_HALF_LIFE) : null;
+        competition.memoryEventCaster.setCompeteSampling(shown ? heatmapSampler : null, HEATMAP_SAMPLE_EVERY);
+        btnHeatmap.setText(shown ? "Owner" : "Heat");
+        warCanvas.setHeatmap(heatmap);
+        mainWnd.requestFrame();
+    }
+
+    private void recordHeat(int address, int weight) {
+        if (heatmap == null || competition.compState == null)
+            return;
+        int warrior = competition.getCurrentWarrior();
+        if (warrior >= 0)
+            heatmap.record(warCanvas.boardCellOf(address), warrior, competition.compState.round, weight);
+    }
+
+    // the cells themselves are painted from canvasDeltas, see flushCanvas()
     @Override
     public void onMemoryWrite(int address, byte value) {
-        if (!mainWnd.isBattleShown())
-            return; // canvas not shown, no reason to update it
+        recordHeat(address, 1);
+    }
 
+    /** @return where the canvas takes the memory from, it needs to hear the memory writes */
+    public MemoryEventListener getCanvasDeltas() {
+        return canvasDeltas;
+    }
 
-        if (address >= 0 && address < ARENA_SIZE) {
-            warCanvas.paintPixel(Unsigned.unsignedShort(address), (byte) competition.getCurrentWarrior(), value);
+    /** Paints the memory that changed since the last call and shows it. Should be called at the end of every frame */
+    public void flushCanvas() {
+        if (mainWnd.isBattleShown()) // canvas not shown, the changes wait for it in the collector
+            paintDelta(canvasDeltas.takeDelta(competition));
+        warCanvas.flush();
+    }
+
+    private void paintDelta(RoundDelta delta) {
+        War war = competition.getCurrentWar();
+        if (war == null)
+            return;
+        int arenaSize = war.getGeometry().arenaSize;
+        int offset = 0;
+        for (int i = 0; i < delta.getRangeCount(); ++i) {
+            int start = delta.rangeStarts[i];
+            int end = Math.min(start + delta.rangeLengths[i], arenaSize);
+            for (int address = start; address < end; ++address)
+                warCanvas.paintPixel(address, delta.owners[offset + address - start], delta.data[offset + address - start]);
+            offset += delta.rangeLengths[i];
         }
     }
 
@@ -225,7 +413,10 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
     public void onWarPreStartClear() {
         nameListModel.clear();
         warCanvas.clear();
+        if (heatmap != null)
+            heatmap.clear();
         warCanvas.initStartWar(competition.getCurrentWar());
+        canvasDeltas.onWarPreStartClear(); // the next delta has all of the memory of the new war
     }
 
     /* @see CompetitionEventListener#onWarStart(int) */
@@ -233,7 +424,7 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         addMessage("=== Session started ===");
         if (competition.getCurrentWar().isPaused()) {
             btnPause.setText("Resume");
-            btnSingleRound.setEnabled(true);
+            setStepButtonsEnabled(true);
         }
     }
 
@@ -255,7 +446,7 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
                 throw new RuntimeException();
         }
         btnPause.setText("Resume");
-        btnSingleRound.setEnabled(true);
+        setStepButtonsEnabled(true);
 
         warCanvas.revokeWar();
     }
@@ -263,7 +454,7 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
     @Override
     public void onNoneAlive() {
         addMessage(nRoundNumber, "No players left alive");
-        btnSingleRound.setEnabled(false);
+        setStepButtonsEnabled(false);
         btnPause.setEnabled(false);
 
     }
@@ -308,15 +499,17 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         if (!mainWnd.isBattleShown())
             return; // canvas not shown, no reason to update it
 
-        this.warCanvas.deletePointers();
         War currentWar = this.competition.getCurrentWar();
-        for (int i = 0; i < currentWar.getNumWarriors(); i++)
+        for (int i = 0; i < currentWar.getNumWarriors(); i++) {
             if (currentWar.getWarrior(i).isAlive()) {
                 CpuStateRiscV state = currentWar.getWarrior(i).getCpuState();
                 int ip = state.getPc();
 
-                this.warCanvas.paintPointer((char) ip, (byte) i);
+                this.warCanvas.movePointer(i, ip & currentWar.getGeometry().getArenaMask());
             }
+            else
+                this.warCanvas.movePointer(i, -1);
+        }
     }
 
     /**
@@ -376,4 +569,4 @@ public class WarFrame extends JFrame implements MemoryEventListener, Competition
         }
     }
 
-}
\ No newline at end of file
+}
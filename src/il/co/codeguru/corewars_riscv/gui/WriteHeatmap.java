@@ -0,0 +1,92 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import java.util.Arrays;
+
+/**
+ * How often and how recently every cell of the arena was written, and by which warrior.
+ * Every cell has a saturating counter that decays exponentially with the rounds since its last write.
+ * The decay is not applied to the whole arena every round, a counter is decayed only when its cell is
+ * written again or when it is read for painting.
+ */
+public class WriteHeatmap {
+    public static final int MAX_HEAT = 255;
+    public static final byte NO_OWNER = -1;
+
+    // 2^(-i/8) in 1/256 units, the decay is applied in steps of an eighth of the half life
+    private static final int[] FRACTION = { 256, 235, 215, 197, 181, 166, 152, 140 };
+
+    private final int halfLife; // rounds
+    private final byte[] heat; // unsigned
+    private final int[] lastWrite; // round of the last write to the cell
+    private final byte[] owner; // the warrior that wrote the cell last
+    private int lastRound = 0;
+    private boolean changed = false;
+
+    /**
+     * @param size number of cells
+     * @param halfLife the number of rounds after which the heat of a cell that isn't written drops by half
+     */
+    public WriteHeatmap(int size, int halfLife) {
+        this.halfLife = halfLife;
+        heat = new byte[size];
+        lastWrite = new int[size];
+        owner = new byte[size];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(heat, (byte)0);
+        Arrays.fill(lastWrite, 0);
+        Arrays.fill(owner, NO_OWNER);
+        lastRound = 0;
+        changed = true;
+    }
+
+    /**
+     * Counts a write to a cell.
+     * @param weight how many writes this one stands for, more than 1 when only some of the writes are sampled
+     */
+    public void record(int address, int warrior, int round, int weight) {
+        if (address < 0 || address >= heat.length)
+            return;
+        int h = decay(heat[address] & 0xff, round - lastWrite[address]) + weight;
+        heat[address] = (byte)Math.min(h, MAX_HEAT);
+        lastWrite[address] = round;
+        owner[address] = (byte)warrior;
+        if (round > lastRound)
+            lastRound = round;
+        changed = true;
+    }
+
+    /** @return the heat of the cell at a round, 0 to MAX_HEAT */
+    public int getHeat(int address, int round) {
+        return decay(heat[address] & 0xff, round - lastWrite[address]);
+    }
+
+    /** @return the warrior that wrote the cell last, NO_OWNER if it was not written */
+    public int getOwner(int address) {
+        return owner[address];
+    }
+
+    /** @return the latest round a write was recorded at */
+    public int getLastRound() {
+        return lastRound;
+    }
+
+    /** @return true if writes were recorded since the last call */
+    public boolean takeChanged() {
+        boolean c = changed;
+        changed = false;
+        return c;
+    }
+
+    private int decay(int value, int age) {
+        if (value == 0 || age <= 0)
+            return value;
+        int steps = (int)Math.min((long)age * FRACTION.length / halfLife, 8L * 31);
+        int shift = steps / FRACTION.length;
+        if (shift >= 8)
+            return 0;
+        return (value * FRACTION[steps % FRACTION.length]) >> (8 + shift);
+    }
+}
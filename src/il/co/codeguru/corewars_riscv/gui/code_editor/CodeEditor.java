@@ -40,7 +40,13 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     public void onWarPreStartClear() {}
     @Override
     public void onWarStart() {
-        debugger.setMemory(m_competition.getCurrentWar().getMemory());
+        War war = m_competition.getCurrentWar();
+        int arenaSize = war.getGeometry().arenaSize;
+        if (m_pages[m_pages.length - 1].endAddr != arenaSize) {
+            setPages(arenaSize);
+            setDebugArenaSize(arenaSize);
+        }
+        debugger.setMemory(war.getMemory(), arenaSize);
     }
     @Override
     public void onWarEnd(int reason, String winners, boolean inDebug) { }
@@ -120,8 +126,9 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     public CodeEditor(Competition competition)
     {
         m_competition = competition;
-        m_competition.addCompetitionEventListener(this);
-        m_competition.addMemoryEventLister(this);
+        FrameProfiler profiler = m_competition.getFrameProfiler();
+        m_competition.addCompetitionEventListener(profiler.timeCompetitionEvents(this, FrameProfiler.DEBUGGER));
+        m_competition.addMemoryEventLister(profiler.sampleMemoryEvents(this, FrameProfiler.DEBUGGER));
 
         asm_edit = (HTMLTextAreaElement) document.getElementById("asm_edit");
         asm_show = (HTMLElement) document.getElementById("asm_show");
@@ -134,23 +141,33 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         asm_edit.addEventListener("input", (event) -> assemblyEditorChanged());
         editor_title.addEventListener("input", (event) -> m_playersPanel.updateTitle(editor_title.value));
 
-        m_pages = new PageInfo[ (War.ARENA_SIZE / PAGE_SIZE) + 1 ];
+        setPages(War.ARENA_SIZE);
+
+        exportMethods();
+    }
+
+    private void setPages(int arenaSize) {
+        m_pages = new PageInfo[ (arenaSize + PAGE_SIZE - 1) / PAGE_SIZE ];
         for(int i = 0; i < m_pages.length; ++i) {
             PageInfo pi = new PageInfo();
             m_pages[i] = pi;
             pi.isDirty = true;
             pi.startAddr = i * PAGE_SIZE;
-            pi.endAddr = Math.min( (i + 1) * PAGE_SIZE, War.ARENA_SIZE);
+            pi.endAddr = Math.min( (i + 1) * PAGE_SIZE, arenaSize);
         }
-
-        exportMethods();
     }
 
+    // creates the lines of the debug area again for an arena of another size
+    private static native void setDebugArenaSize(int arenaSize) /*-{
+        $wnd.setDebugArenaSize(arenaSize)
+    }-*/;
+
     public native void exportMethods() /*-{
         var that = this;
         var debug = this.@il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor::debugger;
         $wnd.j_renderIfDirty = $entry(function(i) { debug.@il.co.codeguru.corewars_riscv.gui.code_editor.Debugger::j_renderIfDirty(I)(i) });
         $wnd.j_setScrollAt = $entry(function(i,j) { debug.@il.co.codeguru.corewars_riscv.gui.code_editor.Debugger::j_setScrollAt(II)(i,j) });
+        $wnd.j_setBreakpointCondition = $entry(function(a,s,h) { return debug.@il.co.codeguru.corewars_riscv.gui.code_editor.Debugger::j_setBreakpointCondition(ILjava/lang/String;I)(a,s,h) });
         $wnd.j_asm_edit_changed = $entry(function() { that.@il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor::assemblyEditorChanged()() });
     }-*/;
 
@@ -650,7 +667,20 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     public boolean shouldBreak(CpuStateRiscV state)
     {
         int arenaAddress = state.getPc();
-        return debugger.getDbgBreakpoint(arenaAddress) != null;
+        PlayersPanel.Breakpoint br = debugger.getDbgBreakpoint(arenaAddress);
+        if (br == null)
+            return false;
+        return br.shouldBreak(state, m_competition.getCurrentWar().getMemory());
+    }
+
+    @Override
+    public int[] saveHitCounts() {
+        return debugger.saveHitCounts();
+    }
+
+    @Override
+    public void restoreHitCounts(int[] hitCounts) {
+        debugger.restoreHitCounts(hitCounts);
     }
 
     public void setDebugMode(boolean v) {
@@ -0,0 +1,211 @@
+package il.co.codeguru.corewars_riscv.gui.code_editor;
+
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.jsadd.Format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The lines of the debugger panel, one for every address of the arena, kept in parallel arrays.
+ * The opcode bytes and the assembly text of the lines are indexes in a table of interned strings since most of the
+ * arena shows the same few texts. Comment lines and breakpoints are rare so they are kept out of line, by address.
+ */
+class DbgLines {
+    static final int FLAG_UNPARSED = 1;  // a value written by a warrior and not yet parsed by the disassembler
+    static final int FLAG_DEFINE_CODE = 2; // line that came from the user typed text that defines a number (db 123)
+    static final int FLAG_HAS_COMMENT = 4; // has comment lines after the code line so when highlighting this line, need to highlight dfXXXXX instead of dXXXXX
+    static final int FLAG_HIDDEN = 8; // the address is part of the opcode of a preceding line, not displayed
+    static final int FLAG_FILL = 16; // the zeros the arena is filled with before the warriors are loaded
+    static final int FLAG_BACKFILL = 32; // displayed dimmed
+
+    private static final String FILL_BYTES = "00";
+    private static final String FILL_CODE = "null";
+
+    private final byte[] flags;
+    private final int[] rawBytes; // in strings
+    private final int[] assemblyCode; // in strings
+    private final int[] lstLine; // 1-based line number of the LstLine that created the line or 0 if there isn't one
+    private final byte[] player; // the warrior of the LstLine, valid only if there is a LstLine
+    private final Map<Integer, List<String>> comments = new HashMap<>();
+
+    private final ArrayList<String> strings = new ArrayList<>();
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private final int[] singleByteIds = new int[256 * 2]; // the ids of the texts of "db XXh" lines, -1 when not interned yet
+
+    private final int[] breakpointBits;
+    private final Map<Integer, PlayersPanel.Breakpoint> breakpoints = new HashMap<>();
+
+    DbgLines(int size) {
+        flags = new byte[size];
+        rawBytes = new int[size];
+        assemblyCode = new int[size];
+        lstLine = new int[size];
+        player = new byte[size];
+        breakpointBits = new int[(size + 31) / 32];
+        clear();
+    }
+
+    int size() {
+        return flags.length;
+    }
+
+    /** every address shows the fill line, forgets all texts, comments and breakpoints */
+    void clear() {
+        strings.clear();
+        stringIds.clear();
+        Arrays.fill(singleByteIds, -1);
+        comments.clear();
+        clearBreakpoints();
+        Arrays.fill(flags, (byte)(FLAG_FILL | FLAG_BACKFILL));
+        Arrays.fill(rawBytes, intern(FILL_BYTES));
+        Arrays.fill(assemblyCode, intern(FILL_CODE));
+        Arrays.fill(lstLine, 0);
+        Arrays.fill(player, (byte)0);
+    }
+
+    private int intern(String s) {
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.add(s);
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    /** replaces the line at the address, together with its comments */
+    void set(int addr, String bytes, String code, int lineFlags) {
+        setIds(addr, intern(bytes), intern(code), lineFlags);
+    }
+
+    /** a line of "db XXh" of a byte written by a warrior */
+    void setSingleByte(int addr, byte value) {
+        int val = value & 0xff;
+        if (singleByteIds[val * 2] == -1) {
+            String hexVal = Format.hex2(val);
+            singleByteIds[val * 2] = intern(hexVal);
+            singleByteIds[val * 2 + 1] = intern("db " + hexVal + "h");
+        }
+        setIds(addr, singleByteIds[val * 2], singleByteIds[val * 2 + 1], FLAG_UNPARSED);
+    }
+
+    private void setIds(int addr, int bytesId, int codeId, int lineFlags) {
+        if ((flags[addr] & FLAG_HAS_COMMENT) != 0)
+            comments.remove(addr);
+        flags[addr] = (byte)lineFlags;
+        rawBytes[addr] = bytesId;
+        assemblyCode[addr] = codeId;
+        lstLine[addr] = 0;
+        player[addr] = 0;
+    }
+
+    /** a line that shows like the fill line but is not one, for holding comments */
+    void setBlank(int addr) {
+        set(addr, FILL_BYTES, FILL_CODE, FLAG_BACKFILL);
+    }
+
+    void hide(int addr) {
+        set(addr, FILL_BYTES, FILL_CODE, FLAG_HIDDEN);
+    }
+
+    /** @param line 1-based line number in the listing of the player */
+    void setSource(int addr, int line, int playerIndex) {
+        lstLine[addr] = line;
+        player[addr] = (byte)playerIndex;
+    }
+
+    int getFlags(int addr) {
+        return flags[addr];
+    }
+
+    boolean isHidden(int addr) {
+        return (flags[addr] & FLAG_HIDDEN) != 0;
+    }
+
+    boolean isFill(int addr) {
+        return (flags[addr] & FLAG_FILL) != 0;
+    }
+
+    int getLstLine(int addr) {
+        return lstLine[addr];
+    }
+
+    int getPlayer(int addr) {
+        return player[addr];
+    }
+
+    void addComment(int addr, String comment) {
+        List<String> list = comments.get(addr);
+        if (list == null) {
+            list = new ArrayList<>();
+            comments.put(addr, list);
+        }
+        list.add(comment);
+        flags[addr] |= FLAG_HAS_COMMENT;
+    }
+
+    List<String> getComments(int addr) {
+        if ((flags[addr] & FLAG_HAS_COMMENT) == 0)
+            return Collections.emptyList();
+        return comments.get(addr);
+    }
+
+    /** @return the html of the code line, without the address and the comments */
+    String getText(int addr) {
+        String text = "<span class='dbg_opcodes'>" + strings.get(rawBytes[addr]) + "</span>" + strings.get(assemblyCode[addr]);
+        if ((flags[addr] & FLAG_BACKFILL) != 0)
+            text = "<span class='dbg_backfill'>" + text + "</span>";
+        return text;
+    }
+
+    PlayersPanel.Breakpoint getBreakpoint(int addr) {
+        if (addr < 0 || addr >= flags.length || (breakpointBits[addr >>> 5] & (1 << addr)) == 0)
+            return null;
+        return breakpoints.get(addr);
+    }
+
+    /** @param br null removes the breakpoint */
+    void setBreakpoint(int addr, PlayersPanel.Breakpoint br) {
+        if (br == null) {
+            breakpointBits[addr >>> 5] &= ~(1 << addr);
+            breakpoints.remove(addr);
+        }
+        else {
+            breakpointBits[addr >>> 5] |= (1 << addr);
+            breakpoints.put(addr, br);
+        }
+    }
+
+    /** @return the address and the hits of every breakpoint, one after the other */
+    int[] saveHitCounts() {
+        int[] counts = new int[breakpoints.size() * 2];
+        int i = 0;
+        for (Map.Entry<Integer, PlayersPanel.Breakpoint> e : breakpoints.entrySet()) {
+            counts[i++] = e.getKey();
+            counts[i++] = e.getValue().hits;
+        }
+        return counts;
+    }
+
+    /** sets the hits of every breakpoint to what saveHitCounts() had for its address, 0 for one that wasn't there */
+    void restoreHitCounts(int[] counts) {
+        for (Map.Entry<Integer, PlayersPanel.Breakpoint> e : breakpoints.entrySet()) {
+            int hits = 0;
+            for (int i = 0; counts != null && i < counts.length; i += 2) {
+                if (counts[i] == e.getKey())
+                    hits = counts[i + 1];
+            }
+            e.getValue().hits = hits;
+        }
+    }
+
+    void clearBreakpoints() {
+        Arrays.fill(breakpointBits, 0);
+        breakpoints.clear();
+    }
+}
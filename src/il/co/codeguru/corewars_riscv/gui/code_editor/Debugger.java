@@ -1,5 +1,6 @@
 package il.co.codeguru.corewars_riscv.gui.code_editor;
 
+import com.google.gwt.animation.client.AnimationScheduler;
 import elemental2.dom.DomGlobal;
 import elemental2.dom.Element;
 import elemental2.dom.EventListener;
@@ -11,17 +12,16 @@ import il.co.codeguru.corewars_riscv.gui.widgets.Console;
 import il.co.codeguru.corewars_riscv.jsadd.Format;
 import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
 import il.co.codeguru.corewars_riscv.utils.Logger;
-import il.co.codeguru.corewars_riscv.utils.disassembler.DisassemblerRiscV;
-import il.co.codeguru.corewars_riscv.utils.disassembler.IDisassembler;
+import il.co.codeguru.corewars_riscv.utils.disassembler.DisassemblyCache;
 import il.co.codeguru.corewars_riscv.war.War;
 import il.co.codeguru.corewars_riscv.war.Warrior;
+import il.co.codeguru.corewars_riscv.war.WarriorProfile;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor.PageInfo;
 import static il.co.codeguru.corewars_riscv.gui.code_editor.CodeEditor.SPACE_FOR_HEX;
-import static il.co.codeguru.corewars_riscv.war.War.ARENA_SIZE;
 
 public class Debugger {
     private final CodeEditor codeEditor;
@@ -29,72 +29,33 @@ public class Debugger {
     private HTMLElement m_lastDbgElement;
     private boolean m_lastIsAlive = false;
     private RawMemory m_mem = null;
-    private DefineDataCache cache = new DefineDataCache();
+    private DisassemblyCache m_disassembly = null; // of m_mem
     private final DebuggerMemoryListener memoryListener = new DebuggerMemoryListener();
 
-    private DbgLine[] m_dbglines;  // for every address, the line of display in the debugger panel or null if line is not displayed
-    private final DbgLine m_fillCmd = new DbgLine("00", "null", true);
-    private PlayersPanel.Breakpoint[] m_dbgBreakpoints; // for every address, reference to a Breakpoint object if one exists
+    private int m_arenaSize = War.ARENA_SIZE; // of the war in the debugger, the arrays below have a place for every address in it
+    private DbgLines m_lines = new DbgLines(m_arenaSize); // for every address, the line of display in the debugger panel and the breakpoint in it
     private final EventListener m_dbgBrClickHandler = event -> {
         Element e = (Element) event.target;
         toggleBreakpointDbg(Integer.parseInt(e.innerHTML, 16));
     };
     private int m_atScrollP1 = -1, m_atScrollP2 = -1;
 
+    // lines that changed since they were rendered. the ones in the visible pages are also listed to be rendered in the next flush
+    private boolean[] m_lineChanged = new boolean[m_arenaSize];
+    private int[] m_changedLines = new int[64];
+    private int m_changedCount = 0;
+    private boolean m_flushScheduled = false;
 
-    private int m_lastDbgAddr = -1; // for knowing if we need to move it
-    private int m_lastDbgAddrEnd = -1; // end (one after last) of the debugged Opcode (for edit handling)
-
-    public static class DbgLine {
-        // one such object can appear in multiple addresses for instance the comment int3 line
-        static final int FLAG_UNPARSED = 1;  // means this is a DbgLine of a value written by a warrior and not yet parsed by the disassembler
-        static final int FLAG_DEFINE_CODE = 2; // line that came from the user typed text that defines a number (db 123)
-        static final int FLAG_HAS_COMMENT = 4; // This DbgLine has comment lines after the first code line so when highlighting this line, need to highlight dfXXXXX instead of dXXXXX
-        static final int FLAG_LSTLINE_MAX = 0x7ff;
-        static final int FLAG_LSTLINE_SHIFT = 16;
-        static final int FLAG_LSTLINE = 0x07ff0000; // 5 - upper 12 bits of the flat is a 1-based line number of the LstLine that created this DbgLine or 0 if there isn't one
-        static final int FLAG_PLAYER_NUM_SHIFT = 27;
-        static final int FLAG_PLAYER_NUM = 0xf8000000; // upper 5 bits is the player number, valid only if there is a non-zero LstLine
-        int flags = 0;
-
-        public DbgLine(){}
-        public DbgLine(String rawBytes, String assemblyCode, boolean toBackfill)
-        {
-            this.rawBytes = rawBytes;
-            this.assemblyCode = assemblyCode;
-            this.toBackfill = toBackfill;
-        }
 
-        public DbgLine(String rawBytes, String assemblyCode)
-        {
-            this(rawBytes, assemblyCode, false);
-        }
-
-        String rawBytes = "00";
-        String assemblyCode = "null";
-        boolean toBackfill = true;
-        List<String> comments = new ArrayList<>();
+    private static final int HEAT_LEVELS = 5;
+    private byte[] m_heatLevel = new byte[m_arenaSize]; // shown on the line, 0 for none
+    private boolean m_heatShown = false;
 
-        String getText()
-        {
-            String answer = "";
-            if(toBackfill)
-            {
-                answer += "<span class='dbg_backfill'>" ;
-            }
-            answer += "<span class='dbg_opcodes'>" + rawBytes + "</span>" + assemblyCode;
-            if(toBackfill)
-            {
-                answer += "</span>";
-            }
-
-            return answer;
-        }
-    }
+    private int m_lastDbgAddr = -1; // for knowing if we need to move it
+    private int m_lastDbgAddrEnd = -1; // end (one after last) of the debugged Opcode (for edit handling)
 
     public Debugger(CodeEditor codeEditor) {
         this.codeEditor = codeEditor;
-        m_dbglines = new DbgLine[ARENA_SIZE];
     }
 
     public Memory getMemory() {
@@ -103,16 +64,34 @@ public class Debugger {
     
     public MemoryEventListener getMemoryListener() { return memoryListener;}
 
-    public void setMemory(RawMemory memory) {
+    /** Called when a war starts, with its memory and the size of its arena */
+    public void setMemory(RawMemory memory, int arenaSize) {
         m_mem = memory;
+        m_disassembly = new DisassemblyCache(memory, arenaSize);
+        if (arenaSize == m_arenaSize)
+            return;
+        m_arenaSize = arenaSize;
+        m_lines = new DbgLines(arenaSize);
+        m_lineChanged = new boolean[arenaSize];
+        m_heatLevel = new byte[arenaSize];
+        m_heatShown = false;
+        m_changedCount = 0;
+        m_lastDbgElement = null;
+        m_lastDbgAddr = -1;
+        m_atScrollP1 = -1;
+        m_atScrollP2 = -1;
     }
 
-    private DbgLine getDbgLine(int index) {
-        return m_dbglines[index];
+    PlayersPanel.Breakpoint getDbgBreakpoint(int index) {
+        return m_lines.getBreakpoint(index);
     }
 
-    PlayersPanel.Breakpoint getDbgBreakpoint(int index) {
-        return m_dbgBreakpoints[index];
+    int[] saveHitCounts() {
+        return m_lines.saveHitCounts();
+    }
+
+    void restoreHitCounts(int[] counts) {
+        m_lines.restoreHitCounts(counts);
     }
 
     public void setDebugMode(boolean debugMode)
@@ -134,70 +113,124 @@ public class Debugger {
         final boolean isAlive = currentWarrior.isAlive();
 
 
+        flushChangedLines(); // before highlighting, rendering a line again removes its highlight
         CodeEditor.scrollToAddr(ipInsideArena, false); // make sure to scroll to it even the current line marker is on it
         if (ipInsideArena == m_lastDbgAddr && isAlive == m_lastIsAlive) {
+            updateHeat();
             return; // nothing to do, the line is what we want it to be
         }
         if (m_lastDbgElement != null) // remove the last thing we put there
             m_lastDbgElement.classList.remove(m_lastIsAlive ? "current_dbg" : "current_dbg_dead");
+        m_lastDbgElement = null;
+        m_lastDbgAddr = -1;
 
         // the first call to this is before debugMode is started to set the first debug line.
         // in this case we don't want to disassemble since the dbglines have not even been inited yet. sort of a hack.
-        if (m_dbglines[ipInsideArena] == null) {
-            // got to a null line, means this address is hidden and is part of a preceding Opcode, first find that
+        if (m_lines.isHidden(ipInsideArena)) {
+            // got to a hidden line, means this address is part of a preceding Opcode, first find that
             int opcodeAddr = ipInsideArena;
-            while (m_dbglines[opcodeAddr] == null)
+            while (m_lines.isHidden(opcodeAddr))
                 --opcodeAddr;
             // fill the size of this Opcode with db lines,
             // do this before disassembly of the IP line to make sure we've erased the old Opcode correctly
             do {
                 setByteFromMem(opcodeAddr);
                 ++opcodeAddr;
-            } while (m_dbglines[opcodeAddr] == null);
+            } while (m_lines.isHidden(opcodeAddr));
             // disassemble may eat at any of the db's after it, and might also each Opcode after that
             disassembleAddress(ipInsideArena, ipInsideArena);
         } else {
-            int flags = m_dbglines[ipInsideArena].flags;
-            if ((flags & DbgLine.FLAG_UNPARSED) != 0 || (flags & DbgLine.FLAG_DEFINE_CODE) != 0) {
+            int flags = m_lines.getFlags(ipInsideArena);
+            if ((flags & DbgLines.FLAG_UNPARSED) != 0 || (flags & DbgLines.FLAG_DEFINE_CODE) != 0) {
                 disassembleAddress(ipInsideArena, ipInsideArena);
             }
         }
 
 
+        flushChangedLines();
+        updateHeat();
+        highlightDebugLine(ipInsideArena, isAlive);
+        this.m_lastDbgAddr = ipInsideArena;
+        this.m_lastDbgAddrEnd = m_lastDbgAddr + 1;
+        m_lastIsAlive = isAlive;
+    }
+
+    // the profile of the warrior in the editor as a heat mark on the lines in view, with the percent of its time
+    // spent at the address. the mark is in attributes of the line element so rendering the line again keeps it
+    private void updateHeat() {
+        War war = codeEditor.getCurrentCompetition().getCurrentWar();
+        Warrior warrior = getCurrentWarrior();
+        WarriorProfile profile = (war == null || warrior == null) ? null : war.getProfile(warrior);
+        if (profile == null || profile.getTotalHits() == 0) {
+            if (m_heatShown)
+                clearHeat();
+            return;
+        }
+        m_heatShown = true;
+        updateHeat(profile, m_atScrollP1);
+        updateHeat(profile, m_atScrollP2);
+    }
+
+    private void updateHeat(WarriorProfile profile, int pagenum) {
+        if (pagenum == -1)
+            return;
+        PageInfo page = codeEditor.getPages()[pagenum];
+        for (int addr = page.startAddr; addr < page.endAddr; ++addr) {
+            int hits = profile.getHits(addr);
+            int level = (hits == 0) ? 0 : 1 + (int)((long)(HEAT_LEVELS - 1) * hits / profile.getMaxHits());
+            if (level == 0 && m_heatLevel[addr] == 0)
+                continue;
+            HTMLElement dline = (HTMLElement) DomGlobal.document.getElementById("d" + addr);
+            if (m_heatLevel[addr] != 0)
+                dline.classList.remove("dbg_heat" + m_heatLevel[addr]);
+            m_heatLevel[addr] = (byte)level;
+            if (level == 0) {
+                dline.removeAttribute("data-heat");
+                continue;
+            }
+            dline.classList.add("dbg_heat" + level);
+            dline.setAttribute("data-heat", Format.percent(hits, profile.getTotalHits()));
+        }
+    }
+
+    private void clearHeat() {
+        for (int addr = 0; addr < m_arenaSize; ++addr) {
+            if (m_heatLevel[addr] == 0)
+                continue;
+            HTMLElement dline = (HTMLElement) DomGlobal.document.getElementById("d" + addr);
+            dline.classList.remove("dbg_heat" + m_heatLevel[addr]);
+            dline.removeAttribute("data-heat");
+            m_heatLevel[addr] = 0;
+        }
+        m_heatShown = false;
+    }
+
+    private void highlightDebugLine(int addr, boolean isAlive) {
         String ider = "d";
-        if ((m_dbglines[ipInsideArena].comments.size() > 0))
+        if ((m_lines.getFlags(addr) & DbgLines.FLAG_HAS_COMMENT) != 0)
             ider = "df"; // a line with a comment after, don't highlight the entire line, just the first line. df is assured to exist if we have this flag
 
-
-        HTMLElement dline = (HTMLElement) DomGlobal.document.getElementById(ider + ipInsideArena);
+        HTMLElement dline = (HTMLElement) DomGlobal.document.getElementById(ider + addr);
         dline.classList.add(isAlive ? "current_dbg" : "current_dbg_dead");
         m_lastDbgElement = dline;
-        this.m_lastDbgAddr = ipInsideArena;
-        this.m_lastDbgAddrEnd = m_lastDbgAddr + 1;
-        m_lastIsAlive = isAlive;
     }
 
     private void disassembleAddress(int absaddr, int addrInArea) {
-        byte[] memory_bytes = m_mem.getByteArray();
-        IDisassembler dis = new DisassemblerRiscV(memory_bytes, absaddr, memory_bytes.length);
-        String text;
-        try {
-            text = dis.nextOpcode();
-        } catch (IDisassembler.DisassemblerException e) {
+        String text = m_disassembly.getText(absaddr);
+        if (text == null) {
             Logger.log("falied @ disassembleAddress");
             return;
         }
         eraseOpcode(addrInArea); // for example replacing at the start of a long db "ABC"
-        int len = dis.lastOpcodeSize();
+        int len = m_disassembly.getSize(absaddr);
 
         StringBuilder bs = new StringBuilder();
         for (int i = 0; i < len; ++i) {
             bs.append(Format.hex2(m_mem.loadByte(absaddr + i) & 0xff));
             bs.append(SPACE_FOR_HEX);
         }
-        DbgLine opline = new DbgLine(bs.toString(), text);
-        m_dbglines[addrInArea] = opline;
-        renderLineIfInView(addrInArea, opline);
+        m_lines.set(addrInArea, bs.toString(), text, 0);
+        lineChanged(addrInArea);
         for (int i = 1; i < len; ++i) {
             // remove the lines of the bytes after it
             // don't know what opcodes I'm writing so need to make sure it remains consistent
@@ -208,10 +241,10 @@ public class Debugger {
 
     // erase the Opcode in addr, and take care to setByte the bytes after it that are affected
     private void eraseOpcode(int addrInArea) {
-        m_dbglines[addrInArea] = null;
-        renderLineIfInView(addrInArea, null);
+        m_lines.hide(addrInArea);
+        lineChanged(addrInArea);
         ++addrInArea;
-        while (m_dbglines[addrInArea] == null) {
+        while (m_lines.isHidden(addrInArea)) {
             setByteFromMem(addrInArea);
             ++addrInArea;
         }
@@ -223,16 +256,45 @@ public class Debugger {
     }
 
     public void setByte(int address, byte value) {
-        DbgLine dbgline = cache.getSingleByteLine(value);
-        m_dbglines[address] = dbgline;
-        renderLineIfInView(address, dbgline);
+        m_lines.setSingleByte(address, value);
+        lineChanged(address);
     }
 
-    private void renderLineIfInView(int address, DbgLine dbgline) {
+    // lines in pages that are not in view are rendered when their page is scrolled to
+    private void lineChanged(int address) {
+        if (m_lineChanged[address])
+            return;
+        m_lineChanged[address] = true;
         int page = address / codeEditor.PAGE_SIZE;
-        if (page == m_atScrollP1 || page == m_atScrollP2) {
-            renderLine(address, dbgline);
+        codeEditor.getPages()[page].isDirty = true;
+        if (page != m_atScrollP1 && page != m_atScrollP2)
+            return;
+        if (m_changedCount == m_changedLines.length)
+            m_changedLines = Arrays.copyOf(m_changedLines, m_changedLines.length * 2);
+        m_changedLines[m_changedCount++] = address;
+        if (!m_flushScheduled) { // in case the round doesn't end in this frame
+            m_flushScheduled = true;
+            AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+                m_flushScheduled = false;
+                flushChangedLines();
+            });
+        }
+    }
+
+    /** Renders the changed lines of the visible pages, every line once no matter how many times it changed */
+    private void flushChangedLines() {
+        boolean renderedDebugLine = false;
+        for (int i = 0; i < m_changedCount; ++i) {
+            int addr = m_changedLines[i];
+            if (!m_lineChanged[addr])
+                continue; // already rendered with its page
+            renderLine(addr);
+            m_lineChanged[addr] = false;
+            renderedDebugLine |= (addr == m_lastDbgAddr);
         }
+        m_changedCount = 0;
+        if (renderedDebugLine && !m_lines.isHidden(m_lastDbgAddr))
+            highlightDebugLine(m_lastDbgAddr, m_lastIsAlive);
     }
 
 
@@ -240,13 +302,11 @@ public class Debugger {
     public void initDebugAreaLines() {
         War war = codeEditor.getCurrentCompetition().getCurrentWar();
 
-        for (int addr = 0; addr < ARENA_SIZE; ++addr) {
-            m_dbglines[addr] = m_fillCmd;
-        }
+        m_lines.clear();
         for (CodeEditor.PageInfo p : codeEditor.getPages())
             p.isDirty = true;
-
-        m_dbgBreakpoints = new PlayersPanel.Breakpoint[ARENA_SIZE];
+        Arrays.fill(m_lineChanged, true);
+        m_changedCount = 0;
 
         for (int i = 0; i < war.getNumWarriors(); ++i) {
             Warrior w = war.getWarrior(i);
@@ -260,54 +320,46 @@ public class Debugger {
             for (CodeEditor.LstLine lstline : code.lines)
                 lstline.tmp_br = null;
             for (PlayersPanel.Breakpoint br : code.breakpoints) {
+                br.hits = 0;
                 assert br.lineNum - 1 < code.lines.size() : "unexpected lineNum in breakpoint";
                 code.lines.get(br.lineNum - 1).tmp_br = br;
             }
 
-            DbgLine last_dbgline = getFirstDbgLine(playerLoadOffset);
+            int lastLineAddr = getFirstDbgLine(playerLoadOffset);
 
             for (int lsti = 0; lsti < code.lines.size(); ++lsti) {
                 CodeEditor.LstLine lstline = code.lines.get(lsti);
                 //If line is a comment
                 if (lstline.address == -1) {
-                    assert last_dbgline != null : "Unexpected blank prev line";
-                    last_dbgline.comments.add(lstline.code);
+                    m_lines.addComment(lastLineAddr, lstline.code);
                 } else {
                     int loadAddr = lstline.address + playerLoadOffset;
-                    DbgLine dbgline = new DbgLine(lstline.opcode, lstline.code);
+                    m_lines.set(loadAddr, lstline.opcode, lstline.code, codeEditor.isDefineCode(lstline.code) ? DbgLines.FLAG_DEFINE_CODE : 0);
+                    m_lines.setSource(loadAddr, lsti + 1, i);
 
-                    if (codeEditor.isDefineCode(lstline.code))
-                        dbgline.flags = DbgLine.FLAG_DEFINE_CODE;
-
-                    if (lsti <= DbgLine.FLAG_LSTLINE_MAX) {// lines above 2^16 are not tracked... should not come to this but just to be safe
-                        dbgline.flags |= ((lsti + 1) << DbgLine.FLAG_LSTLINE_SHIFT);
-                        dbgline.flags |= (i << DbgLine.FLAG_PLAYER_NUM_SHIFT);
-                    }
-                    m_dbglines[loadAddr] = dbgline;
-
-                    last_dbgline = dbgline;
+                    lastLineAddr = loadAddr;
 
                     for (int j = 1; j < lstline.opcodesCount; ++j) {
-                        m_dbglines[loadAddr + j] = null;
+                        m_lines.hide(loadAddr + j);
                     }
 
                     if (lstline.tmp_br != null)
-                        m_dbgBreakpoints[loadAddr] = lstline.tmp_br;
+                        m_lines.setBreakpoint(loadAddr, lstline.tmp_br);
 
                 }
             }
         }
     }
 
-    private DbgLine getFirstDbgLine(int playerLoadOffset) {
+    private int getFirstDbgLine(int playerLoadOffset) {
         // comment or label on the first line, need to belong to the address before first
         int beforeFirst = playerLoadOffset - 1;
-        // it's the shared DbgLine from above, make a copy of it since we don't want to change it
-        if (m_dbglines[beforeFirst] == null || m_dbglines[beforeFirst] == m_fillCmd) {
-            m_dbglines[beforeFirst] = new DbgLine();
+        // it shows the shared fill line, give it a line of its own to hold the comments
+        if (m_lines.isHidden(beforeFirst) || m_lines.isFill(beforeFirst)) {
+            m_lines.setBlank(beforeFirst);
         }
 
-        return m_dbglines[beforeFirst];
+        return beforeFirst;
     }
 
 
@@ -319,21 +371,20 @@ public class Debugger {
         PlayersPanel.Breakpoint br;
         boolean wasAdded = false;
 
-        if (m_dbgBreakpoints[addr] == null) {
+        br = m_lines.getBreakpoint(addr);
+        if (br == null) {
             br = new PlayersPanel.Breakpoint(-1);
-            m_dbgBreakpoints[addr] = br;
+            m_lines.setBreakpoint(addr, br);
             wasAdded = true;
         } else {
-            br = m_dbgBreakpoints[addr];
-            m_dbgBreakpoints[addr] = null;
+            m_lines.setBreakpoint(addr, null);
         }
 
         War war = codeEditor.getCurrentCompetition().getCurrentWar();
 
-        DbgLine dbgline = getDbgLine(addr);
-        int lsti = (dbgline.flags & DbgLine.FLAG_LSTLINE) >> DbgLine.FLAG_LSTLINE_SHIFT;
+        int lsti = m_lines.getLstLine(addr);
         if (lsti >= 1) {
-            int playeri = (dbgline.flags & DbgLine.FLAG_PLAYER_NUM) >> DbgLine.FLAG_PLAYER_NUM_SHIFT;
+            int playeri = m_lines.getPlayer(addr);
             Warrior warrior = war.getWarrior(playeri);
 
             PlayersPanel.Code codeObj = codeEditor.getPlayerPanel().findCode(warrior.getLabel());
@@ -354,30 +405,31 @@ public class Debugger {
             if (codeObj == codeEditor.getPlayerPanel().getCodeInEditor())
                 codeEditor.setLineNumBreakpoint(lsti, wasAdded);
         }
-        renderLine(addr, dbgline);
+        renderLine(addr);
     }
 
-    // dbgline should already be in m_dgblines
+    // the line should already be in m_lines
     // dXXXXX is the whole line, possible containing the following comment lines
     // dfXXXXX is just the first line that is not a comment - markable by debugger when stepping
     // daXXXXX is the address of the line (not preset in comment lines)
-    public void renderLine(int addr, DbgLine dbgline) {
+    public void renderLine(int addr) {
         String addrstr = Integer.toString(addr);
         HTMLElement dline = (HTMLElement) DomGlobal.document.getElementById("d" + addrstr);
-        if (dbgline == null) {
+        if (m_lines.isHidden(addr)) {
             dline.style.display = "none";
             return;
         }
 
         String addrhex = Format.hex4(addr);
-        if (dbgline.comments.size() > 0) { // this div tag is closed inside dbgline.getText() before the comment starts
-            dline.innerHTML = "<div id='df" + addrstr + "'><span id='da" + addrstr + "'>" + addrhex + "</span>  " + dbgline.getText();
-            for(String comment : dbgline.comments)
+        List<String> comments = m_lines.getComments(addr);
+        if (comments.size() > 0) { // this div tag is closed before the comment starts
+            dline.innerHTML = "<div id='df" + addrstr + "'><span id='da" + addrstr + "'>" + addrhex + "</span>  " + m_lines.getText(addr);
+            for(String comment : comments)
                 dline.innerHTML += "</div><div class='dbg_comment_line'><span class='dbg_opcodes'></span>" + comment;
             dline.innerHTML += "</div>";
         }
         else
-            dline.innerHTML = "<span id='da" + addrstr + "'>" + addrhex + "</span>  " + dbgline.getText();
+            dline.innerHTML = "<span id='da" + addrstr + "'>" + addrhex + "</span>  " + m_lines.getText(addr);
         dline.removeAttribute("style");
 
         HTMLElement da = (HTMLElement) DomGlobal.document.getElementById("da" + addrstr);
@@ -418,10 +470,10 @@ public class Debugger {
         return war.getWarriorByLabel(label);
     }
 
-    public static int getWarrirorIp(Warrior w) {
+    private int getWarrirorIp(Warrior w) {
         if (w == null)
             return -1;
-        return w.getCpuState().getPc() & 0xFFFF;
+        return w.getCpuState().getPc() & (m_arenaSize - 1);
     }
 
     // from javascript scroll of debug area
@@ -432,37 +484,35 @@ public class Debugger {
         if (!page.isDirty)
             return;
         for (int addr = page.startAddr; addr < page.endAddr; ++addr) {
-            DbgLine dbgline = getDbgLine(addr);
-            renderLine(addr, dbgline);
+            if (!m_lineChanged[addr])
+                continue;
+            renderLine(addr);
+            m_lineChanged[addr] = false;
         }
         page.isDirty = false;
     }
 
+    // sets the condition and hit count of the breakpoint at an arena address. returns an error message or null
+    public String j_setBreakpointCondition(int addr, String condition, int hitTarget) {
+        PlayersPanel.Breakpoint br = m_lines.getBreakpoint(addr);
+        if (br == null)
+            return "No breakpoint at " + Format.hex(addr);
+        try {
+            br.setCondition(condition, hitTarget);
+        }
+        catch (Exception e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
     public void j_setScrollAt(int p1, int p2) {
         j_renderIfDirty(p1);
         j_renderIfDirty(p2);
 
         m_atScrollP1 = p1;
         m_atScrollP2 = p2;
-    }
-
-    private class DefineDataCache
-    {
-        private DbgLine[] m_singleByte = new DbgLine[256]; // hold lines with db XXh for memory write events
-
-        DbgLine getSingleByteLine(byte bval) {
-            int val = bval & 0xff; // to unsigned int
-            DbgLine byteline = m_singleByte[val];
-            if (byteline == null) {
-                String hexVal = Format.hex2(val);
-                byteline = new DbgLine(hexVal, "db " + hexVal + "h");
-
-                byteline.flags = DbgLine.FLAG_UNPARSED;
-            }
-            m_singleByte[val] = byteline;
-            return byteline;
-        }
-
+        updateHeat();
     }
 
     private class DebuggerMemoryListener implements MemoryEventListener
@@ -470,28 +520,22 @@ public class Debugger {
         private EWriteState m_memWriteState = MemoryEventListener.EWriteState.INIT;
         @Override
         public void onMemoryWrite(int address, byte value) {
+            if (m_disassembly != null)
+                m_disassembly.invalidate(address);
             // don't rewrite lines if we're in the stage of putting warriors in memory
             if (m_memWriteState != EWriteState.RUN)
                 return;
-            if (address >= ARENA_SIZE)
+            if (address < 0 || address >= m_arenaSize)
                 return;
             int ipInsideArena = address; // arena * paragraph
             final int cIpInsideArea = ipInsideArena;
 
-            int page = ipInsideArena / codeEditor.PAGE_SIZE;
-            if (page < 0 || page >= codeEditor.getPages().length)
-                return;
-
-            codeEditor.getPages()[page].isDirty = true;
-
-            DbgLine existing = getDbgLine(ipInsideArena);
-
-            if (existing == m_fillCmd) {
+            if (m_lines.isFill(ipInsideArena)) {
                 setByte(ipInsideArena, value);
             }
             else  {
                 // find where this Opcode starts
-                while (getDbgLine(ipInsideArena) == null)
+                while (m_lines.isHidden(ipInsideArena))
                     --ipInsideArena;
 
                 // rewriting only a single Opcode so its not possible to cross to a new Opcode which will need reparsing
@@ -100,6 +100,11 @@ public class Color {
                          getAlpha());
     }
 
+    /** @return the color as a pixel of a little endian Uint32Array view of ImageData, 0xAABBGGRR */
+    public int toPixel() {
+        return ((int)(m_a * 255 + 0.5f) << 24) | (m_b << 16) | (m_g << 8) | m_r;
+    }
+
     public String toString() {
         if (m_a == 1.0)
             return "rgb(" + Integer.toString(m_r) + "," + Integer.toString(m_g) + "," + Integer.toString(m_b) + ")";
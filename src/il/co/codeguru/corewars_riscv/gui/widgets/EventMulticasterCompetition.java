@@ -1,6 +1,7 @@
 package il.co.codeguru.corewars_riscv.gui.widgets;
 
 import il.co.codeguru.corewars_riscv.war.CompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.SampledCompetitionEventListener;
 import il.co.codeguru.corewars_riscv.war.Warrior;
 
 import java.util.*;
@@ -18,10 +19,60 @@ public class EventMulticasterCompetition extends EventMulticasterBase<Competitio
         competeProxy = new CompeteHandler();
     }
 
+    // listeners that asked for events when not debugging, filled by doneAdding()
+    private SampledCompetitionEventListener[] mSampled = new SampledCompetitionEventListener[0];
+    private int[] mSampledIntervals = new int[0];
+    private int mRoundInterval = 0;
+
+    @Override
+    public void doneAdding() {
+        List<SampledCompetitionEventListener> sampled = new ArrayList<>();
+        for (CompetitionEventListener lis : mListeners) {
+            if (lis instanceof SampledCompetitionEventListener)
+                sampled.add((SampledCompetitionEventListener)lis);
+        }
+        super.doneAdding();
+
+        mSampled = sampled.toArray(new SampledCompetitionEventListener[0]);
+        mSampledIntervals = new int[mSampled.length];
+        mRoundInterval = 0;
+        for (int i = 0; i < mSampled.length; ++i) {
+            int interval = Math.max(0, mSampled[i].getRoundInterval());
+            mSampledIntervals[i] = interval;
+            if (interval > 0)
+                mRoundInterval = gcd(mRoundInterval, interval);
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * @return how often the competeProxy needs to get onRound and onEndRound. every round that is a multiple of
+     * this, or 0 if no listener wants rounds when not debugging
+     */
+    public int getCompeteRoundInterval() {
+        return mRoundInterval;
+    }
+
     private class CompeteHandler  implements CompetitionEventListener {
+        private int mRound; // of the last onRound, for onEndRound
+
         public void onWarPreStartClear() {
+            for (SampledCompetitionEventListener lis : mSampled) {
+                lis.onWarPreStartClear();
+            }
         }
         public void onWarStart() {
+            for (SampledCompetitionEventListener lis : mSampled) {
+                lis.onWarStart();
+            }
         }
         @Override
         public void onWarEnd(int reason, String winners, boolean inDebug) {
@@ -31,10 +82,21 @@ public class EventMulticasterCompetition extends EventMulticasterBase<Competitio
         }
         @Override
         public void onRound(int round) {
+            mRound = round;
+            for (int i = 0; i < mSampled.length; ++i) {
+                if (mSampledIntervals[i] > 0 && round % mSampledIntervals[i] == 0)
+                    mSampled[i].onRound(round);
+            }
         }
         public void onWarriorBirth(Warrior w) {
+            for (SampledCompetitionEventListener lis : mSampled) {
+                lis.onWarriorBirth(w);
+            }
         }
         public void onWarriorDeath(Warrior warrior, String reason) {
+            for (SampledCompetitionEventListener lis : mSampled) {
+                lis.onWarriorDeath(warrior, reason);
+            }
         }
         @Override
         public void onCompetitionStart() {
@@ -51,6 +113,10 @@ public class EventMulticasterCompetition extends EventMulticasterBase<Competitio
         }
         @Override
         public void onEndRound() {
+            for (int i = 0; i < mSampled.length; ++i) {
+                if (mSampledIntervals[i] > 0 && mRound % mSampledIntervals[i] == 0)
+                    mSampled[i].onEndRound();
+            }
         }
 
         public void onPaused() {
@@ -10,14 +10,38 @@ public class EventMulticasterMemory extends EventMulticasterBase<MemoryEventList
 
     public MemoryEventListener debugProxy, competeProxy;
 
+    // in compete mode a sample of the writes still goes to this listener
+    private MemoryEventListener sampledListener = null;
+    private int sampleEvery = 1;
+    private int untilSample = 1;
+    private int sampleRandom = 0x2545F491;
+
     public EventMulticasterMemory() {
         debugProxy = new DebugHandler();
         competeProxy = new CompeteHandler();
     }
 
+    /**
+     * Sets a listener that receives about one of every sampleEvery writes in compete mode, when the other
+     * listeners receive none. The gaps between samples are random so they don't follow the loops of a warrior.
+     * @param listener null to stop sampling
+     */
+    public void setCompeteSampling(MemoryEventListener listener, int sampleEvery) {
+        sampledListener = listener;
+        this.sampleEvery = sampleEvery;
+        untilSample = sampleEvery;
+    }
+
     private class CompeteHandler implements MemoryEventListener {
         @Override
         public void onMemoryWrite(int address, byte value) {
+            if (sampledListener == null || --untilSample > 0)
+                return;
+            sampleRandom ^= sampleRandom << 13;
+            sampleRandom ^= sampleRandom >>> 17;
+            sampleRandom ^= sampleRandom << 5;
+            untilSample = 1 + (sampleRandom >>> 1) % (2 * sampleEvery - 1);
+            sampledListener.onMemoryWrite(address, value);
         }
 
         @Override
@@ -0,0 +1,107 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.EngineMetrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the metrics of a Competition as an MXBean in the platform MBean server, so that a running competition
+ * can be watched with jconsole or any JMX client without attaching a profiler.
+ */
+public class EngineMetricsJmx implements EngineMetricsMXBean {
+    public static final String DEFAULT_NAME = "il.co.codeguru.corewars_riscv:type=EngineMetrics";
+
+    private final Competition competition;
+
+    public EngineMetricsJmx(Competition competition) {
+        this.competition = competition;
+    }
+
+    /** registers the metrics of the competition under DEFAULT_NAME, replacing the one registered before */
+    public static ObjectName register(Competition competition) throws JMException {
+        return register(competition, new ObjectName(DEFAULT_NAME));
+    }
+
+    public static ObjectName register(Competition competition, ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(new EngineMetricsJmx(competition), name);
+        return name;
+    }
+
+    public static void unregister(ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+    }
+
+    @Override
+    public long getTotalInstructions() {
+        return competition.getMetricsSnapshot().getTotalInstructions();
+    }
+
+    @Override
+    public Map<String, Long> getInstructionsByClass() {
+        EngineMetrics m = competition.getMetricsSnapshot();
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < Instruction.CLASS_COUNT; ++i)
+            map.put(Instruction.CLASS_NAMES[i], m.getInstructions(i));
+        return map;
+    }
+
+    @Override
+    public long getWarsStarted() {
+        return competition.getMetricsSnapshot().getWarsStarted();
+    }
+
+    @Override
+    public Map<String, Long> getWarsEndedByReason() {
+        EngineMetrics m = competition.getMetricsSnapshot();
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < EngineMetrics.END_REASON_COUNT; ++i)
+            map.put(EngineMetrics.END_REASON_NAMES[i], m.getWarsEnded(i));
+        return map;
+    }
+
+    @Override
+    public long[] getRoundsHistogram() {
+        return competition.getMetricsSnapshot().getRoundsHistogram();
+    }
+
+    @Override
+    public Map<String, Long> getDeathsByCause() {
+        EngineMetrics m = competition.getMetricsSnapshot();
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < EngineMetrics.DEATH_COUNT; ++i)
+            map.put(EngineMetrics.DEATH_NAMES[i], m.getDeaths(i));
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getMemoryFaultsByType() {
+        EngineMetrics m = competition.getMetricsSnapshot();
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < MemoryException.FAULT_COUNT; ++i)
+            map.put(MemoryException.FAULT_NAMES[i], m.getMemoryFaults(i));
+        return map;
+    }
+
+    @Override
+    public long getTotalWarMillis() {
+        return competition.getMetricsSnapshot().getTotalWarMillis();
+    }
+
+    @Override
+    public long getMaxWarMillis() {
+        return competition.getMetricsSnapshot().getMaxWarMillis();
+    }
+}
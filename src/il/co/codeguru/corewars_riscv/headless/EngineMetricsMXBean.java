@@ -0,0 +1,20 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import java.util.Map;
+
+/**
+ * The counters of EngineMetrics as seen in JMX, see EngineMetricsJmx.
+ * Every read takes a new snapshot of the competition.
+ */
+public interface EngineMetricsMXBean {
+    long getTotalInstructions();
+    Map<String, Long> getInstructionsByClass();
+    long getWarsStarted();
+    Map<String, Long> getWarsEndedByReason();
+    /** bucket i counts the wars that ran [2^(i-1), 2^i) rounds */
+    long[] getRoundsHistogram();
+    Map<String, Long> getDeathsByCause();
+    Map<String, Long> getMemoryFaultsByType();
+    long getTotalWarMillis();
+    long getMaxWarMillis();
+}
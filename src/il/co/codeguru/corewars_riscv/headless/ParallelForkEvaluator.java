@@ -0,0 +1,48 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.war.ForkEvaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the continuations of a ForkEvaluation on a thread pool.
+ * Every continuation runs its own fork, made before any of them runs, so they don't need any locking.
+ */
+public class ParallelForkEvaluator {
+    private final int threads;
+
+    public ParallelForkEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelForkEvaluator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /** @return the win probability of every warrior, see ForkEvaluation.getWinProbabilities() */
+    public float[] evaluate(final ForkEvaluation evaluation) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, evaluation.getCount())));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < evaluation.getCount(); ++i) {
+                final int index = i;
+                tasks.add(() -> {
+                    evaluation.runFork(index);
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(tasks))
+                result.get(); // rethrows what the fork threw
+        }
+        finally {
+            pool.shutdown();
+        }
+        return evaluation.getWinProbabilities();
+    }
+}
@@ -0,0 +1,106 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarriorData;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+import il.co.codeguru.corewars_riscv.war.WarriorProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Writes the profiles of the warriors of a war as JSON: for every warrior its opcode class mix and the hits of every
+ * address it ran, most hit first.
+ *
+ * As a program it runs a single war of warrior binaries with profiling on and writes its profiles,
+ * arguments: [report file] [seed] [warrior.bin]...
+ */
+public class ProfileExport {
+
+    /** @param war a war that was profiled, see War.setProfiling() */
+    public static void write(War war, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("[");
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            WarriorProfile profile = war.getProfile(war.getWarrior(i));
+            if (profile == null)
+                throw new IllegalStateException("the war was not profiled");
+            out.print("  {\"name\": \"" + escape(war.getWarrior(i).getName()) + "\", \"totalHits\": " + profile.getTotalHits() + ", \"opcodeClasses\": {");
+            for (int c = 0; c < Instruction.CLASS_COUNT; ++c)
+                out.print((c > 0 ? ", " : "") + "\"" + Instruction.CLASS_NAMES[c] + "\": " + profile.getOpcodeClassCount(c));
+            out.print("},\n   \"hits\": [");
+            boolean first = true;
+            for (int address : addressesByHits(profile)) {
+                out.print((first ? "" : ", ") + "[" + address + ", " + profile.getHits(address) + "]");
+                first = false;
+            }
+            out.println("]}" + (i + 1 < war.getNumWarriors() ? "," : ""));
+        }
+        out.println("]");
+        out.flush();
+    }
+
+    // the addresses that were hit, most hit first and by address among equals
+    private static Integer[] addressesByHits(final WarriorProfile profile) {
+        int count = 0;
+        for (int a = 0; a < profile.getArenaSize(); ++a)
+            if (profile.getHits(a) != 0)
+                ++count;
+        Integer[] addresses = new Integer[count];
+        count = 0;
+        for (int a = 0; a < profile.getArenaSize(); ++a)
+            if (profile.getHits(a) != 0)
+                addresses[count++] = a;
+        Arrays.sort(addresses, (x, y) -> {
+            int c = Integer.compare(profile.getHits(y), profile.getHits(x));
+            return (c != 0) ? c : Integer.compare(x, y);
+        });
+        return addresses;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: ProfileExport [report file] [seed] [warrior.bin]...");
+            System.exit(1);
+        }
+        Logger.setTestingMode();
+        WarriorGroup[] groups = new WarriorGroup[args.length - 2];
+        for (int i = 2; i < args.length; ++i) {
+            File file = new File(args[i]);
+            String name = file.getName().replaceFirst("\\.bin$", "");
+            groups[i - 2] = new WarriorGroup(name);
+            groups[i - 2].addWarrior(new WarriorData(name, Files.readAllBytes(file.toPath()), name, -1));
+        }
+        War war = new War(null, null, false, false);
+        war.setSeed(Long.parseLong(args[1]));
+        war.loadWarriorGroups(groups);
+        war.setProfiling(true);
+        int round = 0;
+        while (round < Competition.MAX_ROUND && !war.isOver())
+            war.nextRound(round++);
+
+        File report = new File(args[0]);
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        try (Writer out = Files.newBufferedWriter(report.toPath())) {
+            write(war, out);
+        }
+        catch (IOException e) {
+            System.err.println("failed writing " + report + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("war ended in round " + round + ", profiles written to " + report);
+    }
+}
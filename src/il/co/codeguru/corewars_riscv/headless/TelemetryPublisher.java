@@ -0,0 +1,355 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import com.sun.net.httpserver.HttpServer;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.EngineMetrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the progress of running competitions as JSON snapshots: the wars done out of the wars planned, the wars
+ * and rounds a second since the last snapshot, an estimate of the time left, the top scores and how busy the thread
+ * of every worker is. Every worker is a Competition with the thread that runs it.
+ *
+ * The snapshots are taken on a timer of the publisher from the counters the competitions keep anyway, see
+ * Competition.getMetricsSnapshot(), so publishing costs the running wars nothing. They go to a Sink, which appends
+ * them as lines to a file or serves the last one on a loopback HTTP port.
+ *
+ * As a program it runs a competition of a directory of warrior binaries on worker threads while publishing,
+ * arguments: [--file telemetry.ndjson | --http port] [--period millis] [--workers count] [--wars count]
+ * [--groups count] [--seed seed] [warriors dir]
+ */
+public class TelemetryPublisher implements Closeable {
+    public static final int DEFAULT_TOP = 10;
+    public static final long DEFAULT_PERIOD_MILLIS = 5000;
+
+    /** Where the snapshots go */
+    public interface Sink extends Closeable {
+        void publish(String json) throws IOException;
+    }
+
+    /** Appends every snapshot to a file as a line, newline delimited JSON */
+    public static class FileSink implements Sink {
+        private final Writer out;
+
+        public FileSink(File file) throws IOException {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null)
+                parent.mkdirs();
+            out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void publish(String json) throws IOException {
+            out.write(json);
+            out.write('\n');
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Serves the last snapshot at any path of a port of the loopback address, only to this machine */
+    public static class HttpSink implements Sink {
+        private final HttpServer server;
+        private volatile byte[] last = "{}".getBytes(StandardCharsets.UTF_8);
+
+        /** @param port 0 for any free port, see getPort() */
+        public HttpSink(int port) throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/", exchange -> {
+                byte[] body = last;
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        @Override
+        public void publish(String json) {
+            last = json.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private static class Worker {
+        final String name;
+        final Competition competition;
+        final Thread thread;
+        long lastCpuNanos = -1;
+        long lastWars = 0;
+
+        Worker(String name, Competition competition, Thread thread) {
+            this.name = name;
+            this.competition = competition;
+            this.thread = thread;
+        }
+    }
+
+    private final Sink sink;
+    private final int top;
+    private final List<Worker> workers = new ArrayList<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private ScheduledExecutorService timer = null;
+
+    // guarded by this, the state of the last snapshot
+    private final long startNanos = System.nanoTime();
+    private long lastNanos = startNanos;
+    private long lastWars = 0;
+    private long lastRounds = 0;
+
+    /** @param top how many of the top scores every snapshot has */
+    public TelemetryPublisher(Sink sink, int top) {
+        this.sink = sink;
+        this.top = top;
+    }
+
+    /**
+     * Adds a competition to the snapshots, add all of them before start()
+     * @param thread the thread that runs the competition, for how busy it is. null when not known
+     */
+    public synchronized void addWorker(String name, Competition competition, Thread thread) {
+        Worker w = new Worker(name, competition, thread);
+        w.lastCpuNanos = cpuNanos(thread);
+        workers.add(w);
+    }
+
+    /** Publishes a snapshot every period, on a thread of the publisher */
+    public synchronized void start(long periodMillis) {
+        if (timer != null)
+            return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "telemetry");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                publish();
+            }
+            catch (IOException | RuntimeException e) {
+                Logger.error("publishing telemetry failed " + e.toString());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Takes a snapshot and publishes it now */
+    public void publish() throws IOException {
+        sink.publish(sample());
+    }
+
+    // the cpu time of the thread, 0 before it starts, -1 when it isn't known or the thread ended
+    private long cpuNanos(Thread thread) {
+        if (thread == null || !threads.isThreadCpuTimeSupported())
+            return -1;
+        if (thread.getState() == Thread.State.NEW)
+            return 0;
+        try {
+            return threads.getThreadCpuTime(thread.getId());
+        }
+        catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Takes a snapshot. The rates are from the snapshot before it, so taking one outside of the timer makes the next
+     * one of the timer cover less time.
+     * @return the snapshot as a line of JSON
+     */
+    public synchronized String sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastNanos) / 1e9;
+        double elapsed = Math.max(1, now - startNanos) / 1e9;
+
+        long wars = 0, planned = 0, rounds = 0;
+        StringBuilder workersJson = new StringBuilder();
+        Map<String, Float> scores = new HashMap<>();
+        for (Worker w : workers) {
+            EngineMetrics m = w.competition.getMetricsSnapshot();
+            wars += m.getWarsEnded();
+            planned += m.getWarsPlanned();
+            rounds += m.getRounds();
+            for (Map.Entry<String, Float> e : w.competition.getScoresSnapshot().entrySet())
+                scores.merge(e.getKey(), e.getValue(), Float::sum);
+
+            long cpu = cpuNanos(w.thread);
+            String utilisation = "null";
+            if (cpu >= 0 && w.lastCpuNanos >= 0)
+                utilisation = String.format(Locale.ROOT, "%.3f", Math.min(1.0, (cpu - w.lastCpuNanos) / 1e9 / seconds));
+            else if (w.thread != null && w.thread.getState() == Thread.State.TERMINATED)
+                utilisation = "0.000"; // done with its wars
+            w.lastCpuNanos = cpu;
+            if (workersJson.length() > 0)
+                workersJson.append(", ");
+            workersJson.append(String.format(Locale.ROOT, "{\"name\": \"%s\", \"warsDone\": %d, \"warsTotal\": %d, " +
+                            "\"warsPerSec\": %.3f, \"utilisation\": %s}",
+                    escape(w.name), m.getWarsEnded(), m.getWarsPlanned(), (m.getWarsEnded() - w.lastWars) / seconds, utilisation));
+            w.lastWars = m.getWarsEnded();
+        }
+
+        String eta = "null"; // not known before the first war ends
+        if (wars >= planned && planned > 0)
+            eta = "0";
+        else if (wars > 0)
+            eta = String.format(Locale.ROOT, "%.1f", (planned - wars) * elapsed / wars);
+
+        List<Map.Entry<String, Float>> standings = new ArrayList<>(scores.entrySet());
+        standings.sort((a, b) -> {
+            int c = Float.compare(b.getValue(), a.getValue());
+            return (c != 0) ? c : a.getKey().compareTo(b.getKey());
+        });
+        StringBuilder standingsJson = new StringBuilder();
+        for (int i = 0; i < Math.min(top, standings.size()); ++i) {
+            if (i > 0)
+                standingsJson.append(", ");
+            standingsJson.append(String.format(Locale.ROOT, "{\"name\": \"%s\", \"score\": %.3f}",
+                    escape(standings.get(i).getKey()), standings.get(i).getValue()));
+        }
+
+        String json = String.format(Locale.ROOT, "{\"time\": %d, \"elapsedSec\": %.3f, \"warsDone\": %d, \"warsTotal\": %d, " +
+                        "\"warsPerSec\": %.3f, \"roundsPerSec\": %.1f, \"etaSec\": %s, \"standings\": [%s], \"workers\": [%s]}",
+                System.currentTimeMillis(), elapsed, wars, planned, (wars - lastWars) / seconds,
+                (rounds - lastRounds) / seconds, eta, standingsJson, workersJson);
+        lastNanos = now;
+        lastWars = wars;
+        lastRounds = rounds;
+        return json;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /** Stops the timer, publishes a last snapshot and closes the sink */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdown();
+                try {
+                    timer.awaitTermination(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                timer = null;
+            }
+        }
+        try {
+            publish();
+        }
+        finally {
+            sink.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File file = null;
+        int port = -1;
+        long period = DEFAULT_PERIOD_MILLIS;
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        int wars = 1;
+        int groups = 4;
+        long seed = 1;
+        String dir = null;
+        boolean usage = false;
+        for (int i = 0; i < args.length; ++i) {
+            boolean hasValue = i + 1 < args.length;
+            if (args[i].equals("--file") && hasValue) file = new File(args[++i]);
+            else if (args[i].equals("--http") && hasValue) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--period") && hasValue) period = Long.parseLong(args[++i]);
+            else if (args[i].equals("--workers") && hasValue) workerCount = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--wars") && hasValue) wars = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--groups") && hasValue) groups = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed") && hasValue) seed = Long.parseLong(args[++i]);
+            else if (dir == null) dir = args[i];
+            else usage = true;
+        }
+        if (usage || dir == null || (file == null) == (port < 0)) {
+            System.err.println("usage: TelemetryPublisher [--file telemetry.ndjson | --http port] [--period millis] [--workers count] " +
+                    "[--wars count] [--groups count] [--seed seed] [warriors dir or container]");
+            System.exit(1);
+        }
+        Logger.setTestingMode();
+        WarriorCorpus corpus = WarriorCorpus.read(new File(dir));
+        groups = Math.min(groups, corpus.getGroupCount());
+
+        Sink sink;
+        if (file != null) {
+            sink = new FileSink(file);
+        }
+        else {
+            HttpSink http = new HttpSink(port);
+            System.out.println("telemetry at http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + http.getPort() + "/");
+            sink = http;
+        }
+        TelemetryPublisher publisher = new TelemetryPublisher(sink, DEFAULT_TOP);
+
+        // every worker runs its share of the wars of every combination, with seeds of its own
+        workerCount = Math.max(1, Math.min(workerCount, wars));
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workerCount; ++i) {
+            final Competition competition = new Competition();
+            competition.setSeed(seed + i * 1000003L);
+            if (!corpus.load(competition.getWarriorRepository(), false))
+                throw new Exception("failed loading the warriors");
+            competition.competitionEventCaster.doneAdding();
+            competition.memoryEventCaster.doneAdding();
+            final int share = wars / workerCount + (i < wars % workerCount ? 1 : 0);
+            final int groupsPerWar = groups;
+            Thread thread = new Thread(() -> {
+                try {
+                    competition.runCompetition(share, groupsPerWar, false, false, false);
+                    while (competition.continueRun())
+                        ;
+                }
+                catch (Exception e) {
+                    Logger.error("worker failed " + e.toString());
+                }
+            }, "worker-" + i);
+            publisher.addWorker(thread.getName(), competition, thread);
+            threads.add(thread);
+        }
+        publisher.start(period);
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        publisher.close();
+    }
+}
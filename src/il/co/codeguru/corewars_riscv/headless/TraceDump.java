@@ -0,0 +1,91 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.utils.disassembler.DisassemblerRiscV;
+import il.co.codeguru.corewars_riscv.utils.disassembler.IDisassembler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints an execution trace as text, a line for every record:
+ * <pre>
+ *   round warrior pc: raw instruction [rd=value] [address: bytes]...
+ * </pre>
+ *
+ * As a program it dumps a trace file to the standard output,
+ * arguments: [--rounds first:last] [--warrior index]... [trace file]
+ */
+public class TraceDump {
+
+    /** Prints the records of the trace that the filter keeps, and all the gaps */
+    public static void dump(TraceReader reader, TraceFilter filter, Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        String[] names = reader.getWarriorNames();
+        byte[] code = new byte[4];
+        while (reader.next()) {
+            if (reader.getKind() == TraceReader.GAP) {
+                out.println("... " + reader.getDropped() + " records dropped");
+                continue;
+            }
+            if (!filter.matches(reader.getRound(), reader.getWarrior()))
+                continue;
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("%7d %-12s %05x: ", reader.getRound(), names[reader.getWarrior()], reader.getPc()));
+            if (reader.getKind() == TraceReader.FAILED) {
+                line.append("failed");
+            }
+            else {
+                int raw = reader.getRaw();
+                line.append(reader.getSize() == 2 ? String.format("    %04x ", raw) : String.format("%08x ", raw));
+                for (int b = 0; b < 4; ++b)
+                    code[b] = (byte)(raw >> (b * 8));
+                line.append(String.format("%-24s", disassemble(code, reader.getSize())));
+                if (reader.getRd() != 0)
+                    line.append(String.format(" x%d=%08x", reader.getRd(), reader.getRdValue()));
+            }
+            for (int i = 0; i < reader.getWriteCount(); ++i) {
+                if (i == 0 || reader.getWriteAddress(i) != reader.getWriteAddress(i - 1) + 1)
+                    line.append(String.format(" [%05x]:", reader.getWriteAddress(i)));
+                line.append(String.format(" %02x", reader.getWriteValue(i) & 0xff));
+            }
+            out.println(line.toString().replaceAll("\\s+$", ""));
+        }
+        out.flush();
+    }
+
+    private static String disassemble(byte[] code, int size) {
+        try {
+            return new DisassemblerRiscV(code, 0, size).nextOpcode();
+        }
+        catch (IDisassembler.DisassemblerException e) {
+            return "?";
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+        TraceFilter filter = TraceFilter.parse(args);
+        if (args.size() != 1) {
+            System.err.println("usage: TraceDump [--rounds first:last] [--warrior index]... [trace file]");
+            System.exit(1);
+        }
+        File file = new File(args.get(0));
+        try (TraceReader reader = new TraceReader(Files.newInputStream(file.toPath()))) {
+            PrintWriter out = new PrintWriter(System.out);
+            String[] names = reader.getWarriorNames();
+            for (int i = 0; i < names.length; ++i)
+                out.println("# warrior " + i + ": " + names[i]);
+            dump(reader, filter, out);
+        }
+        catch (IOException e) {
+            System.err.println("failed reading " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
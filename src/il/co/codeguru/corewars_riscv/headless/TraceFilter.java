@@ -0,0 +1,71 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Which instructions of a trace to keep: a range of rounds and a set of warriors.
+ */
+public class TraceFilter {
+    public static final TraceFilter ALL = new TraceFilter(0, Integer.MAX_VALUE);
+
+    private final int firstRound;
+    private final int lastRound;
+    private final BitSet warriors; // all of them when null
+
+    /**
+     * @param firstRound the first round to keep
+     * @param lastRound the last round to keep, inclusive
+     * @param warriors the indices of the warriors to keep, none for all of them
+     */
+    public TraceFilter(int firstRound, int lastRound, int... warriors) {
+        this.firstRound = firstRound;
+        this.lastRound = lastRound;
+        if (warriors.length == 0) {
+            this.warriors = null;
+        }
+        else {
+            this.warriors = new BitSet();
+            for (int w : warriors)
+                this.warriors.set(w);
+        }
+    }
+
+    public boolean matches(int round, int warrior) {
+        return round >= firstRound && round <= lastRound && (warriors == null || warriors.get(warrior));
+    }
+
+    /**
+     * Takes the filter options out of the arguments of a program: --rounds first:last and --warrior index,
+     * which may come more than once.
+     * @return a filter that keeps everything when there are no filter options
+     */
+    static TraceFilter parse(List<String> args) {
+        int first = 0, last = Integer.MAX_VALUE;
+        int[] warriors = new int[0];
+        for (int i = 0; i < args.size(); ) {
+            String arg = args.get(i);
+            if (arg.equals("--rounds") && i + 1 < args.size()) {
+                String[] range = args.get(i + 1).split(":", -1);
+                if (range.length != 2)
+                    throw new IllegalArgumentException("--rounds needs first:last, got " + args.get(i + 1));
+                if (!range[0].isEmpty())
+                    first = Integer.parseInt(range[0]);
+                if (!range[1].isEmpty())
+                    last = Integer.parseInt(range[1]);
+            }
+            else if (arg.equals("--warrior") && i + 1 < args.size()) {
+                warriors = Arrays.copyOf(warriors, warriors.length + 1);
+                warriors[warriors.length - 1] = Integer.parseInt(args.get(i + 1));
+            }
+            else {
+                ++i;
+                continue;
+            }
+            args.remove(i);
+            args.remove(i);
+        }
+        return new TraceFilter(first, last, warriors);
+    }
+}
@@ -0,0 +1,99 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The layout of an execution trace and the encoding shared by the recorder and the reader.
+ *
+ * A trace starts with a header that isn't compressed: MAGIC, then the number of warriors and their names as
+ * DataOutputStream writes them. After it come blocks, each the length of its records, the length of the records
+ * deflated and the deflated records. Every block is deflated on its own, the records continue from block to block.
+ *
+ * A record is a tag byte, with the kind of the record in its low bits and flags of the fields that follow.
+ * Everything is encoded against the record before it of the same warrior, so a loop costs a few bytes a record
+ * before the compression, and less after:
+ *   round       zigzag varint of the change from the last record, only when TAG_ROUND
+ *   warrior     varint, only when TAG_WARRIOR
+ *   pc          zigzag varint of the change from the last pc of the warrior
+ *   raw         2 bytes for a compressed instruction, 4 otherwise, little endian. not in a failed record
+ *   register    the register number and the zigzag varint of the change from its last value, only when TAG_REGISTER
+ *   writes      the number of runs of consecutive bytes and for every run the zigzag varint of its address from the
+ *               end of the last run, its length and its bytes, only when TAG_WRITES
+ * A gap record is only the tag and the number of records that were dropped before it.
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x31545743; // "CWT1"
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    static final int KIND_MASK = 3;
+    static final int TAG_ROUND = 4;
+    static final int TAG_WARRIOR = 8;
+    static final int TAG_REGISTER = 16;
+    static final int TAG_WRITES = 32;
+
+    static final int REGISTERS = 32;
+
+    /** The size of a record, before the bytes it writes, is at most this */
+    static final int MAX_RECORD_SIZE = 1 + 5 + 5 + 5 + 4 + 1 + 5 + 5;
+    /** A gap record is at most this */
+    static final int MAX_GAP_SIZE = 1 + 5;
+    /** A run of written bytes is at most this, and its bytes */
+    static final int MAX_RUN_SIZE = 5 + 5;
+
+    private TraceFormat() {}
+
+    /** What the records are encoded against, kept the same by the recorder and the reader */
+    static class State {
+        int round = 0;
+        int warrior = -1;
+        int writeAddress = 0;
+        final int[] pcs;
+        final int[] registers;
+
+        State(int numWarriors) {
+            pcs = new int[numWarriors];
+            registers = new int[numWarriors * REGISTERS];
+        }
+    }
+
+    static boolean isCompressed(int raw) {
+        return (raw & 3) != 3;
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static int putVarint(byte[] b, int pos, int v) {
+        while ((v & ~0x7f) != 0) {
+            b[pos++] = (byte)((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        b[pos++] = (byte)v;
+        return pos;
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("the trace ends in the middle of a record");
+        return b;
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int v = 0, shift = 0;
+        int b;
+        do {
+            b = readByte(in);
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
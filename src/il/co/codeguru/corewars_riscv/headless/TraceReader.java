@@ -0,0 +1,232 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an execution trace that a TraceRecorder wrote, a record at a time:
+ * <pre>
+ *     while (reader.next())
+ *         if (reader.getKind() == TraceReader.INSTRUCTION) ...
+ * </pre>
+ * The getters describe the record that next() read last.
+ */
+public class TraceReader implements Closeable {
+    /** Kinds of records */
+    public static final int INSTRUCTION = 0; // an instruction that completed
+    public static final int FAILED = 1; // an instruction that killed its warrior, it has no raw code or register
+    public static final int GAP = 2; // records that were dropped, see getDropped()
+
+    private final DataInputStream in;
+    private final InputStream records;
+    private final String[] warriorNames;
+    private final TraceFormat.State state;
+
+    private int kind;
+    private int raw;
+    private int rd;
+    private int rdValue;
+    private int dropped;
+    private int writeCount;
+    private int[] writeAddresses = new int[8];
+    private byte[] writeValues = new byte[8];
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != TraceFormat.MAGIC)
+            throw new IOException("not an execution trace");
+        warriorNames = new String[this.in.readInt()];
+        for (int i = 0; i < warriorNames.length; ++i)
+            warriorNames[i] = this.in.readUTF();
+        state = new TraceFormat.State(warriorNames.length);
+        records = new BlockStream();
+    }
+
+    /** The records of the blocks one after the other */
+    private class BlockStream extends InputStream {
+        private final Inflater inflater = new Inflater();
+        private byte[] block = new byte[TraceFormat.BLOCK_SIZE];
+        private byte[] deflated = new byte[TraceFormat.BLOCK_SIZE];
+        private int length = 0;
+        private int pos = 0;
+
+        @Override
+        public int read() throws IOException {
+            if (pos == length && !nextBlock())
+                return -1;
+            return block[pos++] & 0xff;
+        }
+
+        private boolean nextBlock() throws IOException {
+            int rawLength;
+            try {
+                rawLength = in.readInt();
+            }
+            catch (EOFException e) {
+                return false;
+            }
+            int size = in.readInt();
+            if (rawLength <= 0 || size < 0)
+                throw new IOException("bad block in the trace");
+            if (block.length < rawLength)
+                block = new byte[rawLength];
+            if (deflated.length < size)
+                deflated = new byte[size];
+            in.readFully(deflated, 0, size);
+            inflater.reset();
+            inflater.setInput(deflated, 0, size);
+            try {
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int count = inflater.inflate(block, n, rawLength - n);
+                    if (count == 0 && inflater.needsInput())
+                        break;
+                    n += count;
+                }
+                if (n != rawLength)
+                    throw new IOException("bad block in the trace");
+            }
+            catch (DataFormatException e) {
+                throw new IOException("bad block in the trace: " + e.getMessage());
+            }
+            length = rawLength;
+            pos = 0;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+
+    public String[] getWarriorNames() {
+        return warriorNames.clone();
+    }
+
+    /**
+     * Reads the next record
+     * @return false at the end of the trace
+     */
+    public boolean next() throws IOException {
+        int tag = records.read();
+        if (tag < 0)
+            return false;
+        kind = tag & TraceFormat.KIND_MASK;
+        rd = 0;
+        rdValue = 0;
+        raw = 0;
+        writeCount = 0;
+        if (kind == GAP) {
+            dropped = TraceFormat.readVarint(records);
+            return true;
+        }
+        if (kind != INSTRUCTION && kind != FAILED)
+            throw new IOException("bad record in the trace");
+        if ((tag & TraceFormat.TAG_ROUND) != 0)
+            state.round += TraceFormat.unzigzag(TraceFormat.readVarint(records));
+        if ((tag & TraceFormat.TAG_WARRIOR) != 0) {
+            state.warrior = TraceFormat.readVarint(records);
+            if (state.warrior >= warriorNames.length)
+                throw new IOException("bad warrior in the trace");
+        }
+        int warrior = state.warrior;
+        state.pcs[warrior] += TraceFormat.unzigzag(TraceFormat.readVarint(records));
+        if (kind == INSTRUCTION) {
+            raw = TraceFormat.readByte(records) | (TraceFormat.readByte(records) << 8);
+            if (!TraceFormat.isCompressed(raw))
+                raw |= (TraceFormat.readByte(records) << 16) | (TraceFormat.readByte(records) << 24);
+            if ((tag & TraceFormat.TAG_REGISTER) != 0) {
+                rd = TraceFormat.readByte(records);
+                int index = warrior * TraceFormat.REGISTERS + rd;
+                state.registers[index] += TraceFormat.unzigzag(TraceFormat.readVarint(records));
+                rdValue = state.registers[index];
+            }
+        }
+        if ((tag & TraceFormat.TAG_WRITES) != 0) {
+            int runs = TraceFormat.readVarint(records);
+            for (int r = 0; r < runs; ++r) {
+                int address = state.writeAddress + TraceFormat.unzigzag(TraceFormat.readVarint(records));
+                int count = TraceFormat.readVarint(records);
+                if (writeCount + count > writeAddresses.length) {
+                    writeAddresses = Arrays.copyOf(writeAddresses, writeCount + count);
+                    writeValues = Arrays.copyOf(writeValues, writeCount + count);
+                }
+                for (int i = 0; i < count; ++i) {
+                    writeAddresses[writeCount] = address + i;
+                    writeValues[writeCount++] = (byte)TraceFormat.readByte(records);
+                }
+                state.writeAddress = address + count;
+            }
+        }
+        return true;
+    }
+
+    /** @return INSTRUCTION, FAILED or GAP */
+    public int getKind() {
+        return kind;
+    }
+
+    public int getRound() {
+        return state.round;
+    }
+
+    /** @return the index of the warrior in getWarriorNames() */
+    public int getWarrior() {
+        return state.warrior;
+    }
+
+    public int getPc() {
+        return state.pcs[state.warrior];
+    }
+
+    /** @return the code of the instruction, only the low 16 bits for a compressed one */
+    public int getRaw() {
+        return raw;
+    }
+
+    /** @return the size of the instruction in bytes */
+    public int getSize() {
+        return TraceFormat.isCompressed(raw) ? 2 : 4;
+    }
+
+    /** @return the register the instruction changed, 0 for none */
+    public int getRd() {
+        return rd;
+    }
+
+    public int getRdValue() {
+        return rdValue;
+    }
+
+    /** @return the number of bytes the instruction stored */
+    public int getWriteCount() {
+        return writeCount;
+    }
+
+    public int getWriteAddress(int index) {
+        return writeAddresses[index];
+    }
+
+    public byte getWriteValue(int index) {
+        return writeValues[index];
+    }
+
+    /** @return the number of records a gap stands for */
+    public int getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        in.close();
+    }
+}
@@ -0,0 +1,360 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.TraceSink;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarriorData;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+
+/**
+ * Records the instructions of a war to an execution trace, see TraceFormat for the layout and TraceReader for
+ * reading it back.
+ *
+ * The thread running the war only encodes the records into a ring buffer, a thread of the recorder drains the ring,
+ * deflates it a block at a time and writes the blocks, so the war never waits for the stream. When the war runs
+ * faster than the stream takes the trace and the ring fills up, the records that don't fit are dropped and a gap
+ * record tells how many, unless the recorder was made to wait for room instead.
+ *
+ * As a program it runs a single war of warrior binaries and records its trace,
+ * arguments: [--rounds first:last] [--warrior index]... [trace file] [seed] [warrior.bin]...
+ */
+public class TraceRecorder implements TraceSink, Closeable {
+    public static final int DEFAULT_RING_SIZE = 1 << 20;
+    private static final long DRAIN_PARK_NANOS = 200 * 1000;
+    private static final long FULL_PARK_NANOS = 20 * 1000;
+
+    private final DataOutputStream out;
+    private final TraceFilter filter;
+    private final boolean waitWhenFull;
+    private final TraceFormat.State state;
+
+    // the ring, written by the war thread up to head and drained up to tail. both only grow
+    private final byte[] ring;
+    private final int ringMask;
+    private volatile long head = 0;
+    private volatile long tail = 0;
+    private volatile boolean closing = false;
+    private volatile IOException failure = null;
+    private final Thread drainer;
+
+    // the instruction being recorded, only used by the war thread
+    private boolean recording = false;
+    private int round;
+    private int warrior;
+    private int pc;
+    private int writeCount = 0;
+    private int[] writeAddresses = new int[8];
+    private byte[] writeValues = new byte[8];
+    private byte[] record = new byte[recordSize(8)];
+    private long dropped = 0;
+    private long droppedSinceGap = 0;
+    private long recorded = 0;
+
+    public TraceRecorder(OutputStream out, String[] warriorNames) throws IOException {
+        this(out, warriorNames, TraceFilter.ALL, DEFAULT_RING_SIZE, false);
+    }
+
+    /**
+     * @param out where the trace is written, closed by close()
+     * @param warriorNames by warrior index, as the war has them
+     * @param filter which instructions to record
+     * @param ringSize the bytes of records the ring holds, rounded up to a power of 2
+     * @param waitWhenFull when the ring is full wait for the stream instead of dropping records
+     */
+    public TraceRecorder(OutputStream out, String[] warriorNames, TraceFilter filter, int ringSize, boolean waitWhenFull) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.filter = filter;
+        this.waitWhenFull = waitWhenFull;
+        this.state = new TraceFormat.State(warriorNames.length);
+        int size = Integer.highestOneBit(Math.max(ringSize, 2 * TraceFormat.BLOCK_SIZE) - 1) << 1;
+        ring = new byte[size];
+        ringMask = size - 1;
+
+        this.out.writeInt(TraceFormat.MAGIC);
+        this.out.writeInt(warriorNames.length);
+        for (String name : warriorNames)
+            this.out.writeUTF(name);
+
+        drainer = new Thread(this::drain, "trace-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /** @return a recorder for the warriors of the war, which is set to trace to it */
+    public static TraceRecorder attach(War war, OutputStream out, TraceFilter filter, int ringSize, boolean waitWhenFull) throws IOException {
+        String[] names = new String[war.getNumWarriors()];
+        for (int i = 0; i < names.length; ++i)
+            names[i] = war.getWarrior(i).getName();
+        TraceRecorder recorder = new TraceRecorder(out, names, filter, ringSize, waitWhenFull);
+        war.setTrace(recorder);
+        return recorder;
+    }
+
+    @Override
+    public void instructionStarting(int round, int warrior, int pc) {
+        recording = filter.matches(round, warrior);
+        this.round = round;
+        this.warrior = warrior;
+        this.pc = pc;
+        writeCount = 0;
+    }
+
+    @Override
+    public void memoryWrite(int address, byte value) {
+        if (!recording)
+            return;
+        if (writeCount == writeAddresses.length) { // more than any instruction stores
+            writeAddresses = Arrays.copyOf(writeAddresses, writeCount * 2);
+            writeValues = Arrays.copyOf(writeValues, writeCount * 2);
+            record = new byte[recordSize(writeCount * 2)];
+        }
+        writeAddresses[writeCount] = address;
+        writeValues[writeCount] = value;
+        ++writeCount;
+    }
+
+    @Override
+    public void instructionDone(int raw, int rd, int rdValue) {
+        if (recording)
+            put(TraceReader.INSTRUCTION, raw, rd, rdValue);
+        recording = false;
+    }
+
+    @Override
+    public void instructionFailed() {
+        if (recording)
+            put(TraceReader.FAILED, 0, 0, 0);
+        recording = false;
+    }
+
+    private void put(int kind, int raw, int rd, int rdValue) {
+        if (!hasRoom(recordSize(writeCount))) {
+            ++dropped;
+            ++droppedSinceGap;
+            return;
+        }
+        int pos = 0;
+        if (droppedSinceGap != 0) {
+            record[pos++] = (byte)TraceReader.GAP;
+            pos = TraceFormat.putVarint(record, pos, (int)Math.min(droppedSinceGap, Integer.MAX_VALUE));
+            droppedSinceGap = 0;
+        }
+        pos = encode(pos, kind, raw, rd, rdValue);
+
+        long h = head;
+        int start = (int)(h & ringMask);
+        int first = Math.min(pos, ring.length - start);
+        System.arraycopy(record, 0, ring, start, first);
+        System.arraycopy(record, first, ring, 0, pos - first);
+        head = h + pos;
+        ++recorded;
+    }
+
+    // a record with the bytes it writes and the gap before it, at most
+    private static int recordSize(int writes) {
+        return TraceFormat.MAX_RECORD_SIZE + writes * (TraceFormat.MAX_RUN_SIZE + 1) + TraceFormat.MAX_GAP_SIZE;
+    }
+
+    private boolean hasRoom(int size) {
+        while (ring.length - (head - tail) < size) {
+            if (!waitWhenFull || failure != null || !drainer.isAlive())
+                return false;
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private int encode(int pos, int kind, int raw, int rd, int rdValue) {
+        int tagPos = pos++;
+        int tag = kind;
+        if (round != state.round) {
+            tag |= TraceFormat.TAG_ROUND;
+            pos = TraceFormat.putVarint(record, pos, TraceFormat.zigzag(round - state.round));
+            state.round = round;
+        }
+        if (warrior != state.warrior) {
+            tag |= TraceFormat.TAG_WARRIOR;
+            pos = TraceFormat.putVarint(record, pos, warrior);
+            state.warrior = warrior;
+        }
+        pos = TraceFormat.putVarint(record, pos, TraceFormat.zigzag(pc - state.pcs[warrior]));
+        state.pcs[warrior] = pc;
+        if (kind == TraceReader.INSTRUCTION) {
+            record[pos++] = (byte)raw;
+            record[pos++] = (byte)(raw >> 8);
+            if (!TraceFormat.isCompressed(raw)) {
+                record[pos++] = (byte)(raw >> 16);
+                record[pos++] = (byte)(raw >> 24);
+            }
+            if (rd != 0) {
+                tag |= TraceFormat.TAG_REGISTER;
+                int index = warrior * TraceFormat.REGISTERS + rd;
+                record[pos++] = (byte)rd;
+                pos = TraceFormat.putVarint(record, pos, TraceFormat.zigzag(rdValue - state.registers[index]));
+                state.registers[index] = rdValue;
+            }
+        }
+        if (writeCount != 0) {
+            tag |= TraceFormat.TAG_WRITES;
+            int runs = 1;
+            for (int i = 1; i < writeCount; ++i)
+                if (writeAddresses[i] != writeAddresses[i - 1] + 1)
+                    ++runs;
+            pos = TraceFormat.putVarint(record, pos, runs);
+            for (int i = 0; i < writeCount; ) {
+                int end = i + 1;
+                while (end < writeCount && writeAddresses[end] == writeAddresses[end - 1] + 1)
+                    ++end;
+                pos = TraceFormat.putVarint(record, pos, TraceFormat.zigzag(writeAddresses[i] - state.writeAddress));
+                pos = TraceFormat.putVarint(record, pos, end - i);
+                for (; i < end; ++i)
+                    record[pos++] = writeValues[i];
+                state.writeAddress = writeAddresses[end - 1] + 1;
+            }
+        }
+        record[tagPos] = (byte)tag;
+        return pos;
+    }
+
+    private void drain() {
+        byte[] block = new byte[TraceFormat.BLOCK_SIZE];
+        byte[] deflated = new byte[TraceFormat.BLOCK_SIZE + TraceFormat.BLOCK_SIZE / 8 + 64];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        int length = 0;
+        try {
+            while (true) {
+                boolean last = closing; // everything written before closing is in head
+                long t = tail;
+                long available = head - t;
+                if (available == 0) {
+                    if (last)
+                        break;
+                    LockSupport.parkNanos(DRAIN_PARK_NANOS);
+                    continue;
+                }
+                int count = (int)Math.min(available, block.length - length);
+                int start = (int)(t & ringMask);
+                int first = Math.min(count, ring.length - start);
+                System.arraycopy(ring, start, block, length, first);
+                System.arraycopy(ring, 0, block, length + first, count - first);
+                length += count;
+                tail = t + count;
+                if (length == block.length) {
+                    deflated = writeBlock(deflater, block, length, deflated);
+                    length = 0;
+                }
+            }
+            if (length != 0)
+                writeBlock(deflater, block, length, deflated);
+            out.flush();
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /** @return the buffer for the next block */
+    private byte[] writeBlock(Deflater deflater, byte[] block, int length, byte[] deflated) throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == deflated.length)
+                deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            size += deflater.deflate(deflated, size, deflated.length - size);
+        }
+        out.writeInt(length);
+        out.writeInt(size);
+        out.write(deflated, 0, size);
+        return deflated;
+    }
+
+    /** @return the number of records that were dropped since the ring was full */
+    public long getDroppedRecords() {
+        return dropped;
+    }
+
+    /** @return the number of records put in the ring, not counting gaps */
+    public long getRecordedRecords() {
+        return recorded;
+    }
+
+    /**
+     * Writes what is left in the ring and closes the stream. Stop the war from tracing to the recorder first.
+     * @throws IOException the failure of the stream, when writing to it failed
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while draining the trace");
+        }
+        finally {
+            out.close();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+        TraceFilter filter = TraceFilter.parse(args);
+        if (args.size() < 3) {
+            System.err.println("usage: TraceRecorder [--rounds first:last] [--warrior index]... [trace file] [seed] [warrior.bin]...");
+            System.exit(1);
+        }
+        Logger.setTestingMode();
+        WarriorGroup[] groups = new WarriorGroup[args.size() - 2];
+        for (int i = 2; i < args.size(); ++i) {
+            File file = new File(args.get(i));
+            String name = file.getName().replaceFirst("\\.bin$", "");
+            groups[i - 2] = new WarriorGroup(name);
+            groups[i - 2].addWarrior(new WarriorData(name, Files.readAllBytes(file.toPath()), name, -1));
+        }
+        War war = new War(null, null, false, false);
+        war.setSeed(Long.parseLong(args.get(1)));
+        war.loadWarriorGroups(groups);
+
+        File file = new File(args.get(0));
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        TraceRecorder recorder = attach(war, Files.newOutputStream(file.toPath()), filter, DEFAULT_RING_SIZE, true);
+        int round = 0;
+        while (round < Competition.MAX_ROUND && !war.isOver())
+            war.nextRound(round++);
+        war.setTrace(null);
+        try {
+            recorder.close();
+        }
+        catch (IOException e) {
+            System.err.println("failed writing " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("war ended in round " + round + ", " + recorder.getRecordedRecords() + " instructions written to " + file);
+    }
+}
@@ -0,0 +1,450 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.WarriorData;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+import il.co.codeguru.corewars_riscv.war.WarriorRepository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The warriors of a headless tournament, read once from a directory of binaries or from a packed container file
+ * and then loaded into the WarriorRepository of every Competition that runs them, without the codes of the UI.
+ * <p>
+ * A directory has the binaries of the survivors, or a survivors and a zombies directory like bench/corpus.
+ * The survivors are grouped the way WarriorRepository groups the players of the UI: "name0.bin" and "name1.bin"
+ * are the two warriors of the group "name", any other binary is a group of its own. Codes longer than
+ * WarriorRepository.MAX_WARRIOR_SIZE are truncated, like in the UI.
+ * <p>
+ * The container is memory mapped, its index comes before the code:
+ * <pre>
+ *   int magic "CWC1", int entry count
+ *   every entry: string name, string label, string group, int fixed address or -1, int code offset, int code size,
+ *                the SHA-256 of the code
+ *   the code of every distinct binary once, the offsets are from here
+ * </pre>
+ * Strings are a short length and UTF-8 bytes. Zombies are in the group WarriorRepository.ZOMBIES_GROUP.
+ * <p>
+ * Binaries with the same hash share their code, and a group with the same binaries as an earlier group is a
+ * duplicate that is left out of the tournament, see getDuplicates().
+ * <p>
+ * As a program: pack [warriors dir] [container file], or list [warriors dir or container file]
+ */
+public class WarriorCorpus {
+    public static final int MAGIC = 0x43574331; // "CWC1"
+    public static final int HASH_SIZE = 32;
+
+    /** A warrior of the corpus */
+    public static class Entry {
+        private final String name;
+        private final String label;
+        private final String group;
+        private final int fixedAddress;
+        private final byte[] code;
+        private final byte[] hash;
+
+        /**
+         * @param group the name of the group, WarriorRepository.ZOMBIES_GROUP for a zombie
+         * @param fixedAddress the load address, or -1 for a random one
+         */
+        public Entry(String name, String label, String group, int fixedAddress, byte[] code) {
+            this(name, label, group, fixedAddress, truncToSize(code), null);
+        }
+
+        private Entry(String name, String label, String group, int fixedAddress, byte[] code, byte[] hash) {
+            this.name = name;
+            this.label = label;
+            this.group = group;
+            this.fixedAddress = fixedAddress;
+            this.code = code;
+            this.hash = hash != null ? hash : sha256(code, 0, code.length);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public int getFixedAddress() {
+            return fixedAddress;
+        }
+
+        public byte[] getCode() {
+            return code;
+        }
+
+        public byte[] getHash() {
+            return hash.clone();
+        }
+
+        public boolean isZombie() {
+            return WarriorRepository.ZOMBIES_GROUP.equals(group);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final List<List<Entry>> groups = new ArrayList<>(); // the survivors, in the order of the group names
+    private final List<Entry> zombies = new ArrayList<>();
+    private final List<Entry> duplicates = new ArrayList<>();
+
+    /**
+     * Groups the survivors by the names of their groups and leaves out the duplicate groups
+     * @throws IllegalArgumentException for a name or a label that is not unique, a warrior without code or a bad group
+     */
+    public WarriorCorpus(List<Entry> entries) {
+        Set<String> names = new HashSet<>();
+        Set<String> labels = new HashSet<>();
+        Map<String, List<Entry>> byGroup = new LinkedHashMap<>();
+        Map<String, byte[]> codes = new HashMap<>();
+        for (Entry e : entries) {
+            if (e.name.isEmpty() || e.label.isEmpty() || e.group.isEmpty())
+                throw new IllegalArgumentException("a warrior without a name, label or group");
+            if (e.code.length == 0)
+                throw new IllegalArgumentException("warrior " + e.name + " does not have any code");
+            if (!names.add(e.name))
+                throw new IllegalArgumentException("more than one warrior named " + e.name);
+            if (!labels.add(e.label))
+                throw new IllegalArgumentException("more than one warrior labeled " + e.label);
+
+            // the same binary is kept once
+            String key = hex(e.hash);
+            byte[] code = codes.get(key);
+            if (code == null)
+                codes.put(key, e.code);
+            else if (!Arrays.equals(code, e.code))
+                throw new IllegalArgumentException("warrior " + e.name + " does not match its hash");
+            Entry shared = code == null ? e : new Entry(e.name, e.label, e.group, e.fixedAddress, code, e.hash);
+
+            if (shared.isZombie()) {
+                zombies.add(shared);
+                continue;
+            }
+            List<Entry> group = byGroup.get(e.group);
+            if (group == null) {
+                group = new ArrayList<>(2);
+                byGroup.put(e.group, group);
+            }
+            group.add(shared);
+        }
+
+        List<String> groupNames = new ArrayList<>(byGroup.keySet());
+        Collections.sort(groupNames, String.CASE_INSENSITIVE_ORDER);
+        Set<String> seen = new HashSet<>();
+        for (String name : groupNames) {
+            List<Entry> group = byGroup.get(name);
+            if (group.size() == 2) {
+                // the two warriors of a player, like the UI they are told apart by the suffix of the label
+                if (group.get(0).label.endsWith("1") && group.get(1).label.endsWith("0"))
+                    Collections.reverse(group);
+                if (!group.get(0).label.endsWith("0") || !group.get(1).label.endsWith("1"))
+                    throw new IllegalArgumentException("the labels of the warriors of group " + name + " should end with 0 and 1");
+            }
+            else if (group.size() > 2) {
+                throw new IllegalArgumentException("group " + name + " has more than two warriors");
+            }
+            StringBuilder key = new StringBuilder();
+            for (Entry e : group)
+                key.append(hex(e.hash)).append(' ');
+            if (seen.add(key.toString()))
+                groups.add(group);
+            else
+                duplicates.addAll(group);
+        }
+    }
+
+    private static byte[] truncToSize(byte[] code) {
+        if (code.length > WarriorRepository.MAX_WARRIOR_SIZE)
+            return Arrays.copyOf(code, WarriorRepository.MAX_WARRIOR_SIZE);
+        return code;
+    }
+
+    private static byte[] sha256(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, offset, length);
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("no SHA-256", e); // every JRE has it
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+
+    /** Reads a directory or a container file */
+    public static WarriorCorpus read(File file) throws IOException {
+        return file.isDirectory() ? readDirectory(file) : readContainer(file);
+    }
+
+    /** Reads the binaries of a directory, or of its survivors and zombies directories */
+    public static WarriorCorpus readDirectory(File dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        File survivors = new File(dir, "survivors");
+        if (survivors.isDirectory()) {
+            readSurvivors(survivors, entries);
+            File zombies = new File(dir, "zombies");
+            if (zombies.isDirectory()) {
+                for (File file : listBinaries(zombies)) {
+                    String stem = stem(file);
+                    entries.add(new Entry(stem, "Z:" + stem, WarriorRepository.ZOMBIES_GROUP, -1, Files.readAllBytes(file.toPath())));
+                }
+            }
+        }
+        else {
+            readSurvivors(dir, entries);
+        }
+        try {
+            return new WarriorCorpus(entries);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad warriors in " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static void readSurvivors(File dir, List<Entry> entries) throws IOException {
+        File[] files = listBinaries(dir);
+        Set<String> stems = new HashSet<>();
+        for (File file : files)
+            stems.add(stem(file));
+        for (File file : files) {
+            String stem = stem(file);
+            String group = stem;
+            String prefix = stem.substring(0, stem.length() - 1);
+            if ((stem.endsWith("0") && stems.contains(prefix + "1")) || (stem.endsWith("1") && stems.contains(prefix + "0")))
+                group = prefix;
+            entries.add(new Entry(stem, stem, group, -1, Files.readAllBytes(file.toPath())));
+        }
+    }
+
+    private static File[] listBinaries(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin") && name.length() > 4);
+        if (files == null)
+            throw new IOException("can't list " + dir);
+        Arrays.sort(files, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return files;
+    }
+
+    private static String stem(File file) {
+        return file.getName().substring(0, file.getName().length() - 4);
+    }
+
+    /** Maps the container and reads it, checking the hash of every distinct binary once */
+    public static WarriorCorpus readContainer(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC)
+                throw new IOException(file + " is not a warriors container");
+            int count = buffer.getInt();
+            if (count < 0)
+                throw new IOException("bad entry count in " + file);
+            String[] names = new String[count], labels = new String[count], groups = new String[count];
+            int[] fixed = new int[count], offsets = new int[count], sizes = new int[count];
+            byte[][] hashes = new byte[count][HASH_SIZE];
+            for (int i = 0; i < count; ++i) {
+                names[i] = getString(buffer);
+                labels[i] = getString(buffer);
+                groups[i] = getString(buffer);
+                fixed[i] = buffer.getInt();
+                offsets[i] = buffer.getInt();
+                sizes[i] = buffer.getInt();
+                buffer.get(hashes[i]);
+            }
+            int codeStart = buffer.position();
+
+            Map<Integer, byte[]> codes = new HashMap<>(); // by offset, the same binary is stored once
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                if (sizes[i] <= 0 || sizes[i] > WarriorRepository.MAX_WARRIOR_SIZE || offsets[i] < 0
+                        || (long)codeStart + offsets[i] + sizes[i] > buffer.limit())
+                    throw new IOException("bad code of " + names[i] + " in " + file);
+                byte[] code = codes.get(offsets[i]);
+                if (code == null || code.length != sizes[i]) {
+                    code = new byte[sizes[i]];
+                    buffer.position(codeStart + offsets[i]);
+                    buffer.get(code);
+                    codes.put(offsets[i], code);
+                }
+                if (!Arrays.equals(hashes[i], sha256(code, 0, code.length)))
+                    throw new IOException("the code of " + names[i] + " does not match its hash in " + file);
+                entries.add(new Entry(names[i], labels[i], groups[i], fixed[i], code, hashes[i]));
+            }
+            return new WarriorCorpus(entries);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated");
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad warriors in " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff)
+            throw new IOException("too long: " + s);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Writes the warriors of the corpus, the duplicates included, as a container */
+    public void writeContainer(File file) throws IOException {
+        List<Entry> entries = new ArrayList<>(getEntries());
+        entries.addAll(duplicates);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        Map<String, Integer> offsets = new HashMap<>();
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(index);
+        out.writeInt(MAGIC);
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+            String key = hex(e.hash);
+            Integer offset = offsets.get(key);
+            if (offset == null) {
+                offset = code.size();
+                offsets.put(key, offset);
+                code.write(e.code);
+            }
+            putString(out, e.name);
+            putString(out, e.label);
+            putString(out, e.group);
+            out.writeInt(e.fixedAddress);
+            out.writeInt(offset);
+            out.writeInt(e.code.length);
+            out.write(e.hash);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            index.writeTo(stream);
+            code.writeTo(stream);
+        }
+    }
+
+    /** @return the survivors group after group and then the zombies, without the duplicates */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>();
+        for (List<Entry> group : groups)
+            entries.addAll(group);
+        entries.addAll(zombies);
+        return entries;
+    }
+
+    /** @return the warriors of the groups that had the same binaries as an earlier group */
+    public List<Entry> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public int getZombieCount() {
+        return zombies.size();
+    }
+
+    /**
+     * Loads the warriors into a repository, with groups of its own so that every Competition keeps its own scores.
+     * @param useFixedAddresses whether the warriors with a fixed address are loaded there, like in the debugger of the UI
+     * @return false if the repository rejected them, see WarriorRepository.loadWarriorGroups()
+     */
+    public boolean load(WarriorRepository repository, boolean useFixedAddresses) {
+        List<WarriorGroup> warriorGroups = new ArrayList<>(groups.size());
+        for (List<Entry> group : groups) {
+            WarriorGroup warriorGroup = new WarriorGroup(group.get(0).group);
+            for (Entry e : group)
+                warriorGroup.addWarrior(new WarriorData(e.name, e.code, e.label, useFixedAddresses ? e.fixedAddress : -1));
+            warriorGroups.add(warriorGroup);
+        }
+        WarriorGroup zombieGroup = null;
+        if (!zombies.isEmpty()) {
+            zombieGroup = new WarriorGroup(WarriorRepository.ZOMBIES_GROUP);
+            for (Entry e : zombies)
+                zombieGroup.addWarrior(new WarriorData(e.name, e.code, e.label, useFixedAddresses ? e.fixedAddress : -1));
+        }
+        return repository.loadWarriorGroups(warriorGroups, zombieGroup);
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean pack = args.length == 3 && args[0].equals("pack");
+        boolean list = args.length == 2 && args[0].equals("list");
+        if (!pack && !list) {
+            System.err.println("usage: WarriorCorpus pack [warriors dir] [container file] | list [warriors dir or container file]");
+            System.exit(1);
+        }
+        Logger.setTestingMode();
+        long start = System.nanoTime();
+        WarriorCorpus corpus;
+        try {
+            corpus = read(new File(args[1]));
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        long read = System.nanoTime();
+        if (!corpus.load(new WarriorRepository(), false)) {
+            System.err.println("failed loading the warriors");
+            System.exit(1);
+        }
+        long loaded = System.nanoTime();
+
+        if (pack) {
+            corpus.writeContainer(new File(args[2]));
+        }
+        else {
+            for (Entry e : corpus.getEntries())
+                System.out.println(String.format("%-24s %-24s %-24s %5d %s", e.getName(), e.getLabel(), e.getGroup(), e.getCode().length, hex(e.hash)));
+            for (Entry e : corpus.getDuplicates())
+                System.out.println("# duplicate " + e.getName() + " of group " + e.getGroup());
+        }
+        System.out.println(String.format("# %d groups, %d zombies, %d duplicates, read in %.2fms, loaded in %.2fms",
+                corpus.getGroupCount(), corpus.getZombieCount(), corpus.getDuplicates().size(),
+                (read - start) / 1e6, (loaded - read) / 1e6));
+    }
+}
@@ -51,6 +51,12 @@ public class Format {
         return new String(buf);
     }
 
+    // part out of total as a percent with one decimal, like "12.5%". String.format is not available in the browser
+    public static String percent(long part, long total) {
+        long tenths = (part * 1000 + total / 2) / total;
+        return (tenths / 10) + "." + (tenths % 10) + "%";
+    }
+
 
     // this is here just because it's a useful utility class
     public static native String innerText(HTMLElement elem) /*-{
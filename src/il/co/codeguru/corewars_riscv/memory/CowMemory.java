@@ -0,0 +1,131 @@
+package il.co.codeguru.corewars_riscv.memory;
+
+import java.util.Arrays;
+
+import static il.co.codeguru.corewars_riscv.jsadd.Format.hex;
+
+/**
+ * Memory made of pages that are shared with its forks and copied on the first write to them.
+ * Forking copies only the page table, after that each side pays for the pages it writes to.
+ * There is no flat array behind this memory so getByteArray() is not supported, copyTo() and peekByte() are.
+ */
+public class CowMemory extends RawMemory {
+    public static final int PAGE_SHIFT = 8;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int size;
+    private final byte[][] pages;
+    private final boolean[] owned; // pages that no other memory points to, these are written in place
+    private int copiedPages = 0;
+
+    /**
+     * @param data the initial content, only the first used bytes of it are copied
+     * @param used how much of data is in use, the rest of the memory reads as zeros
+     * @param size the size of the memory
+     */
+    public CowMemory(byte[] data, int used, int size) {
+        this(new RawMemory(data), used, size);
+    }
+
+    /**
+     * @param source the initial content, only the first used bytes of it are copied
+     * @param used how much of source is in use, the rest of the memory reads as zeros
+     * @param size the size of the memory
+     */
+    public CowMemory(RawMemory source, int used, int size) {
+        super((byte[])null);
+        this.size = size;
+        int numPages = (size + PAGE_MASK) >>> PAGE_SHIFT;
+        pages = new byte[numPages][];
+        owned = new boolean[numPages];
+        byte[] zeros = new byte[PAGE_SIZE];
+        for (int p = 0; p < numPages; ++p) {
+            int start = p << PAGE_SHIFT;
+            if (start < used) {
+                pages[p] = new byte[PAGE_SIZE];
+                source.copyTo(start, pages[p], 0, Math.min(PAGE_SIZE, used - start));
+                owned[p] = true;
+            }
+            else {
+                pages[p] = zeros; // shared by all the unused pages until written
+            }
+        }
+    }
+
+    private CowMemory(CowMemory other) {
+        super((byte[])null);
+        size = other.size;
+        pages = other.pages.clone();
+        owned = new boolean[pages.length];
+        Arrays.fill(other.owned, false);
+    }
+
+    /** @return a copy of this memory, both share all the pages until they write to them */
+    public CowMemory fork() {
+        return new CowMemory(this);
+    }
+
+    /** @return how many pages were copied because of writes to shared pages */
+    public int getCopiedPages() {
+        return copiedPages;
+    }
+
+    @Override
+    public byte[] getByteArray() {
+        throw new UnsupportedOperationException("copy-on-write memory has no flat array");
+    }
+
+    @Override
+    public void storeByte(int index, byte value) throws MemoryException {
+        if(index < 0 || index >= size) throw new MemoryException(MemoryException.FAULT_WRITE_OUT_OF_BOUNDS, "Write out of bounds - at " + hex(index));
+        int p = index >>> PAGE_SHIFT;
+        if (!owned[p]) {
+            pages[p] = pages[p].clone();
+            owned[p] = true;
+            ++copiedPages;
+        }
+        pages[p][index & PAGE_MASK] = value;
+        if (listener != null) {
+            listener.onMemoryWrite(index, value);
+        }
+    }
+
+    @Override
+    public byte loadByte(int index) throws MemoryException {
+        if(index < 0 || index >= size) throw new MemoryException(MemoryException.FAULT_READ_OUT_OF_BOUNDS, "Read out of bounds - at " + hex(index));
+        return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+
+    @Override
+    public void copyTo(int from, byte[] dest, int destPos, int length) {
+        while (length > 0) {
+            int offset = from & PAGE_MASK;
+            int chunk = Math.min(PAGE_SIZE - offset, length);
+            System.arraycopy(pages[from >>> PAGE_SHIFT], offset, dest, destPos, chunk);
+            from += chunk;
+            destPos += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public byte peekByte(int index) {
+        return (index >= 0 && index < size) ? pages[index >>> PAGE_SHIFT][index & PAGE_MASK] : 0;
+    }
+
+    @Override
+    public byte[] copyOf(int length) {
+        byte[] copy = new byte[length];
+        copyTo(0, copy, 0, length);
+        return copy;
+    }
+
+    @Override
+    public void restore(byte[] src) {
+        for (int i = 0; i < src.length; ++i) {
+            if (pages[i >>> PAGE_SHIFT][i & PAGE_MASK] != src[i])
+                storeByte(i, src[i]);
+        }
+    }
+}
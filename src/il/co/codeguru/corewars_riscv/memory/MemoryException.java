@@ -8,6 +8,23 @@ package il.co.codeguru.corewars_riscv.memory;
 public class MemoryException extends RuntimeException {
 	private static final long serialVersionUID = 1L;
 
-	public MemoryException() {}
-	public MemoryException(String msg) { super(msg); }
+	/** Kinds of faults, for counting them */
+	public static final int FAULT_OTHER = 0;
+	public static final int FAULT_READ_FORBIDDEN = 1;
+	public static final int FAULT_WRITE_FORBIDDEN = 2;
+	public static final int FAULT_READ_OUT_OF_BOUNDS = 3;
+	public static final int FAULT_WRITE_OUT_OF_BOUNDS = 4;
+	public static final int FAULT_PC_OUT_OF_ARENA = 5;
+	public static final int FAULT_COUNT = 6;
+	public static final String[] FAULT_NAMES = { "other", "readForbidden", "writeForbidden", "readOutOfBounds", "writeOutOfBounds", "pcOutOfArena" };
+
+	private final int fault;
+
+	public MemoryException() { this(FAULT_OTHER); }
+	public MemoryException(String msg) { this(FAULT_OTHER, msg); }
+	public MemoryException(int fault) { this.fault = fault; }
+	public MemoryException(int fault, String msg) { super(msg); this.fault = fault; }
+
+	/** @return one of the FAULT_ constants */
+	public int getFault() { return fault; }
 }
@@ -1,14 +1,18 @@
 package il.co.codeguru.corewars_riscv.memory;
 
+import java.util.Arrays;
+
 import static il.co.codeguru.corewars_riscv.jsadd.Format.hex;
 
 public class RawMemory extends Memory {
+    /** @return the array behind the memory. A CowMemory doesn't have one, use copyTo() or peekByte() to work with both */
     public byte[] getByteArray()
     {
         return data;
     }
 
     private byte[] data;
+    private Watchpoints watchpoints = null;
 
     public RawMemory(int size)
     {
@@ -22,7 +26,9 @@ public class RawMemory extends Memory {
 
     @Override
     public void storeByte(int index, byte value) throws MemoryException {
-        if(index < 0 || index >= data.length) throw new MemoryException("Write out of bounds - at " + hex(index));
+        if(index < 0 || index >= data.length) throw new MemoryException(MemoryException.FAULT_WRITE_OUT_OF_BOUNDS, "Write out of bounds - at " + hex(index));
+        if (watchpoints != null && (watchpoints.pageFlags[index >>> Watchpoints.PAGE_SHIFT] & Watchpoints.WRITE) != 0)
+            watchpoints.onWrite(index, data[index], value);
         data[index] = value;
         if (listener != null) {
             listener.onMemoryWrite(index , value);
@@ -31,10 +37,52 @@ public class RawMemory extends Memory {
 
     @Override
     public byte loadByte(int index) throws MemoryException {
-        if(index < 0 || index >= data.length) throw new MemoryException("Read out of bounds - at " + hex(index));
+        if(index < 0 || index >= data.length) throw new MemoryException(MemoryException.FAULT_READ_OUT_OF_BOUNDS, "Read out of bounds - at " + hex(index));
+        if (watchpoints != null && (watchpoints.pageFlags[index >>> Watchpoints.PAGE_SHIFT] & Watchpoints.READ) != 0)
+            watchpoints.onRead(index, data[index]);
         return data[index];
     }
 
+    /** @param watchpoints the watchpoints to check the accesses against, null for none */
+    public void setWatchpoints(Watchpoints watchpoints) {
+        this.watchpoints = watchpoints;
+    }
+
+    /** copies length bytes of the memory from address from to dest at destPos, like System.arraycopy() */
+    public void copyTo(int from, byte[] dest, int destPos, int length) {
+        System.arraycopy(data, from, dest, destPos, length);
+    }
+
+    /**
+     * @return the byte at index, 0 outside of the memory. Unlike loadByte() it doesn't check the watchpoints,
+     * for looking at the memory from outside of the war
+     */
+    public byte peekByte(int index) {
+        return (index >= 0 && index < data.length) ? data[index] : 0;
+    }
+
+    /** @return a copy of the first length bytes of the memory */
+    public byte[] copyOf(int length) {
+        return Arrays.copyOf(data, length);
+    }
+
+    /**
+     * Overwrites the start of the memory with the given bytes.
+     * The listener is only notified of the bytes that actually changed.
+     */
+    public void restore(byte[] src) {
+        if (listener == null) {
+            System.arraycopy(src, 0, data, 0, src.length);
+            return;
+        }
+        for (int i = 0; i < src.length; ++i) {
+            if (data[i] != src[i]) {
+                data[i] = src[i];
+                listener.onMemoryWrite(i, src[i]);
+            }
+        }
+    }
+
     private static final int NUM_PARAGRAPHS = 64 * 1024;
     public static final int PARAGRAPH_SIZE = 0x10;
     public static final int PARAGRAPHS_IN_SEGMENT = 0x1000;
@@ -6,17 +6,38 @@ public class RestrictedMemory extends Memory{
     private Memory memory;
     private MemoryRegion[] allowedRegions;
     private boolean useNewMemory;
+    private int arenaMask; // without the new memory, all the accesses wrap around the arena with this
+    private byte[] owners = null; // of every arena address, the id of the last one that wrote to it. not kept when null
+    private byte ownerId;
+    private MemoryEventListener writeTrace = null; // told of every byte stored through this memory, when not null
 
     public RestrictedMemory(Memory raw, MemoryRegion[] allowedRegions) { this(raw,allowedRegions,true);}
 
-    public RestrictedMemory(Memory raw, MemoryRegion[] allowedRegions, boolean useNewMemory)
+    public RestrictedMemory(Memory raw, MemoryRegion[] allowedRegions, boolean useNewMemory) { this(raw,allowedRegions,useNewMemory,0xFFFF);}
+
+    public RestrictedMemory(Memory raw, MemoryRegion[] allowedRegions, boolean useNewMemory, int arenaMask)
     {
         this.memory = raw;
         this.allowedRegions = allowedRegions;
         this.useNewMemory = useNewMemory;
+        this.arenaMask = arenaMask;
         setListener(raw.getListener());
     }
 
+    /**
+     * Every byte stored through this memory marks its arena address with the id of the writer.
+     * @param owners as large as the arena, null to stop
+     */
+    public void setOwnerShadow(byte[] owners, int ownerId) {
+        this.owners = owners;
+        this.ownerId = (byte)ownerId;
+    }
+
+    /** @param writeTrace gets every byte stored through this memory at the address it was stored at, null to stop */
+    public void setWriteTrace(MemoryEventListener writeTrace) {
+        this.writeTrace = writeTrace;
+    }
+
     private boolean isAddressAllowed(int index)
     {
         for(MemoryRegion region : allowedRegions)
@@ -32,25 +53,29 @@ public class RestrictedMemory extends Memory{
     public void storeByte(int index, byte value) throws MemoryException {
         if(useNewMemory)
         {
-            if(!isAddressAllowed(index)) throw new MemoryException("Write at forbidden location - at " + hex(index));
-            memory.storeByte(index, value);
+            if(!isAddressAllowed(index)) throw new MemoryException(MemoryException.FAULT_WRITE_FORBIDDEN, "Write at forbidden location - at " + hex(index));
         }
         else
         {
-            memory.storeByte(index & 0xFFFF, value); //Loop around to the arena memory
+            index &= arenaMask; //Loop around to the arena memory
         }
+        memory.storeByte(index, value);
+        if (owners != null && index >= 0 && index < owners.length)
+            owners[index] = ownerId;
+        if (writeTrace != null)
+            writeTrace.onMemoryWrite(index, value);
     }
 
     @Override
     public byte loadByte(int index) throws MemoryException {
         if(useNewMemory)
         {
-            if(!isAddressAllowed(index)) throw new MemoryException("Read at forbidden location - at " + hex(index));
+            if(!isAddressAllowed(index)) throw new MemoryException(MemoryException.FAULT_READ_FORBIDDEN, "Read at forbidden location - at " + hex(index));
             return memory.loadByte(index);
         }
         else
         {
-            return memory.loadByte(index & 0xFFFF); //Loop around to the arena memory
+            return memory.loadByte(index & arenaMask); //Loop around to the arena memory
         }
 
     }
@@ -0,0 +1,163 @@
+package il.co.codeguru.corewars_riscv.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data watchpoints on address ranges of a RawMemory.
+ * Every page of the memory has flags that say if any watchpoint covers it. The memory only checks these
+ * flags on every access and calls in here for accesses to watched pages, so watchpoints don't slow down
+ * accesses to the rest of the memory.
+ */
+public class Watchpoints {
+    public static final int READ = 1;
+    public static final int WRITE = 2;
+    public static final int CHANGE = 4; // a write of a different value than the one in memory
+
+    public static final int PAGE_SHIFT = 8;
+
+    public static class Watchpoint {
+        public final int start;
+        public final int end; // inclusive
+        public final int kinds; // READ | WRITE | CHANGE
+
+        Watchpoint(int start, int end, int kinds) {
+            this.start = start;
+            this.end = end;
+            this.kinds = kinds;
+        }
+    }
+
+    /** An access that triggered a watchpoint */
+    public static class Hit {
+        public final int kind; // one of READ, WRITE, CHANGE
+        public final int address;
+        public final byte oldValue;
+        public final byte newValue; // same as oldValue for READ
+        public final int warrior; // index in the war
+        public final int pc; // of the instruction that did the access
+
+        Hit(int kind, int address, byte oldValue, byte newValue, int warrior, int pc) {
+            this.kind = kind;
+            this.address = address;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.warrior = warrior;
+            this.pc = pc;
+        }
+    }
+
+    // READ and WRITE bits for every page, CHANGE needs the WRITE bit as well
+    byte[] pageFlags;
+    private final List<Watchpoint> watchpoints = new ArrayList<>();
+
+    private int currentWarrior = -1;
+    private int currentPc = -1;
+    private boolean fetching = false; // until the cpu has read the instruction at currentPc
+    private Hit hit = null;
+
+    public Watchpoints(int memorySize) {
+        pageFlags = new byte[(memorySize + (1 << PAGE_SHIFT) - 1) >>> PAGE_SHIFT];
+    }
+
+    /** Makes the watchpoints cover a memory of the given size, for wars with a bigger memory */
+    public void ensureMemorySize(int memorySize) {
+        int pages = (memorySize + (1 << PAGE_SHIFT) - 1) >>> PAGE_SHIFT;
+        if (pages > pageFlags.length) {
+            pageFlags = new byte[pages];
+            updatePages();
+        }
+    }
+
+    public void add(int start, int end, int kinds) {
+        watchpoints.add(new Watchpoint(start, end, kinds));
+        updatePages();
+    }
+
+    /** removes all the watchpoints with exactly this range */
+    public void remove(int start, int end) {
+        for (int i = watchpoints.size() - 1; i >= 0; --i) {
+            Watchpoint w = watchpoints.get(i);
+            if (w.start == start && w.end == end)
+                watchpoints.remove(i);
+        }
+        updatePages();
+    }
+
+    public void clear() {
+        watchpoints.clear();
+        updatePages();
+    }
+
+    public boolean isEmpty() {
+        return watchpoints.isEmpty();
+    }
+
+    public List<Watchpoint> getWatchpoints() {
+        return watchpoints;
+    }
+
+    private void updatePages() {
+        for (int p = 0; p < pageFlags.length; ++p)
+            pageFlags[p] = 0;
+        for (Watchpoint w : watchpoints) {
+            int flags = ((w.kinds & READ) != 0 ? READ : 0) | ((w.kinds & (WRITE | CHANGE)) != 0 ? WRITE : 0);
+            int last = Math.min(w.end >>> PAGE_SHIFT, pageFlags.length - 1);
+            for (int p = Math.max(0, w.start >>> PAGE_SHIFT); p <= last; ++p)
+                pageFlags[p] |= flags;
+        }
+    }
+
+    /**
+     * Called before every instruction of the war, to know who did an access.
+     * Reads of the instruction until instructionFetched() are its fetch and don't trigger READ watchpoints.
+     */
+    public void instructionStarting(int warrior, int pc) {
+        currentWarrior = warrior;
+        currentPc = pc;
+        fetching = true;
+    }
+
+    /**
+     * Called by the cpu once it has read the instruction, which is 2 bytes for a compressed one and 4 otherwise.
+     * The reads the instruction does from then on trigger READ watchpoints, even of its own bytes.
+     */
+    public void instructionFetched() {
+        fetching = false;
+    }
+
+    void onRead(int address, byte value) {
+        if (hit != null || (fetching && address - currentPc >= 0 && address - currentPc < 4))
+            return;
+        for (Watchpoint w : watchpoints) {
+            if ((w.kinds & READ) != 0 && address >= w.start && address <= w.end) {
+                hit = new Hit(READ, address, value, value, currentWarrior, currentPc);
+                return;
+            }
+        }
+    }
+
+    void onWrite(int address, byte oldValue, byte newValue) {
+        if (hit != null)
+            return;
+        for (Watchpoint w : watchpoints) {
+            if (address < w.start || address > w.end)
+                continue;
+            if ((w.kinds & WRITE) != 0) {
+                hit = new Hit(WRITE, address, oldValue, newValue, currentWarrior, currentPc);
+                return;
+            }
+            if ((w.kinds & CHANGE) != 0 && oldValue != newValue) {
+                hit = new Hit(CHANGE, address, oldValue, newValue, currentWarrior, currentPc);
+                return;
+            }
+        }
+    }
+
+    /** @return the first access that triggered a watchpoint since the last call, or null */
+    public Hit takeHit() {
+        Hit h = hit;
+        hit = null;
+        return h;
+    }
+}
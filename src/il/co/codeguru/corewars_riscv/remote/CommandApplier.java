@@ -0,0 +1,130 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.gui.IBreakpointCheck;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.War;
+
+import java.util.Arrays;
+
+/**
+ * Applies commands to a Competition in the calling thread.
+ * The UI uses this directly when the engine runs in the same thread, the EngineHost uses it when
+ * the commands arrive as messages.
+ */
+public class CommandApplier implements EngineCommandSink, IBreakpointCheck {
+
+    private final Competition competition;
+    private boolean[] breakpoints = new boolean[0]; // by address, grows to the arena of the competition when set
+    private int breakpointCount = 0;
+
+    public CommandApplier(Competition competition) {
+        this.competition = competition;
+    }
+
+    @Override
+    public void post(EngineCommand command) {
+        apply(command);
+    }
+
+    /**
+     * @return true if the command requires the engine to run (like the UI requesting an animation frame)
+     */
+    public boolean apply(EngineCommand command) {
+        War war = competition.getCurrentWar();
+        switch (command.type) {
+            case START:
+                try {
+                    competition.runCompetition(command.value, command.index,
+                            (command.flags & EngineCommand.START_PAUSED) != 0,
+                            (command.flags & EngineCommand.START_DEBUG) != 0,
+                            (command.flags & EngineCommand.START_NEW_MEMORY) != 0);
+                } catch (Exception e) {
+                    Logger.error("start failed " + e.toString());
+                    return false;
+                }
+                return true;
+            case ABORT:
+                competition.setAbort();
+                return true; // the abort is handled in the next frame
+            case SET_BREAKPOINT:
+            case CLEAR_BREAKPOINT:
+                setBreakpoint(command.index, command.type == EngineCommand.Type.SET_BREAKPOINT);
+                return false;
+            case SET_WATCHPOINT:
+                competition.getWatchpoints().add(command.index, command.value, command.flags);
+                return false;
+            case CLEAR_WATCHPOINT:
+                competition.getWatchpoints().remove(command.index, command.value);
+                return false;
+            default:
+                break;
+        }
+
+        if (war == null) {
+            Logger.error("no war for command " + command);
+            return false;
+        }
+        switch (command.type) {
+            case PAUSE:
+                war.pause();
+                return false;
+            case RESUME:
+                war.resume();
+                return true;
+            case STEP:
+                war.runSingleRound();
+                return true;
+            case STEP_BACK:
+                competition.stepBack();
+                return false;
+            case REVERSE_CONTINUE:
+                competition.reverseContinue();
+                return false;
+            case SET_REGISTER:
+                war.getWarrior(command.warrior).getCpuState().setReg(command.index, command.value);
+                competition.warStateEdited();
+                return false;
+            case SET_PC:
+                war.getWarrior(command.warrior).getCpuState().setPc(command.value);
+                competition.warStateEdited();
+                return false;
+            case WRITE_MEMORY:
+                war.getMemory().storeByte(command.index, (byte)command.value);
+                competition.warStateEdited();
+                return false;
+            default:
+                throw new IllegalArgumentException("unexpected command " + command);
+        }
+    }
+
+    private void setBreakpoint(int address, boolean enable) {
+        int arenaSize = competition.getGeometry().arenaSize;
+        if (address < 0 || address >= arenaSize)
+            return;
+        if (address >= breakpoints.length)
+            breakpoints = Arrays.copyOf(breakpoints, arenaSize);
+        if (breakpoints[address] != enable)
+            breakpointCount += enable ? 1 : -1;
+        breakpoints[address] = enable;
+    }
+
+    @Override
+    public boolean shouldBreak(CpuStateRiscV state) {
+        if (breakpointCount == 0)
+            return false;
+        int pc = state.getPc();
+        return pc >= 0 && pc < breakpoints.length && breakpoints[pc];
+    }
+
+    // these breakpoints don't count hits
+    @Override
+    public int[] saveHitCounts() {
+        return null;
+    }
+
+    @Override
+    public void restoreHitCounts(int[] hitCounts) {
+    }
+}
@@ -0,0 +1,231 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.war.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Listens to the engine events and accumulates them to a RoundDelta.
+ * Every address is recorded once no matter how many times it was written, the addresses are sorted and
+ * coalesced to ranges only when the delta is taken.
+ * The rounds of a war that isn't debugged run with the compete listeners, which don't hear of the writes, so a
+ * delta taken after such rounds is a full refresh.
+ */
+public class DeltaCollector implements MemoryEventListener, CompetitionEventListener, ScoreEventListener {
+
+    // addresses that are closer than this are sent as a single range, cheaper than another range header
+    private static final int RANGE_MERGE_GAP = 8;
+
+    private boolean[] dirty = new boolean[War.ARENA_SIZE];
+    private int[] dirtyList = new int[256];
+    private int dirtyCount = 0;
+    private boolean fullRefresh = false;
+    private int lastRound = -1; // of the last delta
+
+    private final List<Integer> deadWarriors = new ArrayList<>();
+    private final List<String> deathReasons = new ArrayList<>();
+    private final List<String> scoreNames = new ArrayList<>();
+    private final List<Float> scoreAdded = new ArrayList<>();
+
+    private boolean warEnded = false;
+    private int warEndReason;
+    private String winners;
+    private boolean competitionEnded = false;
+
+    @Override
+    public void onMemoryWrite(int address, byte value) {
+        if (fullRefresh)
+            return;
+        if (address >= dirty.length)
+            dirty = Arrays.copyOf(dirty, Math.max(address + 1, dirty.length * 2));
+        if (dirty[address])
+            return;
+        dirty[address] = true;
+        if (dirtyCount == dirtyList.length)
+            dirtyList = Arrays.copyOf(dirtyList, dirtyList.length * 2);
+        dirtyList[dirtyCount++] = address;
+    }
+
+    @Override
+    public void onWriteState(EWriteState state) {
+    }
+
+    @Override
+    public void onWarPreStartClear() {
+        clearDirty();
+        fullRefresh = true;
+    }
+
+    @Override
+    public void onWarStart() {
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        warEnded = true;
+        warEndReason = reason;
+        this.winners = winners;
+    }
+
+    @Override
+    public void onRound(int round) {
+    }
+
+    @Override
+    public void onWarriorBirth(Warrior w) {
+    }
+
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {
+        deadWarriors.add(warrior.m_myIndex);
+        deathReasons.add(reason);
+    }
+
+    @Override
+    public void onCompetitionStart() {
+    }
+
+    @Override
+    public void onCompetitionEnd() {
+        competitionEnded = true;
+    }
+
+    @Override
+    public void onEndRound() {
+    }
+
+    @Override
+    public void onPaused() {
+    }
+
+    @Override
+    public void onNoneAlive() {
+    }
+
+    @Override
+    public void scoreChanged(String name, float addedValue, int groupIndex, int subIndex) {
+        scoreNames.add(name);
+        scoreAdded.add(addedValue);
+    }
+
+    private void clearDirty() {
+        for (int i = 0; i < dirtyCount; ++i)
+            dirty[dirtyList[i]] = false;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Takes everything that was accumulated since the last call and starts accumulating from scratch.
+     * @param competition used for the state that is sent every time - round, pcs
+     */
+    public RoundDelta takeDelta(Competition competition) {
+        RoundDelta delta = new RoundDelta();
+        War war = competition.getCurrentWar();
+        delta.round = (competition.compState != null) ? competition.compState.round : 0;
+        if (competition.compState != null && !competition.isInDebugger() && delta.round != lastRound)
+            fullRefresh = true;
+        lastRound = delta.round;
+        delta.fullRefresh = fullRefresh && war != null;
+
+        if (war == null) {
+            delta.rangeStarts = new int[0];
+            delta.rangeLengths = new int[0];
+            delta.data = new byte[0];
+            delta.owners = new byte[0];
+            delta.pcs = new int[0];
+            delta.alive = new boolean[0];
+        }
+        else {
+            delta.paused = war.isPaused();
+            if (delta.fullRefresh) {
+                int size = war.getUsedMemorySize();
+                delta.rangeStarts = new int[] { 0 };
+                delta.rangeLengths = new int[] { size };
+                delta.data = war.getMemory().copyOf(size);
+            }
+            else {
+                coalesce(delta, war.getMemory());
+            }
+            delta.owners = ownersOf(war, delta);
+
+            int count = war.getNumWarriors();
+            delta.pcs = new int[count];
+            delta.alive = new boolean[count];
+            for (int i = 0; i < count; ++i) {
+                Warrior w = war.getWarrior(i);
+                delta.pcs[i] = w.getCpuState().getPc();
+                delta.alive[i] = w.isAlive();
+            }
+        }
+        clearDirty();
+        fullRefresh = false;
+
+        delta.deadWarriors = new int[deadWarriors.size()];
+        for (int i = 0; i < delta.deadWarriors.length; ++i)
+            delta.deadWarriors[i] = deadWarriors.get(i);
+        delta.deathReasons = deathReasons.toArray(new String[0]);
+        deadWarriors.clear();
+        deathReasons.clear();
+
+        delta.scoreNames = scoreNames.toArray(new String[0]);
+        delta.scoreAdded = new float[scoreAdded.size()];
+        for (int i = 0; i < delta.scoreAdded.length; ++i)
+            delta.scoreAdded[i] = scoreAdded.get(i);
+        scoreNames.clear();
+        scoreAdded.clear();
+
+        delta.warEnded = warEnded;
+        delta.warEndReason = warEndReason;
+        delta.winners = winners;
+        delta.competitionEnded = competitionEnded;
+        warEnded = false;
+        winners = null;
+        competitionEnded = false;
+        return delta;
+    }
+
+    private static byte[] ownersOf(War war, RoundDelta delta) {
+        byte[] owners = new byte[delta.data.length];
+        int arenaSize = war.getGeometry().arenaSize;
+        int offset = 0;
+        for (int i = 0; i < delta.getRangeCount(); ++i) {
+            int end = delta.rangeStarts[i] + delta.rangeLengths[i];
+            for (int address = delta.rangeStarts[i]; address < end; ++address)
+                owners[offset++] = (byte)(address < arenaSize ? war.getOwner(address) : -1);
+        }
+        return owners;
+    }
+
+    private void coalesce(RoundDelta delta, RawMemory mem) {
+        Arrays.sort(dirtyList, 0, dirtyCount);
+        int[] starts = new int[dirtyCount];
+        int[] lengths = new int[dirtyCount];
+        int ranges = 0, total = 0;
+        for (int i = 0; i < dirtyCount; ++i) {
+            int addr = dirtyList[i];
+            if (ranges > 0 && addr - (starts[ranges - 1] + lengths[ranges - 1]) <= RANGE_MERGE_GAP) {
+                int added = addr + 1 - (starts[ranges - 1] + lengths[ranges - 1]);
+                lengths[ranges - 1] += added;
+                total += added;
+            }
+            else {
+                starts[ranges] = addr;
+                lengths[ranges] = 1;
+                ++ranges;
+                ++total;
+            }
+        }
+        delta.rangeStarts = Arrays.copyOf(starts, ranges);
+        delta.rangeLengths = Arrays.copyOf(lengths, ranges);
+        delta.data = new byte[total];
+        int offset = 0;
+        for (int i = 0; i < ranges; ++i) {
+            mem.copyTo(starts[i], delta.data, offset, lengths[i]);
+            offset += lengths[i];
+        }
+    }
+}
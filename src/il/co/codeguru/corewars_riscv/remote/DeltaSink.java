@@ -0,0 +1,8 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+/**
+ * Where the engine sends its deltas to. In the browser this posts the delta back to the UI thread.
+ */
+public interface DeltaSink {
+    void post(RoundDelta delta);
+}
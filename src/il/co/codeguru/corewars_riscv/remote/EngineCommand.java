@@ -0,0 +1,101 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+/**
+ * A message from the UI to the engine.
+ * Commands only hold primitive fields so that they can be posted as-is to an engine running in a web worker.
+ */
+public class EngineCommand {
+
+    public enum Type {
+        START,            // value = wars per groups combination, index = warriors per group, warrior = the one that breakpoints apply to, flags = START_xxx
+        PAUSE,
+        RESUME,
+        STEP,             // run a single round and pause again
+        STEP_BACK,        // go back a single round
+        REVERSE_CONTINUE, // go back to the previous breakpoint hit
+        ABORT,
+        SET_BREAKPOINT,   // index = arena address
+        CLEAR_BREAKPOINT, // index = arena address
+        SET_WATCHPOINT,   // index = first address, value = last address, flags = Watchpoints.READ/WRITE/CHANGE
+        CLEAR_WATCHPOINT, // index = first address, value = last address
+        SET_REGISTER,     // warrior, index = register number, value = new value
+        SET_PC,           // warrior, value = new pc
+        WRITE_MEMORY      // index = address, value = the byte to write
+    }
+
+    public static final int START_DEBUG = 1;
+    public static final int START_PAUSED = 2;
+    public static final int START_NEW_MEMORY = 4;
+
+    public final Type type;
+    public final int warrior; // index of the warrior in the war or -1 if not relevant
+    public final int index;
+    public final int value;
+    public final int flags;
+
+    private EngineCommand(Type type, int warrior, int index, int value, int flags) {
+        this.type = type;
+        this.warrior = warrior;
+        this.index = index;
+        this.value = value;
+        this.flags = flags;
+    }
+
+    public static EngineCommand start(int warsPerCombination, int warriorsPerGroup, int uiWarrior, boolean isInDebugger, boolean startPaused, boolean useNewMemory) {
+        int flags = (isInDebugger ? START_DEBUG : 0) | (startPaused ? START_PAUSED : 0) | (useNewMemory ? START_NEW_MEMORY : 0);
+        return new EngineCommand(Type.START, uiWarrior, warriorsPerGroup, warsPerCombination, flags);
+    }
+
+    public static EngineCommand pause() {
+        return new EngineCommand(Type.PAUSE, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand resume() {
+        return new EngineCommand(Type.RESUME, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand step() {
+        return new EngineCommand(Type.STEP, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand stepBack() {
+        return new EngineCommand(Type.STEP_BACK, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand reverseContinue() {
+        return new EngineCommand(Type.REVERSE_CONTINUE, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand abort() {
+        return new EngineCommand(Type.ABORT, -1, 0, 0, 0);
+    }
+
+    public static EngineCommand setBreakpoint(int address, boolean enable) {
+        return new EngineCommand(enable ? Type.SET_BREAKPOINT : Type.CLEAR_BREAKPOINT, -1, address, 0, 0);
+    }
+
+    public static EngineCommand setWatchpoint(int start, int end, int kinds) {
+        return new EngineCommand(Type.SET_WATCHPOINT, -1, start, end, kinds);
+    }
+
+    public static EngineCommand clearWatchpoint(int start, int end) {
+        return new EngineCommand(Type.CLEAR_WATCHPOINT, -1, start, end, 0);
+    }
+
+    public static EngineCommand setRegister(int warrior, int register, int value) {
+        return new EngineCommand(Type.SET_REGISTER, warrior, register, value, 0);
+    }
+
+    public static EngineCommand setPc(int warrior, int value) {
+        return new EngineCommand(Type.SET_PC, warrior, 0, value, 0);
+    }
+
+    public static EngineCommand writeMemory(int address, byte value) {
+        return new EngineCommand(Type.WRITE_MEMORY, -1, address, value, 0);
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + warrior + "," + index + "," + value + ")";
+    }
+}
@@ -0,0 +1,9 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+/**
+ * Where the UI sends its commands to.
+ * This is either the engine itself in the same thread, or a channel to an engine running elsewhere.
+ */
+public interface EngineCommandSink {
+    void post(EngineCommand command);
+}
@@ -0,0 +1,105 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.War;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a Competition behind a message boundary.
+ * The UI only talks to the host with EngineCommands and only hears back from it with RoundDeltas, so the host
+ * can run in a web worker (or any other thread) and the UI thread is left free for painting and input.
+ * The host is single threaded like everything else in the engine: post() and runFrame() are called from the
+ * thread that owns the host, the one that receives the messages.
+ */
+public class EngineHost implements EngineCommandSink {
+
+    private final Competition competition;
+    private final CommandApplier applier;
+    private final DeltaCollector collector = new DeltaCollector();
+    private final DeltaSink deltaSink;
+
+    private final List<EngineCommand> pending = new ArrayList<>();
+    private boolean running = false;
+    private boolean debugSetupPending = false;
+    private int uiWarrior = -1;
+
+    /**
+     * @param competition a competition with the warriors already loaded to its repository and no listeners added
+     */
+    public EngineHost(Competition competition, DeltaSink deltaSink) {
+        this.competition = competition;
+        this.deltaSink = deltaSink;
+        applier = new CommandApplier(competition);
+
+        competition.addCompetitionEventListener(collector);
+        competition.addMemoryEventLister(collector);
+        competition.getWarriorRepository().addScoreEventListener(collector);
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+    }
+
+    public Competition getCompetition() {
+        return competition;
+    }
+
+    @Override
+    public void post(EngineCommand command) {
+        pending.add(command);
+    }
+
+    /** @return true if there is more work to do and runFrame() should be called again */
+    public boolean isRunning() {
+        return running || !pending.isEmpty();
+    }
+
+    /**
+     * Applies the commands that arrived since the last frame, runs the engine for a single frame budget if needed
+     * and posts the resulting delta.
+     * @return true if another frame is needed
+     */
+    public boolean runFrame() {
+        boolean needRun = false;
+        boolean hadCommands = !pending.isEmpty();
+        for (EngineCommand command : pending) {
+            if (command.type == EngineCommand.Type.START) {
+                uiWarrior = command.warrior;
+                debugSetupPending = (command.flags & EngineCommand.START_DEBUG) != 0;
+            }
+            needRun |= applier.apply(command);
+        }
+        pending.clear();
+
+        if (!needRun && !running) {
+            if (hadCommands) // something changed by the commands, the UI needs to see it
+                deltaSink.post(collector.takeDelta(competition));
+            return false;
+        }
+
+        try {
+            running = competition.compState != null && competition.continueRun();
+        } catch (Exception e) {
+            Logger.error("continueRun EXCEPTION " + e.toString());
+            running = false;
+        }
+        if (debugSetupPending)
+            setupDebugWar();
+
+        deltaSink.post(collector.takeDelta(competition));
+        return running;
+    }
+
+    // same as what the UI does after starting a war in the debugger
+    private void setupDebugWar() {
+        War war = competition.getCurrentWar();
+        if (war == null)
+            return;
+        debugSetupPending = false;
+        war.setBreakpointCheck(applier);
+        if (uiWarrior >= 0 && uiWarrior < war.getNumWarriors())
+            war.setUiWarrior(war.getWarrior(uiWarrior));
+        war.setInDebugger();
+    }
+}
@@ -0,0 +1,40 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+/**
+ * A message from the engine to the UI with everything that changed since the previous delta.
+ * Only primitive arrays and strings so that it can be posted as-is from a web worker.
+ */
+public class RoundDelta {
+
+    public int round;
+    public boolean paused;
+    public boolean fullRefresh; // a new war started or rounds ran unseen, the ranges hold the whole used memory
+
+    // memory that changed, coalesced to ranges. data holds the bytes of all ranges one after the other
+    public int[] rangeStarts;
+    public int[] rangeLengths;
+    public byte[] data;
+    public byte[] owners; // the warrior that last wrote every byte of data, -1 for none
+
+    // per warrior in the current war
+    public int[] pcs;
+    public boolean[] alive;
+
+    // warriors that died since the previous delta
+    public int[] deadWarriors;
+    public String[] deathReasons;
+
+    // scores that changed since the previous delta
+    public String[] scoreNames;
+    public float[] scoreAdded;
+
+    public boolean warEnded;
+    public int warEndReason;
+    public String winners;
+
+    public boolean competitionEnded;
+
+    public int getRangeCount() {
+        return rangeStarts.length;
+    }
+}
@@ -0,0 +1,163 @@
+package il.co.codeguru.corewars_riscv.replay;
+
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarSnapshot;
+import il.co.codeguru.corewars_riscv.war.Warrior;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+import il.co.codeguru.corewars_riscv.war.WarriorRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A replay log that was read back, see ReplayFormat for the layout.
+ * Only the positions of the keyframes are parsed when loading. Getting the state at a keyframe decodes at most
+ * the keyframes since the last full one, and getting to any round from there takes less than a keyframe interval
+ * of rounds.
+ */
+public class Replay {
+    private final byte[] data;
+
+    private final long seed;
+    private final boolean useNewMemory;
+    private final int keyframeInterval;
+    private final int memorySize;
+    private final String[] groupNames;
+    private final String[] warriorNames;
+    private final int[] loadOffsets;
+
+    private final List<Integer> keyframeRounds = new ArrayList<>();
+    private final List<Integer> keyframeOffsets = new ArrayList<>(); // position of the encoded runs
+    private final List<Boolean> keyframeFull = new ArrayList<>();
+    private int endRound = -1;
+    private int endReason = -1;
+
+    public Replay(byte[] data) {
+        this.data = data;
+        if (data.length < 13 || ReplayFormat.getInt(data, 0) != ReplayFormat.MAGIC)
+            throw new IllegalArgumentException("not a replay log");
+        seed = (ReplayFormat.getInt(data, 4) & 0xffffffffL) | ((long)ReplayFormat.getInt(data, 8) << 32);
+        useNewMemory = data[12] != 0;
+        int[] pos = new int[] { 13 };
+        keyframeInterval = ReplayFormat.readVarint(data, pos);
+        memorySize = ReplayFormat.readVarint(data, pos);
+        groupNames = new String[ReplayFormat.readVarint(data, pos)];
+        for (int i = 0; i < groupNames.length; ++i)
+            groupNames[i] = readString(pos);
+        int numWarriors = ReplayFormat.readVarint(data, pos);
+        warriorNames = new String[numWarriors];
+        loadOffsets = new int[numWarriors];
+        for (int i = 0; i < numWarriors; ++i) {
+            warriorNames[i] = readString(pos);
+            loadOffsets[i] = ReplayFormat.readVarint(data, pos);
+        }
+
+        byte[] scratch = new byte[getFlatSize()];
+        while (pos[0] < data.length) {
+            int type = data[pos[0]++];
+            int round = ReplayFormat.readVarint(data, pos);
+            if (type == ReplayFormat.RECORD_END) {
+                endRound = round;
+                endReason = ReplayFormat.readVarint(data, pos);
+                break;
+            }
+            if (type != ReplayFormat.RECORD_FULL && type != ReplayFormat.RECORD_DELTA)
+                throw new IllegalArgumentException("bad record in replay log at " + (pos[0] - 1));
+            keyframeRounds.add(round);
+            keyframeOffsets.add(pos[0]);
+            keyframeFull.add(type == ReplayFormat.RECORD_FULL);
+            pos[0] = ReplayFormat.decodeRuns(data, pos[0], scratch); // only for skipping
+        }
+        if (keyframeRounds.isEmpty() || !keyframeFull.get(0))
+            throw new IllegalArgumentException("replay log without a starting keyframe");
+    }
+
+    private String readString(int[] pos) {
+        int len = ReplayFormat.readVarint(data, pos);
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; ++i)
+            sb.append((char)ReplayFormat.readVarint(data, pos));
+        return sb.toString();
+    }
+
+    private int getFlatSize() {
+        return ReplayFormat.flatSize(memorySize, warriorNames.length);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isUsingNewMemory() {
+        return useNewMemory;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /** @return the number of rounds the war ran, or the round of the last keyframe if the log was cut before the war ended */
+    public int getEndRound() {
+        return endRound >= 0 ? endRound : keyframeRounds.get(keyframeRounds.size() - 1);
+    }
+
+    /** @return one of the CompetitionEventListener reasons, or -1 if the log was cut before the war ended */
+    public int getEndReason() {
+        return endReason;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeRounds.size();
+    }
+
+    /**
+     * Finds the groups of the replayed war, in the order they need to be given to War.loadWarriorGroups()
+     * @throws Exception if a group isn't loaded to the repository
+     */
+    public WarriorGroup[] findGroups(WarriorRepository repository) throws Exception {
+        WarriorGroup[] groups = new WarriorGroup[groupNames.length];
+        for (int i = 0; i < groupNames.length; ++i) {
+            groups[i] = repository.getGroupByName(groupNames[i]);
+            if (groups[i] == null)
+                throw new Exception("replay needs warrior " + groupNames[i] + " which is not loaded");
+        }
+        return groups;
+    }
+
+    /**
+     * @throws Exception if the warriors of the war are not the ones that were recorded
+     */
+    public void checkWarriors(War war) throws Exception {
+        if (war.getNumWarriors() != warriorNames.length || war.getUsedMemorySize() != memorySize)
+            throw new Exception("replay doesn't match the loaded warriors");
+        for (int i = 0; i < warriorNames.length; ++i) {
+            Warrior w = war.getWarrior(i);
+            if (!w.getName().equals(warriorNames[i]) || w.getLoadOffsetInt() != loadOffsets[i])
+                throw new Exception("replay doesn't match warrior " + w.getName());
+        }
+    }
+
+    /** @return the index of the last keyframe at or before the given round */
+    public int keyframeBefore(int round) {
+        int lo = 0, hi = keyframeRounds.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (keyframeRounds.get(mid) <= round)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /** @return the state of the war at a keyframe */
+    public WarSnapshot getKeyframe(int index) {
+        int first = index;
+        while (!keyframeFull.get(first))
+            --first;
+        byte[] state = new byte[getFlatSize()];
+        for (int i = first; i <= index; ++i)
+            ReplayFormat.decodeRuns(data, keyframeOffsets.get(i), state);
+        return ReplayFormat.unflatten(keyframeRounds.get(index), state, memorySize, warriorNames.length);
+    }
+}
@@ -0,0 +1,151 @@
+package il.co.codeguru.corewars_riscv.replay;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarSnapshot;
+import il.co.codeguru.corewars_riscv.war.Warrior;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The layout of a replay log and the encoding shared by the writer and the reader.
+ *
+ * A replay starts with a header: the seed, the memory mode and the warrior groups, which is everything needed
+ * for loading the same war again. After it come keyframes every K rounds and an end record.
+ * A keyframe is a snapshot of the war flattened to bytes. A full keyframe is the flat state itself, a delta keyframe
+ * is the XOR with the previous keyframe. Both are run-length encoded as pairs of (zero run, literal run) so that
+ * the mostly empty arena and the mostly unchanged parts of a delta take almost nothing.
+ */
+class ReplayFormat {
+    static final int MAGIC = 0x31525743; // "CWR1"
+
+    static final int RECORD_FULL = 1;
+    static final int RECORD_DELTA = 2;
+    static final int RECORD_END = 3;
+
+    private ReplayFormat() {}
+
+    /** @return the size of the flat state of a snapshot */
+    static int flatSize(int memorySize, int numWarriors) {
+        return memorySize + numWarriors * ((WarSnapshot.REGISTERS + 1) * 4 + 1) + 4 + 8;
+    }
+
+    /** same as flatten(war.snapshot()) without the copies */
+    static void flatten(War war, byte[] out) {
+        int pos = war.getUsedMemorySize();
+        war.getMemory().copyTo(0, out, 0, pos);
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            CpuStateRiscV state = w.getCpuState();
+            for (int r = 0; r < WarSnapshot.REGISTERS; ++r)
+                pos = putInt(out, pos, state.getReg(r));
+            pos = putInt(out, pos, state.getPc());
+            out[pos++] = (byte)(w.isAlive() ? 1 : 0);
+        }
+        pos = putInt(out, pos, war.getNumRemainingWarriors());
+        long randomState = war.getRandomState();
+        putInt(out, pos, (int)randomState);
+        putInt(out, pos + 4, (int)(randomState >>> 32));
+    }
+
+    static void flatten(WarSnapshot s, byte[] out) {
+        int pos = s.memory.length;
+        System.arraycopy(s.memory, 0, out, 0, pos);
+        for (int i = 0; i < s.getNumWarriors(); ++i) {
+            for (int r = 0; r < WarSnapshot.REGISTERS; ++r)
+                pos = putInt(out, pos, s.registers[i * WarSnapshot.REGISTERS + r]);
+            pos = putInt(out, pos, s.pcs[i]);
+            out[pos++] = (byte)(s.alive[i] ? 1 : 0);
+        }
+        pos = putInt(out, pos, s.numAlive);
+        putInt(out, pos, (int)s.randomState);
+        putInt(out, pos + 4, (int)(s.randomState >>> 32));
+    }
+
+    static WarSnapshot unflatten(int round, byte[] flat, int memorySize, int numWarriors) {
+        byte[] memory = new byte[memorySize];
+        System.arraycopy(flat, 0, memory, 0, memorySize);
+        int[] registers = new int[numWarriors * WarSnapshot.REGISTERS];
+        int[] pcs = new int[numWarriors];
+        boolean[] alive = new boolean[numWarriors];
+        int pos = memorySize;
+        for (int i = 0; i < numWarriors; ++i) {
+            for (int r = 0; r < WarSnapshot.REGISTERS; ++r, pos += 4)
+                registers[i * WarSnapshot.REGISTERS + r] = getInt(flat, pos);
+            pcs[i] = getInt(flat, pos);
+            pos += 4;
+            alive[i] = flat[pos++] != 0;
+        }
+        int numAlive = getInt(flat, pos);
+        long randomState = (getInt(flat, pos + 4) & 0xffffffffL) | ((long)getInt(flat, pos + 8) << 32);
+        return new WarSnapshot(round, memory, registers, pcs, alive, numAlive, randomState);
+    }
+
+    static int putInt(byte[] b, int pos, int v) {
+        b[pos] = (byte)v;
+        b[pos + 1] = (byte)(v >> 8);
+        b[pos + 2] = (byte)(v >> 16);
+        b[pos + 3] = (byte)(v >> 24);
+        return pos + 4;
+    }
+
+    static int getInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) | ((b[pos + 1] & 0xff) << 8) | ((b[pos + 2] & 0xff) << 16) | (b[pos + 3] << 24);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Run-length encodes cur XOR prev, prev is all zeros for a full keyframe
+     */
+    static void encodeRuns(byte[] cur, byte[] prev, ByteArrayOutputStream out) {
+        int len = cur.length;
+        int i = 0;
+        while (i < len) {
+            int start = i;
+            while (i < len && cur[i] == prev[i])
+                ++i;
+            writeVarint(out, i - start);
+            start = i;
+            while (i < len && cur[i] != prev[i])
+                ++i;
+            writeVarint(out, i - start);
+            for (int j = start; j < i; ++j)
+                out.write(cur[j] ^ prev[j]);
+        }
+    }
+
+    /**
+     * Decodes the output of encodeRuns() into state. for a full keyframe state needs to be zeroed,
+     * for a delta it needs to be the previous keyframe.
+     * @return the position in data after the encoded runs
+     */
+    static int decodeRuns(byte[] data, int pos, byte[] state) {
+        int i = 0;
+        int[] p = new int[] { pos };
+        while (i < state.length) {
+            i += readVarint(data, p);
+            int literal = readVarint(data, p);
+            for (int j = 0; j < literal; ++j)
+                state[i++] ^= data[p[0]++];
+        }
+        return p[0];
+    }
+
+    static int readVarint(byte[] data, int[] pos) {
+        int v = 0, shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
@@ -0,0 +1,103 @@
+package il.co.codeguru.corewars_riscv.replay;
+
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.SampledCompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.Warrior;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records a replay log of every war of a competition.
+ * Subscribes only to the rounds it writes keyframes at so the rounds in between run at full speed.
+ */
+public class ReplayRecorder implements SampledCompetitionEventListener {
+
+    /** Gives the stream that the log of every war is written to */
+    public interface StreamFactory {
+        OutputStream openWar(int warNumber) throws IOException;
+    }
+
+    private final Competition competition;
+    private final StreamFactory streamFactory;
+    private final int keyframeInterval;
+    private int warNumber = 0;
+    private ReplayWriter writer = null;
+    private int lastRound;
+
+    public ReplayRecorder(Competition competition, StreamFactory streamFactory) {
+        this(competition, streamFactory, ReplayWriter.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    public ReplayRecorder(Competition competition, StreamFactory streamFactory, int keyframeInterval) {
+        this.competition = competition;
+        this.streamFactory = streamFactory;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    @Override
+    public int getRoundInterval() {
+        return keyframeInterval;
+    }
+
+    private void failed(IOException e) {
+        Logger.error("replay recording failed " + e.toString());
+        writer = null;
+    }
+
+    @Override
+    public void onWarStart() {
+        War war = competition.getCurrentWar();
+        try {
+            writer = new ReplayWriter(streamFactory.openWar(warNumber++), war, keyframeInterval, ReplayWriter.DEFAULT_FULL_KEYFRAME_EVERY);
+            lastRound = -1;
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public void onRound(int round) {
+        // when debugging every round arrives, not just the sampled ones
+        if (writer == null || round % keyframeInterval != 0 || round <= lastRound)
+            return;
+        lastRound = round;
+        try {
+            writer.writeKeyframe(competition.getCurrentWar(), round);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        if (writer == null)
+            return;
+        try {
+            writer.writeEnd(competition.compState.round, reason);
+            writer.close();
+        } catch (IOException e) {
+            Logger.error("replay recording failed " + e.toString());
+        }
+        writer = null;
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {}
+    @Override
+    public void onCompetitionStart() {}
+    @Override
+    public void onCompetitionEnd() {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
@@ -0,0 +1,113 @@
+package il.co.codeguru.corewars_riscv.replay;
+
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarSnapshot;
+import il.co.codeguru.corewars_riscv.war.Warrior;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the replay log of a single war, record by record as the war advances.
+ * See ReplayFormat for the layout.
+ */
+public class ReplayWriter {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 4096;
+    /** every this many keyframes a full keyframe is written, this bounds the decoding needed for seeking */
+    public static final int DEFAULT_FULL_KEYFRAME_EVERY = 16;
+
+    private final OutputStream out;
+    private final int fullKeyframeEvery;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+    private byte[] current;
+    private byte[] previous;
+    private final byte[] zeros; // what a full keyframe is encoded against
+    private int keyframeCount = 0;
+
+    public ReplayWriter(OutputStream out, War war) throws IOException {
+        this(out, war, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_FULL_KEYFRAME_EVERY);
+    }
+
+    /**
+     * Writes the header. Needs to be called after the warriors were loaded to the war.
+     */
+    public ReplayWriter(OutputStream out, War war, int keyframeInterval, int fullKeyframeEvery) throws IOException {
+        this.out = out;
+        this.fullKeyframeEvery = fullKeyframeEvery;
+        int flatSize = ReplayFormat.flatSize(war.getUsedMemorySize(), war.getNumWarriors());
+        current = new byte[flatSize];
+        previous = new byte[flatSize];
+        zeros = new byte[flatSize];
+
+        byte[] fixed = new byte[13];
+        ReplayFormat.putInt(fixed, 0, ReplayFormat.MAGIC);
+        ReplayFormat.putInt(fixed, 4, (int)war.getSeed());
+        ReplayFormat.putInt(fixed, 8, (int)(war.getSeed() >>> 32));
+        fixed[12] = (byte)(war.isUsingNewMemory() ? 1 : 0);
+        record.write(fixed, 0, fixed.length);
+        ReplayFormat.writeVarint(record, keyframeInterval);
+        ReplayFormat.writeVarint(record, war.getUsedMemorySize());
+
+        WarriorGroup[] groups = war.getWarriorGroups();
+        ReplayFormat.writeVarint(record, groups.length);
+        for (WarriorGroup group : groups)
+            writeString(group.getName());
+        ReplayFormat.writeVarint(record, war.getNumWarriors());
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            writeString(w.getName());
+            ReplayFormat.writeVarint(record, w.getLoadOffsetInt());
+        }
+        flushRecord();
+    }
+
+    private void writeString(String s) {
+        ReplayFormat.writeVarint(record, s.length());
+        for (int i = 0; i < s.length(); ++i)
+            ReplayFormat.writeVarint(record, s.charAt(i));
+    }
+
+    private void flushRecord() throws IOException {
+        out.write(record.toByteArray());
+        record.reset();
+    }
+
+    /** Writes a keyframe, the first one and then every fullKeyframeEvery are full, the rest are deltas */
+    public void writeKeyframe(WarSnapshot snapshot) throws IOException {
+        ReplayFormat.flatten(snapshot, current);
+        writeCurrent(snapshot.round);
+    }
+
+    /** Same as writeKeyframe(war.snapshot(round)) without copying the war state twice */
+    public void writeKeyframe(War war, int round) throws IOException {
+        ReplayFormat.flatten(war, current);
+        writeCurrent(round);
+    }
+
+    private void writeCurrent(int round) throws IOException {
+        boolean full = (keyframeCount % fullKeyframeEvery) == 0;
+        record.write(full ? ReplayFormat.RECORD_FULL : ReplayFormat.RECORD_DELTA);
+        ReplayFormat.writeVarint(record, round);
+        ReplayFormat.encodeRuns(current, full ? zeros : previous, record);
+        flushRecord();
+
+        byte[] t = previous;
+        previous = current;
+        current = t;
+        ++keyframeCount;
+    }
+
+    public void writeEnd(int round, int reason) throws IOException {
+        record.write(ReplayFormat.RECORD_END);
+        ReplayFormat.writeVarint(record, round);
+        ReplayFormat.writeVarint(record, reason);
+        flushRecord();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
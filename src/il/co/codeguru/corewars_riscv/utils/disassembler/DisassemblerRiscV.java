@@ -21,7 +21,12 @@ public class DisassemblerRiscV implements IDisassembler {
     private int lastOpcodeSize = 0;
 
     public DisassemblerRiscV(byte[] memory, int index, int endIndex) {
-        this.Memory = new RawMemory(memory);
+        this(new RawMemory(memory), index, endIndex);
+    }
+
+    /** Disassembles directly from a memory, reset() moves it to another address without making a new disassembler */
+    public DisassemblerRiscV(Memory memory, int index, int endIndex) {
+        this.Memory = memory;
         this.index = index;
         this.endIndex = endIndex;
 
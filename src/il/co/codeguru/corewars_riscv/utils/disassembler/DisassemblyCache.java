@@ -0,0 +1,67 @@
+package il.co.codeguru.corewars_riscv.utils.disassembler;
+
+import il.co.codeguru.corewars_riscv.memory.Memory;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+
+import java.util.Arrays;
+
+/**
+ * The disassembly of every address of a memory, made the first time it is asked for and kept until a byte
+ * of the instruction is written.
+ * A write to an address invalidates the instructions that may contain it - the ones starting up to 3 bytes before it.
+ */
+public class DisassemblyCache {
+    private static final byte NOT_CACHED = 0;
+    private static final byte INVALID = -1; // can't be disassembled, so it is shown as data
+
+    private final DisassemblerRiscV disassembler;
+    private final String[] texts;
+    private final byte[] sizes;
+
+    /** @param size the number of addresses to cache, from address 0 */
+    public DisassemblyCache(Memory memory, int size) {
+        disassembler = new DisassemblerRiscV(memory, 0, size);
+        texts = new String[size];
+        sizes = new byte[size];
+    }
+
+    /** @return the instruction at the address, null if it can't be disassembled */
+    public String getText(int address) {
+        if (sizes[address] == NOT_CACHED)
+            disassemble(address);
+        return texts[address];
+    }
+
+    /** @return the size in bytes of the instruction at the address, 0 if it can't be disassembled */
+    public int getSize(int address) {
+        if (sizes[address] == NOT_CACHED)
+            disassemble(address);
+        return Math.max(0, sizes[address]);
+    }
+
+    private void disassemble(int address) {
+        disassembler.reset(address, sizes.length);
+        try {
+            texts[address] = disassembler.nextOpcode();
+            sizes[address] = (byte)disassembler.lastOpcodeSize();
+        }
+        catch (IDisassembler.DisassemblerException | MemoryException e) {
+            // a MemoryException is a read outside of the memory, at its end
+            texts[address] = null;
+            sizes[address] = INVALID;
+        }
+    }
+
+    /** Called when the byte at the address changed */
+    public void invalidate(int address) {
+        for (int a = Math.max(0, address - 3); a <= address && a < sizes.length; ++a) {
+            sizes[a] = NOT_CACHED;
+            texts[a] = null;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(sizes, NOT_CACHED);
+        Arrays.fill(texts, null);
+    }
+}
@@ -0,0 +1,59 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+
+/**
+ * The sizes of the memory areas of a war and the number of warriors it can hold.
+ * The arena starts at address 0, the group shared memories and the private stacks are allocated after it.
+ */
+public class ArenaGeometry {
+    /** warriors are kept by their index in bytes, in the canvas and the heatmap */
+    public static final int MAX_WARRIORS_LIMIT = 127;
+    public static final int MIN_ARENA_SIZE = 0x1000;
+    public static final int MAX_ARENA_SIZE = 64 * 1024 * 1024;
+
+    /** The geometry wars always had, a 64K arena and up to 20 warriors */
+    public static final ArenaGeometry DEFAULT =
+            new ArenaGeometry(War.ARENA_SIZE, 20, War.STACK_SIZE, War.GROUP_SHARED_MEMORY_SIZE);
+
+    public final int arenaSize;
+    public final int maxWarriors;
+    public final int stackSize;
+    public final int groupSharedMemorySize;
+
+    /**
+     * @param arenaSize power of 2 between MIN_ARENA_SIZE and MAX_ARENA_SIZE, so that addresses can wrap around it
+     * @param stackSize multiple of RawMemory.PARAGRAPH_SIZE
+     * @param groupSharedMemorySize multiple of RawMemory.PARAGRAPH_SIZE
+     */
+    public ArenaGeometry(int arenaSize, int maxWarriors, int stackSize, int groupSharedMemorySize) {
+        if (arenaSize < MIN_ARENA_SIZE || arenaSize > MAX_ARENA_SIZE || (arenaSize & (arenaSize - 1)) != 0)
+            throw new IllegalArgumentException("arena size must be a power of 2 between " + MIN_ARENA_SIZE + " and " + MAX_ARENA_SIZE);
+        if (maxWarriors < 1 || maxWarriors > MAX_WARRIORS_LIMIT)
+            throw new IllegalArgumentException("max warriors must be between 1 and " + MAX_WARRIORS_LIMIT);
+        if (stackSize <= 0 || (stackSize % RawMemory.PARAGRAPH_SIZE) != 0)
+            throw new IllegalArgumentException("stack size must be a positive multiple of " + RawMemory.PARAGRAPH_SIZE);
+        if (groupSharedMemorySize <= 0 || (groupSharedMemorySize % RawMemory.PARAGRAPH_SIZE) != 0)
+            throw new IllegalArgumentException("shared memory size must be a positive multiple of " + RawMemory.PARAGRAPH_SIZE);
+        this.arenaSize = arenaSize;
+        this.maxWarriors = maxWarriors;
+        this.stackSize = stackSize;
+        this.groupSharedMemorySize = groupSharedMemorySize;
+    }
+
+    /** @return the mask that wraps an address into the arena */
+    public int getArenaMask() {
+        return arenaSize - 1;
+    }
+
+    /**
+     * @return the size of the memory of a war, enough for the arena and for the stacks and shared memories of
+     * maxWarriors warriors in groups of one. Never less than the memory wars always had.
+     */
+    public int getMemorySize() {
+        long needed = arenaSize + (long)maxWarriors * (stackSize + groupSharedMemorySize);
+        if (needed > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("memory too big");
+        return Math.max(RawMemory.MEMORY_SIZE, (int)needed);
+    }
+}
@@ -1,11 +1,16 @@
 package il.co.codeguru.corewars_riscv.war;
 
-import il.co.codeguru.corewars_riscv.gui.widgets.Console;
 import il.co.codeguru.corewars_riscv.gui.widgets.EventMulticasterCompetition;
 import il.co.codeguru.corewars_riscv.gui.widgets.EventMulticasterMemory;
 import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
+import il.co.codeguru.corewars_riscv.replay.Replay;
 import il.co.codeguru.corewars_riscv.utils.Logger;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 
 public class Competition {
 
@@ -27,9 +32,21 @@ public class Competition {
     private int warsPerCombination= 20;
 
 
-    private int speed;  // while debugging. 0 means 1 step each frame, >0 means how many steps to make each frame, <0 means how many frames to skip between steps
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    private final FrameProfiler frameProfiler = new FrameProfiler();
+    private final SnapshotHistory snapshotHistory = new SnapshotHistory();
+    private final Watchpoints watchpoints = new Watchpoints(RawMemory.MEMORY_SIZE);
+    private final EngineMetrics metrics = new EngineMetrics(); // of the ended wars, guarded by itself
+    private final EngineMetrics runningMetrics = new EngineMetrics(); // a copy of the counters of the running war, guarded by metrics
+    private final KillMatrix kills = new KillMatrix(); // of the ended wars, guarded by metrics
+    private final Map<String, Float> scores = new LinkedHashMap<>(); // of the groups after the last ended war, guarded by metrics
+    private long warStartMillis;
+    private boolean profiling = false;
+
+    private int speed;  // while debugging. 0 means 1 step each frame, >0 means how many steps to make each frame (capped by the frame budget), <0 means how many frames to skip between steps
 
     private long seed = 0;
+    private ArenaGeometry geometry = ArenaGeometry.DEFAULT;
 
     public boolean globalPause = false;
 
@@ -74,7 +91,7 @@ public class Competition {
     private void doneCompetition() {
         competitionEventListener.onCompetitionEnd();
         long elapsed = System.currentTimeMillis() - compState.startTime;
-        Console.log("Total time=" + elapsed / 1000.0);
+        Logger.log("Total time=" + elapsed / 1000.0);
         compState = null;
     }
 
@@ -84,7 +101,7 @@ public class Competition {
         if (globalPause)
             return false;
         if (compState.abort) {
-            Console.log("Abort");
+            Logger.log("Abort");
             doneWar();
             doneCompetition();
             return false;
@@ -125,9 +142,15 @@ public class Competition {
                 }
                 if (stepsCount > 0) {
                     switchToCompete();
-                    while (needMore == 1 && stepsCount > 1) {
-                        needMore = runRound();
-                        --stepsCount;
+                    // high speeds are capped by the frame budget so that painting the last round still fits in the frame
+                    frameScheduler.startFrame();
+                    boolean hasTime = true;
+                    while (needMore == 1 && stepsCount > 1 && hasTime) {
+                        int startRound = compState.round;
+                        needMore = runCompeteRounds(frameScheduler.nextBatch(stepsCount - 1));
+                        int ran = compState.round - startRound;
+                        stepsCount -= ran;
+                        hasTime = frameScheduler.batchDone(ran);
                     }
                     switchToDebug();
                     if (needMore == 1)
@@ -135,10 +158,16 @@ public class Competition {
                 }
             }
             else {
-                do {
-                    needMore = runRound();
-                } while (needMore == 1);
+                // run as many rounds as fit in the frame budget and yield to the browser, the next frame continues the war
+                frameScheduler.startFrame();
+                boolean hasTime = true;
+                while (needMore == 1 && hasTime) {
+                    int startRound = compState.round;
+                    needMore = runCompeteRounds(frameScheduler.nextBatch(MAX_ROUND));
+                    hasTime = frameScheduler.batchDone(compState.round - startRound);
+                }
             }
+            publishRunningMetrics();
 
             if (compState.isInDebugger && currentWar.hasEnded() && currentWar.getNumRemainingWarriors() == 0) {
                 competitionEventListener.onNoneAlive();
@@ -172,10 +201,13 @@ public class Competition {
 
         // run on every possible combination of warrior groups
         competitionEventListener.onCompetitionStart();
-        Console.log("runCompetition " + warsPerCombination + " wars");
+        Logger.log("runCompetition " + warsPerCombination + " wars");
 
         compState = new CompState();
         compState.warIndex = 0;
+        synchronized (metrics) {
+            metrics.warsPlanned += warsPerCombination; // what continueRun() runs, one war of a combination after the other
+        }
         compState.state = CompState.State.RUN_WAR;
         compState.startPaused = startPaused;
         compState.isInDebugger = isInDebugger;
@@ -189,6 +221,150 @@ public class Competition {
 
     }
 
+    /**
+     * Replaces the current war with a war from a replay log, paused at the given round.
+     * The warriors of the replay need to be loaded to the repository.
+     * When called while debugging, the debugger continues with the replayed war.
+     */
+    public void seekReplay(Replay replay, int round) throws Exception
+    {
+        round = Math.max(0, Math.min(round, replay.getEndRound()));
+        if (compState == null) {
+            compState = new CompState();
+            compState.isInDebugger = true;
+            compState.startTime = System.currentTimeMillis();
+        }
+        compState.state = CompState.State.RUN_ROUND;
+        compState.useNewMemory = replay.isUsingNewMemory();
+
+        currentWar = new War(memoryEventListener, competitionEventListener, true, replay.isUsingNewMemory(), geometry);
+        currentWar.setSeed(replay.getSeed());
+        currentWar.setWatchpoints(watchpoints);
+        competitionEventListener.onWarPreStartClear();
+        currentWar.loadWarriorGroups(replay.findGroups(warriorRepository));
+        replay.checkWarriors(currentWar);
+        currentWar.getMetrics().warStarted();
+        currentWar.setProfiling(profiling);
+        warStartMillis = System.currentTimeMillis();
+
+        snapshotHistory.clear();
+        // like seekBack(), the listeners don't hear of the way to the round, only of how it differs from the loaded war
+        WarSnapshot loaded = currentWar.snapshot(0);
+        WarSnapshot keyframe = replay.getKeyframe(replay.keyframeBefore(round));
+        currentWar.setListenersMuted(true);
+        currentWar.restore(keyframe);
+        compState.round = keyframe.round;
+        while (compState.round < round && !currentWar.isOver()) {
+            currentWar.nextRound(compState.round);
+            ++compState.round;
+        }
+        WarSnapshot target = currentWar.snapshot(compState.round);
+        currentWar.restore(loaded);
+        currentWar.setListenersMuted(false);
+        competitionEventListener.onWarStart();
+        currentWar.restore(target);
+        currentWar.pause();
+    }
+
+    /** Sets the sizes of the arena and the memories of the warriors for the wars that start from now on */
+    public void setGeometry(ArenaGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    public ArenaGeometry getGeometry() {
+        return geometry;
+    }
+
+    /** @return true while a competition runs in the debugger, its rounds are the ones the listeners hear of */
+    public boolean isInDebugger() {
+        return compState != null && compState.isInDebugger;
+    }
+
+    /** @return the data watchpoints, these apply to every war that runs in the debugger */
+    public Watchpoints getWatchpoints() {
+        return watchpoints;
+    }
+
+    /** @return the snapshots of the war being debugged */
+    public SnapshotHistory getSnapshotHistory() {
+        return snapshotHistory;
+    }
+
+    /** Should be called after the user changed the state of the paused war, so that stepping back keeps the change */
+    public void warStateEdited() {
+        if (currentWar != null && compState != null && compState.isInDebugger)
+            snapshotHistory.record(currentWar, compState.round);
+    }
+
+    /**
+     * Takes the paused war being debugged back to an earlier round by re-running from the closest snapshot.
+     * The memory listener is notified of the bytes that changed between the current round and that round.
+     * @return false if there is no war to go back in or no snapshot to go back from
+     */
+    public boolean seekBack(int round)
+    {
+        if (currentWar == null || compState == null || !compState.isInDebugger || round < 0 || round >= compState.round)
+            return false;
+        WarSnapshot from = snapshotHistory.latestAtOrBefore(round);
+        if (from == null)
+            return false;
+
+        WarSnapshot shown = currentWar.snapshot(compState.round);
+        snapshotHistory.dropFrom(round + 1);
+        currentWar.setListenersMuted(true);
+        currentWar.restore(from);
+        for (int r = from.round; r < round; ++r) {
+            snapshotHistory.roundStarting(currentWar, r); // fill the history on the way so that the next step back is short
+            currentWar.nextRound(r);
+        }
+        WarSnapshot target = currentWar.snapshot(round);
+        currentWar.restore(shown);
+        currentWar.setListenersMuted(false);
+        currentWar.restore(target);
+
+        compState.round = round;
+        currentWar.pause();
+        return true;
+    }
+
+    /** Goes back a single round in the war being debugged */
+    public boolean stepBack()
+    {
+        return compState != null && seekBack(compState.round - 1);
+    }
+
+    /**
+     * Goes back to the last round a breakpoint was hit at, before the one that paused the war at the current round.
+     * If there is no such round, goes back to the start of the war.
+     * @return true if a breakpoint was hit
+     */
+    public boolean reverseContinue()
+    {
+        if (currentWar == null || compState == null || !compState.isInDebugger || compState.round == 0)
+            return false;
+        int end = compState.round - 1; // a hit in this round is the one we're at
+        int hit = -1;
+
+        WarSnapshot shown = currentWar.snapshot(compState.round);
+        currentWar.setListenersMuted(true);
+        WarSnapshot from = snapshotHistory.latestAtOrBefore(end - 1);
+        while (from != null && hit < 0) {
+            currentWar.restore(from);
+            for (int r = from.round; r < end; ++r) {
+                if (currentWar.nextRound(r))
+                    hit = r;
+            }
+            end = from.round;
+            from = (end > 0) ? snapshotHistory.latestAtOrBefore(end - 1) : null;
+        }
+        currentWar.restore(shown);
+        currentWar.setListenersMuted(false);
+
+        // the war pauses after the round that hit the breakpoint
+        seekBack(hit >= 0 ? hit + 1 : 0);
+        return hit >= 0;
+    }
+
     public int getTotalNumberOfWars() {
         return (int) competitionIterator.getNumberOfItems() * warsPerCombination;
     }
@@ -196,6 +372,8 @@ public class Competition {
     // return 1 if need another round, 0 if paused, -1 if we're done
     private int runRound()
     {
+        if (compState.isInDebugger)
+            snapshotHistory.roundStarting(currentWar, compState.round);
         competitionEventListener.onRound(compState.round);
 
         boolean atBreakpoint = currentWar.nextRound(compState.round);
@@ -204,6 +382,43 @@ public class Competition {
 
         competitionEventListener.onEndRound();
 
+        return roundResult(atBreakpoint);
+    }
+
+    // same as runRound() for rounds that no listener wants to hear about
+    private int runRoundNoEvents()
+    {
+        boolean atBreakpoint = currentWar.nextRound(compState.round);
+        ++compState.round;
+        return roundResult(atBreakpoint);
+    }
+
+    // run up to count rounds with the compete listeners, only rounds that were subscribed to are dispatched
+    // return the result of the last round like runRound()
+    private int runCompeteRounds(int count)
+    {
+        int interval = competitionEventCaster.getCompeteRoundInterval();
+        int endRound = compState.round + count;
+        int needMore = 1;
+        if (compState.isInDebugger) { // fast stepping in the debugger, keep the history for stepping back
+            while (needMore == 1 && compState.round < endRound) {
+                snapshotHistory.roundStarting(currentWar, compState.round);
+                needMore = (interval != 0 && compState.round % interval == 0) ? runRound() : runRoundNoEvents();
+            }
+        }
+        else if (interval == 0) {
+            while (needMore == 1 && compState.round < endRound)
+                needMore = runRoundNoEvents();
+        }
+        else {
+            while (needMore == 1 && compState.round < endRound)
+                needMore = (compState.round % interval == 0) ? runRound() : runRoundNoEvents();
+        }
+        return needMore;
+    }
+
+    private int roundResult(boolean atBreakpoint)
+    {
         // it's possible to continue stepping in a war that has ended and was over
         // don't tell that it's over every time, just on the time it ended first.
         if (!currentWar.hasEnded() && currentWar.isOver()) {
@@ -229,12 +444,18 @@ public class Competition {
     // return true if needs another round
     private void startWar(WarriorGroup[] warriorGroups) throws Exception
     {
-        currentWar = new War(memoryEventListener, competitionEventListener, compState.startPaused, compState.useNewMemory);
+        currentWar = new War(memoryEventListener, competitionEventListener, compState.startPaused, compState.useNewMemory, geometry);
         currentWar.setSeed(this.seed);
+        if (compState.isInDebugger)
+            currentWar.setWatchpoints(watchpoints);
         competitionEventListener.onWarPreStartClear();
         currentWar.loadWarriorGroups(warriorGroups);
+        currentWar.getMetrics().warStarted();
+        currentWar.setProfiling(profiling);
+        warStartMillis = System.currentTimeMillis();
         competitionEventListener.onWarStart(); // need to be before loadWarriorGroups since this clears the canvas and that writes the warriors to the canvas
         compState.round = 0;
+        snapshotHistory.clear();
     }
 
     private void doneWar()
@@ -248,17 +469,29 @@ public class Competition {
         int numAlive = currentWar.getNumRemainingWarriors();
         String names = currentWar.getRemainingWarriorNames();
 
+        int reason;
         if (numAlive == 1) { // we have a single winner!
-            competitionEventListener.onWarEnd(CompetitionEventListener.SINGLE_WINNER, names, compState.isInDebugger);
+            reason = CompetitionEventListener.SINGLE_WINNER;
+            competitionEventListener.onWarEnd(reason, names, compState.isInDebugger);
             currentWar.updateScores(warriorRepository);
         } else if (compState.round == MAX_ROUND) { // maximum round reached
-            competitionEventListener.onWarEnd(CompetitionEventListener.MAX_ROUND_REACHED, names, compState.isInDebugger);
+            reason = CompetitionEventListener.MAX_ROUND_REACHED;
+            competitionEventListener.onWarEnd(reason, names, compState.isInDebugger);
             currentWar.updateScores(warriorRepository);
         } else { // user abort
-            competitionEventListener.onWarEnd(CompetitionEventListener.ABORTED, names, compState.isInDebugger);
+            reason = CompetitionEventListener.ABORTED;
+            competitionEventListener.onWarEnd(reason, names, compState.isInDebugger);
             // don't update scores on abort since that would create fraction score
         }
-        currentWar.setEnded();
+        synchronized (metrics) {
+            currentWar.getMetrics().warEnded(reason, compState.round, System.currentTimeMillis() - warStartMillis);
+            metrics.add(currentWar.getMetrics());
+            runningMetrics.clear();
+            kills.addWar(currentWar);
+            for (WarriorGroup group : warriorRepository.getWarriorGroups())
+                scores.put(group.getName(), group.getGroupScore());
+            currentWar.setEnded();
+        }
         ++compState.warIndex;
 
 
@@ -285,6 +518,16 @@ public class Competition {
     }
 
 
+    /** @return the scheduler that decides how many rounds are run in a single call to continueRun() */
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    /** @return the measurements of the animation frames of the UI, the UI wraps its listeners with it */
+    public FrameProfiler getFrameProfiler() {
+        return frameProfiler;
+    }
+
     public void setSpeed(int speed) {
         this.speed = speed;
     }
@@ -300,6 +543,61 @@ public class Competition {
     }
     
     
+    /** profiles the warriors of the running war and of the wars after it, see War.setProfiling() */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+        if (currentWar != null)
+            currentWar.setProfiling(profiling);
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    // the war writes its counters without a lock, so other threads get a copy made under the lock after every frame
+    private void publishRunningMetrics() {
+        synchronized (metrics) {
+            runningMetrics.clear();
+            if (!currentWar.hasEnded())
+                runningMetrics.add(currentWar.getMetrics());
+        }
+    }
+
+    /**
+     * Can be called from any thread, the counters of the running war are as of the end of the last continueRun().
+     * @return a copy of the counters of all the wars of this Competition, including the running one
+     */
+    public EngineMetrics getMetricsSnapshot() {
+        EngineMetrics snapshot = new EngineMetrics();
+        synchronized (metrics) {
+            snapshot.add(metrics);
+            snapshot.add(runningMetrics);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Can be called from any thread.
+     * @return a copy of who killed whom in the ended wars of this Competition
+     */
+    public KillMatrix getKillMatrix() {
+        KillMatrix copy = new KillMatrix();
+        synchronized (metrics) {
+            copy.add(kills);
+        }
+        return copy;
+    }
+
+    /**
+     * Can be called from any thread.
+     * @return a copy of the score of every warrior group after the last ended war, in the order of the groups
+     */
+    public Map<String, Float> getScoresSnapshot() {
+        synchronized (metrics) {
+            return new LinkedHashMap<>(scores);
+        }
+    }
+
     public War getCurrentWar(){
     	return currentWar;
     }
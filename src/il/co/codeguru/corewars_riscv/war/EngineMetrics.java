@@ -0,0 +1,166 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+
+/**
+ * Counters of the running engine: instructions by opcode class, rounds, wars planned and by how they ended, the rounds
+ * of the wars, warrior deaths by cause, memory faults by kind and the wall time of the wars.
+ * Every War counts into its own instance, with a single writer and no synchronization, and the Competition adds
+ * the counters of every war that ends to its total, so wars that run in parallel don't share counters.
+ * Rounds that the debugger runs again to go back in a war are not counted again.
+ * Other threads don't read the counters of a running war, the Competition copies them under its lock after every
+ * frame. The instance returned by Competition.getMetricsSnapshot() is a copy that doesn't change.
+ */
+public class EngineMetrics {
+    /** Causes of warrior deaths */
+    public static final int DEATH_INVALID_OPCODE = 0;
+    public static final int DEATH_CPU_OTHER = 1;
+    public static final int DEATH_MEMORY = 2;
+    public static final int DEATH_COUNT = 3;
+    public static final String[] DEATH_NAMES = { "invalidOpcode", "cpuOther", "memory" };
+
+    /** Wars by CompetitionEventListener.SINGLE_WINNER, MAX_ROUND_REACHED, ABORTED */
+    public static final int END_REASON_COUNT = 3;
+    public static final String[] END_REASON_NAMES = { "singleWinner", "maxRoundReached", "aborted" };
+
+    /** Bucket i of the rounds histogram counts the wars that ran [2^(i-1), 2^i) rounds, bucket 0 the wars of 0 rounds */
+    public static final int ROUND_BUCKETS = 32;
+
+    final long[] instructions = new long[Instruction.CLASS_COUNT];
+    final long[] deaths = new long[DEATH_COUNT];
+    final long[] memoryFaults = new long[MemoryException.FAULT_COUNT];
+    final long[] warsEnded = new long[END_REASON_COUNT];
+    final long[] roundsHistogram = new long[ROUND_BUCKETS];
+    long rounds;
+    long warsPlanned;
+    long warsStarted;
+    long totalWarMillis;
+    long maxWarMillis;
+
+    void warriorDied(int cause) {
+        ++deaths[cause];
+    }
+
+    void memoryFault(int fault) {
+        ++deaths[DEATH_MEMORY];
+        ++memoryFaults[fault];
+    }
+
+    void warStarted() {
+        ++warsStarted;
+    }
+
+    void warEnded(int reason, int rounds, long millis) {
+        ++warsEnded[reason];
+        ++roundsHistogram[roundsBucket(rounds)];
+        totalWarMillis += millis;
+        maxWarMillis = Math.max(maxWarMillis, millis);
+    }
+
+    static int roundsBucket(int rounds) {
+        return 32 - Integer.numberOfLeadingZeros(rounds);
+    }
+
+    void clear() {
+        clearAll(instructions);
+        clearAll(deaths);
+        clearAll(memoryFaults);
+        clearAll(warsEnded);
+        clearAll(roundsHistogram);
+        rounds = 0;
+        warsPlanned = 0;
+        warsStarted = 0;
+        totalWarMillis = 0;
+        maxWarMillis = 0;
+    }
+
+    private static void clearAll(long[] counts) {
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] = 0;
+    }
+
+    /** adds all the counters of other to this */
+    void add(EngineMetrics other) {
+        addAll(instructions, other.instructions);
+        addAll(deaths, other.deaths);
+        addAll(memoryFaults, other.memoryFaults);
+        addAll(warsEnded, other.warsEnded);
+        addAll(roundsHistogram, other.roundsHistogram);
+        rounds += other.rounds;
+        warsPlanned += other.warsPlanned;
+        warsStarted += other.warsStarted;
+        totalWarMillis += other.totalWarMillis;
+        maxWarMillis = Math.max(maxWarMillis, other.maxWarMillis);
+    }
+
+    private static void addAll(long[] to, long[] from) {
+        for (int i = 0; i < to.length; ++i)
+            to[i] += from[i];
+    }
+
+    /** @param opcodeClass one of the Instruction.CLASS_ constants */
+    public long getInstructions(int opcodeClass) {
+        return instructions[opcodeClass];
+    }
+
+    public long getTotalInstructions() {
+        long total = 0;
+        for (long count : instructions)
+            total += count;
+        return total;
+    }
+
+    /** @param cause one of the DEATH_ constants */
+    public long getDeaths(int cause) {
+        return deaths[cause];
+    }
+
+    /** @param fault one of the MemoryException.FAULT_ constants */
+    public long getMemoryFaults(int fault) {
+        return memoryFaults[fault];
+    }
+
+    /** @return the rounds run in all the wars, including the one that is running */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /** @return the wars the competitions that were started run until they end */
+    public long getWarsPlanned() {
+        return warsPlanned;
+    }
+
+    /** @return the wars that ended for any reason */
+    public long getWarsEnded() {
+        long total = 0;
+        for (long count : warsEnded)
+            total += count;
+        return total;
+    }
+
+    public long getWarsStarted() {
+        return warsStarted;
+    }
+
+    /** @param reason one of the end reasons of CompetitionEventListener */
+    public long getWarsEnded(int reason) {
+        return warsEnded[reason];
+    }
+
+    /** @return a copy of the histogram of the rounds of the ended wars, see ROUND_BUCKETS */
+    public long[] getRoundsHistogram() {
+        long[] copy = new long[ROUND_BUCKETS];
+        System.arraycopy(roundsHistogram, 0, copy, 0, ROUND_BUCKETS);
+        return copy;
+    }
+
+    /** @return the wall time of all the ended wars, in milliseconds */
+    public long getTotalWarMillis() {
+        return totalWarMillis;
+    }
+
+    public long getMaxWarMillis() {
+        return maxWarMillis;
+    }
+}
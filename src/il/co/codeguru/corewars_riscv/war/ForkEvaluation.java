@@ -0,0 +1,111 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * Estimates the chances of the warriors of a paused war by forking continuations of it at its current round and
+ * running them to the end.
+ * Every continuation gets its own random stream. The only thing in a round that draws from it is the extra opcode
+ * of a warrior with energy, and energy is always 0, so for now all the continuations play out the same and the
+ * estimate is the outcome of the current position.
+ * The continuations are independent of each other so they can be run in any order, in parallel, or a few rounds
+ * at a time.
+ */
+public class ForkEvaluation {
+    private final War[] forks; // null once the continuation ended, so its pages can go
+    private final int[] nextRounds;
+    private final String[] labels; // of the warriors, by their index in the evaluated war
+    private final int[] endRounds;
+    private final boolean[][] alive; // at the end of every continuation, by the index of the warrior in the evaluated war
+
+    /**
+     * @param war the war to evaluate, it is not changed
+     * @param round the round the war is at
+     * @param count how many continuations to run
+     * @param seed the seeds of the continuations are derived from this
+     */
+    public ForkEvaluation(War war, int round, int count, long seed) {
+        labels = new String[war.getNumWarriors()];
+        for (int w = 0; w < labels.length; ++w)
+            labels[w] = war.getWarrior(w).getLabel();
+        forks = new War[count];
+        nextRounds = new int[count];
+        endRounds = new int[count];
+        alive = new boolean[count][labels.length];
+        // the continuations are forks of a fork so the used memory is copied once. forking marks the pages of the
+        // forked memory as shared, so this is done here and not by the continuations that may run in parallel
+        War base = war.fork();
+        for (int i = 0; i < count; ++i) {
+            forks[i] = base.fork();
+            forks[i].setSeed((seed * 31 + i) * 0x9E3779B97F4A7C15L);
+            nextRounds[i] = round;
+            endRounds[i] = -1;
+        }
+    }
+
+    public int getCount() {
+        return forks.length;
+    }
+
+    /**
+     * Runs some more rounds of a continuation
+     * @param maxRounds the most rounds to run
+     * @return how many rounds ran, 0 if the continuation already ended
+     */
+    public int runRounds(int index, int maxRounds) {
+        War war = forks[index];
+        if (war == null)
+            return 0;
+        int ran = 0;
+        while (ran < maxRounds && !war.isOver() && nextRounds[index] < Competition.MAX_ROUND) {
+            war.nextRound(nextRounds[index]);
+            ++nextRounds[index];
+            ++ran;
+        }
+        if (war.isOver() || nextRounds[index] >= Competition.MAX_ROUND) {
+            for (int w = 0; w < labels.length; ++w)
+                alive[index][w] = war.getWarriorByLabel(labels[w]).isAlive();
+            endRounds[index] = nextRounds[index];
+            forks[index] = null;
+        }
+        return ran;
+    }
+
+    /** Runs a single continuation to the end of the war */
+    public void runFork(int index) {
+        runRounds(index, Integer.MAX_VALUE);
+    }
+
+    public void runAll() {
+        for (int i = 0; i < forks.length; ++i)
+            runFork(i);
+    }
+
+    /** @return the round the continuation ended at, -1 if it didn't end yet */
+    public int getEndRound(int index) {
+        return endRounds[index];
+    }
+
+    /**
+     * The score of a continuation is divided between the warriors alive at its end, like the score of a war.
+     * @return for every warrior in the war, its average score over the continuations that ended
+     */
+    public float[] getWinProbabilities() {
+        float[] result = new float[labels.length];
+        int ran = 0;
+        for (int i = 0; i < forks.length; ++i) {
+            if (endRounds[i] < 0)
+                continue;
+            ++ran;
+            int survivors = 0;
+            for (int w = 0; w < labels.length; ++w)
+                if (alive[i][w])
+                    ++survivors;
+            for (int w = 0; w < labels.length; ++w) {
+                if (alive[i][w])
+                    result[w] += 1.0f / survivors;
+            }
+        }
+        for (int w = 0; ran > 0 && w < labels.length; ++w)
+            result[w] /= ran;
+        return result;
+    }
+}
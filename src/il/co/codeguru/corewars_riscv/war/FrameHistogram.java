@@ -0,0 +1,91 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * Counts durations in milliseconds into fixed buckets, so that keeping it up to date in every animation frame
+ * costs nothing and the rare slow frames stay visible instead of disappearing into an average.
+ */
+public class FrameHistogram {
+
+    /** the upper bounds of the buckets in ms, the last bucket takes everything above the last bound */
+    public static final double[] BOUNDS = { 0.25, 0.5, 1, 2, 4, 8, 16.7, 33.3, 66.7 };
+    public static final int BUCKETS = BOUNDS.length + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private double total;
+    private double max;
+
+    public void add(double ms) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && ms > BOUNDS[bucket])
+            ++bucket;
+        ++counts[bucket];
+        ++count;
+        total += ms;
+        if (ms > max)
+            max = ms;
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKETS; ++i)
+            counts[i] = 0;
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBucket(int bucket) {
+        return counts[bucket];
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @param fraction between 0 and 1, 0.95 for the 95th percentile
+     * @return the upper bound of the bucket that has the given fraction of the samples at or below it,
+     *         the max for the last bucket and 0 when empty
+     */
+    public double getPercentileBound(double fraction) {
+        long needed = (long)Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; ++i) {
+            seen += counts[i];
+            if (seen >= needed && seen > 0)
+                return BOUNDS[i];
+        }
+        return max;
+    }
+
+    /** @return a short name of the bucket, like "<=2" or ">66.7" */
+    public static String bucketName(int bucket) {
+        if (bucket == BOUNDS.length)
+            return ">" + formatMs(BOUNDS[BOUNDS.length - 1]);
+        return "<=" + formatMs(BOUNDS[bucket]);
+    }
+
+    // ms with up to two decimals. String.format is not available in the browser
+    static String formatMs(double ms) {
+        long hundredths = Math.round(ms * 100);
+        String s = Long.toString(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction == 0)
+            return s;
+        if (fraction % 10 == 0)
+            return s + "." + (fraction / 10);
+        return s + "." + (fraction < 10 ? "0" : "") + fraction;
+    }
+}
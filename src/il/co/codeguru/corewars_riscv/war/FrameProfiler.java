@@ -0,0 +1,354 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+
+/**
+ * Measures where the time of the animation frames of the UI goes: running the rounds, painting the canvas and
+ * updating the debugger, the memory views and the registers panel.
+ * At any time in a frame one section is current and the time passes into it. The emulation calls the listeners
+ * from inside its rounds, so the listeners that are wrapped with timeCompetitionEvents() switch to their own
+ * section while they run and back when they return, which leaves the emulation with only its own time.
+ * Memory writes come a byte at a time and reading the clock twice for each would cost more than most of the
+ * listeners do, so sampleMemoryEvents() times only one write in WRITE_SAMPLE_EVERY and moves that many times its
+ * time from the current section to the section of the listener. The flushes that the listeners do once a round
+ * are timed whole by their onEndRound().
+ * Every frame adds its time in every section to a histogram of that section.
+ * When not enabled it only costs a check in every wrapped listener call.
+ */
+public class FrameProfiler {
+
+    /** Sections of a frame */
+    public static final int EMULATION = 0;
+    public static final int CANVAS = 1;
+    public static final int DEBUGGER = 2;
+    public static final int MEMORY_VIEWS = 3;
+    public static final int CPU_FRAME = 4;
+    public static final int OTHER = 5;
+    public static final int SECTION_COUNT = 6;
+
+    /** Histograms of whole frames, after the sections */
+    public static final int FRAME_WORK = SECTION_COUNT; // the time from the start of a frame to its end
+    public static final int FRAME_INTERVAL = SECTION_COUNT + 1; // the time from the start of a frame to the start of the next
+    public static final int HISTOGRAM_COUNT = SECTION_COUNT + 2;
+
+    private static final String[] NAMES = { "emulation", "canvas", "debugger", "memoryViews", "cpuFrame", "other", "frame", "interval" };
+
+    private static final int NONE = -1;
+
+    /** one memory write in this many is timed, see sampleMemoryEvents() */
+    public static final int WRITE_SAMPLE_EVERY = 64;
+
+    private FrameScheduler.Clock clock = () -> (double)System.currentTimeMillis();
+    private boolean enabled = false;
+
+    private final FrameHistogram[] histograms = new FrameHistogram[HISTOGRAM_COUNT];
+    private final double[] frameTimes = new double[SECTION_COUNT];
+    private int current = NONE; // NONE when not inside a frame
+    private double sectionStart;
+    private double frameStart;
+    private double lastFrameStart = NONE; // NONE when the last frame didn't ask for another one
+    private long frames = 0;
+
+    public FrameProfiler() {
+        for (int i = 0; i < HISTOGRAM_COUNT; ++i)
+            histograms[i] = new FrameHistogram();
+    }
+
+    public void setClock(FrameScheduler.Clock clock) {
+        this.clock = clock;
+    }
+
+    /** turning it off in the middle of a frame drops that frame */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        current = NONE;
+        lastFrameStart = NONE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Called at the start of an animation frame, the time until the first enter() goes to OTHER */
+    public void startFrame() {
+        if (!enabled)
+            return;
+        double now = clock.now();
+        if (lastFrameStart != NONE)
+            histograms[FRAME_INTERVAL].add(now - lastFrameStart);
+        for (int i = 0; i < SECTION_COUNT; ++i)
+            frameTimes[i] = 0;
+        frameStart = now;
+        sectionStart = now;
+        current = OTHER;
+    }
+
+    /**
+     * Called at the end of an animation frame
+     * @param another whether the frame asked for another one, the interval to a frame that wasn't asked for is not measured
+     */
+    public void endFrame(boolean another) {
+        if (current == NONE)
+            return;
+        double now = clock.now();
+        frameTimes[current] += now - sectionStart;
+        for (int i = 0; i < SECTION_COUNT; ++i)
+            histograms[i].add(Math.max(frameTimes[i], 0)); // an estimate of sampled writes may overshoot a short section
+        histograms[FRAME_WORK].add(now - frameStart);
+        lastFrameStart = another ? frameStart : NONE;
+        current = NONE;
+        ++frames;
+    }
+
+    /**
+     * Makes section the current one
+     * @return the section that was current, to give to leave(). NONE outside of a frame or when not enabled
+     */
+    public int enter(int section) {
+        if (current == NONE)
+            return NONE;
+        int previous = current;
+        double now = clock.now();
+        frameTimes[current] += now - sectionStart;
+        sectionStart = now;
+        current = section;
+        return previous;
+    }
+
+    /** Goes back to the section that enter() returned */
+    public void leave(int previous) {
+        if (previous == NONE || current == NONE)
+            return;
+        enter(previous);
+    }
+
+    /** Moves an estimated time from the current section to section, without reading the clock */
+    private void attribute(int section, double ms) {
+        if (current == NONE || section == current)
+            return;
+        frameTimes[section] += ms;
+        frameTimes[current] -= ms;
+    }
+
+    /** @return the number of frames that were measured */
+    public long getFrames() {
+        return frames;
+    }
+
+    /** @param index a section or FRAME_WORK or FRAME_INTERVAL */
+    public FrameHistogram getHistogram(int index) {
+        return histograms[index];
+    }
+
+    public static String getName(int index) {
+        return NAMES[index];
+    }
+
+    public void clear() {
+        for (FrameHistogram histogram : histograms)
+            histogram.clear();
+        frames = 0;
+        lastFrameStart = NONE;
+    }
+
+    /** @return a table of the histograms, a line for each with the mean, 95th percentile and max in ms, then the bucket counts */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("frame times in ms, ").append(frames).append(" frames\n");
+        sb.append(pad("", 12)).append(pad("mean", 7)).append(pad("p95", 7)).append(pad("max", 7));
+        for (int b = 0; b < FrameHistogram.BUCKETS; ++b)
+            sb.append(pad(FrameHistogram.bucketName(b), 7));
+        sb.append('\n');
+        for (int i = 0; i < HISTOGRAM_COUNT; ++i) {
+            FrameHistogram histogram = histograms[i];
+            sb.append(pad(NAMES[i], 12));
+            sb.append(pad(FrameHistogram.formatMs(histogram.getMean()), 7));
+            sb.append(pad(FrameHistogram.formatMs(histogram.getPercentileBound(0.95)), 7));
+            sb.append(pad(FrameHistogram.formatMs(histogram.getMax()), 7));
+            for (int b = 0; b < FrameHistogram.BUCKETS; ++b)
+                sb.append(pad(Long.toString(histogram.getBucket(b)), 7));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width)
+            sb.append(' ');
+        return sb.toString();
+    }
+
+    /** @return a listener that passes everything to lis and counts the time it takes in section */
+    public CompetitionEventListener timeCompetitionEvents(CompetitionEventListener lis, int section) {
+        if (lis instanceof SampledCompetitionEventListener)
+            return new TimedSampledCompetitionListener((SampledCompetitionEventListener)lis, section);
+        return new TimedCompetitionListener(lis, section);
+    }
+
+    /**
+     * @return a listener that passes everything to lis and counts in section an estimate of the time its writes
+     * take, from timing one in every WRITE_SAMPLE_EVERY of them
+     */
+    public MemoryEventListener sampleMemoryEvents(final MemoryEventListener lis, final int section) {
+        return new MemoryEventListener() {
+            private int untilSample = WRITE_SAMPLE_EVERY;
+
+            @Override
+            public void onMemoryWrite(int address, byte value) {
+                if (current == NONE || --untilSample > 0) {
+                    lis.onMemoryWrite(address, value);
+                    return;
+                }
+                untilSample = WRITE_SAMPLE_EVERY;
+                double start = clock.now();
+                lis.onMemoryWrite(address, value);
+                attribute(section, (clock.now() - start) * WRITE_SAMPLE_EVERY);
+            }
+
+            @Override
+            public void onWriteState(EWriteState state) {
+                int previous = enter(section);
+                try {
+                    lis.onWriteState(state);
+                } finally {
+                    leave(previous);
+                }
+            }
+        };
+    }
+
+    private class TimedCompetitionListener implements CompetitionEventListener {
+        private final CompetitionEventListener lis;
+        private final int section;
+
+        TimedCompetitionListener(CompetitionEventListener lis, int section) {
+            this.lis = lis;
+            this.section = section;
+        }
+
+        @Override
+        public void onWarPreStartClear() {
+            int previous = enter(section);
+            try {
+                lis.onWarPreStartClear();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onWarStart() {
+            int previous = enter(section);
+            try {
+                lis.onWarStart();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onWarEnd(int reason, String winners, boolean inDebug) {
+            int previous = enter(section);
+            try {
+                lis.onWarEnd(reason, winners, inDebug);
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onRound(int round) {
+            int previous = enter(section);
+            try {
+                lis.onRound(round);
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onWarriorBirth(Warrior w) {
+            int previous = enter(section);
+            try {
+                lis.onWarriorBirth(w);
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onWarriorDeath(Warrior warrior, String reason) {
+            int previous = enter(section);
+            try {
+                lis.onWarriorDeath(warrior, reason);
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onCompetitionStart() {
+            int previous = enter(section);
+            try {
+                lis.onCompetitionStart();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onCompetitionEnd() {
+            int previous = enter(section);
+            try {
+                lis.onCompetitionEnd();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onEndRound() {
+            int previous = enter(section);
+            try {
+                lis.onEndRound();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onPaused() {
+            int previous = enter(section);
+            try {
+                lis.onPaused();
+            } finally {
+                leave(previous);
+            }
+        }
+
+        @Override
+        public void onNoneAlive() {
+            int previous = enter(section);
+            try {
+                lis.onNoneAlive();
+            } finally {
+                leave(previous);
+            }
+        }
+    }
+
+    private class TimedSampledCompetitionListener extends TimedCompetitionListener implements SampledCompetitionEventListener {
+        private final SampledCompetitionEventListener sampled;
+
+        TimedSampledCompetitionListener(SampledCompetitionEventListener lis, int section) {
+            super(lis, section);
+            sampled = lis;
+        }
+
+        @Override
+        public int getRoundInterval() {
+            return sampled.getRoundInterval();
+        }
+    }
+}
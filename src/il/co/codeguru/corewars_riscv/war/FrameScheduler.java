@@ -0,0 +1,92 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * Decides how many rounds to run in a single animation frame.
+ * Rounds are run in batches, and after every batch the elapsed time is checked against the frame budget.
+ * The batch size is adapted from the measured rounds/ms so that a frame needs only a few clock reads
+ * while still returning control to the browser before the budget is used up.
+ */
+public class FrameScheduler {
+
+    /** Source of time, in milliseconds. In the browser this should be performance.now() */
+    public interface Clock {
+        double now();
+    }
+
+    /** Default time budget for emulation in a single frame, leaves a few ms of a 60Hz frame for painting */
+    public static final double DEFAULT_BUDGET_MS = 12;
+
+    private static final int MIN_BATCH = 16;
+    private static final int MAX_BATCH = 1 << 16;
+    /** how much of the remaining time a single batch aims to fill, leaves room for a misprediction */
+    private static final double BATCH_FILL = 0.5;
+    /** weight of the newest measurement in the rounds/ms average */
+    private static final double RATE_SMOOTHING = 0.25;
+
+    private Clock clock = () -> (double)System.currentTimeMillis();
+    private double budgetMs = DEFAULT_BUDGET_MS;
+
+    private double roundsPerMs = 0; // 0 means not measured yet
+    private int unmeasuredBatch = MIN_BATCH; // grows while batches are too short for the clock resolution
+    private double frameStart;
+    private double batchStart;
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void setBudget(double budgetMs) {
+        this.budgetMs = budgetMs;
+    }
+
+    public double getBudget() {
+        return budgetMs;
+    }
+
+    /** @return the measured throughput, 0 if nothing was measured yet */
+    public double getRoundsPerMs() {
+        return roundsPerMs;
+    }
+
+    /** Called at the start of every animation frame that runs rounds */
+    public void startFrame() {
+        frameStart = clock.now();
+        batchStart = frameStart;
+    }
+
+    /**
+     * @param maxRounds upper limit on the number of rounds the caller is willing to run
+     * @return how many rounds to run before calling batchDone()
+     */
+    public int nextBatch(int maxRounds) {
+        int batch = unmeasuredBatch;
+        if (roundsPerMs > 0) {
+            double remaining = budgetMs - (batchStart - frameStart);
+            batch = (int)Math.min(MAX_BATCH, Math.max(MIN_BATCH, remaining * roundsPerMs * BATCH_FILL));
+        }
+        return Math.min(batch, maxRounds);
+    }
+
+    /**
+     * Updates the throughput estimate.
+     * @param rounds number of rounds that actually ran in the last batch
+     * @return true if there is still time left in this frame for another batch
+     */
+    public boolean batchDone(int rounds) {
+        double now = clock.now();
+        double elapsed = now - batchStart;
+        batchStart = now;
+        // a batch that was too short to measure with the clock resolution doesn't say much about the rate
+        if (rounds > 0 && elapsed > 0) {
+            double rate = rounds / elapsed;
+            if (roundsPerMs == 0)
+                roundsPerMs = rate;
+            else
+                roundsPerMs += (rate - roundsPerMs) * RATE_SMOOTHING;
+        }
+        else if (rounds > 0 && roundsPerMs == 0) {
+            unmeasuredBatch = Math.min(MAX_BATCH, unmeasuredBatch * 2);
+        }
+        return (now - frameStart) < budgetMs;
+    }
+}
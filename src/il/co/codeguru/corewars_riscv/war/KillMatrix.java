@@ -0,0 +1,78 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Who killed whom over the wars of a competition, by warrior name. A warrior that died in its own bytes killed
+ * itself, one that died in bytes nobody wrote was killed by the arena. See War.getKiller().
+ */
+public class KillMatrix {
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private int[][] kills = new int[0][]; // [killer][victim]
+    private int[] arenaKills = new int[0]; // by victim
+
+    private int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        id = names.size();
+        names.add(name);
+        ids.put(name, id);
+        int size = names.size();
+        int[][] grown = new int[size][size];
+        for (int k = 0; k < kills.length; ++k)
+            System.arraycopy(kills[k], 0, grown[k], 0, kills[k].length);
+        kills = grown;
+        int[] grownArena = new int[size];
+        System.arraycopy(arenaKills, 0, grownArena, 0, arenaKills.length);
+        arenaKills = grownArena;
+        return id;
+    }
+
+    /** adds the deaths of a war */
+    void addWar(War war) {
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            int killer = war.getKiller(i);
+            if (killer == War.KILLER_NONE)
+                continue;
+            int victim = idOf(war.getWarrior(i).getName());
+            if (killer == War.KILLER_ARENA) {
+                ++arenaKills[victim];
+                continue;
+            }
+            int killerId = idOf(war.getWarrior(killer).getName());
+            ++kills[killerId][victim];
+        }
+    }
+
+    void add(KillMatrix other) {
+        int[] otherIds = new int[other.names.size()];
+        for (int i = 0; i < otherIds.length; ++i)
+            otherIds[i] = idOf(other.names.get(i)); // before indexing kills, this may grow it
+        for (int k = 0; k < otherIds.length; ++k) {
+            for (int v = 0; v < otherIds.length; ++v)
+                kills[otherIds[k]][otherIds[v]] += other.kills[k][v];
+            arenaKills[otherIds[k]] += other.arenaKills[k];
+        }
+    }
+
+    /** @return the names of all the warriors that killed or died, in the order they were first seen */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public int getKills(String killer, String victim) {
+        Integer k = ids.get(killer), v = ids.get(victim);
+        return (k == null || v == null) ? 0 : kills[k][v];
+    }
+
+    public int getArenaKills(String victim) {
+        Integer v = ids.get(victim);
+        return (v == null) ? 0 : arenaKills[v];
+    }
+}
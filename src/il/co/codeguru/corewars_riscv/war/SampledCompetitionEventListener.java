@@ -0,0 +1,19 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * A competition listener that also wants events while the competition runs without the debugger.
+ * Plain CompetitionEventListeners only hear about the competition and war end when not debugging, a sampled
+ * listener also gets the war start, warrior births and deaths and, if it asks for it, every N-th round.
+ * When no listener asks for rounds, the round loop doesn't dispatch any per-round event at all.
+ */
+public interface SampledCompetitionEventListener extends CompetitionEventListener {
+
+    /** only onWarPreStartClear, onWarStart, onWarEnd and warrior births and deaths */
+    int WAR_BOUNDARIES = 0;
+    int EVERY_ROUND = 1;
+
+    /**
+     * @return N for getting onRound and onEndRound on every round that is a multiple of N, or WAR_BOUNDARIES
+     */
+    int getRoundInterval();
+}
@@ -0,0 +1,91 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots of the war being debugged, for going back to earlier rounds.
+ * A snapshot is taken every interval rounds. When there are too many, every second snapshot in the older half
+ * is dropped, so the recent rounds stay densely covered and the spacing grows towards the start of the war.
+ * The snapshot of round 0 is never dropped.
+ */
+public class SnapshotHistory {
+    public static final int DEFAULT_INTERVAL = 256;
+    /** a snapshot is about 64K for the arena plus the stacks and shared memories */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 64;
+
+    private final int interval;
+    private final int maxSnapshots;
+    private final List<WarSnapshot> snapshots = new ArrayList<>(); // sorted by round
+
+    public SnapshotHistory() {
+        this(DEFAULT_INTERVAL, DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    public SnapshotHistory(int interval, int maxSnapshots) {
+        this.interval = interval;
+        this.maxSnapshots = Math.max(2, maxSnapshots);
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return snapshots.size();
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    /** Called before every round of the war, takes a snapshot if it's time for one */
+    public void roundStarting(War war, int round) {
+        if (round % interval != 0)
+            return;
+        if (!snapshots.isEmpty() && snapshots.get(snapshots.size() - 1).round >= round)
+            return; // already have it
+        add(war.snapshot(round));
+    }
+
+    /**
+     * Adds a snapshot of the current state, replacing any snapshot from this round on.
+     * Used after the user changed the state so that going back doesn't lose the change.
+     */
+    public void record(War war, int round) {
+        dropFrom(round);
+        add(war.snapshot(round));
+    }
+
+    private void add(WarSnapshot snapshot) {
+        snapshots.add(snapshot);
+        if (snapshots.size() > maxSnapshots)
+            thin();
+    }
+
+    private void thin() {
+        int olderHalf = snapshots.size() / 2;
+        List<WarSnapshot> kept = new ArrayList<>(snapshots.size());
+        for (int i = 0; i < snapshots.size(); ++i) {
+            if (i == 0 || i >= olderHalf || (i % 2) == 0)
+                kept.add(snapshots.get(i));
+        }
+        snapshots.clear();
+        snapshots.addAll(kept);
+    }
+
+    /** Drops the snapshots of this round and later, they are no longer the future of the war */
+    public void dropFrom(int round) {
+        while (!snapshots.isEmpty() && snapshots.get(snapshots.size() - 1).round >= round)
+            snapshots.remove(snapshots.size() - 1);
+    }
+
+    /** @return the latest snapshot at or before the given round, or null if there is none */
+    public WarSnapshot latestAtOrBefore(int round) {
+        for (int i = snapshots.size() - 1; i >= 0; --i) {
+            if (snapshots.get(i).round <= round)
+                return snapshots.get(i);
+        }
+        return null;
+    }
+}
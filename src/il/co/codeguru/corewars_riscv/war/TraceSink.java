@@ -0,0 +1,22 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * Gets every instruction a War runs while it is set with War.setTrace().
+ * For every instruction the War calls instructionStarting(), then memoryWrite() for every byte it stores, and then
+ * instructionDone() when it completes or instructionFailed() when it kills the warrior.
+ * All the calls come from the thread running the war, in the middle of the round, so they need to return quickly.
+ */
+public interface TraceSink {
+    void instructionStarting(int round, int warrior, int pc);
+
+    void memoryWrite(int address, byte value);
+
+    /**
+     * @param raw the code of the instruction, only the low 16 bits for a compressed one
+     * @param rd the register the instruction writes, 0 for none. it is there even when the value didn't change
+     * @param rdValue the new value of rd
+     */
+    void instructionDone(int raw, int rd, int rdValue);
+
+    void instructionFailed();
+}
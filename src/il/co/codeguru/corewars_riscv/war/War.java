@@ -1,17 +1,23 @@
 package il.co.codeguru.corewars_riscv.war;
 
 import il.co.codeguru.corewars_riscv.cpu.exceptions.CpuException;
+import il.co.codeguru.corewars_riscv.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars_riscv.cpu.exceptions.UnimplementedOpcodeException;
+import il.co.codeguru.corewars_riscv.cpu.exceptions.UnsupportedOpcodeException;
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.memory.CowMemory;
 import il.co.codeguru.corewars_riscv.memory.RawMemory;
 import il.co.codeguru.corewars_riscv.gui.IBreakpointCheck;
 import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
 import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
 import il.co.codeguru.corewars_riscv.utils.Logger;
 import il.co.codeguru.corewars_riscv.utils.Unsigned;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
 import static il.co.codeguru.corewars_riscv.memory.RawMemory.*;
 
@@ -25,17 +31,15 @@ public class War {
     /** Arena's code segment */
     public final static short ARENA_SEGMENT = 0;
 
-    /** Arena's size in bytes (= size of a single segment) */
+    /** Arena's size in bytes (= size of a single segment) in the default geometry */
     public final static int ARENA_SIZE =
         PARAGRAPHS_IN_SEGMENT * PARAGRAPH_SIZE;
-    /** Warrior's private stack size */
+    /** Warrior's private stack size in the default geometry */
     public final static short STACK_SIZE = 2*1024;
-    /** Group-shared private memory size */
+    /** Group-shared private memory size in the default geometry */
     public final static short GROUP_SHARED_MEMORY_SIZE = 1024;
     /** Arena is filled with this byte */
     private final static byte ARENA_BYTE = (byte)0x00;
-    /** Maximum number of warriors in a fight */
-    private final static int MAX_WARRIORS = 20;
     /** Maximum attempts to load a warrior to the Arena */
     private final static int MAX_LOADING_TRIES = 100;
     /** Minimum initial space (in bytes) between loaded warriors */
@@ -47,6 +51,40 @@ public class War {
     private int m_numWarriors;
     /** Number of warriors still alive */
     private int m_numWarriorsAlive;
+    /** Counters of this war, not kept in snapshots, a fork starts its own */
+    private final EngineMetrics m_metrics = new EngineMetrics();
+    /** Where the rounds run with the listeners muted count, those rounds already counted the first time they ran */
+    private final EngineMetrics m_mutedMetrics = new EngineMetrics();
+    private EngineMetrics m_counting = m_metrics;
+    /** Owner of whatever killed a warrior, see getKiller() */
+    public static final int KILLER_NONE = -2; // still alive
+    public static final int KILLER_ARENA = -1; // the bytes nobody wrote to, or the killer is not known
+
+    /**
+     * For every arena address, 1 + the index of the warrior that last wrote to it, 0 when nobody did.
+     * Written by the memories of the warriors on every store, kept in snapshots
+     */
+    private final byte[] m_owners;
+    /** Whose bytes killed every warrior, by its index */
+    private final int[] m_killers;
+    /**
+     * The profile of every warrior by its index, null when not profiling. Not kept in snapshots, forks don't profile.
+     * Rounds run with the listeners muted are runs again of rounds that were already profiled, so they don't count
+     */
+    private WarriorProfile[] m_profiles = null;
+    private final long[] m_turnStartCounts = new long[Instruction.CLASS_COUNT];
+
+    private TraceSink m_trace = null;
+    private final MemoryEventListener m_traceWrites = new MemoryEventListener() {
+        @Override
+        public void onMemoryWrite(int address, byte value) {
+            m_trace.memoryWrite(address, value);
+        }
+
+        @Override
+        public void onWriteState(EWriteState state) {
+        }
+    };
     /**
      * Addresses equal or larger than this are still unused.
      * An address can be 'used' either by the Arena, or by the private stacks.
@@ -54,14 +92,23 @@ public class War {
     private int m_nextFreeAddress;
     /** The 'physical' memory core */
     private RawMemory m_core;
+    /** The sizes of the arena and of the memory of every warrior */
+    private final ArenaGeometry m_geometry;
+
+    /** The groups as given to loadWarriorGroups(), before shuffling */
+    private WarriorGroup[] m_warriorGroups;
 
     /** The number of the current warrior */
     private int m_currentWarrior;
 
     /** The listener for war events */
     private CompetitionEventListener m_warListener;
+    private MemoryEventListener m_memoryListener;
+    private boolean m_listenersMuted = false;
 
     private IBreakpointCheck m_breakpointCheck = null;
+    private Watchpoints m_watchpoints = null; // of all the warriors, unlike the breakpoints
+    private Watchpoints.Hit m_watchHit = null;
     private int m_uiWarriorIndex = -1; // break in breakpoints only of this warrior (he's the one selected in the PlayersPanel)
     private boolean m_inDebugger = false; // controls the end condition
     private boolean m_hasEnded = false; // this war has ended but the object remains alive for post-mortem examination
@@ -76,6 +123,18 @@ public class War {
     public void setBreakpointCheck(IBreakpointCheck brc) {
         m_breakpointCheck = brc;
     }
+    public void setWatchpoints(Watchpoints watchpoints) {
+        m_watchpoints = watchpoints;
+        if (watchpoints != null)
+            watchpoints.ensureMemorySize(m_geometry.getMemorySize());
+        m_core.setWatchpoints(watchpoints);
+        for (int i = 0; i < m_numWarriors; ++i)
+            m_warriors[i].setWatchpoints(watchpoints);
+    }
+    /** @return the watchpoint hit that stopped the last round, null if there was none */
+    public Watchpoints.Hit getWatchHit() {
+        return m_watchHit;
+    }
     public void setInDebugger() {
         m_inDebugger = true;
     }
@@ -91,25 +150,75 @@ public class War {
      * Fills the Arena with its initial data. 
      */
     public War(MemoryEventListener memoryListener, CompetitionEventListener warListener, boolean startPaused, boolean useNewMemory) {
+        this(memoryListener, warListener, startPaused, useNewMemory, ArenaGeometry.DEFAULT);
+    }
+
+    public War(MemoryEventListener memoryListener, CompetitionEventListener warListener, boolean startPaused, boolean useNewMemory,
+               ArenaGeometry geometry) {
     	isPaused = startPaused; //startPaused; // startPause just causes control to  return after startWar, we don't want to pause the first round
         m_warListener = warListener;
-        m_warriors = new Warrior[MAX_WARRIORS];
+        m_geometry = geometry;
+        m_warriors = new Warrior[geometry.maxWarriors];
+        m_killers = new int[geometry.maxWarriors];
+        Arrays.fill(m_killers, KILLER_NONE);
+        m_owners = new byte[geometry.arenaSize];
         m_numWarriors = 0;
         m_numWarriorsAlive = 0;
-        m_core = new RawMemory(MEMORY_SIZE);
-        m_nextFreeAddress = ARENA_SIZE;
+        m_core = new RawMemory(geometry.getMemorySize());
+        m_nextFreeAddress = geometry.arenaSize;
         this.useNewMemory = useNewMemory;
 
         // initialize arena
-        for (int offset = 0; offset < ARENA_SIZE; ++offset) {
+        for (int offset = 0; offset < geometry.arenaSize; ++offset) {
             m_core.storeByte(offset, ARENA_BYTE);
         }
 
         isSingleRound = false;
         
         // set the memory listener (we only do this now, to skip initialization)
+        m_memoryListener = memoryListener;
         m_core.setListener(memoryListener);
     }
+
+    /** Copies a war for fork(), the copy has no listeners or breakpoints */
+    private War(War other, CowMemory core) {
+        m_core = core;
+        m_geometry = other.m_geometry;
+        useNewMemory = other.useNewMemory;
+        m_warriors = new Warrior[m_geometry.maxWarriors];
+        m_killers = Arrays.copyOf(other.m_killers, other.m_killers.length);
+        m_owners = Arrays.copyOf(other.m_owners, other.m_owners.length);
+        m_numWarriors = other.m_numWarriors;
+        for (int i = 0; i < m_numWarriors; ++i)
+        {
+            m_warriors[i] = new Warrior(other.m_warriors[i], core, useNewMemory);
+            m_warriors[i].setOpcodeCounts(m_metrics.instructions);
+            m_warriors[i].setOwnerShadow(m_owners);
+        }
+        m_numWarriorsAlive = other.m_numWarriorsAlive;
+        m_nextFreeAddress = other.m_nextFreeAddress;
+        m_warriorGroups = other.m_warriorGroups;
+        m_currentWarrior = -1;
+        m_inDebugger = other.m_inDebugger;
+        m_hasEnded = other.m_hasEnded;
+        m_seed = other.m_seed;
+        rand.setState(other.rand.getState());
+    }
+
+    /**
+     * Makes an independent copy of the war, with the same memory, warriors and random state.
+     * The memory pages are shared and copied when written to. A war with a plain memory (the one the UI shows)
+     * has its used memory copied once, so making many forks is cheaper by forking a fork.
+     */
+    public War fork() {
+        CowMemory core;
+        if (m_core instanceof CowMemory)
+            core = ((CowMemory)m_core).fork();
+        else
+            core = new CowMemory(m_core, m_nextFreeAddress, m_geometry.getMemorySize());
+        return new War(this, core);
+    }
+
 	
     /**
      * Runs a single round of the war (every living warrior does his turn).
@@ -118,45 +227,169 @@ public class War {
      */
     public boolean nextRound(int round) {
         boolean atBreakpoint = false;
+        WarriorProfile[] profiles = m_listenersMuted ? null : m_profiles;
+        ++m_counting.rounds;
+        if (m_watchpoints != null)
+            m_watchpoints.takeHit(); // accesses from outside of the war, like the loading of warriors or edits by the user
         for (int i = 0; i < m_numWarriors; ++i)
         {
             Warrior warrior = m_warriors[i];
             m_currentWarrior = i;
             if (warrior.isAlive()) {
                 int savedIp = warrior.getCpuState().getPc();
+                int runningIp = savedIp;
+                if (profiles != null)
+                    profileTurnStarting(profiles[i], savedIp);
                 try {
 
                     // run first InstructionInfo
-                    warrior.nextOpcode();
+                    if (m_watchpoints != null)
+                        m_watchpoints.instructionStarting(i, savedIp);
+                    runOpcode(round, i, warrior);
                     atBreakpoint |= (m_breakpointCheck != null && m_currentWarrior == m_uiWarriorIndex && m_breakpointCheck.shouldBreak(warrior.getCpuState()));
 
                     // run one extra InstructionInfo, if warrior deserves it :)
                     updateWarriorEnergy(warrior, round);
                     if (shouldRunExtraOpcode(warrior)) {
-                        warrior.nextOpcode();
+                        runningIp = warrior.getCpuState().getPc();
+                        if (m_watchpoints != null)
+                            m_watchpoints.instructionStarting(i, warrior.getCpuState().getPc());
+                        if (profiles != null)
+                            profiles[i].hit(warrior.getCpuState().getPc());
+                        runOpcode(round, i, warrior);
                         atBreakpoint |= (m_breakpointCheck != null && m_currentWarrior == m_uiWarriorIndex && m_breakpointCheck.shouldBreak(warrior.getCpuState()));
                     }
                 }
                 catch (CpuException e) {
-                    if(m_warListener != null)
+                    boolean invalidOpcode = e instanceof InvalidOpcodeException || e instanceof UnimplementedOpcodeException || e instanceof UnsupportedOpcodeException;
+                    m_counting.warriorDied(invalidOpcode ? EngineMetrics.DEATH_INVALID_OPCODE : EngineMetrics.DEATH_CPU_OTHER);
+                    m_killers[i] = findKiller(i, runningIp);
+                    if (m_trace != null)
+                        m_trace.instructionFailed();
+                    if(m_warListener != null && !m_listenersMuted)
                         m_warListener.onWarriorDeath(warrior, "CPU exception");
                     warrior.kill();
                     warrior.getCpuState().setPc(savedIp); // don't advance IP, show where the exception occured
                     --m_numWarriorsAlive;
                 }
                 catch (MemoryException e) {
-                    if(m_warListener != null)
+                    m_counting.memoryFault(e.getFault());
+                    m_killers[i] = findKiller(i, runningIp);
+                    if (m_trace != null)
+                        m_trace.instructionFailed();
+                    if(m_warListener != null && !m_listenersMuted)
                         m_warListener.onWarriorDeath(warrior, "RawMemory exception: " + e.getMessage());
                     warrior.kill();
                     warrior.getCpuState().setPc(savedIp);
                     --m_numWarriorsAlive;
                 }
+                if (profiles != null)
+                    profileTurnDone(profiles[i]);
             }
         }
         m_currentWarrior = -1;
+        if (m_watchpoints != null) {
+            m_watchHit = m_watchpoints.takeHit();
+            atBreakpoint |= (m_watchHit != null);
+        }
         return atBreakpoint;
     }
 
+    private void runOpcode(int round, int warriorIndex, Warrior warrior) throws CpuException, MemoryException {
+        if (m_trace == null) {
+            warrior.nextOpcode();
+            return;
+        }
+        CpuStateRiscV state = warrior.getCpuState();
+        m_trace.instructionStarting(round, warriorIndex, state.getPc());
+        warrior.nextOpcode();
+        int rd = warrior.getLastRd();
+        m_trace.instructionDone(warrior.getLastRaw(), rd, state.getReg(rd));
+    }
+
+    /**
+     * Sends every instruction the loaded warriors run from now on to the trace, with the bytes it stores.
+     * Call after loading the warriors, forks of the war don't trace.
+     * @param trace null to stop
+     */
+    public void setTrace(TraceSink trace) {
+        m_trace = trace;
+        for (int i = 0; i < m_numWarriors; ++i)
+            m_warriors[i].setWriteTrace(trace != null ? m_traceWrites : null);
+    }
+
+    /**
+     * The killer of a warrior is whoever wrote the bytes of the instruction it died in. When its own bytes and another
+     * warrior's are mixed, the other warrior is the killer, since it changed the instruction.
+     * A compressed instruction is 2 bytes, the 2 after it are the next instruction and have nothing to do with it.
+     */
+    private int findKiller(int victim, int ip) {
+        int length = ((m_core.peekByte(ip) & 3) != 3) ? 2 : 4;
+        boolean own = false;
+        for (int b = 0; b < length; ++b) {
+            int address = ip + b;
+            if (address < 0 || address >= m_owners.length)
+                continue;
+            int owner = m_owners[address] - 1;
+            if (owner == victim)
+                own = true;
+            else if (owner >= 0)
+                return owner;
+        }
+        return own ? victim : KILLER_ARENA;
+    }
+
+    /**
+     * @return the index of the warrior whose bytes killed the warrior at the index, which may be itself,
+     *         or KILLER_ARENA or KILLER_NONE
+     */
+    public int getKiller(int warriorIndex) {
+        return m_killers[warriorIndex];
+    }
+
+    /** @return the index of the warrior that last wrote to the arena address, -1 if nobody did */
+    public int getOwner(int address) {
+        return m_owners[address] - 1;
+    }
+
+    private void profileTurnStarting(WarriorProfile profile, int pc) {
+        profile.hit(pc);
+        System.arraycopy(m_metrics.instructions, 0, m_turnStartCounts, 0, Instruction.CLASS_COUNT);
+    }
+
+    // the instructions the warrior completed in its turn are what the counters of the war grew by
+    private void profileTurnDone(WarriorProfile profile) {
+        for (int c = 0; c < Instruction.CLASS_COUNT; ++c)
+            profile.addOpcodeClass(c, m_metrics.instructions[c] - m_turnStartCounts[c]);
+    }
+
+    /**
+     * Starts counting where every loaded warrior spends its time, from the next round. Call after loading the warriors.
+     * Rounds run while profiling is off don't count, turning it off drops the profiles.
+     */
+    public void setProfiling(boolean profiling) {
+        if (!profiling) {
+            m_profiles = null;
+            return;
+        }
+        if (m_profiles != null)
+            return;
+        m_profiles = new WarriorProfile[m_numWarriors];
+        for (int i = 0; i < m_numWarriors; ++i)
+            m_profiles[i] = new WarriorProfile(m_geometry.arenaSize);
+    }
+
+    public boolean isProfiling() {
+        return m_profiles != null;
+    }
+
+    /** @return the profile of the warrior, null when not profiling */
+    public WarriorProfile getProfile(Warrior warrior) {
+        if (m_profiles == null || warrior.m_myIndex >= m_profiles.length)
+            return null;
+        return m_profiles[warrior.m_myIndex];
+    }
+
     /**
      * @return whether or not the War is over.
      */
@@ -239,6 +472,7 @@ public class War {
      * @throws Exception
      */
     public void loadWarriorGroups(WarriorGroup[] warriorGroups) throws Exception {
+        m_warriorGroups = warriorGroups;
         m_currentWarrior = 0;
         ArrayList<WarriorGroup> groupsLeftToLoad = new ArrayList<>(Arrays.asList(warriorGroups));
 
@@ -254,9 +488,11 @@ public class War {
     private void loadWarriorGroup(WarriorGroup warriorGroup) throws Exception {
         List<WarriorData> warriors = warriorGroup.getWarriors();
 
-        int groupSharedMemory = allocateCoreMemory(GROUP_SHARED_MEMORY_SIZE);
+        int groupSharedMemory = allocateCoreMemory(m_geometry.groupSharedMemorySize);
 
         for (WarriorData warrior : warriors) {
+            if (m_numWarriors == m_warriors.length)
+                throw new Exception("Too many warriors, at most " + m_warriors.length + " can fight");
             String warriorName = warrior.getName();
             byte[] warriorData = warrior.getCode();
 
@@ -264,9 +500,9 @@ public class War {
             if (warrior.m_debugFixedLoadAddress < 0)
                 loadOffset = getLoadOffset(warriorData.length);
             else
-                loadOffset = (short) warrior.m_debugFixedLoadAddress;
+                loadOffset = warrior.m_debugFixedLoadAddress & m_geometry.getArenaMask();
 
-            int stackMemory = allocateCoreMemory(STACK_SIZE);
+            int stackMemory = allocateCoreMemory(m_geometry.stackSize);
 
             Warrior w = new Warrior(
                     warriorName,
@@ -277,14 +513,20 @@ public class War {
                     stackMemory,
                     groupSharedMemory,
                     m_numWarriors,
-                    useNewMemory);
+                    useNewMemory,
+                    m_geometry);
+            w.setOpcodeCounts(m_counting.instructions);
+            w.setOwnerShadow(m_owners);
+            w.setWatchpoints(m_watchpoints);
             m_warriors[m_numWarriors++] = w;
 
             // load warrior to arena
             if (m_core.getListener() != null)
                 m_core.getListener().onWriteState(MemoryEventListener.EWriteState.ADD_WARRIORS);
             for (int offset = 0; offset < warriorData.length; ++offset) {
-                m_core.storeByte((loadOffset + offset) & 0xFFFF, warriorData[offset]);
+                int address = (loadOffset + offset) & m_geometry.getArenaMask();
+                m_core.storeByte(address, warriorData[offset]);
+                m_owners[address] = (byte)(w.m_myIndex + 1);
             }
             if (m_core.getListener() != null)
                 m_core.getListener().onWriteState(MemoryEventListener.EWriteState.RUN);
@@ -306,7 +548,7 @@ public class War {
      *               RawMemory.PARAGRAPH_SIZE
      * @return Pointer to the beginning of the allocated memory block.
      */
-    private int allocateCoreMemory(short size) {
+    private int allocateCoreMemory(int size) {
         if ((size % PARAGRAPH_SIZE) != 0) {
             throw new IllegalArgumentException();
         }
@@ -329,7 +571,7 @@ public class War {
      * @return offset within the Arena to which the warrior can be loaded.
      * @throws Exception if no suitable address could be found.
      */
-    private short getLoadOffset(int warriorSize) throws Exception {
+    private int getLoadOffset(int warriorSize) throws Exception {
         int loadAddress = 0;
         boolean found = false;
         int numTries = 0;
@@ -337,11 +579,11 @@ public class War {
         while ((!found) && (numTries < MAX_LOADING_TRIES)) {
             ++numTries;
 
-            loadAddress = rand.nextInt(ARENA_SIZE);
+            loadAddress = rand.nextInt(m_geometry.arenaSize);
 
             found = loadAddress >= MIN_GAP;
 
-            if (loadAddress+warriorSize > ARENA_SIZE-MIN_GAP) {
+            if (loadAddress+warriorSize > m_geometry.arenaSize-MIN_GAP) {
                 found = false;
             }
 
@@ -356,8 +598,7 @@ public class War {
 
             // check intersections with loaded
             for (int i = 0; i < m_numWarriors; ++i) {
-                int otherLoadAddress =
-                    Unsigned.unsignedShort(m_warriors[i].getLoadOffset());
+                int otherLoadAddress = m_warriors[i].getLoadOffsetInt();
                 int otherSize = m_warriors[i].getCodeSize();
 
                 int otherStart = otherLoadAddress-MIN_GAP;
@@ -375,7 +616,7 @@ public class War {
             throw new Exception();
         }
 
-        return (short)loadAddress;
+        return loadAddress;
     }
 	
     /**
@@ -409,6 +650,16 @@ public class War {
     	return m_numWarriorsAlive;
     }
     
+    /** @return the number of instructions the warriors completed in this war, for measuring the engine */
+    public long getInstructionCount() {
+        return m_metrics.getTotalInstructions();
+    }
+
+    /** @return the counters of this war, only written by the thread that runs it and without a lock */
+    EngineMetrics getMetrics() {
+        return m_metrics;
+    }
+
     /** @return a comma-separated list of all warriors still alive. */
     public String getRemainingWarriorNames() {
         StringBuilder names = new StringBuilder();
@@ -434,14 +685,29 @@ public class War {
     	}
     }
     
-    private Random rand = new Random();
+    private WarRandom rand = new WarRandom();
+    private long m_seed;
     
     private boolean isSingleRound;
     private boolean isPaused;
     
     public void setSeed(long seed){
+        m_seed = seed;
     	rand.setSeed(seed);
     }
+
+    public long getSeed() {
+        return m_seed;
+    }
+
+    /** @return the state of the random generator, as saved in snapshots */
+    public long getRandomState() {
+        return rand.getState();
+    }
+
+    public boolean isUsingNewMemory() {
+        return useNewMemory;
+    }
     
     public void pause(){
     	isPaused = true;
@@ -468,6 +734,83 @@ public class War {
     public RawMemory getMemory(){
     	return m_core;
     }
+
+    public ArenaGeometry getGeometry() {
+        return m_geometry;
+    }
+
+    /** @return the size of the part of the memory that is in use - the arena, the stacks and the shared memories */
+    public int getUsedMemorySize() {
+        return m_nextFreeAddress;
+    }
+
+    /** @return the groups this war was loaded with, in the order they were given. Loading them again with the same seed gives the same war */
+    public WarriorGroup[] getWarriorGroups() {
+        return m_warriorGroups;
+    }
+
+    /**
+     * Stops or resumes notifying the listeners, for running rounds that nobody needs to see
+     * like re-running from a snapshot to the round before it.
+     * Such rounds ran before, so they don't add to the counters of the war or to the profiles either.
+     */
+    public void setListenersMuted(boolean muted) {
+        m_listenersMuted = muted;
+        m_core.setListener(muted ? null : m_memoryListener);
+        m_counting = muted ? m_mutedMetrics : m_metrics;
+        for (int i = 0; i < m_numWarriors; ++i)
+            m_warriors[i].setOpcodeCounts(m_counting.instructions);
+    }
+
+    /**
+     * @param round the round that is about to run
+     * @return a copy of the complete state of the war
+     */
+    public WarSnapshot snapshot(int round) {
+        int[] registers = new int[m_numWarriors * WarSnapshot.REGISTERS];
+        int[] pcs = new int[m_numWarriors];
+        boolean[] alive = new boolean[m_numWarriors];
+        for (int i = 0; i < m_numWarriors; ++i) {
+            CpuStateRiscV state = m_warriors[i].getCpuState();
+            for (int r = 0; r < WarSnapshot.REGISTERS; ++r)
+                registers[i * WarSnapshot.REGISTERS + r] = state.getReg(r);
+            pcs[i] = state.getPc();
+            alive[i] = m_warriors[i].isAlive();
+        }
+        return new WarSnapshot(round, m_core.copyOf(m_nextFreeAddress), registers, pcs, alive,
+                m_numWarriorsAlive, rand.getState(), m_owners.clone(),
+                m_breakpointCheck != null ? m_breakpointCheck.saveHitCounts() : null);
+    }
+
+    /**
+     * Brings the war back to the state of a snapshot that was taken from a war with the same warriors.
+     * The memory listener is notified of every byte that changed.
+     */
+    public void restore(WarSnapshot snapshot) {
+        if (snapshot.getNumWarriors() != m_numWarriors || snapshot.memory.length != m_nextFreeAddress)
+            throw new IllegalArgumentException("snapshot is of a different war");
+        m_core.restore(snapshot.memory);
+        for (int i = 0; i < m_numWarriors; ++i) {
+            CpuStateRiscV state = m_warriors[i].getCpuState();
+            for (int r = 0; r < WarSnapshot.REGISTERS; ++r)
+                state.setReg(r, snapshot.registers[i * WarSnapshot.REGISTERS + r]);
+            state.setPc(snapshot.pcs[i]);
+            m_warriors[i].setAlive(snapshot.alive[i]);
+            if (snapshot.alive[i])
+                m_killers[i] = KILLER_NONE;
+        }
+        m_numWarriorsAlive = snapshot.numAlive;
+        rand.setState(snapshot.randomState);
+        // the memories of the warriors write to this array, so it's copied into and not replaced
+        if (snapshot.owners != null && snapshot.owners.length == m_owners.length)
+            System.arraycopy(snapshot.owners, 0, m_owners, 0, m_owners.length);
+        else
+            Arrays.fill(m_owners, (byte)0); // a snapshot of a replay doesn't know who wrote what
+        if (m_breakpointCheck != null)
+            m_breakpointCheck.restoreHitCounts(snapshot.breakpointHits);
+        m_hasEnded = false;
+        m_watchHit = null;
+    }
     
     
 }
\ No newline at end of file
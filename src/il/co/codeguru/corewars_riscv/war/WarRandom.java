@@ -0,0 +1,51 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * The random generator of a war.
+ * Produces the same sequence as java.util.Random so existing seeds keep their meaning, but unlike it the
+ * state can be read and restored, which is needed for taking snapshots of a running war.
+ */
+public class WarRandom {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public WarRandom() {
+        setSeed(System.currentTimeMillis());
+    }
+
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int)(state >>> (48 - bits));
+    }
+
+    /** same as java.util.Random.nextInt(int) */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+
+        if ((bound & -bound) == bound) // a power of 2
+            return (int)((bound * (long)next(31)) >> 31);
+
+        int bits, val;
+        do {
+            bits = next(31);
+            val = bits % bound;
+        } while (bits - val + (bound - 1) < 0);
+        return val;
+    }
+}
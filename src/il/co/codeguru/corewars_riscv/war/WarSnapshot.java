@@ -0,0 +1,44 @@
+package il.co.codeguru.corewars_riscv.war;
+
+/**
+ * The complete state of a War at the start of a round.
+ * Restoring a snapshot to a War with the same warriors loaded continues the war exactly as it went from that round.
+ */
+public class WarSnapshot {
+    public static final int REGISTERS = 32;
+
+    public final int round;
+    /** the used part of the memory: the arena, the stacks and the shared memories */
+    public final byte[] memory;
+    /** REGISTERS per warrior, by warrior index */
+    public final int[] registers;
+    public final int[] pcs;
+    public final boolean[] alive;
+    public final int numAlive;
+    public final long randomState;
+    /** War.getOwner() + 1 of every arena address, null when not known */
+    public final byte[] owners;
+    /** what IBreakpointCheck.saveHitCounts() returned, null for nothing */
+    public final int[] breakpointHits;
+
+    public WarSnapshot(int round, byte[] memory, int[] registers, int[] pcs, boolean[] alive, int numAlive, long randomState) {
+        this(round, memory, registers, pcs, alive, numAlive, randomState, null, null);
+    }
+
+    public WarSnapshot(int round, byte[] memory, int[] registers, int[] pcs, boolean[] alive, int numAlive, long randomState,
+                       byte[] owners, int[] breakpointHits) {
+        this.round = round;
+        this.memory = memory;
+        this.registers = registers;
+        this.pcs = pcs;
+        this.alive = alive;
+        this.numAlive = numAlive;
+        this.randomState = randomState;
+        this.owners = owners;
+        this.breakpointHits = breakpointHits;
+    }
+
+    public int getNumWarriors() {
+        return pcs.length;
+    }
+}
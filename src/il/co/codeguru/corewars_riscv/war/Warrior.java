@@ -4,9 +4,11 @@ import il.co.codeguru.corewars_riscv.cpu.exceptions.CpuException;
 import il.co.codeguru.corewars_riscv.cpu.riscv.CpuRiscV;
 import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
 import il.co.codeguru.corewars_riscv.memory.Memory;
+import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
 import il.co.codeguru.corewars_riscv.memory.MemoryException;
 import il.co.codeguru.corewars_riscv.memory.MemoryRegion;
 import il.co.codeguru.corewars_riscv.memory.RestrictedMemory;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
 
 import static il.co.codeguru.corewars_riscv.war.War.*;
 
@@ -20,7 +22,7 @@ public class Warrior
 {
     public MemoryRegion stackRegion;
     public MemoryRegion sharedRegion;
-    public final MemoryRegion arenaRegion = new MemoryRegion(0, ARENA_SIZE -1);
+    public final MemoryRegion arenaRegion;
 
     /**
      * Constructor.
@@ -42,28 +44,78 @@ public class Warrior
             int groupSharedMemory,
             int myIndex,
             boolean useNewMemory)
+    {
+        this(name, label, codeSize, core, loadAddress, initialStack, groupSharedMemory, myIndex, useNewMemory,
+                ArenaGeometry.DEFAULT);
+    }
+
+    /** @param geometry the sizes of the arena, the stack and the shared memory */
+    public Warrior(
+            String name,
+            String label,
+            int codeSize,
+            Memory core,
+            int loadAddress,
+            int initialStack,
+            int groupSharedMemory,
+            int myIndex,
+            boolean useNewMemory,
+            ArenaGeometry geometry)
     {
         m_label = label;  // this comes from Code label
         m_name = name;
         m_codeSize = codeSize;
         m_loadAddress = loadAddress;
         m_myIndex = myIndex;
+        m_arenaMask = geometry.getArenaMask();
 
         m_state = new CpuStateRiscV();
-        initializeCpuState(loadAddress, initialStack, groupSharedMemory, useNewMemory);
+        initializeCpuState(loadAddress, initialStack, groupSharedMemory, useNewMemory, geometry.stackSize);
 
-        stackRegion = new MemoryRegion(initialStack, initialStack + STACK_SIZE - 1);
-        sharedRegion = new MemoryRegion(groupSharedMemory, groupSharedMemory + GROUP_SHARED_MEMORY_SIZE - 1);
+        arenaRegion = new MemoryRegion(0, geometry.arenaSize - 1);
+        stackRegion = new MemoryRegion(initialStack, initialStack + geometry.stackSize - 1);
+        sharedRegion = new MemoryRegion(groupSharedMemory, groupSharedMemory + geometry.groupSharedMemorySize - 1);
 
         RestrictedMemory memory = new RestrictedMemory(core, new MemoryRegion[]{
                 sharedRegion, stackRegion, arenaRegion
-        }, useNewMemory);
+        }, useNewMemory, m_arenaMask);
 
         m_cpu = new CpuRiscV(m_state, memory);
+        m_memory = memory;
 
         m_isAlive = true;		
     }
 
+    /**
+     * Copies a warrior into a fork of its war.
+     * @param core the memory of the fork
+     */
+    Warrior(Warrior other, Memory core, boolean useNewMemory)
+    {
+        m_label = other.m_label;
+        m_name = other.m_name;
+        m_codeSize = other.m_codeSize;
+        m_loadAddress = other.m_loadAddress;
+        m_myIndex = other.m_myIndex;
+        m_arenaMask = other.m_arenaMask;
+
+        m_state = new CpuStateRiscV();
+        for (int r = 0; r < 32; ++r)
+            m_state.setReg(r, other.m_state.getReg(r));
+        m_state.setPc(other.m_state.getPc());
+
+        arenaRegion = other.arenaRegion;
+        stackRegion = other.stackRegion;
+        sharedRegion = other.sharedRegion;
+        RestrictedMemory memory = new RestrictedMemory(core, new MemoryRegion[]{
+                sharedRegion, stackRegion, arenaRegion
+        }, useNewMemory, m_arenaMask);
+        m_cpu = new CpuRiscV(m_state, memory);
+        m_memory = memory;
+
+        m_isAlive = other.m_isAlive;
+    }
+
     /**
      * @return whether or not the warrior is still alive.
      */
@@ -78,6 +130,11 @@ public class Warrior
         m_isAlive = false;
     }	
 
+    // for restoring a snapshot of the war
+    void setAlive(boolean alive) {
+        m_isAlive = alive;
+    }
+
     /**
      * @return the warrior's name.
      */
@@ -95,7 +152,7 @@ public class Warrior
         return (short)(m_loadAddress);
     }
     public int getLoadOffsetInt() {
-        return m_loadAddress & 0xFFFF;
+        return m_loadAddress & m_arenaMask;
     }
 
     /**
@@ -114,6 +171,35 @@ public class Warrior
     }
     public void setEnergy(short value) { }
 
+    /** @param owners where the arena addresses the warrior writes to are marked with its owner id, see War.getOwner() */
+    void setOwnerShadow(byte[] owners) {
+        m_memory.setOwnerShadow(owners, m_myIndex + 1);
+    }
+
+    /** @param writeTrace told of every byte the warrior stores, null to stop */
+    void setWriteTrace(MemoryEventListener writeTrace) {
+        m_memory.setWriteTrace(writeTrace);
+    }
+
+    /** @return the raw code of the last instruction the warrior fetched, see CpuRiscV.getLastRaw() */
+    int getLastRaw() {
+        return m_cpu.getLastRaw();
+    }
+
+    /** @return the register the last instruction the warrior fetched writes, see CpuRiscV.getLastRd() */
+    int getLastRd() {
+        return m_cpu.getLastRd();
+    }
+
+    /** @param counts where the cpu counts the instructions it completes, by opcode class */
+    void setOpcodeCounts(long[] counts) {
+        m_cpu.setOpcodeCounts(counts);
+    }
+
+    void setWatchpoints(Watchpoints watchpoints) {
+        m_cpu.setWatchpoints(watchpoints);
+    }
+
     /**
      * Performs the warrior's next turn (= next InstructionInfo).
      * @throws CpuException     on any CPU error.
@@ -121,9 +207,9 @@ public class Warrior
      */
     public void nextOpcode() throws CpuException, MemoryException {
         m_cpu.nextOpcode();
-        if(m_cpu.getState().getPc() >= ARENA_SIZE || m_cpu.getState().getPc() < 0)
+        if(m_cpu.getState().getPc() > m_arenaMask || m_cpu.getState().getPc() < 0)
         {
-            throw new MemoryException();
+            throw new MemoryException(MemoryException.FAULT_PC_OUT_OF_ARENA);
         }
 
     }
@@ -138,20 +224,22 @@ public class Warrior
      * @param loadAddress       Warrior's load address in the core.
      * @param initialStack      Warrior's private stack.
      * @param groupSharedMemory The warrior's group shared memory.
+     * @param stackSize         The size of the private stack.
      */
     private void initializeCpuState(
         int loadAddress,
         int initialStack,
         int groupSharedMemory,
-        boolean useNewMemory) {
+        boolean useNewMemory,
+        int stackSize) {
 
-        int loadIndex = (loadAddress) & 0xFFFF;
+        int loadIndex = (loadAddress) & m_arenaMask;
 
         // initialize registers
         m_state.setPc(loadIndex);
         m_state.setReg(1, loadIndex);
         if(useNewMemory) {
-            m_state.setReg(2, initialStack + STACK_SIZE - 1);
+            m_state.setReg(2, initialStack + stackSize - 1);
             m_state.setReg(3, groupSharedMemory);
         }
 
@@ -165,6 +253,8 @@ public class Warrior
     /** Warrior's name */
     private final String m_name;
     private final String m_label;
+    /** Addresses wrap around the arena with this mask */
+    private final int m_arenaMask;
     /** Warrior's initial code size */	
     private final int m_codeSize;
     /** Warrior's initial load address */	
@@ -173,6 +263,8 @@ public class Warrior
     private CpuStateRiscV m_state;
     /** CPU instance */
     private CpuRiscV m_cpu;
+    /** The memory the warrior sees through its CPU */
+    private RestrictedMemory m_memory;
     /** Whether or not the warrior is still alive */
     private boolean m_isAlive;
 
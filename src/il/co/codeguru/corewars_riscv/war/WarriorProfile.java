@@ -0,0 +1,55 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+
+/**
+ * Where a warrior spends its time: how many times its pc was at every address of the arena and how many
+ * instructions of every opcode class it completed. Counted by the War when profiling is on, see War.setProfiling().
+ * An instruction that kills the warrior is counted as a hit of its address but not in the opcode classes.
+ */
+public class WarriorProfile {
+    private final int[] pcHits; // by arena address
+    private final long[] opcodeClasses = new long[Instruction.CLASS_COUNT];
+    private long totalHits = 0;
+    private int maxHits = 0;
+
+    WarriorProfile(int arenaSize) {
+        pcHits = new int[arenaSize];
+    }
+
+    void hit(int pc) {
+        if (pc < 0 || pc >= pcHits.length)
+            return;
+        int hits = ++pcHits[pc];
+        if (hits > maxHits)
+            maxHits = hits;
+        ++totalHits;
+    }
+
+    void addOpcodeClass(int opcodeClass, long count) {
+        opcodeClasses[opcodeClass] += count;
+    }
+
+    public int getArenaSize() {
+        return pcHits.length;
+    }
+
+    /** @return how many times an instruction of this warrior started at the address */
+    public int getHits(int address) {
+        return pcHits[address];
+    }
+
+    /** @return the hits of the address with the most hits */
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /** @param opcodeClass one of the Instruction.CLASS_ constants */
+    public long getOpcodeClassCount(int opcodeClass) {
+        return opcodeClasses[opcodeClass];
+    }
+}
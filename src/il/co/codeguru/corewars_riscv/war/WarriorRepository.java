@@ -13,6 +13,8 @@ public class WarriorRepository {
 
     /** Maximum initial code size of a single warrior */	
     public final static int MAX_WARRIOR_SIZE = 512;
+    /** The name of the group of the zombies */
+    public final static String ZOMBIES_GROUP = "ZoMbIeS";
 
     public List<WarriorGroup> getWarriorGroups() {
         return warriorGroups;
@@ -106,6 +108,47 @@ public class WarriorRepository {
         return true;
     }
 
+    /**
+     * Loads groups that were built elsewhere, like by the headless WarriorCorpus, instead of the codes of the UI.
+     * The warriors with a fixed load address, the ones that don't have -1, are checked for overlaps like in the UI.
+     * @param groups the groups of the players, the names of all the warriors should be unique
+     * @param zombies null for none
+     */
+    public boolean loadWarriorGroups(List<WarriorGroup> groups, WarriorGroup zombies)
+    {
+        warriorNameToGroup.clear();
+        warriorGroups.clear();
+        zombieGroup = null;
+        m_Fixed_loadAddressChecker = null;
+
+        if (groups.isEmpty()) {
+            Logger.error("no players to start a competition with");
+            return false;
+        }
+
+        List<WarriorGroup> all = new ArrayList<>(groups);
+        if (zombies != null)
+            all.add(zombies);
+        for (WarriorGroup group : all) {
+            for (WarriorData data : group.getWarriors()) {
+                if (data.m_debugFixedLoadAddress == -1)
+                    continue;
+                if (m_Fixed_loadAddressChecker == null)
+                    m_Fixed_loadAddressChecker = new FixedLoadAddressChecker(all.size() * 2);
+                if (m_Fixed_loadAddressChecker.addCheck(data.m_debugFixedLoadAddress, data.getCode().length, data.getName()) == -2)
+                    return false;
+            }
+        }
+
+        for (WarriorGroup group : groups) {
+            for (WarriorData data : group.getWarriors())
+                warriorNameToGroup.put(data.getName(), warriorGroups.size());
+            warriorGroups.add(group);
+        }
+        zombieGroup = zombies;
+        return true;
+    }
+
     private int getStartAddress(PlayersPanel.Code[] files, PlayersPanel.Code[] zombies, boolean isInDebug, PlayersPanel.Code c) {
         int startAddr = -1;
         if (!c.startAddrRandom && isInDebug) {
@@ -138,7 +181,7 @@ public class WarriorRepository {
         if (zombieFiles == null || zombieFiles.length == 0)
             return true;
 
-        zombieGroup = new WarriorGroup("ZoMbIeS");
+        zombieGroup = new WarriorGroup(ZOMBIES_GROUP);
         for (PlayersPanel.Code c : zombieFiles) {
             if (!validateWarrior(c, "zombie")) return false;
 
@@ -179,6 +222,17 @@ public class WarriorRepository {
         return groups;
     }
 
+    /** @return the group with the given name, the zombies included, or null if there is no such group */
+    public WarriorGroup getGroupByName(String name) {
+        for (WarriorGroup group : warriorGroups) {
+            if (group.getName().equals(name))
+                return group;
+        }
+        if (zombieGroup != null && zombieGroup.getName().equals(name))
+            return zombieGroup;
+        return null;
+    }
+
     private class WarriorLoader {
         private WarriorGroup currentGroup;
 
@@ -0,0 +1,85 @@
+package il.co.codeguru.corewars_riscv;
+
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.war.CompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.SampledCompetitionEventListener;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.Warrior;
+import il.co.codeguru.corewars_riscv.war.WarriorData;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+
+/**
+ * Warriors, wars and listeners that the tests and the benchmarks build the same way
+ */
+public final class TestUtils {
+    private TestUtils() {}
+
+    /** @return the code of 32 bit instructions, little endian */
+    public static byte[] toBytes(int... instructions) {
+        byte[] bin = new byte[instructions.length * 4];
+        for (int i = 0; i < instructions.length; ++i)
+            for (int b = 0; b < 4; ++b)
+                bin[i * 4 + b] = (byte)(instructions[i] >> (b * 8));
+        return bin;
+    }
+
+    /** @return the first code of a player that has the name of the warrior as its label */
+    public static PlayersPanel.Code code(String name, byte[] bin) {
+        return code(name, name, bin);
+    }
+
+    /** @return the first code of a player */
+    public static PlayersPanel.Code code(String label, String name, byte[] bin) {
+        PlayersPanel.Code c = new PlayersPanel.PlayerInfo(label, name).code[0];
+        c.name = name;
+        c.bin = bin;
+        return c;
+    }
+
+    /** @return a war with seed 1 between groups of a single warrior each, loaded at its debug address */
+    public static War newWar(boolean useNewMemory, WarriorData... warriors) throws Exception {
+        WarriorGroup[] groups = new WarriorGroup[warriors.length];
+        for (int i = 0; i < warriors.length; ++i) {
+            groups[i] = new WarriorGroup(warriors[i].getName());
+            groups[i].addWarrior(warriors[i]);
+        }
+        War war = new War(null, null, false, useNewMemory);
+        war.setSeed(1);
+        war.loadWarriorGroups(groups);
+        return war;
+    }
+
+    /** @return a war between "a" and "b" */
+    public static War newWar(byte[] first, int firstAddress, byte[] second, int secondAddress) throws Exception {
+        return newWar(false, new WarriorData("a", first, "a", firstAddress), new WarriorData("b", second, "b", secondAddress));
+    }
+
+    /** A competition listener that ignores every event, to override the ones a test looks at */
+    public static class QuietListener implements CompetitionEventListener {
+        public void onWarPreStartClear() {}
+        public void onWarStart() {}
+        public void onWarEnd(int reason, String winners, boolean inDebug) {}
+        public void onRound(int round) {}
+        public void onWarriorBirth(Warrior w) {}
+        public void onWarriorDeath(Warrior warrior, String reason) {}
+        public void onCompetitionStart() {}
+        public void onCompetitionEnd() {}
+        public void onEndRound() {}
+        public void onPaused() {}
+        public void onNoneAlive() {}
+    }
+
+    /** A QuietListener that also hears the competitions that run without the debugger */
+    public static class QuietSampledListener extends QuietListener implements SampledCompetitionEventListener {
+        private final int roundInterval;
+
+        /** @param roundInterval see SampledCompetitionEventListener.getRoundInterval() */
+        public QuietSampledListener(int roundInterval) {
+            this.roundInterval = roundInterval;
+        }
+
+        public int getRoundInterval() {
+            return roundInterval;
+        }
+    }
+}
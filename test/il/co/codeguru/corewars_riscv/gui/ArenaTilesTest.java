@@ -0,0 +1,69 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArenaTilesTest {
+
+    @Test
+    public void testTileShape() {
+        ArenaTiles tiles = new ArenaTiles(4 * 1024 * 1024, 65536);
+        assertEquals(64, tiles.getBlockSize());
+        assertEquals(8, tiles.getTileWidth());
+        assertEquals(8, tiles.getTileHeight());
+
+        tiles = new ArenaTiles(2 * 1024 * 1024, 65536);
+        assertEquals(32, tiles.getBlockSize());
+        assertEquals(8, tiles.getTileWidth());
+        assertEquals(4, tiles.getTileHeight());
+
+        tiles = new ArenaTiles(65536, 65536);
+        assertEquals(1, tiles.getBlockSize());
+        assertEquals(1, tiles.getTileWidth());
+        assertEquals(1, tiles.getTileHeight());
+    }
+
+    @Test
+    public void testAddresses() {
+        ArenaTiles tiles = new ArenaTiles(4 * 1024 * 1024, 65536);
+        assertEquals(3, tiles.tileOf(3 * 64 + 63));
+        assertEquals(3 * 64 + 2 * 8 + 5, tiles.addressOf(3, 5, 2));
+        assertEquals(3, tiles.tileOf(tiles.addressOf(3, 7, 7)));
+    }
+
+    @Test
+    public void testDominantOwner() {
+        ArenaTiles tiles = new ArenaTiles(1024 * 1024, 65536); // 16 cells per tile
+        assertEquals(ArenaTiles.EMPTY, tiles.getDominantOwner(2));
+        tiles.write(32, 1);
+        tiles.write(33, 2);
+        tiles.write(34, 2);
+        tiles.write(35, 1);
+        tiles.write(36, 2);
+        assertEquals(ArenaTiles.EMPTY, tiles.getDominantOwner(2)); // not refreshed yet
+        assertEquals(1, tiles.refresh());
+        assertEquals(2, tiles.getRefreshedTile(0));
+        assertEquals(2, tiles.getDominantOwner(2));
+        assertEquals(1, tiles.getOwner(35));
+
+        tiles.write(33, 1);
+        tiles.write(36, 1);
+        tiles.write(33, 1); // the same tile is refreshed once
+        assertEquals(1, tiles.refresh());
+        assertEquals(1, tiles.getDominantOwner(2));
+        assertEquals(0, tiles.refresh());
+    }
+
+    @Test
+    public void testClear() {
+        ArenaTiles tiles = new ArenaTiles(1024 * 1024, 65536);
+        tiles.write(100, 3);
+        tiles.refresh();
+        tiles.write(200, 3);
+        tiles.clear();
+        assertEquals(0, tiles.refresh());
+        assertEquals(ArenaTiles.EMPTY, tiles.getOwner(100));
+        assertEquals(ArenaTiles.EMPTY, tiles.getDominantOwner(tiles.tileOf(100)));
+    }
+}
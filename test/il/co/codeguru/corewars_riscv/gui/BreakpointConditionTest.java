@@ -0,0 +1,107 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.memory.CowMemory;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BreakpointConditionTest {
+
+    private CpuStateRiscV state;
+    private RawMemory memory;
+
+    @Before
+    public void setUp() {
+        state = new CpuStateRiscV();
+        byte[] bytes = new byte[0x2000];
+        state.setReg(5, 0x1000);
+        state.setReg(2, 0x1800); // sp
+        state.setReg(10, -3); // a0
+        state.setPc(0x120);
+        bytes[0x1804] = 0x78;
+        bytes[0x1805] = 0x56;
+        bytes[0x1806] = 0x34;
+        bytes[0x1807] = (byte)0x92;
+        memory = new RawMemory(bytes);
+    }
+
+    private int eval(String text) throws Exception {
+        return BreakpointCondition.compile(text).eval(state, memory);
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertEquals(7, eval("1 + 2 * 3"));
+        assertEquals(9, eval("(1 + 2) * 3"));
+        assertEquals(0x1004, eval("x5 + 4"));
+        assertEquals(-3, eval("a0"));
+        assertEquals(0x1fffffff, eval("a0 >>> 3"));
+        assertEquals(-1, eval("a0 >> 3"));
+        assertEquals(0, eval("x5 / 0"));
+        assertEquals(0xffffffff, eval("0xffffffff"));
+        assertEquals(5, eval("0b101"));
+        assertEquals(0x120, eval("pc"));
+        assertEquals(0, eval("zero + x0"));
+    }
+
+    @Test
+    public void testLogic() throws Exception {
+        assertEquals(1, eval("x5 == 0x1000 && [x2+4] != 0"));
+        assertEquals(0, eval("x5 == 0x1000 && [sp+8] != 0"));
+        assertEquals(1, eval("x5 != 0x1000 || pc == 0x120"));
+        assertEquals(1, eval("!(x5 < 0)"));
+        assertEquals(1, eval("a0 < 0"));
+        assertEquals(0, eval("a0 <u 0"));
+        assertEquals(1, eval("a0 >=u 0x80000000"));
+        assertEquals(0, eval("x5 & 0x1000 == 0x1000")); // == binds tighter, like C, so this is x5 & 1
+        assertEquals(1, eval("(x5 & 0x1000) == 0x1000"));
+        assertEquals(1, eval("1 << 2 == 4"));
+    }
+
+    @Test
+    public void testMemory() throws Exception {
+        assertEquals(0x92345678, eval("[sp + 4]"));
+        assertEquals(0x5678, eval("[sp+4]h"));
+        assertEquals(0x92, eval("[x2+7]b"));
+        assertEquals(0, eval("[0x7fffffff]")); // outside of the memory
+
+        // the memory of a fork has no flat array
+        memory = new CowMemory(memory, 0x2000, 0x2000).fork();
+        assertEquals(0x92345678, eval("[sp + 4]"));
+        assertEquals(0, eval("[0x2000]"));
+    }
+
+    @Test
+    public void testErrors() {
+        String[] bad = { "x5 ==", "x32 == 1", "foo", "(x5", "[x5", "x5 = 1", "0x100000000", "x5 @ 2" };
+        for (String text : bad) {
+            try {
+                BreakpointCondition.compile(text);
+                fail("expected an error for " + text);
+            }
+            catch (Exception e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testHitCount() throws Exception {
+        PlayersPanel.Breakpoint br = new PlayersPanel.Breakpoint(1);
+        br.setCondition("x5 > 0x800", 3);
+        assertFalse(br.shouldBreak(state, memory));
+        assertFalse(br.shouldBreak(state, memory));
+        state.setReg(5, 0);
+        assertFalse(br.shouldBreak(state, memory)); // condition false, not counted
+        state.setReg(5, 0x1000);
+        assertTrue(br.shouldBreak(state, memory));
+        assertTrue(br.shouldBreak(state, memory));
+
+        br.setCondition(" ", 0);
+        assertNull(br.condition);
+        assertTrue(br.shouldBreak(state, null));
+    }
+}
@@ -0,0 +1,72 @@
+package il.co.codeguru.corewars_riscv.gui;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteHeatmapTest {
+
+    private static final int HALF_LIFE = 100;
+    private WriteHeatmap heatmap;
+
+    @Before
+    public void setUp() {
+        heatmap = new WriteHeatmap(1024, HALF_LIFE);
+    }
+
+    @Test
+    public void testUnwrittenCell() {
+        assertEquals(0, heatmap.getHeat(5, 1000));
+        assertEquals(WriteHeatmap.NO_OWNER, heatmap.getOwner(5));
+    }
+
+    @Test
+    public void testCountsAndOwner() {
+        heatmap.record(5, 1, 10, 1);
+        heatmap.record(5, 2, 10, 1);
+        heatmap.record(5, 2, 10, 1);
+        assertEquals(3, heatmap.getHeat(5, 10));
+        assertEquals(2, heatmap.getOwner(5));
+        assertEquals(10, heatmap.getLastRound());
+    }
+
+    @Test
+    public void testSaturates() {
+        for (int i = 0; i < 300; ++i)
+            heatmap.record(7, 0, 1, 1);
+        assertEquals(WriteHeatmap.MAX_HEAT, heatmap.getHeat(7, 1));
+        heatmap.record(8, 0, 1, 1000);
+        assertEquals(WriteHeatmap.MAX_HEAT, heatmap.getHeat(8, 1));
+    }
+
+    @Test
+    public void testDecaysByHalfLife() {
+        heatmap.record(3, 0, 0, 200);
+        assertEquals(100, heatmap.getHeat(3, HALF_LIFE));
+        assertEquals(50, heatmap.getHeat(3, 2 * HALF_LIFE));
+        assertTrue(heatmap.getHeat(3, HALF_LIFE / 2) < 200);
+        assertTrue(heatmap.getHeat(3, HALF_LIFE / 2) > 100);
+        assertEquals(0, heatmap.getHeat(3, 100 * HALF_LIFE));
+        assertEquals(0, heatmap.getHeat(3, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testDecayAppliedOnWrite() {
+        heatmap.record(3, 0, 0, 200);
+        heatmap.record(3, 0, HALF_LIFE, 10);
+        assertEquals(110, heatmap.getHeat(3, HALF_LIFE));
+    }
+
+    @Test
+    public void testIgnoresOutOfRangeAndClears() {
+        heatmap.record(-1, 0, 0, 1);
+        heatmap.record(1024, 0, 0, 1);
+        heatmap.record(4, 0, 0, 1);
+        assertTrue(heatmap.takeChanged());
+        assertFalse(heatmap.takeChanged());
+        heatmap.clear();
+        assertEquals(0, heatmap.getHeat(4, 0));
+        assertEquals(WriteHeatmap.NO_OWNER, heatmap.getOwner(4));
+    }
+}
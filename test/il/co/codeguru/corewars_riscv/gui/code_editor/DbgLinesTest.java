@@ -0,0 +1,69 @@
+package il.co.codeguru.corewars_riscv.gui.code_editor;
+
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DbgLinesTest {
+
+    @Test
+    public void testStartsFilled() {
+        DbgLines lines = new DbgLines(1024);
+        assertTrue(lines.isFill(100));
+        assertFalse(lines.isHidden(100));
+        assertEquals(0, lines.getLstLine(100));
+        assertEquals("<span class='dbg_backfill'><span class='dbg_opcodes'>00</span>null</span>", lines.getText(100));
+    }
+
+    @Test
+    public void testSourceLines() {
+        DbgLines lines = new DbgLines(1024);
+        lines.set(16, "13 00 00 00", "nop", 0);
+        lines.setSource(16, 3000, 5);
+        lines.hide(17);
+        assertFalse(lines.isFill(16));
+        assertEquals(3000, lines.getLstLine(16));
+        assertEquals(5, lines.getPlayer(16));
+        assertTrue(lines.isHidden(17));
+        assertEquals("<span class='dbg_opcodes'>13 00 00 00</span>nop", lines.getText(16));
+
+        lines.setSingleByte(16, (byte)0xAB);
+        assertEquals(DbgLines.FLAG_UNPARSED, lines.getFlags(16));
+        assertEquals(0, lines.getLstLine(16)); // not the line of the listing anymore
+        assertEquals("<span class='dbg_opcodes'>AB</span>db ABh", lines.getText(16));
+    }
+
+    @Test
+    public void testComments() {
+        DbgLines lines = new DbgLines(1024);
+        lines.setBlank(15);
+        lines.addComment(15, "; first");
+        lines.addComment(15, "; second");
+        assertFalse(lines.isFill(15));
+        assertTrue((lines.getFlags(15) & DbgLines.FLAG_HAS_COMMENT) != 0);
+        assertEquals(2, lines.getComments(15).size());
+        assertEquals(0, lines.getComments(16).size());
+
+        lines.setSingleByte(15, (byte)1); // written over by a warrior
+        assertEquals(0, lines.getComments(15).size());
+    }
+
+    @Test
+    public void testBreakpoints() {
+        DbgLines lines = new DbgLines(1024);
+        PlayersPanel.Breakpoint br = new PlayersPanel.Breakpoint(-1);
+        lines.setBreakpoint(33, br);
+        assertSame(br, lines.getBreakpoint(33));
+        assertNull(lines.getBreakpoint(1));
+        assertNull(lines.getBreakpoint(-1));
+        assertNull(lines.getBreakpoint(1024));
+
+        lines.setBreakpoint(33, null);
+        assertNull(lines.getBreakpoint(33));
+
+        lines.setBreakpoint(40, br);
+        lines.clear();
+        assertNull(lines.getBreakpoint(40));
+    }
+}
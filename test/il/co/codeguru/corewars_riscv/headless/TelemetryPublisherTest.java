@@ -0,0 +1,183 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class TelemetryPublisherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Keeps what it publishes */
+    private static class ListSink implements TelemetryPublisher.Sink {
+        final List<String> published = new ArrayList<>();
+        boolean closed = false;
+
+        public synchronized void publish(String json) {
+            published.add(json);
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+
+    // a looper against one that dies at once, every war ends in its first round with the looper winning
+    private static Competition newCompetition() {
+        Competition competition = new Competition();
+        competition.setSeed(1);
+        PlayersPanel.Code looper = code("looper", toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw()));
+        PlayersPanel.Code invalid = code("invalid", toBytes(0));
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[]{ looper, invalid }, new PlayersPanel.Code[]{}, false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        return competition;
+    }
+
+    private static void runToEnd(Competition competition, int wars) throws Exception {
+        competition.runCompetition(wars, 2, false, false, false);
+        while (competition.continueRun())
+            ;
+    }
+
+    private static String field(String json, String name) {
+        Matcher m = Pattern.compile("\"" + name + "\": ([^,}\\]]+)").matcher(json);
+        assertTrue(name + " in " + json, m.find());
+        return m.group(1);
+    }
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void testSample() throws Exception {
+        Competition first = newCompetition();
+        Competition second = newCompetition();
+        TelemetryPublisher publisher = new TelemetryPublisher(new ListSink(), 1);
+        publisher.addWorker("first", first, Thread.currentThread());
+        publisher.addWorker("second", second, null);
+
+        String before = publisher.sample();
+        assertEquals("0", field(before, "warsDone"));
+        assertEquals("null", field(before, "etaSec")); // nothing to estimate from yet
+        assertTrue(before, before.contains("\"standings\": []"));
+
+        runToEnd(first, 3);
+        String half = publisher.sample();
+        assertEquals("3", field(half, "warsDone"));
+        assertEquals("3", field(half, "warsTotal"));
+        assertEquals("0", field(half, "etaSec"));
+        assertTrue(Double.parseDouble(field(half, "roundsPerSec")) > 0);
+
+        second.runCompetition(2, 2, false, false, false);
+        assertTrue(second.continueRun()); // starts the first war
+        String running = publisher.sample();
+        assertEquals("5", field(running, "warsTotal"));
+        assertNotEquals("null", field(running, "etaSec"));
+        assertNotEquals("0", field(running, "etaSec"));
+        while (second.continueRun())
+            ;
+
+        String done = publisher.sample();
+        assertEquals("5", field(done, "warsDone"));
+        // the top score only, summed over the workers
+        assertTrue(done, done.contains("\"standings\": [{\"name\": \"looper\", \"score\": 5.000}]"));
+        assertTrue(done, done.contains("\"name\": \"first\", \"warsDone\": 3"));
+        assertTrue(done, done.contains("\"name\": \"second\", \"warsDone\": 2"));
+        // the second has no thread to measure
+        assertTrue(done, done.matches(".*\"name\": \"second\"[^}]*\"utilisation\": null.*"));
+        assertFalse(done, done.matches(".*\"name\": \"first\"[^}]*\"utilisation\": null.*"));
+    }
+
+    @Test
+    public void testTimer() throws Exception {
+        final Competition competition = newCompetition();
+        ListSink sink = new ListSink();
+        TelemetryPublisher publisher = new TelemetryPublisher(sink, TelemetryPublisher.DEFAULT_TOP);
+        publisher.addWorker("worker", competition, Thread.currentThread());
+        publisher.start(5);
+        runToEnd(competition, 2);
+        Thread.sleep(50);
+        publisher.close();
+        assertTrue(sink.closed);
+        synchronized (sink) {
+            assertTrue(sink.published.size() >= 2);
+            for (String json : sink.published)
+                assertTrue(json, json.startsWith("{") && json.endsWith("}") && !json.contains("\n"));
+            // the last one is of the close
+            assertEquals("2", field(sink.published.get(sink.published.size() - 1), "warsDone"));
+        }
+    }
+
+    @Test
+    public void testFileSink() throws Exception {
+        File file = new File(folder.getRoot(), "out/telemetry.ndjson");
+        Competition competition = newCompetition();
+        TelemetryPublisher publisher = new TelemetryPublisher(new TelemetryPublisher.FileSink(file), 3);
+        publisher.addWorker("worker", competition, null);
+        publisher.publish();
+        runToEnd(competition, 1);
+        publisher.close();
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("0", field(lines.get(0), "warsDone"));
+        assertEquals("1", field(lines.get(1), "warsDone"));
+    }
+
+    private static String get(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:" + port + "/").openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(200, connection.getResponseCode());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; )
+                body.write(buffer, 0, n);
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void testHttpSink() throws Exception {
+        TelemetryPublisher.HttpSink sink = new TelemetryPublisher.HttpSink(0);
+        Competition competition = newCompetition();
+        TelemetryPublisher publisher = new TelemetryPublisher(sink, 3);
+        publisher.addWorker("worker", competition, null);
+        try {
+            assertEquals("{}", get(sink.getPort()));
+            runToEnd(competition, 1);
+            publisher.publish();
+            assertEquals("1", field(get(sink.getPort()), "warsDone"));
+        }
+        finally {
+            publisher.close();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.RV32C;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.TraceSink;
+import il.co.codeguru.corewars_riscv.war.War;
+import il.co.codeguru.corewars_riscv.war.WarriorData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class TraceRecorderTest {
+
+    private static final int FIRST = 0x1000;
+    private static final int SECOND = 0x4000;
+    private static final int ROUNDS = 200;
+
+    // counts in x5, stores the count and loops, with two compressed instructions on the way
+    private static byte[] counter() {
+        short cAddi = RV32C.cInstructionFormatCI(RV32C.Opcodes.CADDI, 8, 1).getRaw();
+        return toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, 64).getRaw(),
+                (cAddi & 0xFFFF) | (cAddi << 16),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -12).getRaw());
+    }
+
+    // dies in its second instruction, the first writes to x6 the 0 it has
+    private static final byte[] SHORT_LIVED = toBytes(RV32I.instructionI(RV32I.Opcodes.Addi, 6, 6, 0).getRaw(), 0);
+
+    /** Keeps what the war traces as the lines the reader gives back, and passes it on to another trace */
+    private static class Collector implements TraceSink {
+        final List<String> records = new ArrayList<>();
+        private final TraceSink next;
+        private final TraceFilter filter;
+        private String start;
+        private StringBuilder writes;
+
+        Collector(TraceSink next, TraceFilter filter) {
+            this.next = next;
+            this.filter = filter;
+        }
+
+        public void instructionStarting(int round, int warrior, int pc) {
+            start = filter.matches(round, warrior) ? round + " " + warrior + " " + pc : null;
+            writes = new StringBuilder();
+            next.instructionStarting(round, warrior, pc);
+        }
+
+        public void memoryWrite(int address, byte value) {
+            writes.append(" ").append(address).append("=").append(value);
+            next.memoryWrite(address, value);
+        }
+
+        public void instructionDone(int raw, int rd, int rdValue) {
+            if (start != null)
+                records.add(start + " " + raw + " " + rd + " " + rdValue + writes);
+            next.instructionDone(raw, rd, rdValue);
+        }
+
+        public void instructionFailed() {
+            if (start != null)
+                records.add(start + " failed" + writes);
+            next.instructionFailed();
+        }
+    }
+
+    private static String line(TraceReader reader) {
+        StringBuilder writes = new StringBuilder();
+        for (int i = 0; i < reader.getWriteCount(); ++i)
+            writes.append(" ").append(reader.getWriteAddress(i)).append("=").append(reader.getWriteValue(i));
+        String start = reader.getRound() + " " + reader.getWarrior() + " " + reader.getPc();
+        if (reader.getKind() == TraceReader.FAILED)
+            return start + " failed" + writes;
+        return start + " " + reader.getRaw() + " " + reader.getRd() + " " + reader.getRdValue() + writes;
+    }
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    private static War newWar() throws Exception {
+        return TestUtils.newWar(false, new WarriorData("counter", counter(), "counter", FIRST),
+                new WarriorData("shortLived", SHORT_LIVED, "shortLived", SECOND));
+    }
+
+    private static String[] names(War war) {
+        return new String[] { war.getWarrior(0).getName(), war.getWarrior(1).getName() };
+    }
+
+    private static List<String> read(byte[] trace) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(trace))) {
+            while (reader.next()) {
+                assertNotEquals(TraceReader.GAP, reader.getKind());
+                lines.add(line(reader));
+            }
+        }
+        return lines;
+    }
+
+    // runs the war with the trace recorded and collected, returns the collected records
+    private static List<String> record(War war, ByteArrayOutputStream out, TraceFilter filter, int ringSize) throws IOException {
+        TraceRecorder recorder = new TraceRecorder(out, names(war), filter, ringSize, true);
+        Collector collector = new Collector(recorder, filter);
+        war.setTrace(collector);
+        for (int round = 0; round < ROUNDS; ++round)
+            war.nextRound(round);
+        war.setTrace(null);
+        recorder.close();
+        assertEquals(0, recorder.getDroppedRecords());
+        assertEquals(collector.records.size(), recorder.getRecordedRecords());
+        return collector.records;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        War war = newWar();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> expected = record(war, out, TraceFilter.ALL, TraceRecorder.DEFAULT_RING_SIZE);
+        assertEquals(expected, read(out.toByteArray()));
+
+        int counter = war.getWarriorByLabel("counter").m_myIndex;
+        int failed = 0, stores = 0, compressed = 0, unchanged = 0;
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("counter", reader.getWarriorNames()[counter]);
+            while (reader.next()) {
+                if (reader.getKind() == TraceReader.FAILED) {
+                    ++failed;
+                    assertEquals(SECOND + 4, reader.getPc());
+                }
+                else if (reader.getWarrior() == counter && reader.getPc() == FIRST + 4) {
+                    ++stores;
+                    assertEquals(4, reader.getWriteCount());
+                    assertEquals(FIRST + 64, reader.getWriteAddress(0));
+                    assertEquals(0, reader.getRd());
+                }
+                else if (reader.getWarrior() == counter && reader.getPc() == FIRST + 8) {
+                    ++compressed;
+                    assertEquals(2, reader.getSize());
+                    assertEquals(8, reader.getRd());
+                }
+                else if (reader.getWarrior() == counter && reader.getPc() == FIRST + 12) {
+                    assertEquals(0, reader.getRd()); // jal x0
+                }
+                else if (reader.getWarrior() != counter) {
+                    ++unchanged;
+                    assertEquals(SECOND, reader.getPc());
+                    assertEquals(6, reader.getRd());
+                    assertEquals(0, reader.getRdValue());
+                }
+            }
+        }
+        assertEquals(1, failed);
+        assertEquals(1, unchanged);
+        assertEquals(ROUNDS / 5, stores); // five instructions a loop
+        assertEquals(ROUNDS / 5, compressed);
+    }
+
+    @Test
+    public void testBlocks() throws Exception {
+        // a ring that is smaller than the trace, which then takes more than one block
+        War war = newWar();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceRecorder recorder = new TraceRecorder(out, names(war), TraceFilter.ALL, 1, true);
+        Collector collector = new Collector(recorder, TraceFilter.ALL);
+        war.setTrace(collector);
+        for (int round = 0; round < 100000; ++round)
+            war.nextRound(round);
+        war.setTrace(null);
+        recorder.close();
+        assertEquals(0, recorder.getDroppedRecords());
+        assertEquals(collector.records, read(out.toByteArray()));
+        // a loop takes less than a byte a record
+        assertTrue(out.size() + " bytes", out.size() < collector.records.size());
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        War war = newWar();
+        int counter = war.getWarriorByLabel("counter").m_myIndex;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceFilter filter = new TraceFilter(10, 19, counter);
+        List<String> expected = record(war, out, filter, TraceRecorder.DEFAULT_RING_SIZE);
+        assertEquals(10, expected.size());
+        assertEquals(expected, read(out.toByteArray()));
+        for (String line : expected)
+            assertTrue(line.startsWith("1") && line.split(" ")[1].equals(String.valueOf(counter)));
+    }
+
+    @Test
+    public void testParseFilter() {
+        List<String> args = new ArrayList<>();
+        for (String arg : new String[] { "--warrior", "1", "trace.bin", "--rounds", "5:", "--warrior", "3" })
+            args.add(arg);
+        TraceFilter filter = TraceFilter.parse(args);
+        assertEquals(1, args.size());
+        assertEquals("trace.bin", args.get(0));
+        assertTrue(filter.matches(5, 1));
+        assertTrue(filter.matches(1000000, 3));
+        assertFalse(filter.matches(4, 1));
+        assertFalse(filter.matches(5, 2));
+    }
+
+    /** Takes a while with every write, like a slow disk */
+    private static class SlowStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        public void write(int b) {
+            bytes.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) {
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            bytes.write(b, off, len);
+        }
+    }
+
+    @Test
+    public void testDropsWhenFull() throws Exception {
+        War war = newWar();
+        SlowStream out = new SlowStream();
+        TraceRecorder recorder = new TraceRecorder(out, names(war), TraceFilter.ALL, 1, false);
+        war.setTrace(recorder);
+        for (int round = 0; round < 300000; ++round)
+            war.nextRound(round);
+        war.setTrace(null);
+        recorder.close();
+        assertTrue(recorder.getDroppedRecords() > 0);
+
+        long instructions = 0, dropped = 0;
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(out.bytes.toByteArray()))) {
+            while (reader.next()) {
+                if (reader.getKind() == TraceReader.GAP)
+                    dropped += reader.getDropped();
+                else
+                    ++instructions;
+            }
+        }
+        assertEquals(recorder.getRecordedRecords(), instructions);
+        // the drops after the last record that got in have no gap
+        assertTrue(dropped <= recorder.getDroppedRecords());
+        assertTrue(dropped > 0);
+    }
+
+    @Test
+    public void testDump() throws Exception {
+        War war = newWar();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record(war, out, TraceFilter.ALL, TraceRecorder.DEFAULT_RING_SIZE);
+        StringWriter text = new StringWriter();
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()))) {
+            TraceDump.dump(reader, new TraceFilter(0, 0), text);
+        }
+        String[] lines = text.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(text.toString(), text.toString().contains("counter"));
+        assertTrue(text.toString(), text.toString().contains("x5=00000001"));
+    }
+}
@@ -0,0 +1,207 @@
+package il.co.codeguru.corewars_riscv.headless;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.WarriorGroup;
+import il.co.codeguru.corewars_riscv.war.WarriorRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class WarriorCorpusTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final byte[] LOOPER = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    private static final byte[] ADDER = toBytes(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1).getRaw(),
+            RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -4).getRaw());
+
+    private static void write(File dir, String name, byte[] code) throws IOException {
+        dir.mkdirs();
+        Files.write(new File(dir, name).toPath(), code);
+    }
+
+    // a single, a pair, a copy of the single and a zombie
+    private File newCorpusDir() throws IOException {
+        File dir = folder.newFolder("corpus");
+        File survivors = new File(dir, "survivors");
+        write(survivors, "looper.bin", LOOPER);
+        write(survivors, "pair1.bin", ADDER);
+        write(survivors, "pair0.bin", LOOPER);
+        write(survivors, "copy.bin", LOOPER);
+        write(survivors, "notes.txt", new byte[] { 1 });
+        write(new File(dir, "zombies"), "still.bin", LOOPER);
+        return dir;
+    }
+
+    private static List<String> names(List<WarriorCorpus.Entry> entries) {
+        List<String> names = new ArrayList<>();
+        for (WarriorCorpus.Entry e : entries)
+            names.add(e.getName());
+        return names;
+    }
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        WarriorCorpus corpus = WarriorCorpus.readDirectory(newCorpusDir());
+        // copy is first by name, so the looper is the duplicate
+        assertEquals(Arrays.asList("copy", "pair0", "pair1", "still"), names(corpus.getEntries()));
+        assertEquals(Arrays.asList("looper"), names(corpus.getDuplicates()));
+        assertEquals(2, corpus.getGroupCount());
+        assertEquals(1, corpus.getZombieCount());
+
+        List<WarriorCorpus.Entry> entries = corpus.getEntries();
+        assertEquals("pair", entries.get(1).getGroup());
+        assertTrue(entries.get(3).isZombie());
+        // the same binary is kept once
+        assertSame(entries.get(0).getCode(), entries.get(1).getCode());
+        assertSame(entries.get(0).getCode(), entries.get(3).getCode());
+
+        WarriorRepository repository = new WarriorRepository();
+        assertTrue(corpus.load(repository, false));
+        assertArrayEquals(new String[] { "copy", "pair" }, repository.getGroupNames());
+        WarriorGroup[] groups = repository.createGroupList(new int[] { 1 });
+        assertEquals(2, groups.length);
+        assertEquals("pair0", groups[0].getWarriors().get(0).getName());
+        assertEquals("pair1", groups[0].getWarriors().get(1).getName());
+        assertEquals(WarriorRepository.ZOMBIES_GROUP, groups[1].getName());
+    }
+
+    @Test
+    public void testContainer() throws Exception {
+        WarriorCorpus corpus = WarriorCorpus.readDirectory(newCorpusDir());
+        File file = new File(folder.getRoot(), "packed/corpus.cwc");
+        corpus.writeContainer(file);
+        // five warriors with the looper binary in it only once
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int loopers = 0;
+        for (int i = 0; i + LOOPER.length <= bytes.length; ++i)
+            if (Arrays.equals(LOOPER, Arrays.copyOfRange(bytes, i, i + LOOPER.length)))
+                ++loopers;
+        assertEquals(1, loopers);
+
+        WarriorCorpus packed = WarriorCorpus.read(file);
+        assertEquals(names(corpus.getEntries()), names(packed.getEntries()));
+        assertEquals(names(corpus.getDuplicates()), names(packed.getDuplicates()));
+        for (int i = 0; i < packed.getEntries().size(); ++i) {
+            WarriorCorpus.Entry expected = corpus.getEntries().get(i), actual = packed.getEntries().get(i);
+            assertEquals(expected.getLabel(), actual.getLabel());
+            assertEquals(expected.getGroup(), actual.getGroup());
+            assertEquals(-1, actual.getFixedAddress());
+            assertArrayEquals(expected.getCode(), actual.getCode());
+            assertArrayEquals(expected.getHash(), actual.getHash());
+        }
+        assertSame(packed.getEntries().get(0).getCode(), packed.getEntries().get(1).getCode());
+
+        // a war of the packed warriors runs to its end
+        Competition competition = new Competition();
+        competition.setSeed(1);
+        assertTrue(packed.load(competition.getWarriorRepository(), false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.runCompetition(1, 2, false, false, false);
+        while (competition.continueRun())
+            ;
+        assertEquals(1, competition.getMetricsSnapshot().getWarsEnded());
+    }
+
+    @Test
+    public void testCorruptContainer() throws Exception {
+        File file = new File(folder.getRoot(), "corpus.cwc");
+        WarriorCorpus.readDirectory(newCorpusDir()).writeContainer(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 1);
+        }
+        try {
+            WarriorCorpus.readContainer(file);
+            fail("read a container with a bad binary");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("hash"));
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(20);
+        }
+        try {
+            WarriorCorpus.readContainer(file);
+            fail("read a truncated container");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("truncated"));
+        }
+    }
+
+    @Test
+    public void testFixedAddresses() throws Exception {
+        List<WarriorCorpus.Entry> entries = new ArrayList<>();
+        entries.add(new WarriorCorpus.Entry("a", "A", "a", 0x1000, ADDER));
+        entries.add(new WarriorCorpus.Entry("b", "B", "b", 0x1004, LOOPER));
+        WarriorCorpus corpus = new WarriorCorpus(entries);
+        assertTrue(corpus.load(new WarriorRepository(), false));
+        assertFalse(corpus.load(new WarriorRepository(), true)); // a and b overlap
+
+        entries.set(1, new WarriorCorpus.Entry("b", "B", "b", 0x2000, LOOPER));
+        WarriorRepository repository = new WarriorRepository();
+        assertTrue(new WarriorCorpus(entries).load(repository, true));
+        assertEquals(0x2000, repository.getGroupByName("b").getWarriors().get(0).m_debugFixedLoadAddress);
+    }
+
+    @Test
+    public void testBadEntries() throws Exception {
+        byte[] big = new byte[WarriorRepository.MAX_WARRIOR_SIZE + 10];
+        assertEquals(WarriorRepository.MAX_WARRIOR_SIZE, new WarriorCorpus.Entry("big", "big", "big", -1, big).getCode().length);
+
+        List<WarriorCorpus.Entry> entries = new ArrayList<>();
+        entries.add(new WarriorCorpus.Entry("a", "A", "g", -1, ADDER));
+        entries.add(new WarriorCorpus.Entry("b", "B", "g", -1, LOOPER));
+        try {
+            new WarriorCorpus(entries);
+            fail("a pair without 0 and 1 labels");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("0 and 1"));
+        }
+
+        entries.set(1, new WarriorCorpus.Entry("a", "B", "b", -1, LOOPER));
+        try {
+            new WarriorCorpus(entries);
+            fail("two warriors with the same name");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("named a"));
+        }
+
+        File dir = folder.newFolder("empty");
+        write(dir, "nothing.bin", new byte[0]);
+        try {
+            WarriorCorpus.readDirectory(dir);
+            fail("a warrior without code");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("nothing"));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package il.co.codeguru.corewars_riscv.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CowMemoryTest {
+
+    private CowMemory memory;
+
+    @Before
+    public void setUp()
+    {
+        byte[] data = new byte[1024];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte)i;
+        memory = new CowMemory(data, 512, 4096);
+    }
+
+    @Test
+    public void initialContentTest() throws MemoryException
+    {
+        assertEquals((byte)100, memory.loadByte(100));
+        assertEquals(0, memory.loadByte(600)); // beyond the used part
+        assertEquals(0, memory.loadByte(4095));
+    }
+
+    @Test(expected = MemoryException.class)
+    public void outOfBoundsTest() throws MemoryException
+    {
+        memory.storeByte(4096, (byte)1);
+    }
+
+    @Test
+    public void forkIsIndependentTest() throws MemoryException
+    {
+        CowMemory fork = memory.fork();
+        fork.storeWord(0, 0x12345678);
+        memory.storeByte(3000, (byte)7);
+
+        assertEquals(0x12345678, fork.loadWord(0));
+        assertEquals(0x03020100, memory.loadWord(0));
+        assertEquals(7, memory.loadByte(3000));
+        assertEquals(0, fork.loadByte(3000));
+
+        // only the written pages were copied, and only once
+        fork.storeByte(1, (byte)1);
+        assertEquals(1, fork.getCopiedPages());
+        assertEquals(1, memory.getCopiedPages());
+    }
+
+    @Test
+    public void copyToTest() throws MemoryException
+    {
+        CowMemory fork = memory.fork();
+        fork.storeByte(300, (byte)-1);
+        byte[] copy = new byte[4 + 400];
+        fork.copyTo(200, copy, 4, 400); // across pages
+        assertEquals(0, copy[3]);
+        assertEquals((byte)200, copy[4]);
+        assertEquals(-1, copy[4 + 100]);
+        assertEquals((byte)511, copy[4 + 311]);
+        assertEquals(0, copy[4 + 312]); // beyond the used part
+        assertEquals(-1, fork.peekByte(300));
+        assertEquals(0, fork.peekByte(4096));
+        assertEquals(0, fork.peekByte(-1));
+    }
+
+    @Test
+    public void copyAndRestoreTest() throws MemoryException
+    {
+        byte[] copy = memory.copyOf(600);
+        CowMemory fork = memory.fork();
+        fork.storeByte(300, (byte)0);
+        fork.storeByte(599, (byte)5);
+        fork.restore(copy);
+        assertArrayEquals(copy, fork.copyOf(600));
+        assertEquals((byte)300, memory.loadByte(300));
+    }
+}
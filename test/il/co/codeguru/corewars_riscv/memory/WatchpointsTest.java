@@ -0,0 +1,91 @@
+package il.co.codeguru.corewars_riscv.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WatchpointsTest {
+
+    private RawMemory memory;
+    private Watchpoints watchpoints;
+
+    @Before
+    public void setUp()
+    {
+        memory = new RawMemory(4096);
+        watchpoints = new Watchpoints(4096);
+        memory.setWatchpoints(watchpoints);
+    }
+
+    @Test
+    public void writeTest() throws MemoryException
+    {
+        watchpoints.add(0x100, 0x103, Watchpoints.WRITE);
+        watchpoints.instructionStarting(1, 0x800);
+        memory.storeByte(0x104, (byte)1);
+        memory.loadByte(0x100);
+        assertNull(watchpoints.takeHit());
+
+        memory.storeWord(0x100, 0x12345678);
+        Watchpoints.Hit hit = watchpoints.takeHit();
+        assertEquals(Watchpoints.WRITE, hit.kind);
+        assertEquals(0x100, hit.address); // the first access
+        assertEquals(0x78, hit.newValue);
+        assertEquals(1, hit.warrior);
+        assertEquals(0x800, hit.pc);
+        assertNull(watchpoints.takeHit());
+    }
+
+    @Test
+    public void changeTest() throws MemoryException
+    {
+        watchpoints.add(0x200, 0x200, Watchpoints.CHANGE);
+        memory.storeByte(0x200, (byte)0);
+        assertNull(watchpoints.takeHit());
+        memory.storeByte(0x200, (byte)5);
+        Watchpoints.Hit hit = watchpoints.takeHit();
+        assertEquals(Watchpoints.CHANGE, hit.kind);
+        assertEquals(0, hit.oldValue);
+        assertEquals(5, hit.newValue);
+    }
+
+    @Test
+    public void readTest() throws MemoryException
+    {
+        watchpoints.add(0x300, 0x3ff, Watchpoints.READ);
+        watchpoints.instructionStarting(0, 0x300);
+        memory.loadWord(0x300); // the fetch of the instruction
+        memory.storeByte(0x310, (byte)1);
+        assertNull(watchpoints.takeHit());
+        memory.loadByte(0x310);
+        Watchpoints.Hit hit = watchpoints.takeHit();
+        assertEquals(Watchpoints.READ, hit.kind);
+        assertEquals(1, hit.oldValue);
+    }
+
+    @Test
+    public void readAfterFetchTest() throws MemoryException
+    {
+        watchpoints.add(0x302, 0x303, Watchpoints.READ);
+        watchpoints.instructionStarting(0, 0x300);
+        memory.loadHalfWord(0x300); // a compressed instruction
+        watchpoints.instructionFetched();
+        assertNull(watchpoints.takeHit());
+        memory.loadHalfWord(0x302);
+        Watchpoints.Hit hit = watchpoints.takeHit();
+        assertEquals(0x302, hit.address);
+        assertEquals(0x300, hit.pc);
+    }
+
+    @Test
+    public void removeTest() throws MemoryException
+    {
+        watchpoints.add(0x100, 0x1ff, Watchpoints.WRITE | Watchpoints.READ);
+        watchpoints.remove(0x100, 0x1ff);
+        assertTrue(watchpoints.isEmpty());
+        memory.storeByte(0x100, (byte)1);
+        memory.loadByte(0x100);
+        assertNull(watchpoints.takeHit());
+    }
+}
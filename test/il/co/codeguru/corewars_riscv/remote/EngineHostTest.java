@@ -0,0 +1,175 @@
+package il.co.codeguru.corewars_riscv.remote;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.Competition;
+import il.co.codeguru.corewars_riscv.war.CompetitionEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class EngineHostTest {
+
+    private BlockingQueue<EngineCommand> commands;
+    private BlockingQueue<RoundDelta> deltas;
+    private Thread worker;
+
+    private static final int JAL_OPCODE = 0x6f;
+    private static final byte[] LOOPER = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    private static final byte[] INVALID = new byte[] { 0, 0, 0, 0 };
+    // writes 42 after itself and loops
+    private static final byte[] WRITER = toBytes(RV32I.instructionI(RV32I.Opcodes.Addi, 5, 0, 42).getRaw(),
+            RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, 256).getRaw(),
+            RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    private void startHost(byte[] secondWarrior) {
+        Competition competition = new Competition();
+        competition.setSeed(1);
+        PlayersPanel.Code first = code("a", "looper", LOOPER);
+        PlayersPanel.Code second = code("b", "second", secondWarrior);
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[] { first, second }, new PlayersPanel.Code[0], false));
+
+        commands = new LinkedBlockingQueue<>();
+        deltas = new LinkedBlockingQueue<>();
+        final EngineHost host = new EngineHost(competition, new DeltaSink() {
+            @Override
+            public void post(RoundDelta delta) {
+                deltas.add(delta);
+            }
+        });
+        // plays the part of the web worker: receives messages between frames
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.interrupted()) {
+                        EngineCommand cmd = host.isRunning() ? commands.poll() : commands.take();
+                        while (cmd != null) {
+                            host.post(cmd);
+                            cmd = commands.poll();
+                        }
+                        host.runFrame();
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }
+        });
+        worker.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(5000);
+        }
+    }
+
+    private RoundDelta nextDelta() throws InterruptedException {
+        RoundDelta delta = deltas.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no delta from the engine", delta);
+        return delta;
+    }
+
+    @Test
+    public void testCompetitionRunsToEnd() throws InterruptedException {
+        startHost(INVALID);
+        commands.add(EngineCommand.start(1, 2, -1, false, false, false));
+        RoundDelta delta;
+        boolean warEnded = false;
+        do {
+            delta = nextDelta();
+            if (delta.warEnded) {
+                warEnded = true;
+                assertEquals(CompetitionEventListener.SINGLE_WINNER, delta.warEndReason);
+                assertEquals(1, delta.scoreNames.length);
+                assertEquals("looper", delta.scoreNames[0]);
+            }
+        } while (!delta.competitionEnded);
+        assertTrue(warEnded);
+    }
+
+    @Test
+    public void testCompeteRoundsRefresh() throws InterruptedException {
+        startHost(WRITER);
+        commands.add(EngineCommand.start(1, 2, -1, false, false, false));
+        RoundDelta delta;
+        do {
+            delta = nextDelta();
+        } while (delta.round < 3 && !delta.competitionEnded);
+        // the compete listeners didn't hear of the write, the delta has all of the memory
+        assertTrue(delta.fullRefresh);
+        int writer = (delta.data[delta.pcs[0] - 8 + 256] == 42) ? 0 : 1; // the groups are loaded in a random order
+        int written = delta.pcs[writer] - 8 + 256;
+        assertEquals(42, delta.data[written]);
+        assertEquals(writer, delta.owners[written]);
+        assertEquals(delta.data.length, delta.owners.length);
+    }
+
+    @Test
+    public void testDebugStepAndEdit() throws InterruptedException {
+        startHost(LOOPER);
+        commands.add(EngineCommand.start(1, 2, 0, true, true, false));
+        RoundDelta delta = nextDelta();
+        assertTrue(delta.fullRefresh);
+        assertTrue(delta.paused);
+        assertEquals(0, delta.round);
+        assertEquals(2, delta.pcs.length);
+        assertTrue(delta.alive[0]);
+        int pc = delta.pcs[0];
+        assertEquals(JAL_OPCODE, delta.data[pc] & 0x7f);
+
+        commands.add(EngineCommand.step());
+        delta = nextDelta();
+        assertFalse(delta.fullRefresh);
+        assertTrue(delta.paused);
+        assertEquals(1, delta.round);
+        assertEquals(pc, delta.pcs[0]); // jumped to itself
+        assertTrue(delta.alive[1]);
+        assertEquals(0, delta.deadWarriors.length);
+
+        commands.add(EngineCommand.writeMemory(100, (byte)7));
+        commands.add(EngineCommand.writeMemory(102, (byte)9));
+        commands.add(EngineCommand.writeMemory(1000, (byte)1));
+        delta = nextDelta();
+        assertEquals(2, delta.getRangeCount()); // close writes are coalesced
+        assertEquals(100, delta.rangeStarts[0]);
+        assertEquals(3, delta.rangeLengths[0]);
+        assertEquals(1000, delta.rangeStarts[1]);
+        assertEquals(1, delta.rangeLengths[1]);
+        assertEquals(7, delta.data[0]);
+        assertEquals(9, delta.data[2]);
+        assertEquals(1, delta.data[3]);
+    }
+
+    @Test
+    public void testBreakpointPauses() throws InterruptedException {
+        startHost(LOOPER);
+        commands.add(EngineCommand.start(1, 2, 0, true, true, false));
+        RoundDelta delta = nextDelta();
+        int pc = delta.pcs[0];
+
+        commands.add(EngineCommand.setBreakpoint(pc, true));
+        commands.add(EngineCommand.resume());
+        do {
+            delta = nextDelta();
+        } while (!delta.paused);
+        assertFalse(delta.warEnded);
+        assertEquals(pc, delta.pcs[0]);
+    }
+}
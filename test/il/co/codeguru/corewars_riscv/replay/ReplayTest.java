@@ -0,0 +1,163 @@
+package il.co.codeguru.corewars_riscv.replay;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import il.co.codeguru.corewars_riscv.war.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class ReplayTest {
+
+    private static final int[] CHECKED_ROUNDS = { 0, 4095, 4096, 12345, 54321, Competition.MAX_ROUND - 1 };
+
+    // keeps snapshots of the recorded war to compare with what the replay gives
+    private static class SnapshotTaker extends TestUtils.QuietSampledListener {
+        final Competition competition;
+        final Map<Integer, WarSnapshot> snapshots = new HashMap<>();
+        SnapshotTaker(Competition competition) {
+            super(EVERY_ROUND);
+            this.competition = competition;
+        }
+
+        @Override
+        public void onRound(int round) {
+            for (int r : CHECKED_ROUNDS)
+                if (r == round)
+                    snapshots.put(round, competition.getCurrentWar().snapshot(round));
+        }
+    }
+
+    // a warrior that keeps writing a counter that goes up by step
+    private static PlayersPanel.Code counter(String label, int step, int offset) {
+        return code(label, toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, step).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, offset).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -8).getRaw()));
+    }
+
+    private static Competition newCompetition() {
+        Competition competition = new Competition();
+        competition.setSeed(42);
+        assertTrue(competition.getWarriorRepository().loadWarriors(
+                new PlayersPanel.Code[] { counter("a", 1, 256), counter("b", 3, 512) }, new PlayersPanel.Code[0], false));
+        return competition;
+    }
+
+    private static void assertSnapshotEquals(WarSnapshot expected, WarSnapshot actual) {
+        assertEquals(expected.round, actual.round);
+        assertArrayEquals(expected.memory, actual.memory);
+        assertArrayEquals(expected.registers, actual.registers);
+        assertArrayEquals(expected.pcs, actual.pcs);
+        assertArrayEquals(expected.alive, actual.alive);
+        assertEquals(expected.numAlive, actual.numAlive);
+        assertEquals(expected.randomState, actual.randomState);
+    }
+
+    private Competition recorded;
+    private SnapshotTaker taker;
+    private ByteArrayOutputStream log;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        recorded = newCompetition();
+        taker = new SnapshotTaker(recorded);
+        log = new ByteArrayOutputStream();
+        recorded.addCompetitionEventListener(taker);
+        recorded.addCompetitionEventListener(new ReplayRecorder(recorded, new ReplayRecorder.StreamFactory() {
+            @Override
+            public OutputStream openWar(int warNumber) {
+                assertEquals(0, warNumber);
+                return log;
+            }
+        }));
+        recorded.competitionEventCaster.doneAdding();
+        recorded.memoryEventCaster.doneAdding();
+        recorded.runCompetition(1, 2, false, false, false);
+        while (recorded.continueRun())
+            ;
+    }
+
+    @Test
+    public void testLogIsCompact() {
+        Replay replay = new Replay(log.toByteArray());
+        assertEquals(Competition.MAX_ROUND, replay.getEndRound());
+        assertEquals(CompetitionEventListener.MAX_ROUND_REACHED, replay.getEndReason());
+        // + the one at round 0
+        assertEquals(Competition.MAX_ROUND / ReplayWriter.DEFAULT_KEYFRAME_INTERVAL + 1, replay.getKeyframeCount());
+        // a raw snapshot is more than 64K, the whole log with all the keyframes is less than that
+        assertTrue("log size " + log.size(), log.size() < War.ARENA_SIZE);
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        Replay replay = new Replay(log.toByteArray());
+        Competition replaying = newCompetition();
+        replaying.competitionEventCaster.doneAdding();
+        replaying.memoryEventCaster.doneAdding();
+
+        for (int round : CHECKED_ROUNDS) {
+            replaying.seekReplay(replay, round);
+            assertEquals(round, replaying.compState.round);
+            assertTrue(replaying.getCurrentWar().isPaused());
+            assertSnapshotEquals(taker.snapshots.get(round), replaying.getCurrentWar().snapshot(round));
+        }
+    }
+
+    // counts the writes the listeners hear of, before and after the war is started
+    private static class WriteCounter extends SnapshotTaker implements MemoryEventListener {
+        int writesBeforeStart = 0, writesAfterStart = 0;
+        boolean started = false;
+        WriteCounter(Competition competition) { super(competition); }
+
+        @Override
+        public void onWarStart() { started = true; }
+        public void onMemoryWrite(int address, byte value) {
+            if (started)
+                ++writesAfterStart;
+            else
+                ++writesBeforeStart;
+        }
+        public void onWriteState(EWriteState state) {}
+    }
+
+    @Test
+    public void testSeekIsQuiet() throws Exception {
+        Replay replay = new Replay(log.toByteArray());
+        Competition replaying = newCompetition();
+        WriteCounter counter = new WriteCounter(replaying);
+        replaying.addCompetitionEventListener(counter);
+        replaying.addMemoryEventLister(counter);
+        replaying.competitionEventCaster.doneAdding();
+        replaying.memoryEventCaster.doneAdding();
+
+        replaying.seekReplay(replay, 12345);
+        assertSnapshotEquals(taker.snapshots.get(12345), replaying.getCurrentWar().snapshot(12345));
+        // only the loading and then the two counters that differ from it, not the thousands of rounds to get there
+        assertTrue("writes before start " + counter.writesBeforeStart, counter.writesBeforeStart < 100);
+        assertTrue(counter.writesAfterStart > 0 && counter.writesAfterStart <= 8);
+    }
+
+    @Test(expected = Exception.class)
+    public void testSeekWithOtherWarriors() throws Exception {
+        Replay replay = new Replay(log.toByteArray());
+        Competition other = new Competition();
+        assertTrue(other.getWarriorRepository().loadWarriors(
+                new PlayersPanel.Code[] { counter("c", 1, 256), counter("d", 3, 512) }, new PlayersPanel.Code[0], false));
+        other.competitionEventCaster.doneAdding();
+        other.memoryEventCaster.doneAdding();
+        other.seekReplay(replay, 100);
+    }
+}
@@ -0,0 +1,80 @@
+package il.co.codeguru.corewars_riscv.utils;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.utils.disassembler.DisassemblyCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DisassemblyCacheTest {
+
+    private RawMemory memory;
+    private DisassemblyCache cache;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+        memory = new RawMemory(64);
+        cache = new DisassemblyCache(memory, 64);
+    }
+
+    private void store(int address, int raw) throws MemoryException
+    {
+        for (int b = 0; b < 4; ++b)
+            memory.storeByte(address + b, (byte)(raw >> (b * 8)));
+    }
+
+    @Test
+    public void testCachedUntilWritten() throws MemoryException
+    {
+        store(8, RV32I.instructionI(RV32I.Opcodes.Addi, 1, 2, 5).getRaw());
+        assertEquals("addi x1, x2, 5", cache.getText(8));
+        assertEquals(4, cache.getSize(8));
+
+        // a write that isn't reported isn't seen
+        store(8, RV32I.instructionI(RV32I.Opcodes.Addi, 1, 2, 6).getRaw());
+        assertEquals("addi x1, x2, 5", cache.getText(8));
+
+        cache.invalidate(11);
+        assertEquals("addi x1, x2, 6", cache.getText(8));
+    }
+
+    @Test
+    public void testInvalidOpcode() throws MemoryException
+    {
+        store(0, 0xFFFFFFFF);
+        assertNull(cache.getText(0));
+        assertEquals(0, cache.getSize(0));
+
+        store(0, RV32I.instructionI(RV32I.Opcodes.Addi, 1, 2, 5).getRaw());
+        cache.invalidate(0);
+        assertEquals(4, cache.getSize(0));
+    }
+
+    @Test
+    public void testEndOfMemory() throws MemoryException
+    {
+        int raw = RV32I.instructionI(RV32I.Opcodes.Addi, 1, 2, 5).getRaw();
+        store(60, raw);
+        assertEquals(4, cache.getSize(60));
+        // only the first half of a 4 byte instruction fits
+        memory.storeByte(62, (byte)raw);
+        memory.storeByte(63, (byte)(raw >> 8));
+        assertEquals(0, cache.getSize(62));
+        assertNull(cache.getText(62));
+    }
+
+    @Test
+    public void testClear() throws MemoryException
+    {
+        store(0, 0xFFFFFFFF);
+        assertNull(cache.getText(0));
+        store(0, RV32I.instructionI(RV32I.Opcodes.Addi, 1, 2, 5).getRaw());
+        cache.clear();
+        assertNotNull(cache.getText(0));
+    }
+}
@@ -0,0 +1,190 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuRiscV;
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.RV32C;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.memory.MemoryRegion;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.memory.RestrictedMemory;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+/**
+ * Guards the hot paths of the engine against allocating: running an instruction, a memory access, a round of a war
+ * and a round of a competition in compete mode don't allocate at all once warm, setting up a war allocates a bounded
+ * amount. Measured with the allocated bytes counter of the thread, skipped on a JVM that doesn't have one.
+ * Every bound has some slack for the little the counter itself and the JIT allocate on the way.
+ */
+public class AllocationTest {
+    private static final int WARMUP = 20000;
+    private static final int COUNT = 200000;
+    private static final long SLACK = 16 * 1024;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean)bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocated() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // loads, stores and arithmetic in 32 bit and compressed instructions, forever
+    private static byte[] busyLoop() {
+        short cAddi = RV32C.cInstructionFormatCI(RV32C.Opcodes.CADDI, 8, 1).getRaw();
+        short cAdd = RV32C.cInstructionFormatCR(RV32C.Opcodes.CADD, 9, 8).getRaw();
+        return toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 4).getRaw(),
+                RV32I.instructionI(RV32I.Opcodes.Andi, 5, 5, 0xFC).getRaw(),
+                RV32I.instructionR(RV32I.Opcodes.Add, 6, 1, 5).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 6, 5, 256).getRaw(),
+                RV32I.instructionI(RV32I.Opcodes.Lw, 7, 6, 256).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sh, 6, 7, 258).getRaw(),
+                RV32I.instructionI(RV32I.Opcodes.Lbu, 7, 6, 257).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sb, 6, 7, 259).getRaw(),
+                (cAddi & 0xFFFF) | (cAdd << 16),
+                RV32I.instructionSB(RV32I.Opcodes.Bne, 5, 0, 8).getRaw(),
+                RV32I.instructionI(RV32I.Opcodes.Addi, 10, 10, 1).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -44).getRaw());
+    }
+
+    private static War newWar(boolean useNewMemory) throws Exception {
+        return TestUtils.newWar(useNewMemory, new WarriorData("a", busyLoop(), "a", 0x1000), new WarriorData("b", busyLoop(), "b", 0x4000));
+    }
+
+    private void checkCpu(boolean useNewMemory) throws Exception {
+        RawMemory core = new RawMemory(RawMemory.MEMORY_SIZE);
+        MemoryRegion arena = new MemoryRegion(0, War.ARENA_SIZE - 1);
+        MemoryRegion stack = new MemoryRegion(War.ARENA_SIZE, War.ARENA_SIZE + War.STACK_SIZE - 1);
+        RestrictedMemory memory = new RestrictedMemory(core, new MemoryRegion[]{ arena, stack }, useNewMemory);
+        byte[] code = busyLoop();
+        for (int i = 0; i < code.length; ++i)
+            memory.storeByte(0x1000 + i, code[i]);
+        CpuStateRiscV state = new CpuStateRiscV();
+        state.setPc(0x1000);
+        state.setReg(1, 0x1000);
+        CpuRiscV cpu = new CpuRiscV(state, memory);
+
+        for (int i = 0; i < WARMUP; ++i)
+            cpu.nextOpcode();
+        long start = allocated();
+        for (int i = 0; i < COUNT; ++i)
+            cpu.nextOpcode();
+        long bytes = allocated() - start;
+        assertTrue("nextOpcode allocated " + bytes + " bytes in " + COUNT + " instructions", bytes < SLACK);
+    }
+
+    @Test
+    public void testNextOpcode() throws Exception {
+        checkCpu(false);
+        checkCpu(true);
+    }
+
+    @Test
+    public void testMemoryAccess() throws Exception {
+        for (boolean useNewMemory : new boolean[] { false, true }) {
+            MemoryRegion arena = new MemoryRegion(0, War.ARENA_SIZE - 1);
+            MemoryRegion stack = new MemoryRegion(War.ARENA_SIZE, War.ARENA_SIZE + War.STACK_SIZE - 1);
+            RestrictedMemory memory = new RestrictedMemory(new RawMemory(RawMemory.MEMORY_SIZE), new MemoryRegion[]{ arena, stack }, useNewMemory);
+            int sum = 0;
+            long start = 0;
+            for (int pass = 0; pass < 2; ++pass) { // the first pass warms up
+                start = allocated();
+                for (int i = 0; i < COUNT; ++i) {
+                    int address = (i * 4) & 0xFFFC;
+                    memory.storeWord(address, i);
+                    memory.storeHalfWord(address, (short)i);
+                    memory.storeByte(address + 3, (byte)i);
+                    sum += memory.loadWord(address) + memory.loadHalfWord(address + 2) + memory.loadByte(address + 1);
+                }
+            }
+            long bytes = allocated() - start;
+            assertTrue("memory access allocated " + bytes + " bytes in " + COUNT + " iterations", bytes < SLACK);
+            assertTrue(sum != 0);
+        }
+    }
+
+    @Test
+    public void testWarRound() throws Exception {
+        for (boolean useNewMemory : new boolean[] { false, true }) {
+            War war = newWar(useNewMemory);
+            int round = 0;
+            for (; round < WARMUP; ++round)
+                war.nextRound(round);
+            long start = allocated();
+            for (; round < WARMUP + COUNT; ++round)
+                war.nextRound(round);
+            long bytes = allocated() - start;
+            assertTrue("nextRound allocated " + bytes + " bytes in " + COUNT + " rounds", bytes < SLACK);
+            assertEquals(2, war.getNumRemainingWarriors());
+        }
+    }
+
+    @Test
+    public void testWarSetup() throws Exception {
+        newWar(false); // warm up
+        long start = allocated();
+        newWar(false);
+        long bytes = allocated() - start;
+        // the memory of the war with the stacks and shared memory and the warriors, and little more
+        long bound = 2 * RawMemory.MEMORY_SIZE;
+        assertTrue("war setup allocated " + bytes + " bytes", bytes < bound);
+    }
+
+    private static class WarEndListener extends TestUtils.QuietSampledListener {
+        private final Competition competition;
+        int lastRound = -1;
+
+        WarEndListener(Competition competition) {
+            super(WAR_BOUNDARIES);
+            this.competition = competition;
+        }
+
+        @Override
+        public void onWarEnd(int reason, String winners, boolean inDebug) { lastRound = competition.compState.round; }
+    }
+
+    // a war of the competition of looping warriors, runs to the max round
+    private long competitionRoundsAllocated() throws Exception {
+        Competition competition = new Competition();
+        WarEndListener listener = new WarEndListener(competition);
+        competition.addCompetitionEventListener(listener);
+        competition.setSeed(1);
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[]{ code("a", busyLoop()), code("b", busyLoop()) }, new PlayersPanel.Code[]{}, false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.runCompetition(1, 2, false, false, false);
+        assertTrue(competition.continueRun()); // starts the war
+        long start = allocated();
+        while (competition.continueRun())
+            ;
+        assertEquals(Competition.MAX_ROUND, listener.lastRound);
+        return allocated() - start;
+    }
+
+    @Test
+    public void testCompetitionRounds() throws Exception {
+        competitionRoundsAllocated(); // warm up
+        long bytes = competitionRoundsAllocated();
+        // only the end of the war and the competition may allocate
+        assertTrue("competition allocated " + bytes + " bytes in " + Competition.MAX_ROUND + " rounds", bytes < 4 * SLACK);
+    }
+}
@@ -0,0 +1,114 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArenaGeometryTest {
+
+    private static final int BIG_ARENA = 4 * 1024 * 1024;
+
+    // jumps to itself
+    private static byte[] loop() {
+        int raw = RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw();
+        return new byte[] { (byte)raw, (byte)(raw >> 8), (byte)(raw >> 16), (byte)(raw >> 24) };
+    }
+
+    private static WarriorGroup[] groups(int count) {
+        WarriorGroup[] groups = new WarriorGroup[count];
+        for (int i = 0; i < count; ++i) {
+            groups[i] = new WarriorGroup("g" + i);
+            groups[i].addWarrior(new WarriorData("w" + i, loop(), "w" + i, -1));
+        }
+        return groups;
+    }
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void testDefaultIsTheOldGeometry() {
+        ArenaGeometry g = ArenaGeometry.DEFAULT;
+        assertEquals(War.ARENA_SIZE, g.arenaSize);
+        assertEquals(War.STACK_SIZE, g.stackSize);
+        assertEquals(War.GROUP_SHARED_MEMORY_SIZE, g.groupSharedMemorySize);
+        assertEquals(0xFFFF, g.getArenaMask());
+        assertEquals(RawMemory.MEMORY_SIZE, g.getMemorySize());
+    }
+
+    @Test
+    public void testMemoryFitsAllWarriors() {
+        ArenaGeometry g = new ArenaGeometry(BIG_ARENA, 120, 4096, 2048);
+        assertEquals(BIG_ARENA + 120 * (4096 + 2048), g.getMemorySize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArenaMustBePowerOf2() {
+        new ArenaGeometry(100000, 20, 2048, 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyWarriors() {
+        new ArenaGeometry(BIG_ARENA, ArenaGeometry.MAX_WARRIORS_LIMIT + 1, 2048, 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStackInParagraphs() {
+        new ArenaGeometry(BIG_ARENA, 20, 2050, 1024);
+    }
+
+    @Test
+    public void testBigFreeForAll() throws Exception {
+        ArenaGeometry g = new ArenaGeometry(BIG_ARENA, 100, 4096, 1024);
+        War war = new War(null, null, false, true, g);
+        war.setSeed(5);
+        war.loadWarriorGroups(groups(100));
+        assertEquals(100, war.getNumWarriors());
+        for (int i = 0; i < 100; ++i) {
+            Warrior w = war.getWarrior(i);
+            assertTrue(w.getLoadOffsetInt() < BIG_ARENA);
+            assertEquals(w.getLoadOffsetInt(), w.getCpuState().getPc());
+            assertTrue(w.stackRegion.m_start >= BIG_ARENA);
+            assertEquals(4096 - 1, w.stackRegion.m_end - w.stackRegion.m_start);
+        }
+        for (int round = 0; round < 100; ++round)
+            war.nextRound(round);
+        assertEquals(100, war.getNumRemainingWarriors());
+    }
+
+    @Test(expected = Exception.class)
+    public void testMoreWarriorsThanTheGeometryHolds() throws Exception {
+        War war = new War(null, null, false, true, new ArenaGeometry(War.ARENA_SIZE, 2, 2048, 1024));
+        war.setSeed(5);
+        war.loadWarriorGroups(groups(3));
+    }
+
+    @Test
+    public void testOldMemoryWrapsAroundTheArena() throws Exception {
+        int arena = 0x20000;
+        // writes to an address past the end of the arena, which lands at its start
+        int sw = RV32I.instructionS(RV32I.Opcodes.Sw, 5, 6, 0).getRaw();
+        int jal = RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw();
+        byte[] code = new byte[8];
+        for (int b = 0; b < 4; ++b) {
+            code[b] = (byte)(sw >> (b * 8));
+            code[4 + b] = (byte)(jal >> (b * 8));
+        }
+        WarriorGroup group = new WarriorGroup("g");
+        group.addWarrior(new WarriorData("w", code, "w", 0x18000));
+        War war = new War(null, null, false, false, new ArenaGeometry(arena, 20, 2048, 1024));
+        war.setSeed(1);
+        war.loadWarriorGroups(new WarriorGroup[] { group });
+        war.getWarrior(0).getCpuState().setReg(5, arena + 0x10);
+        war.getWarrior(0).getCpuState().setReg(6, 0x12345678);
+        war.nextRound(0);
+        assertEquals(0x12345678, war.getMemory().loadWord(0x10));
+        assertTrue(war.getWarrior(0).isAlive());
+    }
+}
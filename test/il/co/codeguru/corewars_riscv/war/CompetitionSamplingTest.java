@@ -0,0 +1,98 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class CompetitionSamplingTest {
+
+    private static class CountingListener extends TestUtils.QuietListener {
+        List<Integer> rounds = new ArrayList<>();
+        int endRounds = 0;
+        int warStarts = 0;
+        int warEnds = 0;
+
+        @Override
+        public void onWarStart() { ++warStarts; }
+        @Override
+        public void onWarEnd(int reason, String winners, boolean inDebug) { ++warEnds; }
+        @Override
+        public void onRound(int round) { rounds.add(round); }
+        @Override
+        public void onEndRound() { ++endRounds; }
+    }
+
+    // counts the same events as CountingListener, to compare what a sampled listener hears with a plain one
+    private static class SampledListener extends CountingListener implements SampledCompetitionEventListener {
+        final int interval;
+        SampledListener(int interval) { this.interval = interval; }
+        public int getRoundInterval() { return interval; }
+    }
+
+    private Competition competition;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        competition = new Competition();
+        byte[] looper = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[]{ code("a", looper), code("b", looper) }, new PlayersPanel.Code[]{}, false));
+    }
+
+    private void runToEnd() throws Exception {
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.runCompetition(1, 2, false, false, false);
+        while (competition.continueRun())
+            ;
+    }
+
+    @Test
+    public void testSampledRounds() throws Exception {
+        CountingListener plain = new CountingListener();
+        SampledListener every1000 = new SampledListener(1000);
+        SampledListener every3000 = new SampledListener(3000);
+        SampledListener boundaries = new SampledListener(SampledCompetitionEventListener.WAR_BOUNDARIES);
+        competition.addCompetitionEventListener(plain);
+        competition.addCompetitionEventListener(every1000);
+        competition.addCompetitionEventListener(every3000);
+        competition.addCompetitionEventListener(boundaries);
+        assertEquals(0, competition.competitionEventCaster.getCompeteRoundInterval());
+        runToEnd();
+        assertEquals(1000, competition.competitionEventCaster.getCompeteRoundInterval());
+
+        // the looping warriors never die so the war runs to the max round
+        assertEquals(Competition.MAX_ROUND / 1000 + 1, every1000.rounds.size()); // + the final onRound of the war end
+        for (int i = 0; i < every1000.rounds.size(); ++i)
+            assertEquals(i * 1000, (int)every1000.rounds.get(i));
+        assertEquals(Competition.MAX_ROUND / 1000, every1000.endRounds);
+        assertEquals(Competition.MAX_ROUND / 3000 + 1, every3000.endRounds);
+
+        assertEquals(0, plain.rounds.size());
+        assertEquals(0, plain.warStarts);
+        assertEquals(1, plain.warEnds);
+        assertEquals(0, boundaries.rounds.size());
+        assertEquals(1, boundaries.warStarts);
+        assertEquals(1, boundaries.warEnds);
+    }
+
+    @Test
+    public void testNoSubscribers() throws Exception {
+        CountingListener plain = new CountingListener();
+        competition.addCompetitionEventListener(plain);
+        runToEnd();
+        assertEquals(0, competition.competitionEventCaster.getCompeteRoundInterval());
+        assertEquals(0, plain.endRounds);
+        assertEquals(1, plain.warEnds);
+    }
+}
@@ -0,0 +1,105 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.headless.EngineMetricsJmx;
+import il.co.codeguru.corewars_riscv.memory.MemoryException;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class EngineMetricsTest {
+
+    private Competition competition;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        competition = new Competition();
+        competition.setSeed(1);
+        PlayersPanel.Code looper = code("looper", toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw()));
+        PlayersPanel.Code invalid = code("invalid", toBytes(0));
+        PlayersPanel.Code writer = code("writer", toBytes(
+                RV32I.instructionU(RV32I.Opcodes.Lui, 5, 0x20).getRaw(), // out of the memory of the warrior
+                RV32I.instructionS(RV32I.Opcodes.Sw, 5, 0, 0).getRaw()));
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[]{ looper, invalid, writer }, new PlayersPanel.Code[]{}, false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+    }
+
+    private void runToEnd() throws Exception {
+        competition.runCompetition(1, 3, false, false, true); // the new memory, so writing out of the arena faults
+        while (competition.continueRun())
+            ;
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        EngineMetrics before = competition.getMetricsSnapshot();
+        assertEquals(0, before.getWarsStarted());
+        assertEquals(0, before.getTotalInstructions());
+
+        runToEnd();
+        EngineMetrics m = competition.getMetricsSnapshot();
+        assertEquals(1, m.getWarsStarted());
+        assertEquals(1, m.getWarsPlanned());
+        assertEquals(1, m.getWarsEnded());
+        assertTrue(m.getRounds() >= 1);
+        assertEquals(1, m.getWarsEnded(CompetitionEventListener.SINGLE_WINNER));
+        assertEquals(0, m.getWarsEnded(CompetitionEventListener.MAX_ROUND_REACHED));
+        assertEquals(1, m.getDeaths(EngineMetrics.DEATH_INVALID_OPCODE));
+        assertEquals(1, m.getDeaths(EngineMetrics.DEATH_MEMORY));
+        assertEquals(0, m.getDeaths(EngineMetrics.DEATH_CPU_OTHER));
+        assertEquals(1, m.getMemoryFaults(MemoryException.FAULT_WRITE_FORBIDDEN));
+
+        // the war ends once the writer dies in its second instruction, the looper ran one jump in every round
+        assertEquals(1, m.getInstructions(Instruction.CLASS_ALU)); // the lui
+        assertEquals(0, m.getInstructions(Instruction.CLASS_STORE)); // the sw didn't complete
+        assertTrue(m.getInstructions(Instruction.CLASS_JUMP) >= 1);
+        assertEquals(m.getInstructions(Instruction.CLASS_ALU) + m.getInstructions(Instruction.CLASS_JUMP), m.getTotalInstructions());
+
+        long[] histogram = m.getRoundsHistogram();
+        long wars = 0;
+        for (long count : histogram)
+            wars += count;
+        assertEquals(1, wars);
+        assertEquals(0, histogram[0]);
+        assertTrue(m.getMaxWarMillis() <= m.getTotalWarMillis());
+
+        // the snapshot is a copy
+        histogram[1] = 100;
+        assertNotEquals(100, competition.getMetricsSnapshot().getRoundsHistogram()[1]);
+    }
+
+    @Test
+    public void testRoundsBucket() {
+        assertEquals(0, EngineMetrics.roundsBucket(0));
+        assertEquals(1, EngineMetrics.roundsBucket(1));
+        assertEquals(2, EngineMetrics.roundsBucket(2));
+        assertEquals(2, EngineMetrics.roundsBucket(3));
+        assertEquals(18, EngineMetrics.roundsBucket(Competition.MAX_ROUND));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        ObjectName name = EngineMetricsJmx.register(competition);
+        try {
+            runToEnd();
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "WarsStarted"));
+            assertEquals(competition.getMetricsSnapshot().getTotalInstructions(),
+                    ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TotalInstructions"));
+            assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "DeathsByCause"));
+        }
+        finally {
+            EngineMetricsJmx.unregister(name);
+        }
+    }
+}
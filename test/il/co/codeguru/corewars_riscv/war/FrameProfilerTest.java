@@ -0,0 +1,156 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.TestUtils;
+import il.co.codeguru.corewars_riscv.memory.MemoryEventListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameProfilerTest {
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        double time = 0;
+        int reads = 0;
+        @Override
+        public double now() {
+            ++reads;
+            return time;
+        }
+    }
+
+    /** A memory view that takes 3ms on every write */
+    private static class SlowView implements MemoryEventListener {
+        final FakeClock clock;
+        int writes = 0;
+
+        SlowView(FakeClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void onMemoryWrite(int address, byte value) {
+            ++writes;
+            clock.time += 3;
+        }
+
+        @Override
+        public void onWriteState(EWriteState state) {
+        }
+    }
+
+    private FakeClock clock;
+    private FrameProfiler profiler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        profiler = new FrameProfiler();
+        profiler.setClock(clock);
+        profiler.setEnabled(true);
+    }
+
+    @Test
+    public void testSections() {
+        SlowView view = new SlowView(clock);
+        MemoryEventListener sampled = profiler.sampleMemoryEvents(view, FrameProfiler.MEMORY_VIEWS);
+
+        profiler.startFrame();
+        profiler.enter(FrameProfiler.EMULATION);
+        clock.time += 2;
+        int readsBefore = clock.reads;
+        for (int i = 0; i < FrameProfiler.WRITE_SAMPLE_EVERY; ++i)
+            sampled.onMemoryWrite(i, (byte)1); // in the middle of the emulation
+        assertEquals(2, clock.reads - readsBefore); // only the sampled write read the clock
+        clock.time += 1;
+        profiler.enter(FrameProfiler.CANVAS);
+        clock.time += 4;
+        profiler.endFrame(true);
+
+        int writesTime = 3 * FrameProfiler.WRITE_SAMPLE_EVERY;
+        assertEquals(FrameProfiler.WRITE_SAMPLE_EVERY, view.writes);
+        assertEquals(1, profiler.getFrames());
+        assertEquals(3, profiler.getHistogram(FrameProfiler.EMULATION).getTotal(), 0);
+        assertEquals(writesTime, profiler.getHistogram(FrameProfiler.MEMORY_VIEWS).getTotal(), 0);
+        assertEquals(4, profiler.getHistogram(FrameProfiler.CANVAS).getTotal(), 0);
+        assertEquals(0, profiler.getHistogram(FrameProfiler.DEBUGGER).getTotal(), 0);
+        assertEquals(1, profiler.getHistogram(FrameProfiler.DEBUGGER).getCount()); // a frame that took none of it
+        assertEquals(7 + writesTime, profiler.getHistogram(FrameProfiler.FRAME_WORK).getTotal(), 0);
+
+        clock.time += 6;
+        profiler.startFrame();
+        profiler.endFrame(false);
+        FrameHistogram interval = profiler.getHistogram(FrameProfiler.FRAME_INTERVAL);
+        assertEquals(1, interval.getCount());
+        assertEquals(13 + writesTime, interval.getMax(), 0);
+
+        // the frame before didn't ask for this one, so there's no interval to it
+        clock.time += 1000;
+        profiler.startFrame();
+        profiler.endFrame(true);
+        assertEquals(1, interval.getCount());
+        assertEquals(3, profiler.getFrames());
+    }
+
+    @Test
+    public void testOutsideFrame() {
+        SlowView view = new SlowView(clock);
+        MemoryEventListener sampled = profiler.sampleMemoryEvents(view, FrameProfiler.MEMORY_VIEWS);
+        for (int i = 0; i < FrameProfiler.WRITE_SAMPLE_EVERY; ++i)
+            sampled.onMemoryWrite(0, (byte)1);
+        assertEquals(FrameProfiler.WRITE_SAMPLE_EVERY, view.writes);
+        assertEquals(0, clock.reads);
+        assertEquals(0, profiler.getHistogram(FrameProfiler.MEMORY_VIEWS).getCount());
+
+        profiler.setEnabled(false);
+        profiler.startFrame();
+        for (int i = 0; i < FrameProfiler.WRITE_SAMPLE_EVERY; ++i)
+            sampled.onMemoryWrite(0, (byte)1);
+        profiler.endFrame(true);
+        assertEquals(2 * FrameProfiler.WRITE_SAMPLE_EVERY, view.writes);
+        assertEquals(0, clock.reads);
+        assertEquals(0, profiler.getFrames());
+    }
+
+    @Test
+    public void testSampledStaysSampled() {
+        CompetitionEventListener plain = profiler.timeCompetitionEvents(new TestUtils.QuietListener(), FrameProfiler.CANVAS);
+        assertFalse(plain instanceof SampledCompetitionEventListener);
+        CompetitionEventListener sampled = profiler.timeCompetitionEvents(new TestUtils.QuietSampledListener(7), FrameProfiler.OTHER);
+        assertTrue(sampled instanceof SampledCompetitionEventListener);
+        assertEquals(7, ((SampledCompetitionEventListener)sampled).getRoundInterval());
+    }
+
+    @Test
+    public void testHistogram() {
+        FrameHistogram histogram = new FrameHistogram();
+        assertEquals(0, histogram.getPercentileBound(0.95), 0);
+        for (int i = 0; i < 19; ++i)
+            histogram.add(0.1);
+        histogram.add(100);
+        assertEquals(19, histogram.getBucket(0));
+        assertEquals(1, histogram.getBucket(FrameHistogram.BUCKETS - 1));
+        assertEquals(0.25, histogram.getPercentileBound(0.95), 0);
+        assertEquals(100, histogram.getPercentileBound(1), 0);
+        assertEquals(100, histogram.getMax(), 0);
+        assertEquals("<=16.7", FrameHistogram.bucketName(6));
+        assertEquals(">66.7", FrameHistogram.bucketName(FrameHistogram.BUCKETS - 1));
+        assertEquals("0.25", FrameHistogram.formatMs(0.25));
+        assertEquals("0.05", FrameHistogram.formatMs(0.05));
+        assertEquals("12", FrameHistogram.formatMs(12));
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testDump() {
+        profiler.startFrame();
+        clock.time += 5;
+        profiler.endFrame(true);
+        String dump = profiler.dump();
+        String[] lines = dump.split("\n");
+        assertEquals(2 + FrameProfiler.HISTOGRAM_COUNT, lines.length);
+        assertTrue(dump, dump.startsWith("frame times in ms, 1 frames"));
+        assertTrue(dump, lines[2 + FrameProfiler.OTHER].startsWith("other       5      8      5"));
+    }
+}
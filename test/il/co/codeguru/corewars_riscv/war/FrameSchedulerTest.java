@@ -0,0 +1,74 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        double time = 0;
+        @Override
+        public double now() {
+            return time;
+        }
+    }
+
+    private FakeClock clock;
+    private FrameScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        scheduler = new FrameScheduler();
+        scheduler.setClock(clock);
+        scheduler.setBudget(12);
+    }
+
+    @Test
+    public void testBatchCappedByMaxRounds() {
+        scheduler.startFrame();
+        assertEquals(3, scheduler.nextBatch(3));
+    }
+
+    @Test
+    public void testUnmeasuredBatchGrows() {
+        scheduler.startFrame();
+        int first = scheduler.nextBatch(Integer.MAX_VALUE);
+        assertTrue(scheduler.batchDone(first)); // clock didn't move, too fast to measure
+        int second = scheduler.nextBatch(Integer.MAX_VALUE);
+        assertEquals(first * 2, second);
+        assertEquals(0, scheduler.getRoundsPerMs(), 0);
+    }
+
+    @Test
+    public void testBatchAdaptsToMeasuredRate() {
+        scheduler.startFrame();
+        int first = scheduler.nextBatch(Integer.MAX_VALUE);
+        clock.time += 1;
+        assertTrue(scheduler.batchDone(first));
+        assertEquals(first, scheduler.getRoundsPerMs(), 0.001);
+
+        // 11ms are left, half of them are filled by the next batch
+        int second = scheduler.nextBatch(Integer.MAX_VALUE);
+        assertEquals((int)(first * 11 * 0.5), second);
+    }
+
+    @Test
+    public void testStopsWhenBudgetUsed() {
+        scheduler.startFrame();
+        int batch = scheduler.nextBatch(Integer.MAX_VALUE);
+        clock.time += 5;
+        assertTrue(scheduler.batchDone(batch));
+        batch = scheduler.nextBatch(Integer.MAX_VALUE);
+        clock.time += 8;
+        assertFalse(scheduler.batchDone(batch));
+
+        // a new frame starts with a full budget again
+        scheduler.startFrame();
+        batch = scheduler.nextBatch(Integer.MAX_VALUE);
+        clock.time += 1;
+        assertTrue(scheduler.batchDone(batch));
+    }
+}
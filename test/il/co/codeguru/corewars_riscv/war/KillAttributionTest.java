@@ -0,0 +1,141 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.newWar;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class KillAttributionTest {
+
+    private static final int FIRST = 0x1000;
+    private static final int SECOND = 0x1400;
+
+    // zeroes the first instruction of the warrior at SECOND and loops
+    private static final byte[] BOMBER = toBytes(
+            RV32I.instructionS(RV32I.Opcodes.Sw, 1, 0, SECOND - FIRST).getRaw(),
+            RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    private static final byte[] LOOPER = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    // zeroes its own next instruction
+    private static final byte[] SUICIDE = toBytes(
+            RV32I.instructionS(RV32I.Opcodes.Sw, 1, 0, 4).getRaw(),
+            RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    // jumps over its end to the empty arena
+    private static final byte[] JUMPER = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 8).getRaw());
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    private static void run(War war, int rounds) {
+        for (int round = 0; round < rounds && !war.isOver(); ++round)
+            war.nextRound(round);
+    }
+
+    @Test
+    public void testOwners() throws Exception {
+        War war = newWar(BOMBER, FIRST, LOOPER, SECOND);
+        int a = war.getWarriorByLabel("a").m_myIndex;
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        assertEquals(a, war.getOwner(FIRST));
+        assertEquals(b, war.getOwner(SECOND + 3));
+        assertEquals(-1, war.getOwner(SECOND + 4));
+        run(war, 3);
+        assertEquals(a, war.getOwner(SECOND)); // the bomb
+    }
+
+    @Test
+    public void testKilledByOther() throws Exception {
+        War war = newWar(BOMBER, FIRST, LOOPER, SECOND);
+        run(war, 10);
+        int a = war.getWarriorByLabel("a").m_myIndex;
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        assertFalse(war.getWarrior(b).isAlive());
+        assertEquals(a, war.getKiller(b));
+        assertEquals(War.KILLER_NONE, war.getKiller(a));
+    }
+
+    @Test
+    public void testCompressedInstruction() throws Exception {
+        // a nop and then its own zeros, which are an illegal compressed instruction. the 2 bytes after it are bombed
+        // before it gets to them
+        byte[] faulter = toBytes(RV32I.instructionI(RV32I.Opcodes.Addi, 0, 0, 0).getRaw(), 0);
+        byte[] bomber = toBytes(
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 0, SECOND + 6 - FIRST).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+        War war = newWar(bomber, FIRST, faulter, SECOND);
+        run(war, 10);
+        int a = war.getWarriorByLabel("a").m_myIndex;
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        assertFalse(war.getWarrior(b).isAlive());
+        assertEquals(a, war.getOwner(SECOND + 6));
+        assertEquals(b, war.getKiller(b));
+    }
+
+    @Test
+    public void testSuicideAndArena() throws Exception {
+        War war = newWar(SUICIDE, FIRST, JUMPER, SECOND);
+        run(war, 10);
+        int a = war.getWarriorByLabel("a").m_myIndex;
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        assertEquals(a, war.getKiller(a));
+        assertEquals(War.KILLER_ARENA, war.getKiller(b));
+    }
+
+    @Test
+    public void testForkKeepsOwners() throws Exception {
+        War war = newWar(BOMBER, FIRST, LOOPER, SECOND);
+        War fork = war.fork();
+        run(fork, 10);
+        int a = war.getWarriorByLabel("a").m_myIndex;
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        assertEquals(a, fork.getKiller(b));
+        // the original didn't see the bomb of the fork
+        assertEquals(b, war.getOwner(SECOND));
+        assertEquals(War.KILLER_NONE, war.getKiller(b));
+    }
+
+    @Test
+    public void testRestoreTakesOwnersBack() throws Exception {
+        War war = newWar(BOMBER, FIRST, LOOPER, SECOND);
+        int b = war.getWarriorByLabel("b").m_myIndex;
+        WarSnapshot start = war.snapshot(0);
+        run(war, 10);
+        assertFalse(war.getWarrior(b).isAlive());
+        // back before the bomb, the bytes of b are its own again
+        war.restore(start);
+        assertEquals(b, war.getOwner(SECOND));
+        assertEquals(War.KILLER_NONE, war.getKiller(b));
+        run(war, 10);
+        assertEquals(war.getWarriorByLabel("a").m_myIndex, war.getKiller(b));
+
+        // a snapshot without owners, like the ones of a replay, leaves nobody owning anything
+        war.restore(new WarSnapshot(start.round, start.memory, start.registers, start.pcs, start.alive, start.numAlive, start.randomState));
+        assertEquals(-1, war.getOwner(SECOND));
+    }
+
+    @Test
+    public void testCompetitionMatrix() throws Exception {
+        Competition competition = new Competition();
+        competition.setSeed(1);
+        // the jumper dies by the arena in every war, the suicide by itself
+        assertTrue(competition.getWarriorRepository().loadWarriors(new PlayersPanel.Code[]{ code("jumper", JUMPER), code("suicide", SUICIDE), code("looper", LOOPER) }, new PlayersPanel.Code[]{}, false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.runCompetition(3, 3, false, false, false);
+        while (competition.continueRun())
+            ;
+        KillMatrix matrix = competition.getKillMatrix();
+        assertEquals(3, matrix.getArenaKills("jumper"));
+        assertEquals(3, matrix.getKills("suicide", "suicide"));
+        assertEquals(0, matrix.getArenaKills("looper"));
+        assertEquals(0, matrix.getKills("looper", "jumper"));
+        assertEquals(0, matrix.getKills("nobody", "jumper"));
+    }
+}
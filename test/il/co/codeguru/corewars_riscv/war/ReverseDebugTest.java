@@ -0,0 +1,202 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.gui.IBreakpointCheck;
+import il.co.codeguru.corewars_riscv.gui.PlayersPanel;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.code;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class ReverseDebugTest {
+
+    private static final int RUN_ROUNDS = 20000;
+    private static final int[] CHECKED_ROUNDS = { 0, 1, 100, 5000, 16383, 16384, RUN_ROUNDS - 1 };
+
+    private Competition competition;
+    private War war;
+    private final Map<Integer, WarSnapshot> expected = new HashMap<>();
+
+    // a warrior that keeps writing a counter that goes up by step every 3 rounds, the counter is in x5
+    private static PlayersPanel.Code counter(String label, int step, int offset) {
+        return code(label, toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, step).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, offset).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -8).getRaw()));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        competition = new Competition();
+        competition.setSeed(3);
+        assertTrue(competition.getWarriorRepository().loadWarriors(
+                new PlayersPanel.Code[] { counter("a", 1, 256), counter("b", 1, 512) }, new PlayersPanel.Code[0], false));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.runCompetition(1, 2, true, true, false);
+        competition.continueRun(); // starts the war
+        war = competition.getCurrentWar();
+        war.setInDebugger();
+        war.setUiWarrior(war.getWarrior(0));
+
+        // with speed 0 every continueRun is a single round, like clicking step
+        for (int round = 0; round < RUN_ROUNDS; ++round) {
+            assertEquals(round, competition.compState.round);
+            for (int r : CHECKED_ROUNDS)
+                if (r == round)
+                    expected.put(round, war.snapshot(round));
+            competition.continueRun();
+        }
+        assertTrue(competition.getSnapshotHistory().size() <= SnapshotHistory.DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    // counts the times the first warrior gets past its addi, without ever breaking
+    private static class HitCounter implements IBreakpointCheck {
+        final int address;
+        int hits = 0;
+
+        HitCounter(int address) {
+            this.address = address;
+        }
+
+        @Override
+        public boolean shouldBreak(CpuStateRiscV state) {
+            if (state.getPc() == address)
+                ++hits;
+            return false;
+        }
+
+        @Override
+        public int[] saveHitCounts() {
+            return new int[] { hits };
+        }
+
+        @Override
+        public void restoreHitCounts(int[] hitCounts) {
+            hits = hitCounts == null ? 0 : hitCounts[0];
+        }
+    }
+
+    private static void assertSnapshotEquals(WarSnapshot expected, WarSnapshot actual) {
+        assertArrayEquals(expected.memory, actual.memory);
+        assertArrayEquals(expected.registers, actual.registers);
+        assertArrayEquals(expected.pcs, actual.pcs);
+        assertArrayEquals(expected.alive, actual.alive);
+        assertEquals(expected.randomState, actual.randomState);
+    }
+
+    @Test
+    public void testStepBackIsQuick() {
+        long start = System.currentTimeMillis();
+        assertTrue(competition.stepBack());
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(RUN_ROUNDS - 1, competition.compState.round);
+        assertTrue(war.isPaused());
+        assertSnapshotEquals(expected.get(RUN_ROUNDS - 1), war.snapshot(RUN_ROUNDS - 1));
+        assertTrue("step back took " + elapsed + "ms", elapsed < 50);
+    }
+
+    @Test
+    public void testSeekBack() {
+        for (int i = CHECKED_ROUNDS.length - 1; i >= 0; --i) {
+            int round = CHECKED_ROUNDS[i];
+            assertTrue(competition.seekBack(round));
+            assertEquals(round, competition.compState.round);
+            assertSnapshotEquals(expected.get(round), war.snapshot(round));
+        }
+        assertFalse(competition.stepBack()); // at round 0
+    }
+
+    @Test
+    public void testStepForwardAfterBack() throws Exception {
+        assertTrue(competition.seekBack(5000));
+        for (int round = 5000; round < 16384; ++round)
+            competition.continueRun();
+        assertSnapshotEquals(expected.get(16384), war.snapshot(16384));
+    }
+
+    @Test
+    public void testReverseContinue() {
+        final int loadAddress = war.getWarrior(0).getLoadOffsetInt();
+        // right after the counter of the first warrior got to a multiple of 1000
+        war.setBreakpointCheck(new IBreakpointCheck() {
+            @Override
+            public boolean shouldBreak(CpuStateRiscV state) {
+                return state.getPc() == loadAddress + 4 && state.getReg(5) % 1000 == 0;
+            }
+
+            @Override
+            public int[] saveHitCounts() {
+                return null;
+            }
+
+            @Override
+            public void restoreHitCounts(int[] hitCounts) {
+            }
+        });
+
+        // the counter goes up every 3 rounds, the first one runs in round 0
+        assertTrue(competition.reverseContinue());
+        int first = competition.compState.round;
+        assertEquals(6000, war.getWarrior(0).getCpuState().getReg(5));
+        assertEquals(loadAddress + 4, war.getWarrior(0).getCpuState().getPc());
+
+        assertTrue(competition.reverseContinue());
+        assertEquals(first - 3000, competition.compState.round);
+        assertEquals(5000, war.getWarrior(0).getCpuState().getReg(5));
+
+        assertTrue(competition.seekBack(2000));
+        assertFalse(competition.reverseContinue()); // counter is below 1000 before round 3000
+        assertEquals(0, competition.compState.round);
+    }
+
+    @Test
+    public void testGoingBackDoesntCount() {
+        EngineMetrics before = competition.getMetricsSnapshot();
+        assertEquals(RUN_ROUNDS, before.getRounds());
+        long instructions = war.getInstructionCount();
+        assertEquals(instructions, before.getTotalInstructions());
+
+        assertTrue(competition.seekBack(5000));
+        assertTrue(competition.stepBack());
+        competition.reverseContinue();
+        assertEquals(RUN_ROUNDS, war.getMetrics().getRounds());
+        assertEquals(instructions, war.getInstructionCount());
+        assertEquals(RUN_ROUNDS, competition.getMetricsSnapshot().getRounds());
+    }
+
+    @Test
+    public void testHitCountsGoBack() throws Exception {
+        HitCounter counter = new HitCounter(war.getWarrior(0).getLoadOffsetInt() + 4);
+        war.setBreakpointCheck(counter);
+        assertTrue(competition.seekBack(0));
+        assertEquals(0, counter.hits);
+
+        final int rounds = 600;
+        int[] hitsAt = new int[rounds + 1];
+        for (int round = 0; round < rounds; ++round) {
+            hitsAt[round] = counter.hits;
+            competition.continueRun();
+        }
+        hitsAt[rounds] = counter.hits;
+        assertEquals(rounds / 3, counter.hits);
+
+        // the rounds that are run again to get back don't count twice
+        assertTrue(competition.seekBack(450));
+        assertEquals(hitsAt[450], counter.hits);
+        assertTrue(competition.stepBack());
+        assertEquals(hitsAt[449], counter.hits);
+        assertTrue(competition.seekBack(100));
+        assertEquals(hitsAt[100], counter.hits);
+        assertFalse(competition.reverseContinue());
+        assertEquals(0, counter.hits);
+    }
+}
@@ -0,0 +1,107 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.headless.ParallelForkEvaluator;
+import il.co.codeguru.corewars_riscv.memory.CowMemory;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.newWar;
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class WarForkTest {
+
+    private static final int FIRST = 0x1000;
+    private static final int SECOND = 0x1400;
+
+    // keeps writing a counter
+    private static byte[] counter(int step, int offset) {
+        return toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, step).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, offset).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -8).getRaw());
+    }
+
+    // zeroes the first instruction of the other warrior, whoever is loaded first goes first and wins
+    private static byte[] racer(int otherOffset) {
+        return toBytes(
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 0, otherOffset).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+    }
+
+    @Before
+    public void setUp() {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void testForkContinuesLikeTheOriginal() throws Exception {
+        War war = newWar(counter(1, 256), FIRST, counter(3, 512), SECOND);
+        int round = 0;
+        for (; round < 1000; ++round)
+            war.nextRound(round);
+
+        War fork = war.fork();
+        WarSnapshot atFork = war.snapshot(round);
+        for (int r = round; r < round + 5000; ++r)
+            fork.nextRound(r);
+        // the original didn't see any of the writes of the fork
+        assertArrayEquals(atFork.memory, war.snapshot(round).memory);
+
+        for (int r = round; r < round + 5000; ++r)
+            war.nextRound(r);
+        WarSnapshot expected = war.snapshot(round + 5000);
+        WarSnapshot actual = fork.snapshot(round + 5000);
+        assertArrayEquals(expected.memory, actual.memory);
+        assertArrayEquals(expected.registers, actual.registers);
+        assertArrayEquals(expected.pcs, actual.pcs);
+        assertArrayEquals(expected.alive, actual.alive);
+
+        // a fork of a fork only copies the pages it writes to
+        War second = fork.fork();
+        for (int r = round + 5000; r < round + 5003; ++r) // every warrior stores once in 3 rounds
+            second.nextRound(r);
+        assertEquals(2, ((CowMemory)second.getMemory()).getCopiedPages());
+    }
+
+    @Test
+    public void testEvaluation() throws Exception {
+        War war = newWar(racer(SECOND - FIRST), FIRST, racer(FIRST - SECOND), SECOND);
+        ForkEvaluation evaluation = new ForkEvaluation(war, 0, 64, 5);
+        float[] chances = new ParallelForkEvaluator(4).evaluate(evaluation);
+        // nothing is random in the rounds, so every continuation has the first warrior zero the second
+        assertArrayEquals(new float[] { 1, 0 }, chances, 0);
+        for (int i = 0; i < evaluation.getCount(); ++i)
+            assertEquals(1, evaluation.getEndRound(i)); // decided in the first round
+
+        ForkEvaluation again = new ForkEvaluation(war, 0, 64, 5);
+        again.runAll();
+        assertArrayEquals(chances, again.getWinProbabilities(), 0);
+
+        // the war itself wasn't touched
+        assertEquals(2, war.getNumRemainingWarriors());
+        assertEquals(0, war.getMemory().loadByte(FIRST + 8));
+    }
+
+    @Test
+    public void testEvaluationFromThePausedRound() throws Exception {
+        War war = newWar(counter(1, 256), FIRST, counter(3, 512), SECOND);
+        for (int round = 0; round < 1000; ++round)
+            war.nextRound(round);
+        WarSnapshot paused = war.snapshot(1000);
+
+        ForkEvaluation evaluation = new ForkEvaluation(war, 1000, 2, 5);
+        assertEquals(100, evaluation.runRounds(0, 100));
+        assertEquals(-1, evaluation.getEndRound(0)); // the counters never end
+        assertEquals(Competition.MAX_ROUND - 1100, evaluation.runRounds(0, Competition.MAX_ROUND));
+        assertEquals(Competition.MAX_ROUND, evaluation.getEndRound(0));
+        assertEquals(0, evaluation.runRounds(0, 100));
+        assertArrayEquals(new float[] { 0.5f, 0.5f }, evaluation.getWinProbabilities(), 0);
+
+        // the continuation went on from the paused war without changing it
+        assertArrayEquals(paused.memory, war.snapshot(1000).memory);
+        assertArrayEquals(paused.pcs, war.snapshot(1000).pcs);
+    }
+}
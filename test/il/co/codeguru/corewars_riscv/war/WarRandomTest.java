@@ -0,0 +1,34 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WarRandomTest {
+
+    @Test
+    public void testSameAsJavaRandom() {
+        for (long seed : new long[] { 0, 1, -1, 42, "guru".hashCode() }) {
+            Random expected = new Random(seed);
+            WarRandom actual = new WarRandom();
+            actual.setSeed(seed);
+            for (int bound : new int[] { 1, 2, 16, War.ARENA_SIZE, 3, 1000, 65535, Integer.MAX_VALUE })
+                for (int i = 0; i < 100; ++i)
+                    assertEquals(expected.nextInt(bound), actual.nextInt(bound));
+        }
+    }
+
+    @Test
+    public void testRestoreState() {
+        WarRandom r = new WarRandom();
+        r.setSeed(7);
+        r.nextInt(100);
+        long state = r.getState();
+        int a = r.nextInt(1000), b = r.nextInt(1000);
+        r.setState(state);
+        assertEquals(a, r.nextInt(1000));
+        assertEquals(b, r.nextInt(1000));
+    }
+}
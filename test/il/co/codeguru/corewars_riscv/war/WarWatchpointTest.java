@@ -0,0 +1,115 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.cpu.riscv.rv32c.RV32C;
+import il.co.codeguru.corewars_riscv.memory.RawMemory;
+import il.co.codeguru.corewars_riscv.memory.Watchpoints;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class WarWatchpointTest {
+
+    private static final int FIRST = 0x1000;
+    private static final int SECOND = 0x3000;
+
+    private War war;
+    private Watchpoints watchpoints;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        // the first keeps writing a counter after its code, the second keeps writing zero after its code
+        byte[] counter = toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, 0x100).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -8).getRaw());
+        byte[] zeroes = toBytes(
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 0, 0x100).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -4).getRaw());
+        WarriorGroup a = new WarriorGroup("a");
+        a.addWarrior(new WarriorData("a", counter, "a", FIRST));
+        WarriorGroup b = new WarriorGroup("b");
+        b.addWarrior(new WarriorData("b", zeroes, "b", SECOND));
+        war = new War(null, null, false, false);
+        war.setSeed(1);
+        watchpoints = new Watchpoints(RawMemory.MEMORY_SIZE);
+        war.setWatchpoints(watchpoints);
+        war.loadWarriorGroups(new WarriorGroup[] { a, b });
+    }
+
+    private Warrior warrior(String name) {
+        return war.getWarriorByLabel(name);
+    }
+
+    @Test
+    public void testNoHits() {
+        watchpoints.add(0x8000, 0x8fff, Watchpoints.READ | Watchpoints.WRITE);
+        watchpoints.add(FIRST, FIRST + 11, Watchpoints.READ); // only fetched
+        watchpoints.add(SECOND + 0x100, SECOND + 0x103, Watchpoints.CHANGE); // zero written over zero
+        for (int round = 0; round < 1000; ++round)
+            assertFalse(war.nextRound(round));
+        assertNull(war.getWatchHit());
+    }
+
+    @Test
+    public void testWriteHit() {
+        watchpoints.add(FIRST + 0x100, FIRST + 0x103, Watchpoints.CHANGE);
+        assertFalse(war.nextRound(0)); // addi
+        assertTrue(war.nextRound(1)); // sw
+        Watchpoints.Hit hit = war.getWatchHit();
+        assertEquals(Watchpoints.CHANGE, hit.kind);
+        assertEquals(warrior("a").m_myIndex, hit.warrior);
+        assertEquals(FIRST + 4, hit.pc);
+        assertEquals(FIRST + 0x100, hit.address);
+        assertEquals(1, hit.newValue);
+        assertFalse(war.nextRound(2));
+        assertNull(war.getWatchHit());
+    }
+
+    @Test
+    public void testWriteOfSameValue() {
+        watchpoints.add(SECOND + 0x100, SECOND + 0x103, Watchpoints.WRITE);
+        assertTrue(war.nextRound(0));
+        assertEquals(warrior("b").m_myIndex, war.getWatchHit().warrior);
+        assertEquals(SECOND, war.getWatchHit().pc);
+    }
+
+    @Test
+    public void testReadAfterCompressed() throws Exception {
+        // a compressed load right after the addi reads itself and the compressed jump after it
+        short cLw = RV32C.cInstructionFormatCL(RV32C.Opcodes.CLW, 9, 8, 0).getRaw();
+        short cJ = RV32C.cInstructionFormatCJ(RV32C.Opcodes.CJ, 0).getRaw();
+        byte[] reader = toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 8, 1, 4).getRaw(),
+                (cLw & 0xFFFF) | (cJ << 16));
+        WarriorGroup c = new WarriorGroup("c");
+        c.addWarrior(new WarriorData("c", reader, "c", FIRST));
+        WarriorGroup b = new WarriorGroup("b");
+        b.addWarrior(new WarriorData("b", toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw()), "b", SECOND));
+        war = new War(null, null, false, false);
+        war.setSeed(1);
+        war.setWatchpoints(watchpoints);
+        war.loadWarriorGroups(new WarriorGroup[] { c, b });
+
+        watchpoints.add(FIRST + 6, FIRST + 7, Watchpoints.READ); // the jump, after the 2 bytes of the load
+        assertFalse(war.nextRound(0)); // addi
+        assertTrue(war.nextRound(1)); // c.lw
+        Watchpoints.Hit hit = war.getWatchHit();
+        assertEquals(Watchpoints.READ, hit.kind);
+        assertEquals(FIRST + 6, hit.address);
+        assertEquals(FIRST + 4, hit.pc);
+        assertFalse(war.nextRound(2)); // only the fetch of the c.j
+    }
+
+    @Test
+    public void testForkHasNoWatchpoints() {
+        watchpoints.add(SECOND + 0x100, SECOND + 0x103, Watchpoints.WRITE);
+        War fork = war.fork();
+        assertFalse(fork.nextRound(0));
+        assertTrue(war.nextRound(0));
+    }
+}
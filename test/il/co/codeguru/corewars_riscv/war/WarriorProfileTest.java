@@ -0,0 +1,116 @@
+package il.co.codeguru.corewars_riscv.war;
+
+import il.co.codeguru.corewars_riscv.cpu.riscv.Instruction;
+import il.co.codeguru.corewars_riscv.cpu.riscv.RV32I;
+import il.co.codeguru.corewars_riscv.headless.ProfileExport;
+import il.co.codeguru.corewars_riscv.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static il.co.codeguru.corewars_riscv.TestUtils.toBytes;
+import static org.junit.Assert.*;
+
+public class WarriorProfileTest {
+
+    private static final int FIRST = 0x1000;
+    private static final int SECOND = 0x2000;
+
+    private War war;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.setTestingMode();
+        byte[] counter = toBytes(
+                RV32I.instructionI(RV32I.Opcodes.Addi, 5, 5, 1).getRaw(),
+                RV32I.instructionS(RV32I.Opcodes.Sw, 1, 5, 256).getRaw(),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, -8).getRaw());
+        byte[] looper = toBytes(RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 0).getRaw());
+        WarriorGroup a = new WarriorGroup("a");
+        a.addWarrior(new WarriorData("counter", counter, "a", FIRST));
+        WarriorGroup b = new WarriorGroup("b");
+        b.addWarrior(new WarriorData("looper", looper, "b", SECOND));
+        war = new War(null, null, false, false);
+        war.setSeed(1);
+        war.loadWarriorGroups(new WarriorGroup[] { a, b });
+    }
+
+    @Test
+    public void testOff() {
+        assertFalse(war.isProfiling());
+        for (int round = 0; round < 10; ++round)
+            war.nextRound(round);
+        assertNull(war.getProfile(war.getWarrior(0)));
+    }
+
+    @Test
+    public void testHitsAndMix() {
+        war.setProfiling(true);
+        for (int round = 0; round < 3000; ++round)
+            war.nextRound(round);
+
+        Warrior counter = war.getWarriorByLabel("a");
+        Warrior looper = war.getWarriorByLabel("b");
+        WarriorProfile cp = war.getProfile(counter);
+        WarriorProfile lp = war.getProfile(looper);
+
+        // every instruction is a hit, the looper only runs its single address
+        assertEquals(lp.getTotalHits(), lp.getHits(SECOND));
+        assertEquals(lp.getTotalHits(), lp.getMaxHits());
+        assertEquals(lp.getTotalHits(), lp.getOpcodeClassCount(Instruction.CLASS_JUMP));
+        assertTrue(lp.getTotalHits() >= 3000);
+
+        // the counter loops over its three instructions
+        assertEquals(cp.getTotalHits(), cp.getHits(FIRST) + cp.getHits(FIRST + 4) + cp.getHits(FIRST + 8));
+        assertTrue(cp.getHits(FIRST) - cp.getHits(FIRST + 8) <= 1);
+        assertEquals(cp.getHits(FIRST), cp.getOpcodeClassCount(Instruction.CLASS_ALU));
+        assertEquals(cp.getHits(FIRST + 4), cp.getOpcodeClassCount(Instruction.CLASS_STORE));
+        assertEquals(cp.getHits(FIRST + 8), cp.getOpcodeClassCount(Instruction.CLASS_JUMP));
+
+        // all the instructions of the war are in the profiles
+        long total = 0;
+        for (int c = 0; c < Instruction.CLASS_COUNT; ++c)
+            total += cp.getOpcodeClassCount(c) + lp.getOpcodeClassCount(c);
+        assertEquals(war.getInstructionCount(), total);
+
+        war.setProfiling(false);
+        assertNull(war.getProfile(counter));
+    }
+
+    @Test
+    public void testMutedRoundsDontCount() {
+        war.setProfiling(true);
+        for (int round = 0; round < 100; ++round)
+            war.nextRound(round);
+        WarriorProfile lp = war.getProfile(war.getWarriorByLabel("b"));
+        long hits = lp.getTotalHits();
+
+        // like going back to a snapshot and running the rounds again
+        war.setListenersMuted(true);
+        for (int round = 50; round < 100; ++round)
+            war.nextRound(round);
+        war.setListenersMuted(false);
+        assertEquals(hits, lp.getTotalHits());
+        assertEquals(hits, lp.getOpcodeClassCount(Instruction.CLASS_JUMP));
+
+        war.nextRound(100);
+        assertTrue(lp.getTotalHits() > hits);
+    }
+
+    @Test
+    public void testExport() {
+        war.setProfiling(true);
+        for (int round = 0; round < 100; ++round)
+            war.nextRound(round);
+        StringWriter out = new StringWriter();
+        ProfileExport.write(war, out);
+        String json = out.toString();
+        assertTrue(json.contains("\"name\": \"counter\""));
+        assertTrue(json.contains("\"name\": \"looper\""));
+        // the looper has a single address with all its hits
+        WarriorProfile lp = war.getProfile(war.getWarriorByLabel("b"));
+        assertTrue(json.contains("\"hits\": [[" + SECOND + ", " + lp.getTotalHits() + "]]"));
+        assertTrue(json.contains("\"jump\": " + lp.getTotalHits()));
+    }
+}
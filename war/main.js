@@ -2,7 +2,8 @@
 
 var run_assembler = null, run_nasm = null, run_gas = null
 var PAGE_SIZE = 512
-var LAST_PART_INDEX = Math.trunc(65535/PAGE_SIZE)
+var ARENA_SIZE = 0x10000 // the debug area has a line for every address, the debugger sets it for the war that starts
+var LAST_PART_INDEX = Math.trunc((ARENA_SIZE - 1)/PAGE_SIZE)
 
 var did_start = false
 
@@ -80,7 +81,7 @@ function populate_debug_area()
     console.log("start addr add")
     var c = document.createDocumentFragment();
     var currentPart = null
-    for(var i = 0; i <= 0xffff; ++i) {
+    for(var i = 0; i < ARENA_SIZE; ++i) {
 
         if ((i % PAGE_SIZE) == 0) {
             var parti = i / PAGE_SIZE
@@ -113,6 +114,19 @@ function populate_debug_area()
     console.log("done addr add")
 }
 
+// called from the debugger when a war starts with an arena of another size
+function setDebugArenaSize(size)
+{
+    if (size == ARENA_SIZE)
+        return
+    ARENA_SIZE = size
+    LAST_PART_INDEX = Math.trunc((ARENA_SIZE - 1)/PAGE_SIZE)
+    debug_text.innerHTML = ""
+    populate_debug_area()
+    last_shown_parts = [0,-1]
+    debug_text.scrollTop = 0
+}
+
 function cssRuleBySelector(selText) {
     var rules = document.styleSheets[0].cssRules
     for(var i = 0; i < rules.length; ++i)
@@ -189,7 +203,7 @@ function debugAreaScroll(force)
 }
 
 function scrollToAddr(addr) {
-    if (addr < 0 || addr > 0xffff)
+    if (addr < 0 || addr >= ARENA_SIZE)
         return
     var e = document.getElementById("d" + addr)
     if (!e)
@@ -209,7 +223,7 @@ function triggerGoTo() {
         console.error("failed to parse address");
         return
     }
-    if (addr < 0  || addr > 0xffff) {
+    if (addr < 0  || addr >= ARENA_SIZE) {
         console.error("address out of range");
     }
     scrollToAddr(addr)